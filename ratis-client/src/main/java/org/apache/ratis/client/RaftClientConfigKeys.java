@@ -77,6 +77,51 @@ public interface RaftClientConfigKeys {
       setInt(properties::setInt, OUTSTANDING_REQUESTS_MAX_KEY, outstandingRequests);
     }
 
+    /**
+     * When enabled, the async write messages sent within the linger time
+     * are batched into a single request; the reply is split for the individual messages.
+     * The other async requests, such as read-only, stale read and watch requests,
+     * flush the current batch and are sent after it, so that the request order of a client is preserved.
+     */
+    String BATCH_ENABLED_KEY = PREFIX + ".batch.enabled";
+    boolean BATCH_ENABLED_DEFAULT = false;
+    static boolean batchEnabled(RaftProperties properties) {
+      return getBoolean(properties::getBoolean, BATCH_ENABLED_KEY, BATCH_ENABLED_DEFAULT, getDefaultLog());
+    }
+    static void setBatchEnabled(RaftProperties properties, boolean enabled) {
+      setBoolean(properties::setBoolean, BATCH_ENABLED_KEY, enabled);
+    }
+
+    String BATCH_ELEMENT_LIMIT_KEY = PREFIX + ".batch.element-limit";
+    int BATCH_ELEMENT_LIMIT_DEFAULT = 64;
+    static int batchElementLimit(RaftProperties properties) {
+      return getInt(properties::getInt, BATCH_ELEMENT_LIMIT_KEY, BATCH_ELEMENT_LIMIT_DEFAULT, getDefaultLog(),
+          requireMin(2));
+    }
+    static void setBatchElementLimit(RaftProperties properties, int limit) {
+      setInt(properties::setInt, BATCH_ELEMENT_LIMIT_KEY, limit, requireMin(2));
+    }
+
+    String BATCH_BYTE_LIMIT_KEY = PREFIX + ".batch.byte-limit";
+    SizeInBytes BATCH_BYTE_LIMIT_DEFAULT = SizeInBytes.valueOf("64KB");
+    static SizeInBytes batchByteLimit(RaftProperties properties) {
+      return getSizeInBytes(properties::getSizeInBytes,
+          BATCH_BYTE_LIMIT_KEY, BATCH_BYTE_LIMIT_DEFAULT, getDefaultLog());
+    }
+    static void setBatchByteLimit(RaftProperties properties, SizeInBytes byteLimit) {
+      setSizeInBytes(properties::set, BATCH_BYTE_LIMIT_KEY, byteLimit);
+    }
+
+    String BATCH_LINGER_TIME_KEY = PREFIX + ".batch.linger-time";
+    TimeDuration BATCH_LINGER_TIME_DEFAULT = TimeDuration.valueOf(1, TimeUnit.MILLISECONDS);
+    static TimeDuration batchLingerTime(RaftProperties properties) {
+      return getTimeDuration(properties.getTimeDuration(BATCH_LINGER_TIME_DEFAULT.getUnit()),
+          BATCH_LINGER_TIME_KEY, BATCH_LINGER_TIME_DEFAULT, getDefaultLog());
+    }
+    static void setBatchLingerTime(RaftProperties properties, TimeDuration lingerTime) {
+      setTimeDuration(properties::setTimeDuration, BATCH_LINGER_TIME_KEY, lingerTime);
+    }
+
     interface Experimental {
       String PREFIX = Async.PREFIX + "." + JavaUtils.getClassSimpleName(Experimental.class).toLowerCase();
 
@@ -48,6 +48,17 @@ public interface AsyncApi {
    */
   CompletableFuture<RaftClientReply> sendReadOnly(Message message);
 
+  /**
+   * Send the given readonly message asynchronously to the given server (not the raft service).
+   * When the linearizable read option is enabled in the servers,
+   * a follower obtains the read index from the leader and then serves the request locally.
+   *
+   * @param message The request message.
+   * @param server The target server
+   * @return a future of the reply.
+   */
+  CompletableFuture<RaftClientReply> sendReadOnly(Message message, RaftPeerId server);
+
   /**
    * Send the given stale-read message asynchronously to the given server (not the raft service).
    * If the server commit index is larger than or equal to the given min-index, the request will be processed.
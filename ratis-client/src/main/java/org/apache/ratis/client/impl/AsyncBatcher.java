@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.client.impl;
+
+import org.apache.ratis.client.RaftClientConfigKeys;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.ClientMessageBatchProto;
+import org.apache.ratis.proto.RaftProtos.RaftClientReplyBatchProto;
+import org.apache.ratis.proto.RaftProtos.RaftClientReplyProto;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftClientRequest;
+import org.apache.ratis.protocol.exceptions.AlreadyClosedException;
+import org.apache.ratis.rpc.CallId;
+import org.apache.ratis.thirdparty.com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.ratis.util.Daemon;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.Preconditions;
+import org.apache.ratis.util.TimeDuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Batch the async write messages into a single {@link RaftClientRequest#writeBatchRequestType()} request.
+ * The batches are sent by {@link OrderedAsync}, so that they are ordered by the sliding window
+ * in the same way as the individual requests.
+ * The reply of a batch is split into the replies of the individual messages.
+ *
+ * The batches are sent by a sender thread, outside the lock of this object,
+ * since sending may block on the sliding window of {@link OrderedAsync}.
+ * The other async requests of the client are sent by the same thread after flushing the current batch,
+ * so that they are not sent ahead of the messages sent earlier; see {@link #flushAndSend(Supplier)}.
+ */
+class AsyncBatcher {
+  public static final Logger LOG = LoggerFactory.getLogger(AsyncBatcher.class);
+
+  /** A message waiting in a batch. */
+  private static class Element {
+    private final long callId = CallId.getAndIncrement();
+    private final Message message;
+    private final CompletableFuture<RaftClientReply> future = new CompletableFuture<>();
+
+    Element(Message message) {
+      this.message = Objects.requireNonNull(message, "message == null");
+    }
+
+    ClientMessageBatchProto.Entry toProto() {
+      return ClientMessageBatchProto.Entry.newBuilder()
+          .setCallId(callId)
+          .setContent(message.getContent())
+          .build();
+    }
+  }
+
+  private final RaftClientImpl client;
+  private final int elementLimit;
+  private final long byteLimit;
+  private final TimeDuration lingerTime;
+  /** Send the batches in the order of polling them. */
+  private final ExecutorService sender;
+
+  /** The current batch, always synchronized. */
+  private List<Element> batch = new ArrayList<>();
+  /** The size of the messages in the current batch, always synchronized. */
+  private long batchSize;
+  /** The id of the current batch for identifying the expired timeouts, always synchronized. */
+  private long batchId;
+  /** Is this batcher closed?  Always synchronized. */
+  private boolean closed;
+
+  AsyncBatcher(RaftClientImpl client, RaftProperties properties) {
+    this.client = client;
+    this.elementLimit = RaftClientConfigKeys.Async.batchElementLimit(properties);
+    this.byteLimit = RaftClientConfigKeys.Async.batchByteLimit(properties).getSize();
+    this.lingerTime = RaftClientConfigKeys.Async.batchLingerTime(properties);
+    this.sender = Executors.newSingleThreadExecutor(r -> new Daemon(r, this + "-sender"));
+  }
+
+  CompletableFuture<RaftClientReply> send(Message message) {
+    final Element element = new Element(message);
+    final long scheduleId;
+    synchronized (this) {
+      if (closed) {
+        return JavaUtils.completeExceptionally(new AlreadyClosedException(this + " is closed"));
+      }
+      batch.add(element);
+      batchSize += Message.getSize(message);
+      if (batch.size() >= elementLimit || batchSize >= byteLimit) {
+        submit(poll());
+        return element.future;
+      }
+      scheduleId = batch.size() == 1? batchId: -1;
+    }
+
+    if (scheduleId >= 0) {
+      client.getScheduler().onTimeout(lingerTime, () -> onTimeout(scheduleId),
+          LOG, () -> client.getId() + ": Failed to send batch " + scheduleId);
+    }
+    return element.future;
+  }
+
+  private synchronized void onTimeout(long id) {
+    if (id == batchId && !batch.isEmpty()) {
+      submit(poll());
+    }
+  }
+
+  private List<Element> poll() {
+    final List<Element> polled = batch;
+    batch = new ArrayList<>();
+    batchSize = 0;
+    batchId++;
+    return polled;
+  }
+
+  /** Submit the given batch to the sender, always synchronized for preserving the message order. */
+  private void submit(List<Element> elements) {
+    sender.execute(() -> send(elements));
+  }
+
+  /** Send the given batch in the sender thread. */
+  private void send(List<Element> elements) {
+    final OrderedAsync ordered = client.getOrderedAsync();
+    if (elements.size() == 1) {
+      final Element e = elements.get(0);
+      complete(e, ordered.send(RaftClientRequest.writeRequestType(), e.message, null));
+      return;
+    }
+
+    LOG.debug("{}: send a batch of {} messages", client.getId(), elements.size());
+    final ClientMessageBatchProto.Builder b = ClientMessageBatchProto.newBuilder();
+    elements.forEach(e -> b.addEntries(e.toProto()));
+    ordered.send(RaftClientRequest.writeBatchRequestType(), Message.valueOf(b.build().toByteString()), null)
+        .whenComplete((reply, e) -> {
+          if (e != null) {
+            elements.forEach(element -> element.future.completeExceptionally(e));
+          } else {
+            split(reply, elements);
+          }
+        });
+  }
+
+  private static void complete(Element element, CompletableFuture<RaftClientReply> reply) {
+    complete(element.future, reply);
+  }
+
+  private static void complete(CompletableFuture<RaftClientReply> future, CompletableFuture<RaftClientReply> reply) {
+    reply.whenComplete((r, e) -> {
+      if (e != null) {
+        future.completeExceptionally(e);
+      } else {
+        future.complete(r);
+      }
+    });
+  }
+
+  /**
+   * Flush the current batch and then send a request, which is not batched, using the given method.
+   * The request is sent by the sender thread after the messages sent earlier.
+   */
+  CompletableFuture<RaftClientReply> flushAndSend(Supplier<CompletableFuture<RaftClientReply>> sendMethod) {
+    final CompletableFuture<RaftClientReply> future = new CompletableFuture<>();
+    synchronized (this) {
+      if (!closed) {
+        if (!batch.isEmpty()) {
+          submit(poll());
+        }
+        sender.execute(() -> {
+          try {
+            complete(future, sendMethod.get());
+          } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+          }
+        });
+        return future;
+      }
+    }
+    // the sender is shutdown; send it directly
+    return sendMethod.get();
+  }
+
+  private static void split(RaftClientReply reply, List<Element> elements) {
+    final List<RaftClientReplyProto> replies;
+    try {
+      replies = RaftClientReplyBatchProto.parseFrom(reply.getMessage().getContent()).getRepliesList();
+      Preconditions.assertSame(elements.size(), replies.size(), "number of replies");
+    } catch (InvalidProtocolBufferException | IllegalStateException e) {
+      final CompletionException ce = new CompletionException("Failed to split the reply " + reply, e);
+      elements.forEach(element -> element.future.completeExceptionally(ce));
+      return;
+    }
+
+    for (int i = 0; i < elements.size(); i++) {
+      final CompletableFuture<RaftClientReply> future = elements.get(i).future;
+      try {
+        future.complete(RaftClientImpl.handleRaftException(
+            ClientProtoUtils.toRaftClientReply(replies.get(i)), CompletionException::new));
+      } catch (CompletionException e) {
+        future.completeExceptionally(e);
+      }
+    }
+  }
+
+  /**
+   * Fail the messages remaining in the current batch and then shutdown the sender.
+   * The batches already submitted are still sent.
+   */
+  void close() {
+    final List<Element> remaining;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      remaining = poll();
+    }
+    final AlreadyClosedException e = new AlreadyClosedException(this + " is closed");
+    remaining.forEach(element -> element.future.completeExceptionally(e));
+    sender.shutdown();
+  }
+
+  @Override
+  public String toString() {
+    return client.getId() + "-" + JavaUtils.getClassSimpleName(getClass());
+  }
+}
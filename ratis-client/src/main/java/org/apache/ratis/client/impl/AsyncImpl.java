@@ -21,6 +21,8 @@ import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 
 import org.apache.ratis.client.AsyncRpcApi;
+import org.apache.ratis.client.RaftClientConfigKeys;
+import org.apache.ratis.conf.RaftProperties;
 import org.apache.ratis.proto.RaftProtos;
 import org.apache.ratis.proto.RaftProtos.ReplicationLevel;
 import org.apache.ratis.protocol.Message;
@@ -31,26 +33,48 @@ import org.apache.ratis.protocol.RaftPeerId;
 /** Async api implementations. */
 class AsyncImpl implements AsyncRpcApi {
   private final RaftClientImpl client;
+  /** Batch the write messages; null if it is disabled. */
+  private final AsyncBatcher batcher;
 
-  AsyncImpl(RaftClientImpl client) {
+  AsyncImpl(RaftClientImpl client, RaftProperties properties) {
     this.client = Objects.requireNonNull(client, "client == null");
+    this.batcher = RaftClientConfigKeys.Async.batchEnabled(properties)? new AsyncBatcher(client, properties): null;
   }
 
   CompletableFuture<RaftClientReply> send(
       RaftClientRequest.Type type, Message message, RaftPeerId server) {
+    if (batcher != null) {
+      // send it after the messages waiting in the current batch
+      return batcher.flushAndSend(() -> client.getOrderedAsync().send(type, message, server));
+    }
     return client.getOrderedAsync().send(type, message, server);
   }
 
   @Override
   public CompletableFuture<RaftClientReply> send(Message message) {
+    if (batcher != null) {
+      return batcher.send(message);
+    }
     return send(RaftClientRequest.writeRequestType(), message, null);
   }
 
+  /** Fail the messages waiting in the current batch, if there is any. */
+  void close() {
+    if (batcher != null) {
+      batcher.close();
+    }
+  }
+
   @Override
   public CompletableFuture<RaftClientReply> sendReadOnly(Message message) {
     return send(RaftClientRequest.readRequestType(), message, null);
   }
 
+  @Override
+  public CompletableFuture<RaftClientReply> sendReadOnly(Message message, RaftPeerId server) {
+    return send(RaftClientRequest.readRequestType(), message, server);
+  }
+
   @Override
   public CompletableFuture<RaftClientReply> sendStaleRead(Message message, long minIndex, RaftPeerId server) {
     return send(RaftClientRequest.staleReadRequestType(minIndex), message, server);
@@ -58,7 +82,11 @@ class AsyncImpl implements AsyncRpcApi {
 
   @Override
   public CompletableFuture<RaftClientReply> watch(long index, ReplicationLevel replication) {
-    return UnorderedAsync.send(RaftClientRequest.watchRequestType(index, replication), client);
+    final RaftClientRequest.Type type = RaftClientRequest.watchRequestType(index, replication);
+    if (batcher != null) {
+      return batcher.flushAndSend(() -> UnorderedAsync.send(type, client));
+    }
+    return UnorderedAsync.send(type, client);
   }
 
   @Override
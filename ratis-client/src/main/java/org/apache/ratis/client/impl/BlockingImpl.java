@@ -61,6 +61,11 @@ class BlockingImpl implements BlockingApi {
     return send(RaftClientRequest.readRequestType(), message, null);
   }
 
+  @Override
+  public RaftClientReply sendReadOnly(Message message, RaftPeerId server) throws IOException {
+    return send(RaftClientRequest.readRequestType(), message, server);
+  }
+
   @Override
   public RaftClientReply sendStaleRead(Message message, long minIndex, RaftPeerId server)
       throws IOException {
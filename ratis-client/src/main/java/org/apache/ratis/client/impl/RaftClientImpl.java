@@ -133,7 +133,7 @@ public final class RaftClientImpl implements RaftClient {
   private final TimeoutScheduler scheduler = TimeoutScheduler.getInstance();
 
   private final Supplier<OrderedAsync> orderedAsync;
-  private final Supplier<AsyncImpl> asyncApi;
+  private final MemoizedSupplier<AsyncImpl> asyncApi;
   private final Supplier<BlockingImpl> blockingApi;
   private final Supplier<MessageStreamImpl> messageStreamApi;
   private final MemoizedSupplier<DataStreamApi> dataStreamApi;
@@ -161,7 +161,7 @@ public final class RaftClientImpl implements RaftClient {
 
     this.orderedAsync = JavaUtils.memoize(() -> OrderedAsync.newInstance(this, properties));
     this.messageStreamApi = JavaUtils.memoize(() -> MessageStreamImpl.newInstance(this, properties));
-    this.asyncApi = JavaUtils.memoize(() -> new AsyncImpl(this));
+    this.asyncApi = JavaUtils.memoize(() -> new AsyncImpl(this, properties));
     this.blockingApi = JavaUtils.memoize(() -> new BlockingImpl(this));
     this.dataStreamApi = JavaUtils.memoize(() -> DataStreamClient.newBuilder()
         .setClientId(clientId)
@@ -369,6 +369,9 @@ public final class RaftClientImpl implements RaftClient {
 
   @Override
   public void close() throws IOException {
+    if (asyncApi.isInitialized()) {
+      asyncApi.get().close();
+    }
     scheduler.close();
     clientRpc.close();
     if (dataStreamApi.isInitialized()) {
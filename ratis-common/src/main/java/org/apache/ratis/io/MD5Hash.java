@@ -31,14 +31,7 @@ import java.util.Arrays;
 public class MD5Hash {
   public static final int MD5_LEN = 16;
 
-  private static final ThreadLocal<MessageDigest> DIGESTER_FACTORY =
-      ThreadLocal.withInitial(() -> {
-    try {
-      return MessageDigest.getInstance("MD5");
-    } catch (NoSuchAlgorithmException e) {
-      throw new RuntimeException(e);
-    }
-  });
+  private static final ThreadLocal<MessageDigest> DIGESTER_FACTORY = ThreadLocal.withInitial(MD5Hash::newDigester);
 
   private byte[] digest;
 
@@ -92,6 +85,18 @@ public class MD5Hash {
     return digest(data, 0, data.length);
   }
 
+  /**
+   * Create a new MD5 digester, which is not thread local
+   * so that it can be used to digest data across threads, e.g. a file received in chunks.
+   */
+  public static MessageDigest newDigester() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Failed to create MD5 digester", e);
+    }
+  }
+
   /**
    * Create a thread local MD5 digester
    */
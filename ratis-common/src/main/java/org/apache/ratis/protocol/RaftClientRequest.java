@@ -32,6 +32,7 @@ public class RaftClientRequest extends RaftClientMessage {
   private static final Type DATA_STREAM_DEFAULT = new Type(DataStreamRequestTypeProto.getDefaultInstance());
   private static final Type FORWARD_DEFAULT = new Type(ForwardRequestTypeProto.getDefaultInstance());
   private static final Type WRITE_DEFAULT = new Type(WriteRequestTypeProto.getDefaultInstance());
+  private static final Type WRITE_BATCH = new Type(WriteRequestTypeProto.newBuilder().setBatch(true).build());
   private static final Type WATCH_DEFAULT = new Type(
       WatchRequestTypeProto.newBuilder().setIndex(0L).setReplication(ReplicationLevel.MAJORITY).build());
 
@@ -42,6 +43,11 @@ public class RaftClientRequest extends RaftClientMessage {
     return WRITE_DEFAULT;
   }
 
+  /** @return the type of the write requests having a ClientMessageBatchProto as the message. */
+  public static Type writeBatchRequestType() {
+    return WRITE_BATCH;
+  }
+
   public static Type dataStreamRequestType() {
     return DATA_STREAM_DEFAULT;
   }
@@ -77,7 +83,7 @@ public class RaftClientRequest extends RaftClientMessage {
   /** The type of a request (oneof write, read, staleRead, watch; see the message RaftClientRequestProto). */
   public static final class Type {
     public static Type valueOf(WriteRequestTypeProto write) {
-      return WRITE_DEFAULT;
+      return write.getBatch()? WRITE_BATCH: WRITE_DEFAULT;
     }
 
     public static Type valueOf(DataStreamRequestTypeProto dataStream) {
@@ -159,6 +165,10 @@ public class RaftClientRequest extends RaftClientMessage {
       return (WriteRequestTypeProto)proto;
     }
 
+    public boolean isWriteBatch() {
+      return is(WRITE) && getWrite().getBatch();
+    }
+
     public DataStreamRequestTypeProto getDataStream() {
       Preconditions.assertTrue(is(DATASTREAM));
       return (DataStreamRequestTypeProto)proto;
@@ -205,7 +215,7 @@ public class RaftClientRequest extends RaftClientMessage {
     public String toString() {
       switch (typeCase) {
         case WRITE:
-          return "RW";
+          return getWrite().getBatch()? "RW-Batch": "RW";
         case DATASTREAM:
           return "DataStream";
         case FORWARD:
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.zip.Checksum;
+
+/**
+ * The providers of CRC32C {@link Checksum}s.
+ * <p>
+ * {@link #JAVA_UTIL_ZIP} uses java.util.zip.CRC32C, which is available in Java 9 or above
+ * and is intrinsified by the JVM on the common platforms.
+ * {@link #PURE_JAVA} uses {@link PureJavaCrc32C}, which is available in all Java versions.
+ * Both providers compute the same checksum values.
+ */
+public enum Crc32cProvider {
+  JAVA_UTIL_ZIP(JavaUtils.memoize(Crc32cProvider::getJavaUtilZipCrc32cConstructor)),
+  PURE_JAVA(JavaUtils.memoize(() -> Optional.of(PureJavaCrc32C::new)));
+
+  static final Logger LOG = LoggerFactory.getLogger(Crc32cProvider.class);
+
+  private static final String JAVA_UTIL_ZIP_CRC32C = "java.util.zip.CRC32C";
+
+  private static Optional<Supplier<Checksum>> getJavaUtilZipCrc32cConstructor() {
+    final Constructor<? extends Checksum> constructor;
+    try {
+      constructor = Class.forName(JAVA_UTIL_ZIP_CRC32C).asSubclass(Checksum.class).getConstructor();
+    } catch (Exception e) {
+      LOG.info("{} is not available: {}", JAVA_UTIL_ZIP_CRC32C, e.toString());
+      return Optional.empty();
+    }
+    return Optional.of(() -> {
+      try {
+        return constructor.newInstance();
+      } catch (Exception e) {
+        throw new IllegalStateException("Failed to create " + JAVA_UTIL_ZIP_CRC32C, e);
+      }
+    });
+  }
+
+  private static final Supplier<Crc32cProvider> DEFAULT = JavaUtils.memoize(() -> {
+    final Crc32cProvider provider = JAVA_UTIL_ZIP.isAvailable()? JAVA_UTIL_ZIP: PURE_JAVA;
+    LOG.info("The default CRC32C provider is {}", provider);
+    return provider;
+  });
+
+  /** @return {@link #JAVA_UTIL_ZIP} if it is available; otherwise, return {@link #PURE_JAVA}. */
+  public static Crc32cProvider getDefault() {
+    return DEFAULT.get();
+  }
+
+  /** @return a new CRC32C {@link Checksum} from the default provider. */
+  public static Checksum newDefaultChecksum() {
+    return getDefault().newChecksum();
+  }
+
+  private final Supplier<Optional<Supplier<Checksum>>> constructor;
+
+  Crc32cProvider(Supplier<Optional<Supplier<Checksum>>> constructor) {
+    this.constructor = constructor;
+  }
+
+  /** @return is this provider available in the current JVM? */
+  public boolean isAvailable() {
+    return constructor.get().isPresent();
+  }
+
+  /** @return a new CRC32C {@link Checksum}. */
+  public Checksum newChecksum() {
+    return constructor.get().orElseThrow(
+        () -> new UnsupportedOperationException(this + " is not available in this JVM")).get();
+  }
+}
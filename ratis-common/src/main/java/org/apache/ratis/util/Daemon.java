@@ -17,7 +17,80 @@
  */
 package org.apache.ratis.util;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
 public class Daemon extends Thread {
+  static final Logger LOG = LoggerFactory.getLogger(Daemon.class);
+
+  /** The factory of virtual threads, which is empty if the JVM does not support virtual threads. */
+  private static final Supplier<Optional<ThreadFactory>> VIRTUAL_THREAD_FACTORY
+      = JavaUtils.memoize(Daemon::newVirtualThreadFactory);
+
+  /**
+   * The min Java version for using virtual threads.
+   * Before Java 24, a virtual thread blocked in {@link Object#wait()} or in a synchronized block
+   * pins its carrier thread, so that the loops waiting on monitors could starve the small carrier pool.
+   */
+  static final int VIRTUAL_THREAD_MIN_JAVA_VERSION = 24;
+
+  /** @return the feature version of the running JVM, e.g. 8 for "1.8" and 21 for "21". */
+  static int getJavaFeatureVersion() {
+    final String version = System.getProperty("java.specification.version", "");
+    final String feature = version.startsWith("1.")? version.substring(2): version;
+    try {
+      return Integer.parseInt(feature);
+    } catch (NumberFormatException e) {
+      LOG.warn("Failed to parse java.specification.version {}", version, e);
+      return -1;
+    }
+  }
+
+  /** Use reflection to invoke Thread.ofVirtual().factory() since it is only available in Java 21 or above. */
+  private static Optional<ThreadFactory> newVirtualThreadFactory() {
+    final int javaVersion = getJavaFeatureVersion();
+    if (javaVersion < VIRTUAL_THREAD_MIN_JAVA_VERSION) {
+      LOG.info("Virtual threads are not used in Java {} (< {}) since they may pin the carrier threads",
+          javaVersion, VIRTUAL_THREAD_MIN_JAVA_VERSION);
+      return Optional.empty();
+    }
+    try {
+      final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      final Class<?> builderClass = Class.forName(Thread.class.getName() + "$Builder");
+      return Optional.of((ThreadFactory) builderClass.getMethod("factory").invoke(builder));
+    } catch (Exception e) {
+      LOG.info("Virtual threads are not supported: {}", e.toString());
+      return Optional.empty();
+    }
+  }
+
+  /** @return true iff the JVM supports virtual threads without pinning the carrier threads on monitors. */
+  public static boolean isVirtualThreadSupported() {
+    return VIRTUAL_THREAD_FACTORY.get().isPresent();
+  }
+
+  /**
+   * Create a new thread, which is not yet started, for the given runnable.
+   * When useVirtualThread is true and the JVM supports virtual threads, the new thread is a virtual thread.
+   * Otherwise, it is a {@link Daemon}.
+   * Note that a virtual thread is always a daemon thread.
+   */
+  public static Thread newThread(Runnable runnable, String name, boolean useVirtualThread) {
+    if (useVirtualThread) {
+      final Optional<ThreadFactory> factory = VIRTUAL_THREAD_FACTORY.get();
+      if (factory.isPresent()) {
+        final Thread t = factory.get().newThread(runnable);
+        t.setName(name);
+        return t;
+      }
+    }
+    return new Daemon(runnable, name);
+  }
+
   {
     setDaemon(true);
   }
@@ -25,13 +25,16 @@ import org.apache.ratis.proto.ExamplesProtos.ReadReplyProto;
 import org.apache.ratis.proto.ExamplesProtos.StreamWriteReplyProto;
 import org.apache.ratis.proto.ExamplesProtos.WriteReplyProto;
 import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.server.RaftServerConfigKeys;
 import org.apache.ratis.statemachine.StateMachine;
 import org.apache.ratis.statemachine.StateMachine.DataStream;
+import org.apache.ratis.statemachine.impl.FileDataStream;
 import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
 import org.apache.ratis.util.CollectionUtils;
 import org.apache.ratis.util.FileUtils;
 import org.apache.ratis.util.JavaUtils;
 import org.apache.ratis.util.LogUtils;
+import org.apache.ratis.util.SizeInBytes;
 import org.apache.ratis.util.StringUtils;
 import org.apache.ratis.util.function.CheckedSupplier;
 import org.slf4j.Logger;
@@ -102,6 +105,7 @@ public class FileStore implements Closeable {
   private final Supplier<RaftPeerId> idSupplier;
   private final List<Supplier<Path>> rootSuppliers;
   private final FileMap files;
+  private final SizeInBytes streamWriteBatchSize;
 
   private final ExecutorService writer;
   private final ExecutorService committer;
@@ -133,6 +137,7 @@ public class FileStore implements Closeable {
           JavaUtils.memoize(() -> dir.toPath().resolve(getId().toString()).normalize().toAbsolutePath()));
     }
     this.files = new FileMap(JavaUtils.memoize(() -> idSupplier.get() + ":files"));
+    this.streamWriteBatchSize = RaftServerConfigKeys.DataStream.fileWriteBatchSize(properties);
   }
 
   public RaftPeerId getId() {
@@ -289,11 +294,11 @@ public class FileStore implements Closeable {
     }, committer);
   }
 
-  public CompletableFuture<FileStoreDataChannel> createDataChannel(String p) {
+  public CompletableFuture<DataStream> createDataStream(String p) {
     return CompletableFuture.supplyAsync(() -> {
       try {
         final Path full = resolve(normalize(p));
-        return new FileStoreDataChannel(full);
+        return new FileDataStream(full, streamWriteBatchSize, null);
       } catch (IOException e) {
         throw new CompletionException("Failed to create " + p, e);
       }
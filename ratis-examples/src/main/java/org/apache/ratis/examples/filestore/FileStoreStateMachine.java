@@ -153,31 +153,6 @@ public class FileStoreStateMachine extends BaseStateMachine {
     return reply.thenApply(ExamplesProtos.ReadReplyProto::getData);
   }
 
-  static class LocalStream implements DataStream {
-    private final DataChannel dataChannel;
-
-    LocalStream(DataChannel dataChannel) {
-      this.dataChannel = dataChannel;
-    }
-
-    @Override
-    public DataChannel getDataChannel() {
-      return dataChannel;
-    }
-
-    @Override
-    public CompletableFuture<?> cleanUp() {
-      return CompletableFuture.supplyAsync(() -> {
-        try {
-          dataChannel.close();
-          return true;
-        } catch (IOException e) {
-          return FileStoreCommon.completeExceptionally("Failed to close data channel", e);
-        }
-      });
-    }
-  }
-
   @Override
   public CompletableFuture<DataStream> stream(RaftClientRequest request) {
     final ByteString reqByteString = request.getMessage().getContent();
@@ -188,8 +163,7 @@ public class FileStoreStateMachine extends BaseStateMachine {
       return FileStoreCommon.completeExceptionally(
           "Failed to parse stream header", e);
     }
-    return files.createDataChannel(proto.getStream().getPath().toStringUtf8())
-        .thenApply(LocalStream::new);
+    return files.createDataStream(proto.getStream().getPath().toStringUtf8());
   }
 
   @Override
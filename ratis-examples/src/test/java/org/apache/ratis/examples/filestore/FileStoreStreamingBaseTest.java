@@ -25,6 +25,7 @@ import org.apache.ratis.datastream.DataStreamTestUtils;
 import org.apache.ratis.protocol.RaftGroup;
 import org.apache.ratis.protocol.RaftPeer;
 import org.apache.ratis.protocol.RoutingTable;
+import org.apache.ratis.server.RaftServerConfigKeys;
 import org.apache.ratis.server.impl.MiniRaftCluster;
 import org.apache.ratis.statemachine.StateMachine;
 import org.apache.ratis.util.LogUtils;
@@ -37,6 +38,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -103,6 +106,46 @@ public abstract class FileStoreStreamingBaseTest <CLUSTER extends MiniRaftCluste
     cluster.shutdown();
   }
 
+  @Test
+  public void testFileStoreStreamFileContent() throws Exception {
+    // a small batch size, which is not aligned with the buffer size
+    RaftServerConfigKeys.DataStream.setFileWriteBatchSize(getProperties(), SizeInBytes.valueOf("4KB"));
+    final CLUSTER cluster = newCluster(NUM_PEERS);
+    cluster.start();
+    RaftTestUtil.waitForLeader(cluster);
+
+    final Collection<RaftPeer> peers = cluster.getGroup().getPeers();
+    final RaftPeer primary = peers.iterator().next();
+    final CheckedSupplier<FileStoreClient, IOException> newClient =
+        () -> new FileStoreClient(cluster.getGroup(), getProperties(), primary);
+    final RoutingTable routingTable = DataStreamTestUtils.getRoutingTableChainTopology(peers, primary);
+
+    final String path = "content";
+    final int bufferSize = 10_000;
+    testSingleFile(path, SizeInBytes.valueOf("1M"), bufferSize, newClient, routingTable);
+    assertFileContent(peers, path, SizeInBytes.valueOf("1M").getSizeInt(), bufferSize);
+
+    // stream a shorter file to the same path; the existing file must be truncated
+    testSingleFile(path, SizeInBytes.valueOf("100K"), bufferSize, newClient, routingTable);
+    assertFileContent(peers, path, SizeInBytes.valueOf("100K").getSizeInt(), bufferSize);
+
+    cluster.shutdown();
+  }
+
+  /** Each buffer written by {@link FileStoreWriter#streamWriteAndVerify(RoutingTable)} starts at position 0. */
+  private void assertFileContent(Collection<RaftPeer> peers, String path, int fileSize, int bufferSize)
+      throws IOException {
+    final byte[] expected = new byte[fileSize];
+    for (int i = 0; i < fileSize; i++) {
+      expected[i] = DataStreamTestUtils.pos2byte(i % bufferSize);
+    }
+    for (RaftPeer peer : peers) {
+      final Path file = new File(getClassTestDir(), "filestore").toPath()
+          .resolve(peer.getId().toString()).resolve(path);
+      Assert.assertArrayEquals(peer.getId() + ": " + file, expected, Files.readAllBytes(file));
+    }
+  }
+
   private void testSingleFile(
       String path, SizeInBytes fileLength, int bufferSize, CheckedSupplier<FileStoreClient, IOException> newClient,
       RoutingTable routingTable)
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.protocol.ClientId;
+import org.apache.ratis.protocol.ClientInvocationId;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftClientRequest;
+import org.apache.ratis.protocol.RaftGroupId;
+import org.apache.ratis.protocol.RaftGroupMemberId;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.server.impl.RetryCacheImpl.CacheEntry;
+import org.apache.ratis.server.metrics.RaftServerMetricsImpl;
+import org.apache.ratis.server.raftlog.LogProtoUtils;
+import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.statemachine.TransactionContext;
+import org.apache.ratis.statemachine.impl.BaseStateMachine;
+import org.apache.ratis.util.TimeDuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measure the contention of the {@link RetryCacheImpl} and the {@link PendingRequests}
+ * on the leader write path, where each thread simulates a client.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WritePathContentionBenchmark {
+  /** A client sending requests with increasing call ids. */
+  @State(Scope.Thread)
+  public static class Client {
+    private final ClientId clientId = ClientId.randomId();
+    private long callId;
+
+    RaftClientRequest newRequest(RaftGroupMemberId leader, Message message) {
+      return RaftClientRequest.newBuilder()
+          .setClientId(clientId)
+          .setServerId(leader.getPeerId())
+          .setGroupId(leader.getGroupId())
+          .setCallId(callId++)
+          .setMessage(message)
+          .setType(RaftClientRequest.writeRequestType())
+          .build();
+    }
+  }
+
+  private final RaftGroupMemberId leader = RaftGroupMemberId.valueOf(RaftPeerId.valueOf("s0"), RaftGroupId.randomId());
+  private final Message message = Message.valueOf("benchmark");
+  private final StateMachine stateMachine = new BaseStateMachine();
+  private final AtomicLong nextIndex = new AtomicLong();
+
+  private RetryCacheImpl retryCache;
+  private RaftServerMetricsImpl metrics;
+  private PendingRequests pendingRequests;
+
+  @Setup
+  public void setup() {
+    retryCache = new RetryCacheImpl(TimeDuration.valueOf(60, TimeUnit.SECONDS), TimeDuration.ONE_SECOND);
+    metrics = new RaftServerMetricsImpl(leader, () -> null, retryCache::getStatistics);
+    pendingRequests = new PendingRequests(leader, new RaftProperties(), metrics);
+  }
+
+  @TearDown
+  public void tearDown() {
+    pendingRequests.close();
+    metrics.unregister();
+    retryCache.close();
+  }
+
+  /** Query the retry cache, add a pending request, and then reply it. */
+  @Benchmark
+  @Threads(16)
+  public RaftClientReply write(Client client) {
+    final RaftClientRequest request = client.newRequest(leader, message);
+    final CacheEntry cacheEntry = retryCache.queryCache(ClientInvocationId.valueOf(request)).getEntry();
+
+    final PendingRequests.Permit permit = pendingRequests.tryAcquire(request.getMessage());
+    final long index = nextIndex.incrementAndGet();
+    final LogEntryProto entry = LogProtoUtils.toLogEntryProto(
+        LogProtoUtils.toStateMachineLogEntryProto(request, message.getContent(), null), 1, index);
+    final TransactionContext trx = TransactionContext.newBuilder()
+        .setStateMachine(stateMachine)
+        .setLogEntry(entry)
+        .build();
+    pendingRequests.add(permit, request, trx);
+
+    final RaftClientReply reply = RaftClientReply.newBuilder()
+        .setRequest(request)
+        .setSuccess()
+        .setLogIndex(index)
+        .build();
+    pendingRequests.replyPendingRequest(index, reply);
+    cacheEntry.updateResult(reply);
+    return reply;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(WritePathContentionBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
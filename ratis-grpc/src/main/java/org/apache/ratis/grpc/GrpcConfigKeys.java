@@ -175,6 +175,32 @@ public interface GrpcConfigKeys {
     static void setLeaderOutstandingAppendsMax(RaftProperties properties, int maxAppend) {
       setInt(properties::setInt, LEADER_OUTSTANDING_APPENDS_MAX_KEY, maxAppend);
     }
+
+    /**
+     * When enabled, the number of outstanding appends to a follower is limited by an adaptive window,
+     * which is between {@link #leaderOutstandingAppendsMin(RaftProperties)}
+     * and {@link #leaderOutstandingAppendsMax(RaftProperties)}.
+     * Otherwise, it is limited by {@link #leaderOutstandingAppendsMax(RaftProperties)}.
+     */
+    String LEADER_OUTSTANDING_APPENDS_ADAPTIVE_ENABLED_KEY = PREFIX + ".leader.outstanding.appends.adaptive.enabled";
+    boolean LEADER_OUTSTANDING_APPENDS_ADAPTIVE_ENABLED_DEFAULT = false;
+    static boolean leaderOutstandingAppendsAdaptiveEnabled(RaftProperties properties) {
+      return getBoolean(properties::getBoolean, LEADER_OUTSTANDING_APPENDS_ADAPTIVE_ENABLED_KEY,
+          LEADER_OUTSTANDING_APPENDS_ADAPTIVE_ENABLED_DEFAULT, getDefaultLog());
+    }
+    static void setLeaderOutstandingAppendsAdaptiveEnabled(RaftProperties properties, boolean enabled) {
+      setBoolean(properties::setBoolean, LEADER_OUTSTANDING_APPENDS_ADAPTIVE_ENABLED_KEY, enabled);
+    }
+
+    String LEADER_OUTSTANDING_APPENDS_MIN_KEY = PREFIX + ".leader.outstanding.appends.min";
+    int LEADER_OUTSTANDING_APPENDS_MIN_DEFAULT = 4;
+    static int leaderOutstandingAppendsMin(RaftProperties properties) {
+      return getInt(properties::getInt,
+          LEADER_OUTSTANDING_APPENDS_MIN_KEY, LEADER_OUTSTANDING_APPENDS_MIN_DEFAULT, getDefaultLog(), requireMin(1));
+    }
+    static void setLeaderOutstandingAppendsMin(RaftProperties properties, int minAppend) {
+      setInt(properties::setInt, LEADER_OUTSTANDING_APPENDS_MIN_KEY, minAppend);
+    }
   }
 
   interface OutputStream {
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.grpc.server;
+
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.Preconditions;
+
+/**
+ * A window limiting the number of outstanding appendEntries requests sent to a follower.
+ *
+ * The window grows additively, by one for each window of fast replies,
+ * where a reply is fast if its latency stays within {@link #LATENCY_FACTOR} times the lowest latency observed,
+ * i.e. the requests are not being queued up in the network or the follower.
+ * The window shrinks by one for a slow reply, and it shrinks by half on a timeout or an inconsistency.
+ * The replies of the requests sent before the last {@link #reset(long)} are stale;
+ * an inconsistency of a stale reply does not shrink the window again.
+ *
+ * When min == max, the window has a fixed size.
+ */
+class AdaptiveAppendWindow {
+  static final int LATENCY_FACTOR = 2;
+
+  private final int min;
+  private final int max;
+
+  private int size;
+  private int fastReplies = 0;
+  private long minLatencyNanos = Long.MAX_VALUE;
+  /** The requests having smaller callIds were sent before the last reset. */
+  private long firstValidCallId = 0;
+
+  AdaptiveAppendWindow(int min, int max) {
+    Preconditions.assertTrue(max >= 0, () -> "max = " + max + " < 0");
+    this.min = Math.min(min, max);
+    this.max = max;
+    this.size = this.min;
+  }
+
+  synchronized int getSize() {
+    return size;
+  }
+
+  synchronized void onSuccess(long latencyNanos) {
+    if (min == max) {
+      return;
+    }
+    minLatencyNanos = Math.min(minLatencyNanos, latencyNanos);
+    if (latencyNanos <= LATENCY_FACTOR * minLatencyNanos) {
+      if (++fastReplies >= size) {
+        fastReplies = 0;
+        size = Math.min(max, size + 1);
+      }
+    } else {
+      fastReplies = 0;
+      size = Math.max(min, size - 1);
+    }
+  }
+
+  synchronized void onFailure() {
+    fastReplies = 0;
+    size = Math.max(min, size / 2);
+  }
+
+  /**
+   * On an inconsistency reply of the request with the given callId.
+   *
+   * @return true iff the request was not sent before the last {@link #reset(long)}.
+   */
+  synchronized boolean onInconsistency(long callId) {
+    if (callId < firstValidCallId) {
+      return false;
+    }
+    onFailure();
+    return true;
+  }
+
+  /** Reset when the outstanding requests are discarded, where the next request has the given callId. */
+  synchronized void reset(long nextCallId) {
+    firstValidCallId = nextCallId;
+  }
+
+  /** Reset the latency observed, e.g. when the connection is reset. */
+  synchronized void resetLatency() {
+    fastReplies = 0;
+    minLatencyNanos = Long.MAX_VALUE;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return JavaUtils.getClassSimpleName(getClass()) + "(size=" + size + ", min=" + min + ", max=" + max + ")";
+  }
+}
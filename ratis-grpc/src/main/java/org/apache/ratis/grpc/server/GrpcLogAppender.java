@@ -30,6 +30,7 @@ import org.apache.ratis.server.leader.LogAppenderBase;
 import org.apache.ratis.server.protocol.TermIndex;
 import org.apache.ratis.server.raftlog.RaftLog;
 import org.apache.ratis.server.util.ServerStringUtils;
+import org.apache.ratis.thirdparty.io.grpc.Status;
 import org.apache.ratis.thirdparty.io.grpc.stub.StreamObserver;
 import org.apache.ratis.proto.RaftProtos.AppendEntriesReplyProto;
 import org.apache.ratis.proto.RaftProtos.AppendEntriesRequestProto;
@@ -43,6 +44,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.codahale.metrics.Timer;
@@ -54,7 +56,7 @@ public class GrpcLogAppender extends LogAppenderBase {
   public static final Logger LOG = LoggerFactory.getLogger(GrpcLogAppender.class);
 
   private final RequestMap pendingRequests = new RequestMap();
-  private final int maxPendingRequestsNum;
+  private final AdaptiveAppendWindow window;
   private long callId = 0;
   private volatile boolean firstResponseReceived = false;
   private final boolean installSnapshotEnabled;
@@ -75,7 +77,10 @@ public class GrpcLogAppender extends LogAppenderBase {
     Preconditions.assertNotNull(getServerRpc(), "getServerRpc()");
 
     final RaftProperties properties = server.getRaftServer().getProperties();
-    this.maxPendingRequestsNum = GrpcConfigKeys.Server.leaderOutstandingAppendsMax(properties);
+    final int maxPendingRequestsNum = GrpcConfigKeys.Server.leaderOutstandingAppendsMax(properties);
+    final int minPendingRequestsNum = GrpcConfigKeys.Server.leaderOutstandingAppendsAdaptiveEnabled(properties)?
+        GrpcConfigKeys.Server.leaderOutstandingAppendsMin(properties): maxPendingRequestsNum;
+    this.window = new AdaptiveAppendWindow(minPendingRequestsNum, maxPendingRequestsNum);
     this.requestTimeoutDuration = RaftServerConfigKeys.Rpc.requestTimeout(properties);
     this.installSnapshotEnabled = RaftServerConfigKeys.Log.Appender.installSnapshotEnabled(properties);
 
@@ -86,6 +91,13 @@ public class GrpcLogAppender extends LogAppenderBase {
     caller = LOG.isTraceEnabled()? JavaUtils.getCallerStackTraceElement(): null;
   }
 
+  @Override
+  public long getCallId() {
+    try (AutoCloseableLock readLock = lock.readLock(caller, LOG::trace)) {
+      return callId;
+    }
+  }
+
   @Override
   public GrpcService getServerRpc() {
     return (GrpcService)super.getServerRpc();
@@ -100,8 +112,10 @@ public class GrpcLogAppender extends LogAppenderBase {
       getClient().resetConnectBackoff();
       appendLogRequestObserver = null;
       firstResponseReceived = false;
+      window.resetLatency();
       // clear the pending requests queue and reset the next index of follower
       pendingRequests.clear();
+      window.reset(callId);
       final long nextIndex = 1 + Optional.ofNullable(request)
           .map(AppendEntriesRequest::getPreviousLog)
           .map(TermIndex::getIndex)
@@ -199,7 +213,7 @@ public class GrpcLogAppender extends LogAppenderBase {
     if (size == 0) {
       return false;
     }
-    return !firstResponseReceived || size >= maxPendingRequestsNum;
+    return !firstResponseReceived || size >= window.getSize();
   }
 
   private void appendLog(boolean excludeLogEntries) throws IOException {
@@ -245,6 +259,10 @@ public class GrpcLogAppender extends LogAppenderBase {
     if (pending != null) {
       LOG.warn("{}: {} appendEntries Timeout, request={}", this, heartbeat ? "HEARTBEAT" : "", pending);
       grpcServerMetrics.onRequestTimeout(getFollowerId().toString(), heartbeat);
+      if (!heartbeat) {
+        window.onFailure();
+      }
+      notifyLogAppender();
     }
   }
 
@@ -278,6 +296,12 @@ public class GrpcLogAppender extends LogAppenderBase {
       AppendEntriesRequest request = pendingRequests.remove(reply);
       if (request != null) {
         request.stopRequestTimer(); // Update completion time
+        if (reply.getResult() != AppendEntriesReplyProto.AppendResult.NOT_LEADER) {
+          getFollower().updateLastRespondedAppendEntriesSendTime(request.getSendTime());
+        }
+        if (reply.getResult() == AppendEntriesReplyProto.AppendResult.SUCCESS && !request.isHeartbeat()) {
+          window.onSuccess(request.getSendTime().elapsedTime().toLong(TimeUnit.NANOSECONDS));
+        }
       }
 
       if (LOG.isDebugEnabled()) {
@@ -287,20 +311,21 @@ public class GrpcLogAppender extends LogAppenderBase {
       }
 
       try {
-        onNextImpl(reply);
+        onNextImpl(request, reply);
       } catch(Exception t) {
         LOG.error("Failed onNext request=" + request
             + ", reply=" + ServerStringUtils.toAppendEntriesReplyString(reply), t);
       }
     }
 
-    private void onNextImpl(AppendEntriesReplyProto reply) {
+    private void onNextImpl(AppendEntriesRequest request, AppendEntriesReplyProto reply) {
       // update the last rpc time
       getFollower().updateLastRpcResponseTime();
 
       if (!firstResponseReceived) {
         firstResponseReceived = true;
       }
+      getLeaderState().onAppendEntriesReply(GrpcLogAppender.this, reply);
 
       switch (reply.getResult()) {
         case SUCCESS:
@@ -318,7 +343,10 @@ public class GrpcLogAppender extends LogAppenderBase {
           break;
         case INCONSISTENCY:
           grpcServerMetrics.onRequestInconsistency(getFollowerId().toString());
-          updateNextIndex(reply.getNextIndex());
+          if (!updateNextIndex(request, reply.getNextIndex())) {
+            // the request was sent before the last reset; the nextIndex has already been reset
+            LOG.debug("{}: ignore the stale INCONSISTENCY reply, request={}", this, request);
+          }
           break;
         default:
           throw new IllegalStateException("Unexpected reply result: " + reply.getResult());
@@ -353,10 +381,16 @@ public class GrpcLogAppender extends LogAppenderBase {
     }
   }
 
-  private void updateNextIndex(long replyNextIndex) {
+  /** @return true iff the nextIndex is updated, i.e. the given request is neither null nor stale. */
+  private boolean updateNextIndex(AppendEntriesRequest request, long replyNextIndex) {
     try (AutoCloseableLock writeLock = lock.writeLock(caller, LOG::trace)) {
+      if (request == null || !window.onInconsistency(request.getCallId())) {
+        return false;
+      }
       pendingRequests.clear();
+      window.reset(callId);
       getFollower().setNextIndex(replyNextIndex);
+      return true;
     }
   }
 
@@ -475,6 +509,9 @@ public class GrpcLogAppender extends LogAppenderBase {
         return;
       }
       GrpcUtil.warn(LOG, () -> this + ": Failed InstallSnapshot", t);
+      if (!isNotificationOnly && Status.fromThrowable(t).getCode() != Status.Code.UNAVAILABLE) {
+        onSnapshotInstallFailed();
+      }
       grpcServerMetrics.onRequestRetry(); // Update try counter
       resetClient(null, true);
       close();
@@ -538,6 +575,7 @@ public class GrpcLogAppender extends LogAppenderBase {
 
     if (responseHandler.hasAllResponse()) {
       getFollower().setSnapshotIndex(snapshot.getTermIndex().getIndex());
+      onSnapshotInstalled(snapshot);
       LOG.info("{}: installed snapshot {} successfully", this, snapshot);
     }
   }
@@ -627,6 +665,7 @@ public class GrpcLogAppender extends LogAppenderBase {
   static class AppendEntriesRequest {
     private final Timer timer;
     private volatile Timer.Context timerContext;
+    private volatile Timestamp sendTime;
 
     private final long callId;
     private final TermIndex previousLog;
@@ -653,9 +692,14 @@ public class GrpcLogAppender extends LogAppenderBase {
     }
 
     void startRequestTimer() {
+      sendTime = Timestamp.currentTime();
       timerContext = timer.time();
     }
 
+    Timestamp getSendTime() {
+      return sendTime;
+    }
+
     void stopRequestTimer() {
       timerContext.stop();
     }
@@ -107,6 +107,11 @@ public class GrpcServerProtocolClient implements Closeable {
     return r;
   }
 
+  void readIndex(ReadIndexRequestProto request, StreamObserver<ReadIndexReplyProto> responseHandler) {
+    asyncStub.withDeadlineAfter(requestTimeoutDuration.getDuration(), requestTimeoutDuration.getUnit())
+        .readIndex(request, responseHandler);
+  }
+
   StreamObserver<AppendEntriesRequestProto> appendEntries(
       StreamObserver<AppendEntriesReplyProto> responseHandler) {
     return asyncStub.appendEntries(responseHandler);
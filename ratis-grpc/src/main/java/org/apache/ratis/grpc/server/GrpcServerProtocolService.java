@@ -28,6 +28,7 @@ import org.apache.ratis.thirdparty.io.grpc.StatusRuntimeException;
 import org.apache.ratis.thirdparty.io.grpc.stub.StreamObserver;
 import org.apache.ratis.proto.RaftProtos.*;
 import org.apache.ratis.proto.grpc.RaftServerProtocolServiceGrpc.RaftServerProtocolServiceImplBase;
+import org.apache.ratis.util.JavaUtils;
 import org.apache.ratis.util.ProtoUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -192,6 +193,25 @@ class GrpcServerProtocolService extends RaftServerProtocolServiceImplBase {
     }
   }
 
+  @Override
+  public void readIndex(ReadIndexRequestProto request, StreamObserver<ReadIndexReplyProto> responseObserver) {
+    try {
+      server.readIndexAsync(request).whenComplete((reply, throwable) -> {
+        if (throwable == null) {
+          responseObserver.onNext(reply);
+          responseObserver.onCompleted();
+        } else {
+          final Throwable e = JavaUtils.unwrapCompletionException(throwable);
+          GrpcUtil.warn(LOG, () -> getId() + ": Failed readIndex " + ProtoUtils.toString(request.getServerRequest()), e);
+          responseObserver.onError(GrpcUtil.wrapException(e));
+        }
+      });
+    } catch (Throwable e) {
+      GrpcUtil.warn(LOG, () -> getId() + ": Failed readIndex " + ProtoUtils.toString(request.getServerRequest()), e);
+      responseObserver.onError(GrpcUtil.wrapException(e));
+    }
+  }
+
   @Override
   public StreamObserver<AppendEntriesRequestProto> appendEntries(
       StreamObserver<AppendEntriesReplyProto> responseObserver) {
@@ -28,6 +28,30 @@ import static org.apache.ratis.conf.ConfUtils.*;
 public interface NettyConfigKeys {
   String PREFIX = "raft.netty";
 
+  Logger LOG = LoggerFactory.getLogger(NettyConfigKeys.class);
+  static Consumer<String> getDefaultLog() {
+    return LOG::info;
+  }
+
+  /** The transport of the netty channels. */
+  enum Transport {
+    /** The transport using java nio, which is available on all the platforms. */
+    NIO,
+    /** The native epoll transport, which is only available on Linux; fallback to {@link #NIO} if unavailable. */
+    EPOLL
+  }
+
+  String TRANSPORT_KEY = PREFIX + ".transport";
+  Transport TRANSPORT_DEFAULT = Transport.EPOLL;
+
+  static Transport transport(RaftProperties properties) {
+    return get(properties::getEnum, TRANSPORT_KEY, TRANSPORT_DEFAULT, getDefaultLog());
+  }
+
+  static void setTransport(RaftProperties properties, Transport transport) {
+    set(properties::setEnum, TRANSPORT_KEY, transport);
+  }
+
   interface Server {
     Logger LOG = LoggerFactory.getLogger(Server.class);
     static Consumer<String> getDefaultLog() {
@@ -47,6 +71,32 @@ public interface NettyConfigKeys {
     static void setPort(RaftProperties properties, int port) {
       setInt(properties::setInt, PORT_KEY, port);
     }
+
+    /** Use the asynchronous log appender, which pipelines the appendEntries requests to a follower. */
+    String ASYNC_LOG_APPENDER_ENABLED_KEY = PREFIX + ".async.log-appender.enabled";
+    boolean ASYNC_LOG_APPENDER_ENABLED_DEFAULT = true;
+
+    static boolean asyncLogAppenderEnabled(RaftProperties properties) {
+      return getBoolean(properties::getBoolean,
+          ASYNC_LOG_APPENDER_ENABLED_KEY, ASYNC_LOG_APPENDER_ENABLED_DEFAULT, getDefaultLog());
+    }
+
+    static void setAsyncLogAppenderEnabled(RaftProperties properties, boolean enabled) {
+      setBoolean(properties::setBoolean, ASYNC_LOG_APPENDER_ENABLED_KEY, enabled);
+    }
+
+    /** The max number of the outstanding appendEntries requests to a follower. */
+    String LEADER_OUTSTANDING_APPENDS_MAX_KEY = PREFIX + ".leader.outstanding.appends.max";
+    int LEADER_OUTSTANDING_APPENDS_MAX_DEFAULT = 16;
+
+    static int leaderOutstandingAppendsMax(RaftProperties properties) {
+      return getInt(properties::getInt, LEADER_OUTSTANDING_APPENDS_MAX_KEY,
+          LEADER_OUTSTANDING_APPENDS_MAX_DEFAULT, getDefaultLog(), requireMin(1));
+    }
+
+    static void setLeaderOutstandingAppendsMax(RaftProperties properties, int maxAppends) {
+      setInt(properties::setInt, LEADER_OUTSTANDING_APPENDS_MAX_KEY, maxAppends);
+    }
   }
 
   interface DataStream {
@@ -68,6 +118,19 @@ public interface NettyConfigKeys {
     static void setPort(RaftProperties properties, int port) {
       setInt(properties::setInt, PORT_KEY, port);
     }
+
+    /** Share a worker group among all the data stream clients instead of creating a group for each client. */
+    String CLIENT_WORKER_GROUP_SHARE_KEY = PREFIX + ".client.worker-group.share";
+    boolean CLIENT_WORKER_GROUP_SHARE_DEFAULT = true;
+
+    static boolean clientWorkerGroupShare(RaftProperties properties) {
+      return getBoolean(properties::getBoolean,
+          CLIENT_WORKER_GROUP_SHARE_KEY, CLIENT_WORKER_GROUP_SHARE_DEFAULT, getDefaultLog());
+    }
+
+    static void setClientWorkerGroupShare(RaftProperties properties, boolean share) {
+      setBoolean(properties::setBoolean, CLIENT_WORKER_GROUP_SHARE_KEY, share);
+    }
   }
 
   static void main(String[] args) {
@@ -21,11 +21,15 @@ import org.apache.ratis.client.ClientFactory;
 import org.apache.ratis.conf.Parameters;
 import org.apache.ratis.conf.RaftProperties;
 import org.apache.ratis.netty.client.NettyClientRpc;
+import org.apache.ratis.netty.server.NettyLogAppender;
 import org.apache.ratis.netty.server.NettyRpcService;
 import org.apache.ratis.protocol.ClientId;
 import org.apache.ratis.rpc.SupportedRpcType;
 import org.apache.ratis.server.RaftServer;
 import org.apache.ratis.server.ServerFactory;
+import org.apache.ratis.server.leader.FollowerInfo;
+import org.apache.ratis.server.leader.LeaderState;
+import org.apache.ratis.server.leader.LogAppender;
 
 public class NettyFactory implements ServerFactory, ClientFactory {
   public NettyFactory(Parameters parameters) {}
@@ -35,6 +39,12 @@ public class NettyFactory implements ServerFactory, ClientFactory {
     return SupportedRpcType.NETTY;
   }
 
+  @Override
+  public LogAppender newLogAppender(RaftServer.Division server, LeaderState state, FollowerInfo f) {
+    return NettyConfigKeys.Server.asyncLogAppenderEnabled(server.getRaftServer().getProperties())?
+        new NettyLogAppender(server, state, f): ServerFactory.super.newLogAppender(server, state, f);
+  }
+
   @Override
   public NettyRpcService newRaftServerRpc(RaftServer server) {
     return NettyRpcService.newBuilder().setServer(server).build();
@@ -22,7 +22,6 @@ import org.apache.ratis.conf.RaftProperties;
 import org.apache.ratis.protocol.RaftPeer;
 import org.apache.ratis.protocol.exceptions.TimeoutIOException;
 import org.apache.ratis.thirdparty.io.netty.channel.*;
-import org.apache.ratis.thirdparty.io.netty.channel.nio.NioEventLoopGroup;
 import org.apache.ratis.thirdparty.io.netty.channel.socket.SocketChannel;
 import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufDecoder;
 import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufEncoder;
@@ -35,11 +34,17 @@ import org.apache.ratis.util.IOUtils;
 import org.apache.ratis.util.PeerProxyMap;
 import org.apache.ratis.util.ProtoUtils;
 import org.apache.ratis.util.TimeDuration;
+import org.apache.ratis.util.TimeoutScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -48,13 +53,16 @@ import java.util.concurrent.TimeoutException;
 import static org.apache.ratis.proto.netty.NettyProtos.RaftNettyServerReplyProto.RaftNettyServerReplyCase.EXCEPTIONREPLY;
 
 public class NettyRpcProxy implements Closeable {
+  public static final Logger LOG = LoggerFactory.getLogger(NettyRpcProxy.class);
+
   public static class PeerMap extends PeerProxyMap<NettyRpcProxy> {
-    private final EventLoopGroup group = new NioEventLoopGroup();
+    private final EventLoopGroup group;
     private final RaftProperties properties;
 
     public PeerMap(String name, RaftProperties properties) {
       super(name);
       this.properties = properties;
+      this.group = NettyUtils.newEventLoopGroup(name + "-proxy", 0, false, NettyConfigKeys.transport(properties));
     }
 
     @Override
@@ -99,10 +107,18 @@ public class NettyRpcProxy implements Closeable {
   }
 
 
+  /**
+   * A connection multiplexing the requests:
+   * each request is assigned a callId so that the requests can be outstanding at the same time
+   * and the replies can be received out of order.
+   */
   class Connection implements Closeable {
     private final NettyClient client = new NettyClient();
-    private final Queue<CompletableFuture<RaftNettyServerReplyProto>> replies
-        = new LinkedList<>();
+    /** The outstanding requests in the sending order, keyed by the callIds assigned by this connection. */
+    private final Map<Long, CompletableFuture<RaftNettyServerReplyProto>> replies = new LinkedHashMap<>();
+    private long nextCallId = 1;
+    /** Has the peer replied with callId 0, i.e. the peer does not support callId? */
+    private boolean inOrderReplies = false;
 
     Connection(EventLoopGroup group) throws InterruptedException {
       final ChannelInboundHandler inboundHandler
@@ -110,10 +126,11 @@ public class NettyRpcProxy implements Closeable {
         @Override
         protected void channelRead0(ChannelHandlerContext ctx,
                                     RaftNettyServerReplyProto proto) {
-          final CompletableFuture<RaftNettyServerReplyProto> future = pollReply();
+          final CompletableFuture<RaftNettyServerReplyProto> future = pollReply(proto.getCallId());
           if (future == null) {
-            throw new IllegalStateException("Request #" + getCallId(proto)
-                + " not found");
+            // the request has already been completed, e.g. timeout
+            LOG.debug("{}: ignore the late reply for request #{}", peer, getCallId(proto));
+            return;
           }
           if (proto.getRaftNettyServerReplyCase() == EXCEPTIONREPLY) {
             final Object ioe = ProtoUtils.toObject(proto.getExceptionReply().getException());
@@ -143,28 +160,59 @@ public class NettyRpcProxy implements Closeable {
 
     synchronized ChannelFuture offer(RaftNettyServerRequestProto request,
         CompletableFuture<RaftNettyServerReplyProto> reply) {
-      replies.offer(reply);
-      return client.writeAndFlush(request);
+      final long callId = nextCallId++;
+      replies.put(callId, reply);
+      // remove the reply once it is completed without being received, e.g. timeout
+      reply.whenComplete((r, e) -> removeReply(callId, reply));
+      return client.writeAndFlush(request.toBuilder().setCallId(callId).build());
+    }
+
+    private synchronized void removeReply(long callId, CompletableFuture<RaftNettyServerReplyProto> reply) {
+      // when the replies are matched in order, keep the completed reply as a placeholder
+      // so that it will be matched with the late reply received from the peer.
+      if (!inOrderReplies) {
+        replies.remove(callId, reply);
+      }
+    }
+
+    synchronized int getOutstandingCount() {
+      return replies.size();
     }
 
-    synchronized CompletableFuture<RaftNettyServerReplyProto> pollReply() {
-      return replies.poll();
+    synchronized CompletableFuture<RaftNettyServerReplyProto> pollReply(long callId) {
+      if (callId != 0) {
+        return replies.remove(callId);
+      }
+      // the peer does not support callId: the replies are received in the sending order.
+      inOrderReplies = true;
+      final Iterator<CompletableFuture<RaftNettyServerReplyProto>> i = replies.values().iterator();
+      if (!i.hasNext()) {
+        return null;
+      }
+      final CompletableFuture<RaftNettyServerReplyProto> first = i.next();
+      i.remove();
+      return first;
     }
 
     @Override
-    public synchronized void close() {
-      client.close();
-      if (!replies.isEmpty()) {
-        final IOException e = new IOException("Connection to " + peer + " is closed.");
-        replies.stream().forEach(f -> f.completeExceptionally(e));
+    public void close() {
+      final List<CompletableFuture<RaftNettyServerReplyProto>> remaining;
+      synchronized (this) {
+        client.close();
+        remaining = new ArrayList<>(replies.values());
         replies.clear();
       }
+      if (!remaining.isEmpty()) {
+        final IOException e = new IOException("Connection to " + peer + " is closed.");
+        remaining.forEach(f -> f.completeExceptionally(e));
+      }
     }
   }
 
   private final RaftPeer peer;
   private final Connection connection;
   private final TimeDuration requestTimeoutDuration;
+  private final TimeoutScheduler scheduler = TimeoutScheduler.getInstance();
 
   public NettyRpcProxy(RaftPeer peer, RaftProperties properties, EventLoopGroup group) throws InterruptedException {
     this.peer = peer;
@@ -177,6 +225,33 @@ public class NettyRpcProxy implements Closeable {
     connection.close();
   }
 
+  /** @return the number of the requests waiting for the replies. */
+  int getOutstandingCount() {
+    return connection.getOutstandingCount();
+  }
+
+  /**
+   * Send the given request asynchronously.
+   * The returned future is completed exceptionally with a {@link TimeoutIOException}
+   * if the reply is not received in time.
+   * Note that the replies of the outstanding requests may be received out of order.
+   */
+  public CompletableFuture<RaftNettyServerReplyProto> sendAsync(
+      RaftRpcRequestProto request, RaftNettyServerRequestProto proto) {
+    final CompletableFuture<RaftNettyServerReplyProto> reply = new CompletableFuture<>();
+    connection.offer(proto, reply).addListener(f -> {
+      if (!f.isSuccess()) {
+        reply.completeExceptionally(IOUtils.asIOException(f.cause()));
+      }
+    });
+
+    final TimeDuration timeout = requestTimeoutDuration.add(request.getTimeoutMs(), TimeUnit.MILLISECONDS);
+    scheduler.onTimeout(timeout, () -> reply.completeExceptionally(new TimeoutIOException(
+            peer + ": Timeout " + ProtoUtils.toString(request) + " in " + timeout)),
+        LOG, () -> "Timeout check failed for " + ProtoUtils.toString(request));
+    return reply;
+  }
+
   public RaftNettyServerReplyProto send(
       RaftRpcRequestProto request, RaftNettyServerRequestProto proto)
       throws IOException {
@@ -188,12 +263,14 @@ public class NettyRpcProxy implements Closeable {
       TimeDuration newDuration = requestTimeoutDuration.add(request.getTimeoutMs(), TimeUnit.MILLISECONDS);
       return reply.get(newDuration.getDuration(), newDuration.getUnit());
     } catch (InterruptedException e) {
+      reply.completeExceptionally(e);
       Thread.currentThread().interrupt();
       throw IOUtils.toInterruptedIOException(ProtoUtils.toString(request)
           + " sending from " + peer + " is interrupted.", e);
     } catch (ExecutionException e) {
       throw IOUtils.toIOException(e);
     } catch (TimeoutException e) {
+      reply.completeExceptionally(e);
       throw new TimeoutIOException(e.getMessage(), e);
     }
   }
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.netty;
+
+import org.apache.ratis.netty.NettyConfigKeys.Transport;
+import org.apache.ratis.thirdparty.io.netty.channel.EventLoopGroup;
+import org.apache.ratis.thirdparty.io.netty.channel.ServerChannel;
+import org.apache.ratis.thirdparty.io.netty.channel.epoll.Epoll;
+import org.apache.ratis.thirdparty.io.netty.channel.epoll.EpollEventLoopGroup;
+import org.apache.ratis.thirdparty.io.netty.channel.epoll.EpollServerSocketChannel;
+import org.apache.ratis.thirdparty.io.netty.channel.epoll.EpollSocketChannel;
+import org.apache.ratis.thirdparty.io.netty.channel.nio.NioEventLoopGroup;
+import org.apache.ratis.thirdparty.io.netty.channel.socket.SocketChannel;
+import org.apache.ratis.thirdparty.io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.apache.ratis.thirdparty.io.netty.channel.socket.nio.NioSocketChannel;
+import org.apache.ratis.thirdparty.io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Utilities for selecting the netty transport. */
+public interface NettyUtils {
+  Logger LOG = LoggerFactory.getLogger(NettyUtils.class);
+
+  /**
+   * Create a new {@link EventLoopGroup} for the given transport.
+   * When the native epoll transport is unavailable, fallback to nio
+   * and log a warning for the first fallback in the JVM.
+   *
+   * @param size the number of threads; 0 means using the netty default.
+   */
+  static EventLoopGroup newEventLoopGroup(String name, int size, boolean daemon, Transport transport) {
+    final ThreadFactory threadFactory = new DefaultThreadFactory(name, daemon);
+    if (transport == Transport.EPOLL) {
+      if (Epoll.isAvailable()) {
+        return new EpollEventLoopGroup(size, threadFactory);
+      }
+      EpollFallback.log(name);
+    }
+    return new NioEventLoopGroup(size, threadFactory);
+  }
+
+  /** Log the fallback from epoll to nio; the warning is logged only once per JVM. */
+  final class EpollFallback {
+    private static final AtomicBoolean WARNED = new AtomicBoolean();
+
+    private EpollFallback() {}
+
+    static void log(String name) {
+      if (WARNED.compareAndSet(false, true)) {
+        LOG.warn("Failed to create EpollEventLoopGroup for {}; fallback to NioEventLoopGroup."
+            + " This warning will not be repeated.", name, Epoll.unavailabilityCause());
+      } else {
+        LOG.debug("Epoll is unavailable for {}; fallback to NioEventLoopGroup.", name);
+      }
+    }
+  }
+
+  /** @return the {@link SocketChannel} class matching the transport of the given group. */
+  static Class<? extends SocketChannel> getSocketChannelClass(EventLoopGroup group) {
+    return group instanceof EpollEventLoopGroup? EpollSocketChannel.class: NioSocketChannel.class;
+  }
+
+  /** @return the {@link ServerChannel} class matching the transport of the given group. */
+  static Class<? extends ServerChannel> getServerChannelClass(EventLoopGroup group) {
+    return group instanceof EpollEventLoopGroup? EpollServerSocketChannel.class: NioServerSocketChannel.class;
+  }
+}
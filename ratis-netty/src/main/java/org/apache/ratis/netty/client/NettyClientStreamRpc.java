@@ -22,7 +22,9 @@ import org.apache.ratis.client.DataStreamClientRpc;
 import org.apache.ratis.conf.RaftProperties;
 import org.apache.ratis.datastream.impl.DataStreamRequestByteBuffer;
 import org.apache.ratis.datastream.impl.DataStreamRequestFilePositionCount;
+import org.apache.ratis.netty.NettyConfigKeys;
 import org.apache.ratis.netty.NettyDataStreamUtils;
+import org.apache.ratis.netty.NettyUtils;
 import org.apache.ratis.protocol.ClientInvocationId;
 import org.apache.ratis.protocol.DataStreamReply;
 import org.apache.ratis.protocol.DataStreamRequest;
@@ -30,9 +32,7 @@ import org.apache.ratis.protocol.RaftPeer;
 import org.apache.ratis.thirdparty.io.netty.bootstrap.Bootstrap;
 import org.apache.ratis.thirdparty.io.netty.buffer.ByteBuf;
 import org.apache.ratis.thirdparty.io.netty.channel.*;
-import org.apache.ratis.thirdparty.io.netty.channel.nio.NioEventLoopGroup;
 import org.apache.ratis.thirdparty.io.netty.channel.socket.SocketChannel;
-import org.apache.ratis.thirdparty.io.netty.channel.socket.nio.NioSocketChannel;
 import org.apache.ratis.thirdparty.io.netty.handler.codec.ByteToMessageDecoder;
 import org.apache.ratis.thirdparty.io.netty.handler.codec.MessageToMessageEncoder;
 import org.apache.ratis.util.JavaUtils;
@@ -52,8 +52,22 @@ import java.util.function.Supplier;
 public class NettyClientStreamRpc implements DataStreamClientRpc {
   public static final Logger LOG = LoggerFactory.getLogger(NettyClientStreamRpc.class);
 
+  /** The worker group shared by all the clients; see {@link NettyConfigKeys.DataStream#clientWorkerGroupShare}. */
+  private static EventLoopGroup sharedWorkerGroup;
+
+  private static synchronized EventLoopGroup getSharedWorkerGroup(NettyConfigKeys.Transport transport) {
+    if (sharedWorkerGroup == null) {
+      // use daemon threads since the shared group is never shutdown
+      sharedWorkerGroup = NettyUtils.newEventLoopGroup(
+          JavaUtils.getClassSimpleName(NettyClientStreamRpc.class) + "-sharedWorker", 0, true, transport);
+    }
+    return sharedWorkerGroup;
+  }
+
   private final String name;
-  private final EventLoopGroup workerGroup = new NioEventLoopGroup();
+  private final EventLoopGroup workerGroup;
+  /** Is the {@link #workerGroup} shared with the other clients? */
+  private final boolean workerGroupShared;
   private final Supplier<Channel> channel;
   private final ConcurrentMap<ClientInvocationId, Queue<CompletableFuture<DataStreamReply>>> replies =
       new ConcurrentHashMap<>();
@@ -61,9 +75,14 @@ public class NettyClientStreamRpc implements DataStreamClientRpc {
   public NettyClientStreamRpc(RaftPeer server, RaftProperties properties){
     this.name = JavaUtils.getClassSimpleName(getClass()) + "->" + server;
 
+    final NettyConfigKeys.Transport transport = NettyConfigKeys.transport(properties);
+    this.workerGroupShared = NettyConfigKeys.DataStream.clientWorkerGroupShare(properties);
+    this.workerGroup = workerGroupShared? getSharedWorkerGroup(transport)
+        : NettyUtils.newEventLoopGroup(name + "-worker", 0, false, transport);
+
     final ChannelFuture f = new Bootstrap()
         .group(workerGroup)
-        .channel(NioSocketChannel.class)
+        .channel(NettyUtils.getSocketChannelClass(workerGroup))
         .handler(getInitializer())
         .option(ChannelOption.SO_KEEPALIVE, true)
         .connect(NetUtils.createSocketAddr(server.getDataStreamAddress()));
@@ -154,7 +173,9 @@ public class NettyClientStreamRpc implements DataStreamClientRpc {
   @Override
   public void close() {
     getChannel().close().syncUninterruptibly();
-    workerGroup.shutdownGracefully();
+    if (!workerGroupShared) {
+      workerGroup.shutdownGracefully();
+    }
   }
 
   @Override
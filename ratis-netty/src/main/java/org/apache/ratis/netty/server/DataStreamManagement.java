@@ -251,13 +251,11 @@ public class DataStreamManagement {
 
   static long writeTo(ByteBuf buf, WriteOption[] options, DataStream stream) {
     final DataChannel channel = stream.getDataChannel();
-    long byteWritten = 0;
-    for (ByteBuffer buffer : buf.nioBuffers()) {
-      try {
-        byteWritten += channel.write(buffer);
-      } catch (Throwable t) {
-        throw new CompletionException(t);
-      }
+    final long byteWritten;
+    try {
+      byteWritten = channel.write(buf.nioBuffers());
+    } catch (Throwable t) {
+      throw new CompletionException(t);
     }
 
     if (WriteOption.containsOption(options, StandardWriteOption.SYNC)) {
@@ -349,10 +347,38 @@ public class DataStreamManagement {
     }
   }
 
+  /**
+   * Retain the given buffer for the task and release it once the task has completed.
+   * Then, the local write and the remote writes share the same received buffer without copying it
+   * and the buffer is released as soon as all of them have completed.
+   */
+  static <T> CompletableFuture<T> retainUntilComplete(ByteBuf buf, Function<ByteBuf, CompletableFuture<T>> task) {
+    buf.retain();
+    final CompletableFuture<T> future;
+    try {
+      future = task.apply(buf);
+    } catch (Throwable t) {
+      buf.release();
+      throw t;
+    }
+    future.whenComplete((v, e) -> buf.release());
+    return future;
+  }
+
   void read(DataStreamRequestByteBuf request, ChannelHandlerContext ctx,
       CheckedBiFunction<RaftClientRequest, Set<RaftPeer>, Set<DataStreamOutputRpc>, IOException> getStreams) {
-    LOG.debug("{}: read {}", this, request);
     final ByteBuf buf = request.slice();
+    try {
+      readImpl(request, buf, ctx, getStreams);
+    } finally {
+      // the writes have retained the buffer if they need it
+      buf.release();
+    }
+  }
+
+  private void readImpl(DataStreamRequestByteBuf request, ByteBuf buf, ChannelHandlerContext ctx,
+      CheckedBiFunction<RaftClientRequest, Set<RaftPeer>, Set<DataStreamOutputRpc>, IOException> getStreams) {
+    LOG.debug("{}: read {}", this, request);
     boolean close = WriteOption.containsOption(request.getWriteOptions(), StandardWriteOption.CLOSE);
     ClientInvocationId key =  ClientInvocationId.valueOf(request.getClientId(), request.getStreamId());
     final StreamInfo info;
@@ -377,8 +403,8 @@ public class DataStreamManagement {
       localWrite = CompletableFuture.completedFuture(0L);
       remoteWrites = Collections.emptyList();
     } else if (request.getType() == Type.STREAM_DATA) {
-      localWrite = info.getLocal().write(buf, request.getWriteOptions(), writeExecutor);
-      remoteWrites = info.applyToRemotes(out -> out.write(request, requestExecutor));
+      localWrite = retainUntilComplete(buf, b -> info.getLocal().write(b, request.getWriteOptions(), writeExecutor));
+      remoteWrites = info.applyToRemotes(out -> retainUntilComplete(buf, b -> out.write(request, requestExecutor)));
     } else {
       throw new IllegalStateException(this + ": Unexpected type " + request.getType() + ", request=" + request);
     }
@@ -400,12 +426,8 @@ public class DataStreamManagement {
           }
           return null;
         }, requestExecutor)).whenComplete((v, exception) -> {
-      try {
-        if (exception != null) {
-          replyDataStreamException(server, exception, info.getRequest(), request, ctx);
-        }
-      } finally {
-        buf.release();
+      if (exception != null) {
+        replyDataStreamException(server, exception, info.getRequest(), request, ctx);
       }
     });
   }
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.netty.server;
+
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.netty.NettyConfigKeys;
+import org.apache.ratis.proto.RaftProtos.AppendEntriesReplyProto;
+import org.apache.ratis.proto.RaftProtos.AppendEntriesReplyProto.AppendResult;
+import org.apache.ratis.proto.RaftProtos.AppendEntriesRequestProto;
+import org.apache.ratis.proto.RaftProtos.InstallSnapshotReplyProto;
+import org.apache.ratis.proto.RaftProtos.InstallSnapshotRequestProto;
+import org.apache.ratis.server.RaftServer;
+import org.apache.ratis.server.leader.FollowerInfo;
+import org.apache.ratis.server.leader.LeaderState;
+import org.apache.ratis.server.leader.LogAppenderBase;
+import org.apache.ratis.server.util.ServerStringUtils;
+import org.apache.ratis.statemachine.SnapshotInfo;
+import org.apache.ratis.util.IOUtils;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.Timestamp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link org.apache.ratis.server.leader.LogAppender} for {@link NettyRpcService}.
+ * Unlike the default log appender, which sends an appendEntries request and then waits for the reply,
+ * this log appender sends the requests asynchronously over the multiplexed connection to the follower.
+ * It allows up to {@link NettyConfigKeys.Server#leaderOutstandingAppendsMax(RaftProperties)} outstanding requests.
+ */
+public class NettyLogAppender extends LogAppenderBase {
+  private final int outstandingAppendsMax;
+  /** The callIds of the outstanding appendEntries requests having log entries; guarded by this. */
+  private final Set<Long> outstanding = new HashSet<>();
+  /** Guarded by this. */
+  private long callId = 0;
+  /** The requests having smaller callIds were sent before the last reset, i.e. they are stale; guarded by this. */
+  private long firstValidCallId = 0;
+  /** Should sleep before sending the next request since the previous request has failed? */
+  private final AtomicBoolean sleepBeforeRetry = new AtomicBoolean();
+
+  public NettyLogAppender(RaftServer.Division server, LeaderState leaderState, FollowerInfo f) {
+    super(server, leaderState, f);
+    this.outstandingAppendsMax = NettyConfigKeys.Server.leaderOutstandingAppendsMax(
+        server.getRaftServer().getProperties());
+  }
+
+  @Override
+  public NettyRpcService getServerRpc() {
+    return (NettyRpcService)super.getServerRpc();
+  }
+
+  @Override
+  public synchronized long getCallId() {
+    return callId;
+  }
+
+  private synchronized int getOutstandingCount() {
+    return outstanding.size();
+  }
+
+  private boolean isOutstandingFull() {
+    return getOutstandingCount() >= outstandingAppendsMax;
+  }
+
+  @Override
+  public void run() throws InterruptedException, IOException {
+    while (isRunning()) {
+      boolean sent = false;
+      if (sleepBeforeRetry.compareAndSet(true, false)) {
+        getServer().properties().rpcSleepTime().sleep();
+      } else if (shouldSendAppendEntries()) {
+        final SnapshotInfo snapshot = shouldInstallSnapshot();
+        if (snapshot == null) {
+          sent = appendLog();
+        } else if (getOutstandingCount() == 0) {
+          // install the snapshot only after all the outstanding appendEntries have completed
+          LOG.info("{}: followerNextIndex = {} but logStartIndex = {}, send snapshot {} to follower",
+              this, getFollower().getNextIndex(), getRaftLog().getStartIndex(), snapshot);
+          installSnapshot(snapshot);
+          sent = true;
+        }
+      }
+      if (isRunning() && !sent) {
+        final long waitTimeMs = Math.max(1L, getHeartbeatRemainingTimeMs());
+        synchronized (this) {
+          wait(waitTimeMs);
+        }
+      }
+      getLeaderState().checkHealth(getFollower());
+    }
+  }
+
+  /** @return true iff a request is sent. */
+  private boolean appendLog() throws IOException {
+    final boolean full = isOutstandingFull();
+    if (full && !shouldHeartbeat()) {
+      return false;
+    }
+
+    final AppendEntriesRequestProto request;
+    synchronized (this) {
+      // only send a heartbeat if there are too many outstanding requests
+      request = newAppendEntriesRequest(callId++, full);
+      if (request == null) {
+        return false;
+      }
+      final int count = request.getEntriesCount();
+      if (count > 0) {
+        outstanding.add(request.getServerRequest().getCallId());
+        getFollower().increaseNextIndex(request.getEntries(count - 1).getIndex() + 1);
+      }
+    }
+    if (!isRunning()) {
+      return false;
+    }
+
+    final Timestamp sendTime = Timestamp.currentTime();
+    getFollower().updateLastRpcSendTime();
+    getServerRpc().appendEntriesAsync(request).whenComplete((reply, e) -> {
+      if (e != null) {
+        onError(request, e);
+      } else {
+        onReply(request, sendTime, reply);
+      }
+    });
+    return true;
+  }
+
+  private synchronized boolean removeOutstanding(AppendEntriesRequestProto request) {
+    return outstanding.remove(request.getServerRequest().getCallId());
+  }
+
+  /** Reset the outstanding requests so that their replies become stale; must be synchronized. */
+  private void resetOutstanding() {
+    outstanding.clear();
+    firstValidCallId = callId;
+  }
+
+  private void onReply(AppendEntriesRequestProto request, Timestamp sendTime, AppendEntriesReplyProto reply) {
+    removeOutstanding(request);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("{}: received reply {}", this, ServerStringUtils.toAppendEntriesReplyString(reply));
+    }
+
+    getFollower().updateLastRpcResponseTime();
+    if (reply.getResult() != AppendResult.NOT_LEADER) {
+      getFollower().updateLastRespondedAppendEntriesSendTime(sendTime);
+    }
+    getLeaderState().onAppendEntriesReply(this, reply);
+
+    switch (reply.getResult()) {
+      case SUCCESS:
+        getLeaderState().onFollowerCommitIndex(getFollower(), reply.getFollowerCommit());
+        if (getFollower().updateMatchIndex(reply.getMatchIndex())) {
+          getLeaderState().onFollowerSuccessAppendEntries(getFollower());
+        }
+        break;
+      case NOT_LEADER:
+        if (onFollowerTerm(reply.getTerm())) {
+          return;
+        }
+        break;
+      case INCONSISTENCY:
+        synchronized (this) {
+          if (request.getServerRequest().getCallId() < firstValidCallId) {
+            // the request was sent before the last reset; the nextIndex has already been reset
+            LOG.debug("{}: ignore the stale INCONSISTENCY reply for callId {}",
+                this, request.getServerRequest().getCallId());
+            break;
+          }
+          // the outstanding requests will also fail; resend from the follower's nextIndex
+          resetOutstanding();
+          getFollower().setNextIndex(reply.getNextIndex());
+        }
+        break;
+      default:
+        LOG.warn("{}: received {}", this, reply.getResult());
+        break;
+    }
+    notifyLogAppender();
+  }
+
+  private void onError(AppendEntriesRequestProto request, Throwable t) {
+    if (!isRunning()) {
+      LOG.info("{} is stopped", this);
+      return;
+    }
+    final boolean wasOutstanding = removeOutstanding(request);
+    final Throwable cause = JavaUtils.unwrapCompletionException(t);
+    LOG.warn("{}: Failed appendEntries: {}", this, cause.toString());
+    getServerRpc().handleException(getFollowerId(), IOUtils.asIOException(cause), false);
+
+    if (wasOutstanding) {
+      synchronized (this) {
+        // resend the entries of the failed request and the ones after it
+        resetOutstanding();
+        getFollower().decreaseNextIndex(request.getEntries(0).getIndex());
+      }
+    }
+    sleepBeforeRetry.set(true);
+    notifyLogAppender();
+  }
+
+  private void installSnapshot(SnapshotInfo snapshot) throws InterruptedIOException {
+    final String requestId = UUID.randomUUID().toString();
+    InstallSnapshotReplyProto reply = null;
+    try {
+      for (InstallSnapshotRequestProto request : newInstallSnapshotRequests(requestId, snapshot)) {
+        getFollower().updateLastRpcSendTime();
+        reply = getServerRpc().installSnapshot(request);
+        getFollower().updateLastRpcResponseTime();
+        if (!reply.getServerReply().getSuccess()) {
+          break;
+        }
+      }
+    } catch (InterruptedIOException iioe) {
+      throw iioe;
+    } catch (Exception e) {
+      LOG.warn("{}: Failed to installSnapshot {}: {}", this, snapshot, e);
+      getServerRpc().handleException(getFollowerId(), e, false);
+      sleepBeforeRetry.set(true);
+      return;
+    }
+    if (reply == null) {
+      return;
+    }
+
+    if (reply.getServerReply().getSuccess()) {
+      getFollower().setSnapshotIndex(snapshot.getTermIndex().getIndex());
+      onSnapshotInstalled(snapshot);
+      LOG.info("{}: installSnapshot {} successfully", this, snapshot);
+      getServer().getRaftServerMetrics().onSnapshotInstalled();
+    }
+    switch (reply.getResult()) {
+      case NOT_LEADER:
+        onFollowerTerm(reply.getTerm());
+        break;
+      case SUCCESS:
+      case SNAPSHOT_UNAVAILABLE:
+      case ALREADY_INSTALLED:
+        getFollower().setAttemptedToInstallSnapshot();
+        break;
+      default:
+        break;
+    }
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.ratis.netty.server;
 import org.apache.ratis.client.impl.ClientProtoUtils;
 import org.apache.ratis.netty.NettyConfigKeys;
 import org.apache.ratis.netty.NettyRpcProxy;
+import org.apache.ratis.netty.NettyUtils;
 import org.apache.ratis.protocol.GroupInfoReply;
 import org.apache.ratis.protocol.GroupListReply;
 import org.apache.ratis.protocol.RaftClientReply;
@@ -29,9 +30,7 @@ import org.apache.ratis.server.RaftServer;
 import org.apache.ratis.server.RaftServerRpcWithProxy;
 import org.apache.ratis.thirdparty.io.netty.bootstrap.ServerBootstrap;
 import org.apache.ratis.thirdparty.io.netty.channel.*;
-import org.apache.ratis.thirdparty.io.netty.channel.nio.NioEventLoopGroup;
 import org.apache.ratis.thirdparty.io.netty.channel.socket.SocketChannel;
-import org.apache.ratis.thirdparty.io.netty.channel.socket.nio.NioServerSocketChannel;
 import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufDecoder;
 import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufEncoder;
 import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder;
@@ -43,15 +42,19 @@ import org.apache.ratis.proto.netty.NettyProtos.RaftNettyExceptionReplyProto;
 import org.apache.ratis.proto.netty.NettyProtos.RaftNettyServerReplyProto;
 import org.apache.ratis.proto.netty.NettyProtos.RaftNettyServerRequestProto;
 import org.apache.ratis.util.CodeInjectionForTesting;
+import org.apache.ratis.util.IOUtils;
 import org.apache.ratis.util.JavaUtils;
 import org.apache.ratis.util.ProtoUtils;
+import org.apache.ratis.util.function.CheckedSupplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.Objects;
+import java.util.function.Function;
 
 /**
  * A netty server endpoint that acts as the communication layer.
@@ -82,16 +85,22 @@ public final class NettyRpcService extends RaftServerRpcWithProxy<NettyRpcProxy,
 
   private final RaftServer server;
 
-  private final EventLoopGroup bossGroup = new NioEventLoopGroup();
-  private final EventLoopGroup workerGroup = new NioEventLoopGroup();
+  private final EventLoopGroup bossGroup;
+  private final EventLoopGroup workerGroup;
   private final ChannelFuture channelFuture;
 
   @ChannelHandler.Sharable
   class InboundHandler extends SimpleChannelInboundHandler<RaftNettyServerRequestProto> {
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, RaftNettyServerRequestProto proto) {
-      final RaftNettyServerReplyProto reply = handle(proto);
-      ctx.writeAndFlush(reply);
+      final long callId = proto.getCallId();
+      if (callId == 0) {
+        // the peer does not support callId: reply in order
+        ctx.writeAndFlush(handle(proto));
+        return;
+      }
+      // the replies are matched by callId so that they can be sent out of order
+      handleAsync(proto).thenAccept(reply -> ctx.writeAndFlush(reply.toBuilder().setCallId(callId).build()));
     }
   }
 
@@ -115,10 +124,15 @@ public final class NettyRpcService extends RaftServerRpcWithProxy<NettyRpcProxy,
       }
     };
 
+    final NettyConfigKeys.Transport transport = NettyConfigKeys.transport(server.getProperties());
+    this.bossGroup = NettyUtils.newEventLoopGroup(server.getId() + "-" + CLASS_NAME + "-boss", 0, false, transport);
+    this.workerGroup = NettyUtils.newEventLoopGroup(
+        server.getId() + "-" + CLASS_NAME + "-worker", 0, false, transport);
+
     final int port = NettyConfigKeys.Server.port(server.getProperties());
     channelFuture = new ServerBootstrap()
         .group(bossGroup, workerGroup)
-        .channel(NioServerSocketChannel.class)
+        .channel(NettyUtils.getServerChannelClass(bossGroup))
         .handler(new LoggingHandler(LogLevel.INFO))
         .childHandler(initializer)
         .bind(port);
@@ -163,6 +177,40 @@ public final class NettyRpcService extends RaftServerRpcWithProxy<NettyRpcProxy,
     return (InetSocketAddress)getChannel().localAddress();
   }
 
+  CompletableFuture<RaftNettyServerReplyProto> handleAsync(RaftNettyServerRequestProto proto) {
+    switch (proto.getRaftNettyServerRequestCase()) {
+      case APPENDENTRIESREQUEST:
+        final AppendEntriesRequestProto appendEntriesRequest = proto.getAppendEntriesRequest();
+        return handleAsync(appendEntriesRequest.getServerRequest(),
+            () -> server.appendEntriesAsync(appendEntriesRequest),
+            reply -> RaftNettyServerReplyProto.newBuilder().setAppendEntriesReply(reply).build());
+
+      case RAFTCLIENTREQUEST:
+        final RaftClientRequestProto raftClientRequest = proto.getRaftClientRequest();
+        return handleAsync(raftClientRequest.getRpcRequest(),
+            () -> server.submitClientRequestAsync(ClientProtoUtils.toRaftClientRequest(raftClientRequest)),
+            reply -> RaftNettyServerReplyProto.newBuilder()
+                .setRaftClientReply(ClientProtoUtils.toRaftClientReplyProto(reply))
+                .build());
+
+      default:
+        return CompletableFuture.completedFuture(handle(proto));
+    }
+  }
+
+  private static <REPLY> CompletableFuture<RaftNettyServerReplyProto> handleAsync(RaftRpcRequestProto rpcRequest,
+      CheckedSupplier<CompletableFuture<REPLY>, IOException> asyncCall,
+      Function<REPLY, RaftNettyServerReplyProto> toProto) {
+    final CompletableFuture<REPLY> future;
+    try {
+      future = asyncCall.get();
+    } catch (IOException ioe) {
+      return CompletableFuture.completedFuture(toRaftNettyServerReplyProto(rpcRequest, ioe));
+    }
+    return future.handle((reply, e) -> e == null? toProto.apply(reply)
+        : toRaftNettyServerReplyProto(rpcRequest, IOUtils.asIOException(JavaUtils.unwrapCompletionException(e))));
+  }
+
   RaftNettyServerReplyProto handle(RaftNettyServerRequestProto proto) {
     RaftRpcRequestProto rpcRequest = null;
     try {
@@ -312,6 +360,28 @@ public final class NettyRpcService extends RaftServerRpcWithProxy<NettyRpcProxy,
     return sendRaftNettyServerRequestProto(serverRequest, proto).getAppendEntriesReply();
   }
 
+  /**
+   * Send an appendEntries request without waiting for the reply
+   * so that multiple requests can be outstanding on the same connection.
+   */
+  public CompletableFuture<AppendEntriesReplyProto> appendEntriesAsync(AppendEntriesRequestProto request) {
+    CodeInjectionForTesting.execute(SEND_SERVER_REQUEST, getId(), null, request);
+
+    final RaftNettyServerRequestProto proto = RaftNettyServerRequestProto.newBuilder()
+        .setAppendEntriesRequest(request)
+        .build();
+    final RaftRpcRequestProto serverRequest = request.getServerRequest();
+    final RaftPeerId id = RaftPeerId.valueOf(serverRequest.getReplyId());
+    final NettyRpcProxy p;
+    try {
+      p = getProxies().getProxy(id);
+    } catch (IOException e) {
+      getProxies().handleException(id, e, false);
+      return JavaUtils.completeExceptionally(e);
+    }
+    return p.sendAsync(serverRequest, proto).thenApply(RaftNettyServerReplyProto::getAppendEntriesReply);
+  }
+
   @Override
   public InstallSnapshotReplyProto installSnapshot(InstallSnapshotRequestProto request) throws IOException {
     CodeInjectionForTesting.execute(SEND_SERVER_REQUEST, getId(), null, request);
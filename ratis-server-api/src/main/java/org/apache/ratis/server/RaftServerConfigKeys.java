@@ -97,6 +97,68 @@ public interface RaftServerConfigKeys {
   }
 
 
+  interface Read {
+    String PREFIX = RaftServerConfigKeys.PREFIX + ".read";
+
+    /** The options for serving read-only requests. */
+    enum Option {
+      /** Directly query the state machine; the result may be stale. */
+      DEFAULT,
+      /** Use the ReadIndex protocol (see the Raft thesis section 6.4) to serve linearizable reads. */
+      LINEARIZABLE
+    }
+
+    String OPTION_KEY = PREFIX + ".option";
+    Option OPTION_DEFAULT = Option.DEFAULT;
+    static Option option(RaftProperties properties) {
+      return get(properties::getEnum, OPTION_KEY, OPTION_DEFAULT, getDefaultLog());
+    }
+    static void setOption(RaftProperties properties, Option option) {
+      set(properties::setEnum, OPTION_KEY, option);
+    }
+
+    /** Timeout for a read-only request to obtain and then wait for the read index. */
+    String TIMEOUT_KEY = PREFIX + ".timeout";
+    TimeDuration TIMEOUT_DEFAULT = TimeDuration.valueOf(10, TimeUnit.SECONDS);
+    static TimeDuration timeout(RaftProperties properties) {
+      return getTimeDuration(properties.getTimeDuration(TIMEOUT_DEFAULT.getUnit()),
+          TIMEOUT_KEY, TIMEOUT_DEFAULT, getDefaultLog(), requirePositive());
+    }
+    static void setTimeout(RaftProperties properties, TimeDuration readOnlyTimeout) {
+      setTimeDuration(properties::setTimeDuration, TIMEOUT_KEY, readOnlyTimeout);
+    }
+
+    /**
+     * When the leader lease is enabled, a {@link Option#LINEARIZABLE} read-only request is served by the leader
+     * without a round of heartbeats as long as a majority has acknowledged the appendEntries requests
+     * sent within the lease timeout.  It falls back to the ReadIndex protocol once the lease has expired.
+     */
+    String LEADER_LEASE_ENABLED_KEY = PREFIX + ".leader.lease.enabled";
+    boolean LEADER_LEASE_ENABLED_DEFAULT = false;
+    static boolean leaderLeaseEnabled(RaftProperties properties) {
+      return getBoolean(properties::getBoolean, LEADER_LEASE_ENABLED_KEY,
+          LEADER_LEASE_ENABLED_DEFAULT, getDefaultLog());
+    }
+    static void setLeaderLeaseEnabled(RaftProperties properties, boolean enabled) {
+      setBoolean(properties::setBoolean, LEADER_LEASE_ENABLED_KEY, enabled);
+    }
+
+    /**
+     * The lease timeout is this ratio multiplied by {@link Rpc#timeoutMin(RaftProperties)},
+     * the minimum time for the followers to start a new election.
+     * The ratio must be less than 1 in order to tolerate the clock drift between the servers.
+     */
+    String LEADER_LEASE_TIMEOUT_RATIO_KEY = PREFIX + ".leader.lease.timeout.ratio";
+    double LEADER_LEASE_TIMEOUT_RATIO_DEFAULT = 0.9;
+    static double leaderLeaseTimeoutRatio(RaftProperties properties) {
+      return getDouble(properties::getDouble, LEADER_LEASE_TIMEOUT_RATIO_KEY,
+          LEADER_LEASE_TIMEOUT_RATIO_DEFAULT, getDefaultLog(), requireMax(1d));
+    }
+    static void setLeaderLeaseTimeoutRatio(RaftProperties properties, double ratio) {
+      setDouble(properties::setDouble, LEADER_LEASE_TIMEOUT_RATIO_KEY, ratio, requireMax(1d));
+    }
+  }
+
   interface Write {
     String PREFIX = RaftServerConfigKeys.PREFIX + ".write";
 
@@ -131,6 +193,56 @@ public interface RaftServerConfigKeys {
     static void setFollowerGapRatioMax(RaftProperties properties, float ratio) {
       setDouble(properties::setDouble, FOLLOWER_GAP_RATIO_MAX_KEY, ratio, requireMax(1d));
     }
+
+    /**
+     * When enabled, the leader coalesces the small write requests arriving within
+     * {@link #batchWaitTime(RaftProperties)} into a single log entry.
+     * The requests in a batch are passed to
+     * {@link org.apache.ratis.statemachine.StateMachine#applyBatchedTransactions(java.util.List)}
+     * as separate transactions sharing the index of the batch log entry.
+     * Enable it only if the state machine supports such transactions.
+     */
+    String BATCH_ENABLED_KEY = PREFIX + ".batch.enabled";
+    boolean BATCH_ENABLED_DEFAULT = false;
+    static boolean batchEnabled(RaftProperties properties) {
+      return getBoolean(properties::getBoolean, BATCH_ENABLED_KEY, BATCH_ENABLED_DEFAULT, getDefaultLog());
+    }
+    static void setBatchEnabled(RaftProperties properties, boolean enabled) {
+      setBoolean(properties::setBoolean, BATCH_ENABLED_KEY, enabled);
+    }
+
+    /** The max number of the requests in a batch. */
+    String BATCH_ELEMENT_LIMIT_KEY = PREFIX + ".batch.element-limit";
+    int BATCH_ELEMENT_LIMIT_DEFAULT = 64;
+    static int batchElementLimit(RaftProperties properties) {
+      return getInt(properties::getInt, BATCH_ELEMENT_LIMIT_KEY, BATCH_ELEMENT_LIMIT_DEFAULT, getDefaultLog(),
+          requireMin(2));
+    }
+    static void setBatchElementLimit(RaftProperties properties, int limit) {
+      setInt(properties::setInt, BATCH_ELEMENT_LIMIT_KEY, limit, requireMin(2));
+    }
+
+    /** Only the requests with a message no larger than this size are coalesced. */
+    String BATCH_MESSAGE_SIZE_MAX_KEY = PREFIX + ".batch.message.size.max";
+    SizeInBytes BATCH_MESSAGE_SIZE_MAX_DEFAULT = SizeInBytes.valueOf("1KB");
+    static SizeInBytes batchMessageSizeMax(RaftProperties properties) {
+      return getSizeInBytes(properties::getSizeInBytes,
+          BATCH_MESSAGE_SIZE_MAX_KEY, BATCH_MESSAGE_SIZE_MAX_DEFAULT, getDefaultLog());
+    }
+    static void setBatchMessageSizeMax(RaftProperties properties, SizeInBytes size) {
+      setSizeInBytes(properties::set, BATCH_MESSAGE_SIZE_MAX_KEY, size);
+    }
+
+    /** The max time for a request to wait for the other requests to be coalesced with. */
+    String BATCH_WAIT_TIME_KEY = PREFIX + ".batch.wait-time";
+    TimeDuration BATCH_WAIT_TIME_DEFAULT = TimeDuration.valueOf(1, TimeUnit.MILLISECONDS);
+    static TimeDuration batchWaitTime(RaftProperties properties) {
+      return getTimeDuration(properties.getTimeDuration(BATCH_WAIT_TIME_DEFAULT.getUnit()),
+          BATCH_WAIT_TIME_KEY, BATCH_WAIT_TIME_DEFAULT, getDefaultLog(), requirePositive());
+    }
+    static void setBatchWaitTime(RaftProperties properties, TimeDuration waitTime) {
+      setTimeDuration(properties::setTimeDuration, BATCH_WAIT_TIME_KEY, waitTime);
+    }
   }
 
   interface Watch {
@@ -258,6 +370,34 @@ public interface RaftServerConfigKeys {
       setSizeInBytes(properties::set, SEGMENT_CACHE_SIZE_MAX_KEY, maxCachedSegmentSize);
     }
 
+    /** The policies to evict the cached log entries. */
+    enum SegmentCacheEvictionPolicy {
+      /**
+       * Evict the cache of whole segments
+       * according to {@link #segmentCacheNumMax(RaftProperties)} and {@link #segmentCacheSizeMax(RaftProperties)}.
+       */
+      SEGMENT,
+      /**
+       * Evict the least recently used entries of the closed segments, approximated by the clock algorithm,
+       * in order to keep the total cache size of all the groups in a server
+       * within {@link #segmentCacheSizeMax(RaftProperties)}.
+       * The entries no longer needed by the followers and the state machine are evicted first.
+       * An evicted entry is reloaded individually.
+       * The entries of the open segments are counted but not evicted.
+       */
+      ENTRY_LRU
+    }
+
+    String SEGMENT_CACHE_EVICTION_POLICY_KEY = PREFIX + ".segment.cache.eviction.policy";
+    SegmentCacheEvictionPolicy SEGMENT_CACHE_EVICTION_POLICY_DEFAULT = SegmentCacheEvictionPolicy.SEGMENT;
+    static SegmentCacheEvictionPolicy segmentCacheEvictionPolicy(RaftProperties properties) {
+      return get(properties::getEnum,
+          SEGMENT_CACHE_EVICTION_POLICY_KEY, SEGMENT_CACHE_EVICTION_POLICY_DEFAULT, getDefaultLog());
+    }
+    static void setSegmentCacheEvictionPolicy(RaftProperties properties, SegmentCacheEvictionPolicy policy) {
+      set(properties::setEnum, SEGMENT_CACHE_EVICTION_POLICY_KEY, policy);
+    }
+
     String PREALLOCATED_SIZE_KEY = PREFIX + ".preallocated.size";
     SizeInBytes PREALLOCATED_SIZE_DEFAULT = SizeInBytes.valueOf("4MB");
     static SizeInBytes preallocatedSize(RaftProperties properties) {
@@ -288,6 +428,62 @@ public interface RaftServerConfigKeys {
       setInt(properties::setInt, FORCE_SYNC_NUM_KEY, forceSyncNum);
     }
 
+    /**
+     * When enabled, an entry of a closed segment missing in the cache is read in place
+     * from the memory-mapped segment file using its offset,
+     * instead of reading the segment file sequentially.
+     */
+    String MMAP_READ_ENABLED_KEY = PREFIX + ".mmap.read.enabled";
+    boolean MMAP_READ_ENABLED_DEFAULT = false;
+    static boolean mmapReadEnabled(RaftProperties properties) {
+      return getBoolean(properties::getBoolean,
+          MMAP_READ_ENABLED_KEY, MMAP_READ_ENABLED_DEFAULT, getDefaultLog());
+    }
+    static void setMmapReadEnabled(RaftProperties properties, boolean mmapReadEnabled) {
+      setBoolean(properties::setBoolean, MMAP_READ_ENABLED_KEY, mmapReadEnabled);
+    }
+
+    /** The compression of the log data of the state machine log entries. */
+    enum Compression {
+      /** Do not compress. */
+      NONE,
+      /** Compress with the deflate algorithm provided by {@link java.util.zip.Deflater}. */
+      DEFLATE
+    }
+
+    /**
+     * The log data is compressed once by the leader when the entry is appended,
+     * so that the compressed entry is both written to the segment files and replicated to the followers.
+     * It is decompressed before the entry is applied to the state machine.
+     *
+     * Note that the entries having state machine data are not compressed.
+     *
+     * Rolling upgrade: the servers of a version not supporting this key ignore the compression field
+     * and apply the compressed log data as is.
+     * Enable it only after all the servers in the group are upgraded,
+     * and disable it on all the servers before downgrading any of them,
+     * since the compressed entries already in the log remain compressed.
+     */
+    String COMPRESSION_KEY = PREFIX + ".compression";
+    Compression COMPRESSION_DEFAULT = Compression.NONE;
+    static Compression compression(RaftProperties properties) {
+      return get(properties::getEnum, COMPRESSION_KEY, COMPRESSION_DEFAULT, getDefaultLog());
+    }
+    static void setCompression(RaftProperties properties, Compression compression) {
+      set(properties::setEnum, COMPRESSION_KEY, compression);
+    }
+
+    /** The log data smaller than this size is not compressed. */
+    String COMPRESSION_MIN_SIZE_KEY = PREFIX + ".compression.min.size";
+    SizeInBytes COMPRESSION_MIN_SIZE_DEFAULT = SizeInBytes.valueOf("512B");
+    static SizeInBytes compressionMinSize(RaftProperties properties) {
+      return getSizeInBytes(properties::getSizeInBytes,
+          COMPRESSION_MIN_SIZE_KEY, COMPRESSION_MIN_SIZE_DEFAULT, getDefaultLog());
+    }
+    static void setCompressionMinSize(RaftProperties properties, SizeInBytes minSize) {
+      setSizeInBytes(properties::set, COMPRESSION_MIN_SIZE_KEY, minSize);
+    }
+
     /** The policy to handle corrupted raft log. */
     enum CorruptionPolicy {
       /** Rethrow the exception. */
@@ -362,6 +558,59 @@ public interface RaftServerConfigKeys {
       }
     }
 
+    /**
+     * Group commit: the raft logs of all the divisions sharing the same storage device
+     * submit their flush requests to a shared scheduler,
+     * which forces the files in batches bounded by the interval and the batch size
+     * using a small pool of flusher threads per device.
+     */
+    interface GroupCommit {
+      String PREFIX = Log.PREFIX + ".group-commit";
+
+      String ENABLED_KEY = PREFIX + ".enabled";
+      boolean ENABLED_DEFAULT = false;
+      static boolean enabled(RaftProperties properties) {
+        return getBoolean(properties::getBoolean,
+            ENABLED_KEY, ENABLED_DEFAULT, getDefaultLog());
+      }
+      static void setEnabled(RaftProperties properties, boolean enabled) {
+        setBoolean(properties::setBoolean, ENABLED_KEY, enabled);
+      }
+
+      /** The max time to wait for more flush requests before forcing a batch. */
+      String INTERVAL_KEY = PREFIX + ".interval";
+      TimeDuration INTERVAL_DEFAULT = TimeDuration.valueOf(1, TimeUnit.MILLISECONDS);
+      static TimeDuration interval(RaftProperties properties) {
+        return getTimeDuration(properties.getTimeDuration(INTERVAL_DEFAULT.getUnit()),
+            INTERVAL_KEY, INTERVAL_DEFAULT, getDefaultLog());
+      }
+      static void setInterval(RaftProperties properties, TimeDuration interval) {
+        setTimeDuration(properties::setTimeDuration, INTERVAL_KEY, interval);
+      }
+
+      /** The max number of flush requests in a batch. */
+      String BATCH_SIZE_KEY = PREFIX + ".batch.size";
+      int BATCH_SIZE_DEFAULT = 64;
+      static int batchSize(RaftProperties properties) {
+        return getInt(properties::getInt,
+            BATCH_SIZE_KEY, BATCH_SIZE_DEFAULT, getDefaultLog(), requireMin(1));
+      }
+      static void setBatchSize(RaftProperties properties, int batchSize) {
+        setInt(properties::setInt, BATCH_SIZE_KEY, batchSize);
+      }
+
+      /** The number of threads of each storage device for forcing the files of a batch in parallel. */
+      String FLUSHER_THREADS_KEY = PREFIX + ".flusher.threads";
+      int FLUSHER_THREADS_DEFAULT = 4;
+      static int flusherThreads(RaftProperties properties) {
+        return getInt(properties::getInt,
+            FLUSHER_THREADS_KEY, FLUSHER_THREADS_DEFAULT, getDefaultLog(), requireMin(1));
+      }
+      static void setFlusherThreads(RaftProperties properties, int flusherThreads) {
+        setInt(properties::setInt, FLUSHER_THREADS_KEY, flusherThreads);
+      }
+    }
+
     interface Appender {
       String PREFIX = Log.PREFIX + ".appender";
 
@@ -405,6 +654,32 @@ public interface RaftServerConfigKeys {
       static void setInstallSnapshotEnabled(RaftProperties properties, boolean shouldInstallSnapshot) {
         setBoolean(properties::setBoolean, INSTALL_SNAPSHOT_ENABLED_KEY, shouldInstallSnapshot);
       }
+
+      /**
+       * Share the log entries read with the state machine data among the appenders of all the followers
+       * so that each entry is read from the state machine and built only once.
+       */
+      String SHARED_ENTRY_CACHE_ENABLED_KEY = PREFIX + ".shared-entry.cache.enabled";
+      boolean SHARED_ENTRY_CACHE_ENABLED_DEFAULT = false;
+      static boolean sharedEntryCacheEnabled(RaftProperties properties) {
+        return getBoolean(properties::getBoolean,
+            SHARED_ENTRY_CACHE_ENABLED_KEY, SHARED_ENTRY_CACHE_ENABLED_DEFAULT, getDefaultLog());
+      }
+      static void setSharedEntryCacheEnabled(RaftProperties properties, boolean enabled) {
+        setBoolean(properties::setBoolean, SHARED_ENTRY_CACHE_ENABLED_KEY, enabled);
+      }
+
+      /** The max total size of the state machine data in the shared entry cache. */
+      String SHARED_ENTRY_CACHE_BYTE_LIMIT_KEY = PREFIX + ".shared-entry.cache.byte-limit";
+      SizeInBytes SHARED_ENTRY_CACHE_BYTE_LIMIT_DEFAULT = SizeInBytes.valueOf("64MB");
+      static SizeInBytes sharedEntryCacheByteLimit(RaftProperties properties) {
+        return getSizeInBytes(properties::getSizeInBytes, SHARED_ENTRY_CACHE_BYTE_LIMIT_KEY,
+            SHARED_ENTRY_CACHE_BYTE_LIMIT_DEFAULT, getDefaultLog(), requireMinSizeInByte(SizeInBytes.ONE_MB));
+      }
+      static void setSharedEntryCacheByteLimit(RaftProperties properties, SizeInBytes byteLimit) {
+        setSizeInBytes(properties::set, SHARED_ENTRY_CACHE_BYTE_LIMIT_KEY, byteLimit,
+            requireMin(SizeInBytes.ONE_MB.getSize()));
+      }
     }
   }
 
@@ -485,6 +760,21 @@ public interface RaftServerConfigKeys {
     static void setClientPoolSize(RaftProperties properties, int num) {
       setInt(properties::setInt, CLIENT_POOL_SIZE_KEY, num);
     }
+
+    /**
+     * The size of the write batches used by the built-in file data streams.
+     * Each open stream holds a direct buffer of this size.
+     */
+    String FILE_WRITE_BATCH_SIZE_KEY = PREFIX + ".file.write.batch.size";
+    SizeInBytes FILE_WRITE_BATCH_SIZE_DEFAULT = SizeInBytes.valueOf("1MB");
+    static SizeInBytes fileWriteBatchSize(RaftProperties properties) {
+      return getSizeInBytes(properties::getSizeInBytes,
+          FILE_WRITE_BATCH_SIZE_KEY, FILE_WRITE_BATCH_SIZE_DEFAULT, getDefaultLog(),
+          requireMinSizeInByte(SizeInBytes.ONE_KB));
+    }
+    static void setFileWriteBatchSize(RaftProperties properties, SizeInBytes batchSize) {
+      setSizeInBytes(properties::set, FILE_WRITE_BATCH_SIZE_KEY, batchSize);
+    }
   }
 
   /** server rpc timeout related */
@@ -567,6 +857,89 @@ public interface RaftServerConfigKeys {
     }
   }
 
+  /** Applying the committed log entries to the state machine. */
+  interface Apply {
+    String PREFIX = RaftServerConfigKeys.PREFIX + ".apply";
+
+    /**
+     * When enabled, a contiguous run of committed state machine log entries is applied in a single call to
+     * {@link org.apache.ratis.statemachine.StateMachine#applyTransactions(java.util.List)},
+     * where a batch is bounded by {@link #batchElementLimit(RaftProperties)}
+     * and {@link #batchByteLimit(RaftProperties)}.
+     */
+    String BATCH_ENABLED_KEY = PREFIX + ".batch.enabled";
+    boolean BATCH_ENABLED_DEFAULT = false;
+    static boolean batchEnabled(RaftProperties properties) {
+      return getBoolean(properties::getBoolean, BATCH_ENABLED_KEY, BATCH_ENABLED_DEFAULT, getDefaultLog());
+    }
+    static void setBatchEnabled(RaftProperties properties, boolean enabled) {
+      setBoolean(properties::setBoolean, BATCH_ENABLED_KEY, enabled);
+    }
+
+    String BATCH_ELEMENT_LIMIT_KEY = PREFIX + ".batch.element-limit";
+    int BATCH_ELEMENT_LIMIT_DEFAULT = 256;
+    static int batchElementLimit(RaftProperties properties) {
+      return getInt(properties::getInt,
+          BATCH_ELEMENT_LIMIT_KEY, BATCH_ELEMENT_LIMIT_DEFAULT, getDefaultLog(), requireMin(1));
+    }
+    static void setBatchElementLimit(RaftProperties properties, int limit) {
+      setInt(properties::setInt, BATCH_ELEMENT_LIMIT_KEY, limit, requireMin(1));
+    }
+
+    String BATCH_BYTE_LIMIT_KEY = PREFIX + ".batch.byte-limit";
+    SizeInBytes BATCH_BYTE_LIMIT_DEFAULT = SizeInBytes.valueOf("4MB");
+    static SizeInBytes batchByteLimit(RaftProperties properties) {
+      return getSizeInBytes(properties::getSizeInBytes,
+          BATCH_BYTE_LIMIT_KEY, BATCH_BYTE_LIMIT_DEFAULT, getDefaultLog());
+    }
+    static void setBatchByteLimit(RaftProperties properties, SizeInBytes byteLimit) {
+      setSizeInBytes(properties::set, BATCH_BYTE_LIMIT_KEY, byteLimit);
+    }
+
+    /**
+     * The number of lanes for applying the transactions in parallel.
+     * When it is larger than 1, a transaction is applied in the lane selected by
+     * {@link org.apache.ratis.statemachine.StateMachine#getApplyPartitionKey}
+     * and the batch apply is disabled.
+     */
+    String LANES_KEY = PREFIX + ".lanes";
+    int LANES_DEFAULT = 1;
+    static int lanes(RaftProperties properties) {
+      return getInt(properties::getInt, LANES_KEY, LANES_DEFAULT, getDefaultLog(), requireMin(1));
+    }
+    static void setLanes(RaftProperties properties, int lanes) {
+      setInt(properties::setInt, LANES_KEY, lanes, requireMin(1));
+    }
+  }
+
+  /** The threads running the per-division loops. */
+  interface Threads {
+    String PREFIX = RaftServerConfigKeys.PREFIX + ".threads";
+
+    /**
+     * When enabled, the per-division loops -- the log worker, the state machine updater,
+     * the leader event processor, the follower state and the log appenders --
+     * run in virtual threads if the JVM supports them; otherwise, they run in platform threads.
+     * Virtual threads are only used in Java 24 or above
+     * since these loops wait on monitors, which pin the carrier threads in the earlier versions.
+     * A virtual thread is cheap so that a server can host a large number of groups.
+     * <p>
+     * Note that this flag has no effect in Java 23 or below:
+     * the loops run in the same platform threads as when it is disabled,
+     * i.e. the number of threads still grows with the number of groups.
+     * No shared executor is used in any Java version.
+     */
+    String VIRTUAL_ENABLED_KEY = PREFIX + ".virtual.enabled";
+    boolean VIRTUAL_ENABLED_DEFAULT = false;
+    static boolean virtualEnabled(RaftProperties properties) {
+      return getBoolean(properties::getBoolean,
+          VIRTUAL_ENABLED_KEY, VIRTUAL_ENABLED_DEFAULT, getDefaultLog());
+    }
+    static void setVirtualEnabled(RaftProperties properties, boolean enabled) {
+      setBoolean(properties::setBoolean, VIRTUAL_ENABLED_KEY, enabled);
+    }
+  }
+
   interface Notification {
     String PREFIX = RaftServerConfigKeys.PREFIX + "." + JavaUtils.getClassSimpleName(Notification.class).toLowerCase();
 
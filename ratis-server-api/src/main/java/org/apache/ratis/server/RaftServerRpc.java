@@ -17,15 +17,19 @@
  */
 package org.apache.ratis.server;
 
+import org.apache.ratis.proto.RaftProtos.ReadIndexReplyProto;
+import org.apache.ratis.proto.RaftProtos.ReadIndexRequestProto;
 import org.apache.ratis.protocol.RaftGroupId;
 import org.apache.ratis.protocol.RaftPeer;
 import org.apache.ratis.protocol.RaftPeerId;
 import org.apache.ratis.rpc.RpcType;
 import org.apache.ratis.server.protocol.RaftServerProtocol;
+import org.apache.ratis.util.JavaUtils;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * An server-side interface for supporting different RPC implementations
@@ -53,4 +57,10 @@ public interface RaftServerRpc extends RaftServerProtocol, RpcType.Get, RaftPeer
   /** The server role changes from leader to a non-leader role. */
   default void notifyNotLeader(RaftGroupId groupId) {
   }
+
+  /** Send a readIndex request to the leader asynchronously. */
+  default CompletableFuture<ReadIndexReplyProto> readIndexAsync(ReadIndexRequestProto request) {
+    return JavaUtils.completeExceptionally(new UnsupportedOperationException(
+        JavaUtils.getClassSimpleName(getClass()) + " does not support readIndex"));
+  }
 }
@@ -86,4 +86,10 @@ public interface FollowerInfo {
 
   /** @return the latest of the lastRpcSendTime and the lastRpcResponseTime . */
   Timestamp getLastRpcTime();
+
+  /** @return the send time of the last appendEntries request acknowledged by this follower. */
+  Timestamp getLastRespondedAppendEntriesSendTime();
+
+  /** Update lastRespondedAppendEntriesSendTime to the given send time, if it is later. */
+  void updateLastRespondedAppendEntriesSendTime(Timestamp sendTime);
 }
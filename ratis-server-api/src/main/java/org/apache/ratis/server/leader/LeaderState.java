@@ -17,9 +17,11 @@
  */
 package org.apache.ratis.server.leader;
 
+import org.apache.ratis.proto.RaftProtos.AppendEntriesReplyProto;
 import org.apache.ratis.proto.RaftProtos.AppendEntriesRequestProto;
 import org.apache.ratis.proto.RaftProtos.LogEntryProto;
 import org.apache.ratis.server.protocol.TermIndex;
+import org.apache.ratis.statemachine.SnapshotInfo;
 import org.apache.ratis.util.JavaUtils;
 
 import java.util.List;
@@ -62,4 +64,22 @@ public interface LeaderState {
   /** Check if a follower is bootstrapping. */
   boolean isFollowerBootstrapping(FollowerInfo follower);
 
+  /** Handle the event that the given {@link LogAppender} has received an appendEntries reply. */
+  void onAppendEntriesReply(LogAppender appender, AppendEntriesReplyProto reply);
+
+  /**
+   * Record the snapshot successfully installed to the given follower.
+   * The record is kept by the server across its leader terms.
+   */
+  void onSnapshotInstalled(FollowerInfo follower, SnapshotInfo snapshot);
+
+  /** @return the snapshot last installed to the given follower by this server, if there is any. */
+  SnapshotInfo getInstalledSnapshot(FollowerInfo follower);
+
+  /**
+   * Remove the record of the snapshot installed to the given follower,
+   * so that all the files are sent again in the next installation.
+   */
+  void removeInstalledSnapshot(FollowerInfo follower);
+
 }
@@ -21,6 +21,7 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.ratis.proto.RaftProtos.AppendEntriesRequestProto;
 import org.apache.ratis.proto.RaftProtos.InstallSnapshotRequestProto;
 import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.rpc.CallId;
 import org.apache.ratis.server.RaftServer;
 import org.apache.ratis.server.RaftServerRpc;
 import org.apache.ratis.server.protocol.TermIndex;
@@ -93,6 +94,14 @@ public interface LogAppender {
    */
   AppendEntriesRequestProto newAppendEntriesRequest(long callId, boolean heartbeat) throws RaftLogIOException;
 
+  /**
+   * @return the call id of the next {@link AppendEntriesRequestProto} sent by this {@link LogAppender}.
+   *         The call ids of the requests sent by this {@link LogAppender} must be non-decreasing.
+   */
+  default long getCallId() {
+    return CallId.get();
+  }
+
   /** @return a new {@link InstallSnapshotRequestProto} object. */
   InstallSnapshotRequestProto newInstallSnapshotNotificationRequest(TermIndex firstAvailableLogTermIndex);
 
@@ -149,6 +158,12 @@ public interface LogAppender {
     }
   }
 
+  /**
+   * Trigger this {@link LogAppender} to send an appendEntries RPC to the follower
+   * without waiting for the heartbeat interval to elapse.
+   */
+  void triggerHeartbeat();
+
   /** Should the leader send appendEntries RPC to the follower? */
   default boolean shouldSendAppendEntries() {
     return hasAppendEntries() || shouldHeartbeat();
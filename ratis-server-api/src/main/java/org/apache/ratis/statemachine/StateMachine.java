@@ -22,6 +22,7 @@ import org.apache.ratis.proto.RaftProtos;
 import org.apache.ratis.proto.RaftProtos.LogEntryProto;
 import org.apache.ratis.proto.RaftProtos.RaftConfigurationProto;
 import org.apache.ratis.proto.RaftProtos.RoleInfoProto;
+import org.apache.ratis.proto.RaftProtos.StateMachineLogEntryProto;
 import org.apache.ratis.protocol.ClientInvocationId;
 import org.apache.ratis.protocol.Message;
 import org.apache.ratis.protocol.RaftClientRequest;
@@ -40,8 +41,11 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.function.Function;
@@ -258,6 +262,22 @@ public interface StateMachine extends Closeable {
      * @throws IOException If there are IO errors.
      */
     void force(boolean metadata) throws IOException;
+
+    /**
+     * Similar to {@link java.nio.channels.GatheringByteChannel#write(ByteBuffer[])},
+     * write the given buffers in order, where the buffers may be the components of the data received from the network.
+     * The buffers are valid only during this call; the implementation must not access them afterward.
+     * The default implementation writes the buffers one by one using {@link #write(ByteBuffer)}.
+     *
+     * @return the number of bytes written.
+     */
+    default long write(ByteBuffer[] srcs) throws IOException {
+      long written = 0;
+      for (ByteBuffer src : srcs) {
+        written += write(src);
+      }
+      return written;
+    }
   }
 
   /**
@@ -391,6 +411,27 @@ public interface StateMachine extends Closeable {
   // TODO: refactor this
   long takeSnapshot() throws IOException;
 
+  /**
+   * Take a snapshot asynchronously so that the transactions can continue to be applied
+   * while the snapshot is being persisted.
+   *
+   * This method is invoked by the state machine updater after
+   * all the previously applied transactions have completed.
+   * Before returning, the implementation must capture a consistent point of the state,
+   * such as an immutable or copy-on-write view,
+   * since the subsequent transactions may be applied right after this method returns.
+   * The returned future is completed after the captured state has been persisted.
+   * The server does not start another snapshot until the returned future is completed.
+   *
+   * The default implementation calls {@link #takeSnapshot()} synchronously.
+   *
+   * @return a future of the largest index of the log entry included in the snapshot,
+   *         as the value returned by {@link #takeSnapshot()}.
+   */
+  default CompletableFuture<Long> takeSnapshotAsync() throws IOException {
+    return CompletableFuture.completedFuture(takeSnapshot());
+  }
+
   /**
    * @return StateMachineStorage to interact with the durability guarantees provided by the
    * state machine.
@@ -467,6 +508,63 @@ public interface StateMachine extends Closeable {
    */
   CompletableFuture<Message> applyTransaction(TransactionContext trx);
 
+  /**
+   * Apply a batch of committed log entries to the state machine.
+   * It is called, instead of {@link #applyTransaction(TransactionContext)},
+   * only if {@link org.apache.ratis.server.RaftServerConfigKeys.Apply#batchEnabled} is set.
+   * The transactions are contiguous in the log and are passed in the commit order.
+   * {@link #applyTransactionSerial(TransactionContext)} has already been called for each transaction.
+   * A state machine may override this method to apply the batch at once, e.g. using a single write batch.
+   *
+   * The default implementation calls {@link #applyTransaction(TransactionContext)} for each transaction.
+   *
+   * @param trxs the transactions of the committed log entries.
+   * @return the futures of the replies, one for each transaction in the same order.
+   */
+  default List<CompletableFuture<Message>> applyTransactions(List<TransactionContext> trxs) {
+    final List<CompletableFuture<Message>> futures = new ArrayList<>(trxs.size());
+    for (TransactionContext trx : trxs) {
+      futures.add(applyTransaction(trx));
+    }
+    return futures;
+  }
+
+  /**
+   * Apply the transactions of the write requests coalesced into a single log entry;
+   * see {@link org.apache.ratis.server.RaftServerConfigKeys.Write#batchEnabled}.
+   * The transactions share the term and the index of the batch log entry,
+   * i.e. the log entries returned by {@link TransactionContext#getLogEntry()} all have the same index.
+   * A state machine which is keyed by the log index must either override this method,
+   * e.g. to apply the batch as a whole and update its last applied index once,
+   * or keep the write batching disabled, which is the default.
+   * {@link #applyTransactionSerial(TransactionContext)} has already been called for each transaction.
+   *
+   * The default implementation calls {@link #applyTransactions(List)}.
+   *
+   * @param trxs the transactions coalesced in the batch log entry, in the log order.
+   * @return the futures of the replies, one for each transaction in the same order.
+   */
+  default List<CompletableFuture<Message>> applyBatchedTransactions(List<TransactionContext> trxs) {
+    return applyTransactions(trxs);
+  }
+
+  /**
+   * Get the partition key for applying the transactions in parallel lanes;
+   * see {@link org.apache.ratis.server.RaftServerConfigKeys.Apply#lanes}.
+   * The transactions having equal keys are applied in the same lane in the log order,
+   * while the transactions having different keys may be applied concurrently.
+   * Therefore, {@link #applyTransaction(TransactionContext)} must be thread-safe when the lanes are enabled.
+   *
+   * The default implementation returns null.
+   *
+   * @param entry the state machine log entry.
+   * @return the partition key of the given entry,
+   *         or null if the entry must be applied after all the previous entries have been applied.
+   */
+  default Object getApplyPartitionKey(StateMachineLogEntryProto entry) {
+    return null;
+  }
+
   /** @return the last term-index applied by this {@link StateMachine}. */
   TermIndex getLastAppliedTermIndex();
 
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.util.Daemon;
+import org.apache.ratis.util.JavaUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Apply the committed transactions in parallel lanes,
+ * where the transactions having the same partition key are applied in the same lane in the log order.
+ *
+ * This class is NOT thread-safe; it is only used by the {@link StateMachineUpdater} thread.
+ */
+class ApplyLanes {
+  static final Logger LOG = LoggerFactory.getLogger(ApplyLanes.class);
+
+  private final String name;
+  private final ExecutorService[] lanes;
+  /** The future of the last transaction started in each lane, i.e. the transaction has returned its reply future. */
+  private final CompletableFuture<?>[] started;
+  /** The future of the reply of the last transaction submitted to each lane. */
+  private final CompletableFuture<?>[] tails;
+
+  ApplyLanes(Object name, int numLanes, boolean useVirtualThread) {
+    this.name = name + "-" + JavaUtils.getClassSimpleName(getClass());
+    this.lanes = new ExecutorService[numLanes];
+    this.started = new CompletableFuture<?>[numLanes];
+    this.tails = new CompletableFuture<?>[numLanes];
+    for (int i = 0; i < numLanes; i++) {
+      final String laneName = this.name + i;
+      lanes[i] = Executors.newSingleThreadExecutor(r -> Daemon.newThread(r, laneName, useVirtualThread));
+      started[i] = CompletableFuture.completedFuture(null);
+      tails[i] = CompletableFuture.completedFuture(null);
+    }
+  }
+
+  /**
+   * Submit the given transaction to the lane of the given key.
+   * It is started after the previous transaction in the same lane has been started
+   * and after the previous barrier, if there is any, has been completed.
+   *
+   * @return the future of the reply, which is completed after the future returned by the transaction.
+   */
+  CompletableFuture<Message> submit(Object key, Supplier<CompletableFuture<Message>> transaction) {
+    final int i = Math.floorMod(key.hashCode(), lanes.length);
+    final CompletableFuture<CompletableFuture<Message>> s = started[i].handleAsync(
+        (previous, e) -> transaction.get(), lanes[i]);
+    final CompletableFuture<Message> f = s.thenCompose(reply -> reply);
+    started[i] = s;
+    tails[i] = f;
+    return f;
+  }
+
+  /**
+   * Submit the given transaction as a barrier without waiting for it.
+   * It is started after the transactions submitted to all the lanes have been completed.
+   * The transactions submitted afterward are started after it has been completed.
+   *
+   * @return the future of the reply, which is completed after the future returned by the transaction.
+   */
+  CompletableFuture<Message> submitBarrier(Supplier<CompletableFuture<Message>> transaction) {
+    // all the lanes are idle once the barrier is reached; run the transaction in the first lane
+    final CompletableFuture<Message> f = barrier()
+        .thenApplyAsync(v -> transaction.get(), lanes[0])
+        .thenCompose(reply -> reply);
+    Arrays.fill(started, f);
+    Arrays.fill(tails, f);
+    return f;
+  }
+
+  /** @return a future which is completed after the transactions submitted to all the lanes are completed. */
+  private CompletableFuture<Void> barrier() {
+    return CompletableFuture.allOf(tails).exceptionally(e -> null);
+  }
+
+  /** Wait for the submitted transactions and then shut down the lanes. */
+  void close() {
+    Arrays.stream(lanes).forEach(ExecutorService::shutdown);
+    for (ExecutorService lane : lanes) {
+      try {
+        if (!lane.awaitTermination(1, TimeUnit.MINUTES)) {
+          LOG.warn("{}: Failed to terminate a lane in 1 minute", name);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        LOG.warn("{}: Interrupted while closing", name, e);
+        return;
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.proto.RaftProtos.RaftPeerRole;
+import org.apache.ratis.proto.RaftProtos.StateMachineLogEntryProto;
+import org.apache.ratis.protocol.RaftClientRequest;
+import org.apache.ratis.server.raftlog.LogProtoUtils;
+import org.apache.ratis.statemachine.TransactionContext;
+import org.apache.ratis.util.Preconditions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link TransactionContext} for appending the transactions of multiple client requests
+ * to the raft log as a single {@link StateMachineLogEntryProto.Type#BATCH} entry.
+ * Each of the transactions is still applied to the state machine separately.
+ */
+class BatchTransactionContext implements TransactionContext {
+  private final List<TransactionContext> transactions;
+  private Exception exception;
+  private LogEntryProto logEntry;
+  /** The context of the batch as a whole; each of the transactions has its own context. */
+  private Object stateMachineContext;
+
+  BatchTransactionContext(List<TransactionContext> transactions) {
+    Preconditions.assertTrue(!transactions.isEmpty(), "transactions is empty");
+    this.transactions = new ArrayList<>(transactions);
+  }
+
+  /** @return the transactions in this batch, in the log order. */
+  List<TransactionContext> getTransactions() {
+    return Collections.unmodifiableList(transactions);
+  }
+
+  @Override
+  public RaftPeerRole getServerRole() {
+    return RaftPeerRole.LEADER;
+  }
+
+  @Override
+  public RaftClientRequest getClientRequest() {
+    return null;
+  }
+
+  @Override
+  public StateMachineLogEntryProto getStateMachineLogEntry() {
+    return logEntry != null? logEntry.getStateMachineLogEntry(): null;
+  }
+
+  @Override
+  public TransactionContext setException(Exception e) {
+    this.exception = e;
+    return this;
+  }
+
+  @Override
+  public Exception getException() {
+    return exception;
+  }
+
+  @Override
+  public TransactionContext setStateMachineContext(Object context) {
+    this.stateMachineContext = context;
+    return this;
+  }
+
+  @Override
+  public Object getStateMachineContext() {
+    return stateMachineContext;
+  }
+
+  @Override
+  public LogEntryProto initLogEntry(long term, long index) {
+    Preconditions.assertNull(logEntry, "logEntry");
+    final List<StateMachineLogEntryProto> entries = transactions.stream()
+        .map(t -> t.initLogEntry(term, index).getStateMachineLogEntry())
+        .collect(Collectors.toList());
+    return logEntry = LogProtoUtils.toBatchLogEntryProto(entries, term, index);
+  }
+
+  @Override
+  public LogEntryProto getLogEntry() {
+    return logEntry;
+  }
+
+  @Override
+  public TransactionContext setShouldCommit(boolean shouldCommit) {
+    transactions.forEach(t -> t.setShouldCommit(shouldCommit));
+    return this;
+  }
+
+  @Override
+  public boolean shouldCommit() {
+    return transactions.stream().allMatch(TransactionContext::shouldCommit);
+  }
+
+  @Override
+  public TransactionContext preAppendTransaction() throws IOException {
+    for(int i = 0; i < transactions.size(); i++) {
+      try {
+        transactions.set(i, transactions.get(i).preAppendTransaction());
+      } catch (IOException | RuntimeException e) {
+        // the batch is not appended; roll back the transactions already pre-appended
+        for(int j = 0; j < i; j++) {
+          try {
+            transactions.get(j).cancelTransaction();
+          } catch (IOException ce) {
+            e.addSuppressed(ce);
+          }
+        }
+        throw e;
+      }
+    }
+    return this;
+  }
+
+  @Override
+  public TransactionContext cancelTransaction() throws IOException {
+    for(TransactionContext t : transactions) {
+      t.cancelTransaction();
+    }
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "BatchTransactionContext:size=" + transactions.size() + ", logEntry="
+        + LogProtoUtils.toLogEntryString(logEntry);
+  }
+}
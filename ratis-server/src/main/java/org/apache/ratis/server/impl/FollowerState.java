@@ -17,6 +17,7 @@
  */
 package org.apache.ratis.server.impl;
 
+import org.apache.ratis.server.RaftServerConfigKeys;
 import org.apache.ratis.server.leader.LeaderState;
 import org.apache.ratis.util.Daemon;
 import org.apache.ratis.util.JavaUtils;
@@ -32,7 +33,7 @@ import java.util.function.ToIntFunction;
 /**
  * Used when the peer is a follower. Used to track the election timeout.
  */
-class FollowerState extends Daemon {
+class FollowerState {
   enum UpdateType {
     APPEND_START(AtomicInteger::incrementAndGet),
     APPEND_COMPLETE(AtomicInteger::decrementAndGet),
@@ -57,6 +58,7 @@ class FollowerState extends Daemon {
   private final String name;
   private final Object reason;
   private final RaftServerImpl server;
+  private final Thread daemon;
 
   private final Timestamp creationTime = Timestamp.currentTime();
   private volatile Timestamp lastRpcTime = creationTime;
@@ -65,9 +67,18 @@ class FollowerState extends Daemon {
 
   FollowerState(RaftServerImpl server, Object reason) {
     this.name = server.getMemberId() + "-" + JavaUtils.getClassSimpleName(getClass());
-    this.setName(this.name);
     this.server = server;
     this.reason = reason;
+    this.daemon = Daemon.newThread(this::run, name,
+        RaftServerConfigKeys.Threads.virtualEnabled(server.getRaftServer().getProperties()));
+  }
+
+  void start() {
+    daemon.start();
+  }
+
+  void interrupt() {
+    daemon.interrupt();
   }
 
   void updateLastRpcTime(UpdateType type) {
@@ -109,8 +120,7 @@ class FollowerState extends Daemon {
     return true;
   }
 
-  @Override
-  public  void run() {
+  private void run() {
     final TimeDuration sleepDeviationThreshold = server.getSleepDeviationThreshold();
     while (isRunning && server.getInfo().isFollower()) {
       final TimeDuration electionTimeout = server.getRandomElectionTimeout();
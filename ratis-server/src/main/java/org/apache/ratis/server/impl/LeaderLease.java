@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.leader.FollowerInfo;
+import org.apache.ratis.util.Preconditions;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A leader lease: in the pre-vote phase, a follower rejects the candidates
+ * within {@link RaftServerConfigKeys.Rpc#timeoutMin} after it has received an appendEntries request.
+ * Therefore, the leadership is valid if a majority has acknowledged
+ * the appendEntries requests sent within the lease timeout.
+ * The lease is disabled when pre-vote is disabled.
+ */
+class LeaderLease {
+  private final boolean enabled;
+  private final long leaseTimeoutMs;
+
+  LeaderLease(RaftProperties properties) {
+    this.enabled = RaftServerConfigKeys.Read.leaderLeaseEnabled(properties)
+        && RaftServerConfigKeys.LeaderElection.preVote(properties);
+    final double ratio = RaftServerConfigKeys.Read.leaderLeaseTimeoutRatio(properties);
+    Preconditions.assertTrue(ratio > 0.0 && ratio <= 1.0,
+        () -> RaftServerConfigKeys.Read.LEADER_LEASE_TIMEOUT_RATIO_KEY + " = " + ratio + " is not in (0, 1]");
+    final long timeoutMinMs = RaftServerConfigKeys.Rpc.timeoutMin(properties).toLong(TimeUnit.MILLISECONDS);
+    this.leaseTimeoutMs = (long) (timeoutMinMs * ratio);
+  }
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  long getLeaseTimeoutMs() {
+    return leaseTimeoutMs;
+  }
+
+  /** @return true iff the given followers together with the leader form a majority within the lease timeout. */
+  boolean isValid(Stream<FollowerInfo> followers, Predicate<List<RaftPeerId>> hasMajority) {
+    if (!enabled) {
+      return false;
+    }
+    final List<RaftPeerId> activeFollowers = followers
+        .filter(f -> f.getLastRespondedAppendEntriesSendTime().elapsedTimeMs() < leaseTimeoutMs)
+        .map(f -> f.getPeer().getId())
+        .collect(Collectors.toList());
+    return hasMajority.test(activeFollowers);
+  }
+}
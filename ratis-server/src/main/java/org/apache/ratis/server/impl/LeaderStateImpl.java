@@ -18,6 +18,7 @@
 package org.apache.ratis.server.impl;
 
 import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.AppendEntriesReplyProto;
 import org.apache.ratis.proto.RaftProtos.AppendEntriesRequestProto;
 import org.apache.ratis.proto.RaftProtos.CommitInfoProto;
 import org.apache.ratis.proto.RaftProtos.LogEntryProto;
@@ -45,6 +46,7 @@ import org.apache.ratis.server.protocol.TermIndex;
 import org.apache.ratis.server.raftlog.LogEntryHeader;
 import org.apache.ratis.server.raftlog.LogProtoUtils;
 import org.apache.ratis.server.raftlog.RaftLog;
+import org.apache.ratis.statemachine.SnapshotInfo;
 import org.apache.ratis.statemachine.TransactionContext;
 import org.apache.ratis.util.CodeInjectionForTesting;
 import org.apache.ratis.util.CollectionUtils;
@@ -245,6 +247,8 @@ class LeaderStateImpl implements LeaderState {
   private final PendingRequests pendingRequests;
   private final WatchRequests watchRequests;
   private final MessageStreamRequests messageStreamRequests;
+  private final ReadIndexHeartbeats readIndexHeartbeats;
+  private final LeaderLease lease;
   private volatile boolean running = true;
 
   private final int stagingCatchupGap;
@@ -265,12 +269,15 @@ class LeaderStateImpl implements LeaderState {
     this.currentTerm = state.getCurrentTerm();
 
     this.eventQueue = new EventQueue();
-    processor = new EventProcessor(this.name);
+    processor = new EventProcessor(this.name, RaftServerConfigKeys.Threads.virtualEnabled(properties));
     raftServerMetrics = server.getRaftServerMetrics();
     logAppenderMetrics = new LogAppenderMetrics(server.getMemberId());
     this.pendingRequests = new PendingRequests(server.getMemberId(), properties, raftServerMetrics);
     this.watchRequests = new WatchRequests(server.getMemberId(), properties);
     this.messageStreamRequests = new MessageStreamRequests(server.getMemberId());
+    this.readIndexHeartbeats = new ReadIndexHeartbeats(server.getMemberId(),
+        RaftServerConfigKeys.Read.timeout(properties));
+    this.lease = new LeaderLease(properties);
     long maxPendingRequests = RaftServerConfigKeys.Write.elementLimit(properties);
     double followerGapRatioMax = RaftServerConfigKeys.Write.followerGapRatioMax(properties);
 
@@ -324,6 +331,7 @@ class LeaderStateImpl implements LeaderState {
       LOG.warn("{}: Caught exception in sendNotLeaderResponses", this, e);
     }
     messageStreamRequests.clear();
+    readIndexHeartbeats.failListeners(nle);
     server.getServerRpc().notifyNotLeader(server.getMemberId().getGroupId());
     logAppenderMetrics.unregister();
     raftServerMetrics.unregister();
@@ -391,6 +399,15 @@ class LeaderStateImpl implements LeaderState {
     return pendingRequests.add(permit, request, entry);
   }
 
+  List<PendingRequest> addPendingRequests(List<PendingRequests.Permit> permits, List<RaftClientRequest> requests,
+      BatchTransactionContext batch) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("{}: addPendingRequests {}, entry={}", this, requests,
+          LogProtoUtils.toLogEntryString(batch.getLogEntry()));
+    }
+    return pendingRequests.addBatch(permits, requests, batch.getTransactions(), batch.getLogEntry().getIndex());
+  }
+
   CompletableFuture<RaftClientReply> streamAsync(RaftClientRequest request) {
     return messageStreamRequests.streamAsync(request)
         .thenApply(dummy -> server.newSuccessReply(request))
@@ -402,6 +419,41 @@ class LeaderStateImpl implements LeaderState {
         .thenApply(bytes -> RaftClientRequest.toWriteRequest(request, Message.valueOf(bytes)));
   }
 
+  /**
+   * Obtain the read index for a read-only request, see the Raft thesis section 6.4.
+   * The returned future is completed with the current commit index
+   * once this leader has confirmed its leadership by a round of heartbeats,
+   * or immediately if this leader holds a valid lease.
+   */
+  CompletableFuture<Long> getReadIndex() {
+    if (!isReady()) {
+      return JavaUtils.completeExceptionally(new LeaderNotReadyException(server.getMemberId()));
+    }
+    final long readIndex = raftLog.getLastCommittedIndex();
+    if (hasLease()) {
+      return CompletableFuture.completedFuture(readIndex);
+    }
+    return readIndexHeartbeats.addAppendEntriesListener(readIndex, senders.getSenders(), this::hasMajority);
+  }
+
+  @Override
+  public void onAppendEntriesReply(LogAppender appender, AppendEntriesReplyProto reply) {
+    readIndexHeartbeats.onAppendEntriesReply(appender, reply, this::hasMajority);
+  }
+
+  /** @return true iff this leader holds a valid lease, i.e. no other leader can be elected at this moment. */
+  boolean hasLease() {
+    if (!lease.isEnabled() || server.isSteppingDown()) {
+      // During leadership transfer, the new leader may be elected before the lease expires.
+      return false;
+    }
+    return lease.isValid(senders.stream().map(LogAppender::getFollower), this::hasMajority);
+  }
+
+  private boolean hasMajority(Collection<RaftPeerId> followers) {
+    return server.getRaftConf().hasMajority(followers, server.getId());
+  }
+
   CompletableFuture<RaftClientReply> addWatchReqeust(RaftClientRequest request) {
     LOG.debug("{}: addWatchRequest {}", this, request);
     return watchRequests.add(request)
@@ -572,12 +624,14 @@ class LeaderStateImpl implements LeaderState {
 
   private void prepare() {
     synchronized (server) {
-      if (running) {
-        final ServerState state = server.getState();
-        if (state.getRaftConf().isTransitional() && state.isConfCommitted()) {
-          // the configuration is in transitional state, and has been committed
-          // so it is time to generate and replicate (new) conf.
-          replicateNewConf();
+      synchronized (server.getTransactionLock()) {
+        if (running) {
+          final ServerState state = server.getState();
+          if (state.getRaftConf().isTransitional() && state.isConfCommitted()) {
+            // the configuration is in transitional state, and has been committed
+            // so it is time to generate and replicate (new) conf.
+            replicateNewConf();
+          }
         }
       }
     }
@@ -587,10 +641,17 @@ class LeaderStateImpl implements LeaderState {
    * The processor thread takes the responsibility to update the raft server's
    * state, such as changing to follower, or updating the committed index.
    */
-  private class EventProcessor extends Daemon {
-    public EventProcessor(String name) {
-      setName(name);
+  private class EventProcessor implements Runnable {
+    private final Thread thread;
+
+    EventProcessor(String name, boolean useVirtualThread) {
+      this.thread = Daemon.newThread(this, name, useVirtualThread);
+    }
+
+    void start() {
+      thread.start();
     }
+
     @Override
     public void run() {
       // apply an empty message; check if necessary to replicate (new) conf
@@ -599,14 +660,17 @@ class LeaderStateImpl implements LeaderState {
       while (running) {
         final StateUpdateEvent event = eventQueue.poll();
         synchronized(server) {
-          if (running) {
-            if (event != null) {
-              event.execute();
-            } else if (inStagingState()) {
-              checkStaging();
-            } else {
-              yieldLeaderToHigherPriorityPeer();
-              checkLeadership();
+          // the events may append to the log, e.g. the metadata and conf entries
+          synchronized (server.getTransactionLock()) {
+            if (running) {
+              if (event != null) {
+                event.execute();
+              } else if (inStagingState()) {
+                checkStaging();
+              } else {
+                yieldLeaderToHigherPriorityPeer();
+                checkLeadership();
+              }
             }
           }
         }
@@ -986,10 +1050,18 @@ class LeaderStateImpl implements LeaderState {
     pendingRequests.replyPendingRequest(logIndex, reply);
   }
 
+  void replyPendingRequests(long logIndex, List<RaftClientReply> replies) {
+    pendingRequests.replyPendingRequests(logIndex, replies);
+  }
+
   TransactionContext getTransactionContext(long index) {
     return pendingRequests.getTransactionContext(index);
   }
 
+  List<TransactionContext> getTransactionContexts(long index) {
+    return pendingRequests.getTransactionContexts(index);
+  }
+
   long[] getFollowerNextIndices() {
     return senders.stream().mapToLong(s -> s.getFollower().getNextIndex()).toArray();
   }
@@ -1058,6 +1130,21 @@ class LeaderStateImpl implements LeaderState {
     return ((FollowerInfoImpl)follower).isAttendingVote();
   }
 
+  @Override
+  public void onSnapshotInstalled(FollowerInfo follower, SnapshotInfo snapshot) {
+    server.getInstalledSnapshots().put(follower.getPeer().getId(), snapshot);
+  }
+
+  @Override
+  public SnapshotInfo getInstalledSnapshot(FollowerInfo follower) {
+    return server.getInstalledSnapshots().get(follower.getPeer().getId());
+  }
+
+  @Override
+  public void removeInstalledSnapshot(FollowerInfo follower) {
+    server.getInstalledSnapshots().remove(follower.getPeer().getId());
+  }
+
   @Override
   public void checkHealth(FollowerInfo follower) {
     final TimeDuration elapsedTime = follower.getLastRpcResponseTime().elapsedTime();
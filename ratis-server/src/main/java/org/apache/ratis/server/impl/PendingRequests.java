@@ -38,14 +38,15 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 class PendingRequests {
   public static final Logger LOG = LoggerFactory.getLogger(PendingRequests.class);
@@ -89,11 +90,17 @@ class PendingRequests {
 
   private static class RequestMap {
     private final Object name;
-    private final ConcurrentMap<Long, PendingRequest> map = new ConcurrentHashMap<>();
+    /** Log index -> the requests; a batch log entry may contain multiple requests. */
+    private final ConcurrentMap<Long, List<PendingRequest>> map = new ConcurrentHashMap<>();
     private final RaftServerMetricsImpl raftServerMetrics;
 
-    /** Permits to put new requests, always synchronized. */
-    private final Map<Permit, Permit> permits = new HashMap<>();
+    /**
+     * Permits to put new requests.
+     * It is lock-free: a permit added concurrently with {@link #setNotLeaderException} is rechecked after it is
+     * published, and so is a request put concurrently, so that it is either rejected or replied by
+     * {@link #setNotLeaderException}.
+     */
+    private final Set<Permit> permits = ConcurrentHashMap.newKeySet();
     /** Track and limit the number of requests and the total message size. */
     private final RequestLimits resource;
     /** The size (in byte) of all the requests in this map. */
@@ -134,40 +141,50 @@ class PendingRequests {
       return putPermit();
     }
 
-    private synchronized Permit putPermit() {
+    private Permit putPermit() {
       if (resource.isClosed()) {
         return null;
       }
       final Permit permit = new Permit();
-      permits.put(permit, permit);
+      permits.add(permit);
+      if (resource.isClosed()) {
+        // closed concurrently; the permit may have been missed by the clear
+        permits.remove(permit);
+        return null;
+      }
       return permit;
     }
 
-    synchronized PendingRequest put(Permit permit, long index, PendingRequest p) {
+    List<PendingRequest> put(List<Permit> requestPermits, long index, List<PendingRequest> p) {
       LOG.debug("{}: PendingRequests.put {} -> {}", name, index, p);
-      final Permit removed = permits.remove(permit);
-      if (removed == null) {
-        return null;
+      Preconditions.assertSame(requestPermits.size(), p.size(), "number of permits");
+      for (Permit permit : requestPermits) {
+        if (!permits.remove(permit)) {
+          return null;
+        }
       }
-      Preconditions.assertTrue(removed == permit);
-      final PendingRequest previous = map.put(index, p);
+      final List<PendingRequest> previous = map.put(index, p);
       Preconditions.assertTrue(previous == null);
+      if (resource.isClosed() && map.remove(index, p)) {
+        // closed concurrently and the requests were missed by setNotLeaderException
+        return null;
+      }
       return p;
     }
 
-    PendingRequest get(long index) {
-      final PendingRequest r = map.get(index);
+    List<PendingRequest> get(long index) {
+      final List<PendingRequest> r = map.get(index);
       LOG.debug("{}: PendingRequests.get {} returns {}", name, index, r);
       return r;
     }
 
-    PendingRequest remove(long index) {
-      final PendingRequest r = map.remove(index);
+    List<PendingRequest> remove(long index) {
+      final List<PendingRequest> r = map.remove(index);
       LOG.debug("{}: PendingRequests.remove {} returns {}", name, index, r);
       if (r == null) {
         return null;
       }
-      final int messageSize = Message.getSize(r.getRequest().getMessage());
+      final int messageSize = r.stream().mapToInt(p -> Message.getSize(p.getRequest().getMessage())).sum();
       final long oldSize = requestSize.getAndAdd(-messageSize);
       final long newSize = oldSize - messageSize;
       final int diffMb = roundUpMb(oldSize) - roundUpMb(newSize);
@@ -178,10 +195,8 @@ class PendingRequests {
 
     Collection<TransactionContext> setNotLeaderException(NotLeaderException nle,
                                                          Collection<CommitInfoProto> commitInfos) {
-      synchronized (this) {
-        resource.close();
-        permits.clear();
-      }
+      resource.close();
+      permits.clear();
 
       LOG.debug("{}: PendingRequests.setNotLeaderException", name);
       final List<TransactionContext> transactions = new ArrayList<>(map.size());
@@ -191,9 +206,11 @@ class PendingRequests {
           return transactions;
         }
 
-        final PendingRequest pending = map.remove(i.next());
-        if (pending != null) {
-          transactions.add(pending.setNotLeaderException(nle, commitInfos));
+        final List<PendingRequest> pendings = map.remove(i.next());
+        if (pendings != null) {
+          for (PendingRequest pending : pendings) {
+            transactions.add(pending.setNotLeaderException(nle, commitInfos));
+          }
         }
       }
     }
@@ -229,7 +246,27 @@ class PendingRequests {
     final long index = entry.getLogEntry().getIndex();
     LOG.debug("{}: addPendingRequest at index={}, request={}", name, index, request);
     final PendingRequest pending = new PendingRequest(index, request, entry);
-    return pendingRequests.put(permit, index, pending);
+    final List<PendingRequest> added = pendingRequests.put(
+        Collections.singletonList(permit), index, Collections.singletonList(pending));
+    return added != null? pending: null;
+  }
+
+  /**
+   * Add the requests coalesced in a batch log entry.
+   *
+   * @return the pending requests in the same order as the given requests;
+   *         or null if the requests cannot be added.
+   */
+  List<PendingRequest> addBatch(List<Permit> permits, List<RaftClientRequest> requests,
+      List<TransactionContext> entries, long index) {
+    // externally synced for now
+    Preconditions.assertSame(requests.size(), entries.size(), "number of entries");
+    LOG.debug("{}: addPendingRequests at index={}, requests={}", name, index, requests);
+    final List<PendingRequest> pendings = new ArrayList<>(requests.size());
+    for (int i = 0; i < requests.size(); i++) {
+      pendings.add(new PendingRequest(index, requests.get(i), entries.get(i)));
+    }
+    return pendingRequests.put(permits, index, pendings);
   }
 
   PendingRequest addConfRequest(SetConfigurationRequest request) {
@@ -259,17 +296,32 @@ class PendingRequests {
   }
 
   TransactionContext getTransactionContext(long index) {
-    PendingRequest pendingRequest = pendingRequests.get(index);
+    final List<TransactionContext> transactions = getTransactionContexts(index);
+    return transactions != null && transactions.size() == 1? transactions.get(0): null;
+  }
+
+  /** @return the transactions of the requests at the given index, or null if there are no such requests. */
+  List<TransactionContext> getTransactionContexts(long index) {
+    final List<PendingRequest> pendings = pendingRequests.get(index);
     // it is possible that the pendingRequest is null if this peer just becomes
     // the new leader and commits transactions received by the previous leader
-    return pendingRequest != null ? pendingRequest.getEntry() : null;
+    return pendings != null ? pendings.stream().map(PendingRequest::getEntry).collect(Collectors.toList()) : null;
   }
 
   void replyPendingRequest(long index, RaftClientReply reply) {
-    final PendingRequest pending = pendingRequests.remove(index);
-    if (pending != null) {
-      Preconditions.assertTrue(pending.getIndex() == index);
-      pending.setReply(reply);
+    replyPendingRequests(index, Collections.singletonList(reply));
+  }
+
+  /** Reply the requests at the given index, where the replies are in the same order as the requests. */
+  void replyPendingRequests(long index, List<RaftClientReply> replies) {
+    final List<PendingRequest> pendings = pendingRequests.remove(index);
+    if (pendings != null) {
+      Preconditions.assertSame(pendings.size(), replies.size(), "number of replies");
+      for (int i = 0; i < pendings.size(); i++) {
+        final PendingRequest pending = pendings.get(i);
+        Preconditions.assertTrue(pending.getIndex() == index);
+        pending.setReply(replies.get(i));
+      }
     }
   }
 
@@ -30,6 +30,7 @@ import org.apache.ratis.protocol.exceptions.LeaderNotReadyException;
 import org.apache.ratis.protocol.exceptions.LeaderSteppingDownException;
 import org.apache.ratis.protocol.exceptions.NotLeaderException;
 import org.apache.ratis.protocol.exceptions.RaftException;
+import org.apache.ratis.protocol.exceptions.ReadException;
 import org.apache.ratis.protocol.exceptions.ReconfigurationInProgressException;
 import org.apache.ratis.protocol.exceptions.ResourceUnavailableException;
 import org.apache.ratis.protocol.exceptions.ServerNotReadyException;
@@ -59,6 +60,7 @@ import org.apache.ratis.server.raftlog.RaftLogIOException;
 import org.apache.ratis.server.storage.RaftStorage;
 import org.apache.ratis.server.storage.RaftStorageDirectory;
 import org.apache.ratis.server.util.ServerStringUtils;
+import org.apache.ratis.statemachine.SnapshotInfo;
 import org.apache.ratis.statemachine.StateMachine;
 import org.apache.ratis.statemachine.TransactionContext;
 import org.apache.ratis.thirdparty.com.google.protobuf.InvalidProtocolBufferException;
@@ -71,10 +73,12 @@ import java.nio.file.NoSuchFileException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -150,6 +154,7 @@ class RaftServerImpl implements RaftServer.Division,
   private final TimeDuration leaderStepDownWaitTime;
   private final TimeDuration sleepDeviationThreshold;
   private final boolean installSnapshotEnabled;
+  private final RaftServerConfigKeys.Read.Option readOption;
 
   private final LifeCycle lifeCycle;
   private final ServerState state;
@@ -160,6 +165,18 @@ class RaftServerImpl implements RaftServer.Division,
   private final MemoizedSupplier<RaftClient> raftClient;
 
   private final RetryCacheImpl retryCache;
+  private final ReadRequests readRequests;
+  /** Coalesce the small write requests; null if it is disabled. */
+  private final WriteBatcher writeBatcher;
+  /**
+   * Guard the client write submission against the leader role transitions
+   * so that the write paths do not contend with the division monitor,
+   * which also serializes appendEntries, requestVote and the other server requests.
+   * The leader also holds this lock for its own log appends, such as the conf and metadata entries,
+   * since the log allows only one appending thread at a time.
+   * Lock order: the division monitor, then this lock.
+   */
+  private final Object transactionLock = new Object();
   private final CommitInfoCache commitInfoCache = new CommitInfoCache();
 
   private final RaftServerJmxAdapter jmxAdapter;
@@ -168,6 +185,11 @@ class RaftServerImpl implements RaftServer.Division,
 
   private final AtomicLong inProgressInstallSnapshotRequest;
   private final AtomicLong installedSnapshotIndex;
+  /**
+   * The snapshots installed to the followers when this server is the leader,
+   * kept across the leader terms so that the unchanged files are not sent again.
+   */
+  private final Map<RaftPeerId, SnapshotInfo> installedSnapshots = new ConcurrentHashMap<>();
   private final AtomicBoolean isSnapshotNull;
 
   // To avoid append entry before complete start() method
@@ -192,10 +214,13 @@ class RaftServerImpl implements RaftServer.Division,
     leaderStepDownWaitTime = RaftServerConfigKeys.LeaderElection.leaderStepDownWaitTime(properties);
     this.sleepDeviationThreshold = RaftServerConfigKeys.sleepDeviationThreshold(properties);
     installSnapshotEnabled = RaftServerConfigKeys.Log.Appender.installSnapshotEnabled(properties);
+    this.readOption = RaftServerConfigKeys.Read.option(properties);
     this.proxy = proxy;
 
     this.state = new ServerState(id, group, properties, this, stateMachine);
     this.retryCache = new RetryCacheImpl(properties);
+    this.readRequests = new ReadRequests(getMemberId(), state.getLastAppliedIndex(), properties);
+    this.writeBatcher = RaftServerConfigKeys.Write.batchEnabled(properties)? new WriteBatcher(this, properties): null;
     this.inProgressInstallSnapshotRequest = new AtomicLong();
     this.installedSnapshotIndex = new AtomicLong();
     this.isSnapshotNull = new AtomicBoolean(false);
@@ -277,6 +302,10 @@ class RaftServerImpl implements RaftServer.Division,
     return retryCache;
   }
 
+  Map<RaftPeerId, SnapshotInfo> getInstalledSnapshots() {
+    return installedSnapshots;
+  }
+
   @Override
   public RaftServerProxy getRaftServer() {
     return proxy;
@@ -339,6 +368,11 @@ class RaftServerImpl implements RaftServer.Division,
     // do not start FollowerState
   }
 
+  /** @return the lock for appending to the log as the leader; see {@link #transactionLock}. */
+  Object getTransactionLock() {
+    return transactionLock;
+  }
+
   ServerState getState() {
     return state;
   }
@@ -410,6 +444,10 @@ class RaftServerImpl implements RaftServer.Division,
   public void close() {
     lifeCycle.checkStateAndClose(() -> {
       LOG.info("{}: shutdown", getMemberId());
+      if (writeBatcher != null) {
+        // fail the requests waiting in the batch
+        writeBatcher.close();
+      }
       try {
         jmxAdapter.unregister();
       } catch (Exception ignored) {
@@ -463,13 +501,18 @@ class RaftServerImpl implements RaftServer.Division,
     final boolean metadataUpdated = state.updateCurrentTerm(newTerm);
 
     if (old != RaftPeerRole.FOLLOWER || force) {
-      setRole(RaftPeerRole.FOLLOWER, reason);
       if (old == RaftPeerRole.LEADER) {
-        role.shutdownLeaderState(false);
-      } else if (old == RaftPeerRole.CANDIDATE) {
-        role.shutdownLeaderElection();
-      } else if (old == RaftPeerRole.FOLLOWER) {
-        role.shutdownFollowerState();
+        synchronized (transactionLock) {
+          setRole(RaftPeerRole.FOLLOWER, reason);
+          role.shutdownLeaderState(false);
+        }
+      } else {
+        setRole(RaftPeerRole.FOLLOWER, reason);
+        if (old == RaftPeerRole.CANDIDATE) {
+          role.shutdownLeaderElection();
+        } else if (old == RaftPeerRole.FOLLOWER) {
+          role.shutdownFollowerState();
+        }
       }
       role.startFollowerState(this, reason);
     }
@@ -485,12 +528,14 @@ class RaftServerImpl implements RaftServer.Division,
   synchronized void changeToLeader() {
     Preconditions.assertTrue(getInfo().isCandidate());
     role.shutdownLeaderElection();
-    setRole(RaftPeerRole.LEADER, "changeToLeader");
-    state.becomeLeader();
+    synchronized (transactionLock) {
+      setRole(RaftPeerRole.LEADER, "changeToLeader");
+      state.becomeLeader();
 
-    // start sending AppendEntries RPC to followers
-    final LogEntryProto e = role.startLeaderState(this);
-    getState().setRaftConf(e);
+      // start sending AppendEntries RPC to followers
+      final LogEntryProto e = role.startLeaderState(this);
+      getState().setRaftConf(e);
+    }
   }
 
   Collection<CommitInfoProto> getCommitInfos() {
@@ -688,11 +733,9 @@ class RaftServerImpl implements RaftServer.Division,
   private CompletableFuture<RaftClientReply> appendTransaction(
       RaftClientRequest request, TransactionContext context, CacheEntry cacheEntry) throws IOException {
     assertLifeCycleState(LifeCycle.States.RUNNING);
-    CompletableFuture<RaftClientReply> reply;
 
-    final PendingRequest pending;
-    synchronized (this) {
-      reply = checkLeaderState(request, cacheEntry, true);
+    synchronized (transactionLock) {
+      final CompletableFuture<RaftClientReply> reply = checkLeaderState(request, cacheEntry, true);
       if (reply != null) {
         return reply;
       }
@@ -701,34 +744,127 @@ class RaftServerImpl implements RaftServer.Division,
       final LeaderStateImpl leaderState = role.getLeaderStateNonNull();
       final PendingRequests.Permit permit = leaderState.tryAcquirePendingRequest(request.getMessage());
       if (permit == null) {
-        cacheEntry.failWithException(new ResourceUnavailableException(
-            getMemberId() + ": Failed to acquire a pending write request for " + request));
-        return cacheEntry.getReplyFuture();
+        return failToAcquirePendingRequest(request, cacheEntry);
+      }
+      return appendTransaction(leaderState, permit, request, context, cacheEntry);
+    }
+  }
+
+  private CompletableFuture<RaftClientReply> failToAcquirePendingRequest(
+      RaftClientRequest request, CacheEntry cacheEntry) {
+    cacheEntry.failWithException(new ResourceUnavailableException(
+        getMemberId() + ": Failed to acquire a pending write request for " + request));
+    return cacheEntry.getReplyFuture();
+  }
+
+  /** The caller must hold the {@link #transactionLock}. */
+  private CompletableFuture<RaftClientReply> appendTransaction(LeaderStateImpl leaderState,
+      PendingRequests.Permit permit, RaftClientRequest request, TransactionContext context, CacheEntry cacheEntry) {
+    try {
+      state.appendLog(context);
+    } catch (StateMachineException e) {
+      return failToAppend(leaderState, e, Collections.singletonList(request), Collections.singletonList(cacheEntry))
+          .get(0);
+    }
+
+    // put the request into the pending queue
+    final PendingRequest pending = leaderState.addPendingRequest(permit, request, context);
+    if (pending == null) {
+      cacheEntry.failWithException(new ResourceUnavailableException(
+          getMemberId() + ": Failed to add a pending write request for " + request));
+      return cacheEntry.getReplyFuture();
+    }
+    leaderState.notifySenders();
+    return pending.getFuture();
+  }
+
+  private List<CompletableFuture<RaftClientReply>> failToAppend(LeaderStateImpl leaderState,
+      StateMachineException e, List<RaftClientRequest> requests, List<CacheEntry> cacheEntries) {
+    // the StateMachineException is thrown by the SM in the preAppend stage.
+    // Return the exception in a RaftClientReply.
+    final List<CompletableFuture<RaftClientReply>> replies = new ArrayList<>(requests.size());
+    for (int i = 0; i < requests.size(); i++) {
+      final RaftClientReply exceptionReply = newExceptionReply(requests.get(i), e);
+      cacheEntries.get(i).failWithReply(exceptionReply);
+      replies.add(CompletableFuture.completedFuture(exceptionReply));
+    }
+    // leader will step down here
+    if (e.leaderShouldStepDown() && getInfo().isLeader()) {
+      leaderState.submitStepDownEvent(LeaderState.StepDownReason.STATE_MACHINE_EXCEPTION);
+    }
+    return replies;
+  }
+
+  /**
+   * Handle the write requests coalesced by the {@link WriteBatcher}.
+   * The accepted requests are appended to the local log as a single batch log entry.
+   */
+  void appendTransactions(List<WriteBatcher.Element> elements) throws IOException {
+    assertLifeCycleState(LifeCycle.States.RUNNING);
+
+    synchronized (transactionLock) {
+      final List<WriteBatcher.Element> accepted = new ArrayList<>(elements.size());
+      final List<PendingRequests.Permit> permits = new ArrayList<>(elements.size());
+      for (WriteBatcher.Element e : elements) {
+        final CompletableFuture<RaftClientReply> reply = checkLeaderState(e.getRequest(), e.getCacheEntry(), true);
+        if (reply != null) {
+          e.complete(reply);
+          continue;
+        }
+        final PendingRequests.Permit permit = role.getLeaderStateNonNull()
+            .tryAcquirePendingRequest(e.getRequest().getMessage());
+        if (permit == null) {
+          e.complete(failToAcquirePendingRequest(e.getRequest(), e.getCacheEntry()));
+          continue;
+        }
+        accepted.add(e);
+        permits.add(permit);
+      }
+      if (accepted.isEmpty()) {
+        return;
+      }
+
+      final LeaderStateImpl leaderState = role.getLeaderStateNonNull();
+      if (accepted.size() == 1) {
+        final WriteBatcher.Element e = accepted.get(0);
+        e.complete(appendTransaction(leaderState, permits.get(0), e.getRequest(), e.getContext(), e.getCacheEntry()));
+        return;
       }
+
+      final List<RaftClientRequest> requests = new ArrayList<>(accepted.size());
+      final List<TransactionContext> contexts = new ArrayList<>(accepted.size());
+      final List<CacheEntry> cacheEntries = new ArrayList<>(accepted.size());
+      for (WriteBatcher.Element e : accepted) {
+        requests.add(e.getRequest());
+        contexts.add(e.getContext());
+        cacheEntries.add(e.getCacheEntry());
+      }
+
+      final BatchTransactionContext batch = new BatchTransactionContext(contexts);
+      List<CompletableFuture<RaftClientReply>> replies;
       try {
-        state.appendLog(context);
-      } catch (StateMachineException e) {
-        // the StateMachineException is thrown by the SM in the preAppend stage.
-        // Return the exception in a RaftClientReply.
-        RaftClientReply exceptionReply = newExceptionReply(request, e);
-        cacheEntry.failWithReply(exceptionReply);
-        // leader will step down here
-        if (e.leaderShouldStepDown() && getInfo().isLeader()) {
-          leaderState.submitStepDownEvent(LeaderState.StepDownReason.STATE_MACHINE_EXCEPTION);
+        state.appendLog(batch);
+        // put the requests into the pending queue
+        final List<PendingRequest> pendings = leaderState.addPendingRequests(permits, requests, batch);
+        if (pendings != null) {
+          leaderState.notifySenders();
+          replies = pendings.stream().map(PendingRequest::getFuture).collect(Collectors.toList());
+        } else {
+          replies = new ArrayList<>(accepted.size());
+          for (int i = 0; i < accepted.size(); i++) {
+            cacheEntries.get(i).failWithException(new ResourceUnavailableException(
+                getMemberId() + ": Failed to add a pending write request for " + requests.get(i)));
+            replies.add(cacheEntries.get(i).getReplyFuture());
+          }
         }
-        return CompletableFuture.completedFuture(exceptionReply);
+      } catch (StateMachineException e) {
+        replies = failToAppend(leaderState, e, requests, cacheEntries);
       }
 
-      // put the request into the pending queue
-      pending = leaderState.addPendingRequest(permit, request, context);
-      if (pending == null) {
-        cacheEntry.failWithException(new ResourceUnavailableException(
-            getMemberId() + ": Failed to add a pending write request for " + request));
-        return cacheEntry.getReplyFuture();
+      for (int i = 0; i < accepted.size(); i++) {
+        accepted.get(i).complete(replies.get(i));
       }
-      leaderState.notifySenders();
     }
-    return pending.getFuture();
   }
 
   void stepDownOnJvmPause() {
@@ -753,6 +889,8 @@ class RaftServerImpl implements RaftServer.Division,
 
     if (request.is(TypeCase.STALEREAD)) {
       replyFuture = staleReadAsync(request);
+    } else if (isFollowerRead(request)) {
+      replyFuture = followerReadAsync(request);
     } else {
       // first check the server's leader state
       CompletableFuture<RaftClientReply> reply = checkLeaderState(request, null,
@@ -775,13 +913,13 @@ class RaftServerImpl implements RaftServer.Division,
       }
 
       if (type.is(TypeCase.READ)) {
-        // TODO: We might not be the leader anymore by the time this completes.
-        // See the RAFT paper section 8 (last part)
-        replyFuture = processQueryFuture(stateMachine.query(request.getMessage()), request);
+        replyFuture = readAsync(request);
       } else if (type.is(TypeCase.WATCH)) {
         replyFuture = watchAsync(request);
       } else if (type.is(TypeCase.MESSAGESTREAM)) {
         replyFuture = streamAsync(request);
+      } else if (type.isWriteBatch()) {
+        replyFuture = writeBatchAsync(request);
       } else {
         // query the retry cache
         final RetryCacheImpl.CacheQueryResult queryResult = retryCache.queryCache(ClientInvocationId.valueOf(request));
@@ -800,7 +938,13 @@ class RaftServerImpl implements RaftServer.Division,
             final RaftClientReply exceptionReply = newExceptionReply(request, e);
             cacheEntry.failWithReply(exceptionReply);
             replyFuture =  CompletableFuture.completedFuture(exceptionReply);
+          } else if (writeBatcher != null && writeBatcher.isBatchable(request, context)) {
+            replyFuture = writeBatcher.submit(request, context, cacheEntry);
           } else {
+            if (writeBatcher != null) {
+              // append the requests submitted earlier first so that the request order is preserved
+              writeBatcher.flush();
+            }
             replyFuture = appendTransaction(request, context, cacheEntry);
           }
         }
@@ -819,6 +963,49 @@ class RaftServerImpl implements RaftServer.Division,
     return replyFuture;
   }
 
+  /**
+   * Split the given batch request into the individual write requests and then combine the replies.
+   * When a request fails with an exception other than {@link StateMachineException},
+   * the batch fails with the same exception so that the client can retry the entire batch;
+   * the requests already succeeded are answered by the retry cache.
+   */
+  private CompletableFuture<RaftClientReply> writeBatchAsync(RaftClientRequest batch) throws IOException {
+    final ClientMessageBatchProto proto = ClientMessageBatchProto.parseFrom(batch.getMessage().getContent());
+    final List<CompletableFuture<RaftClientReply>> futures = new ArrayList<>(proto.getEntriesCount());
+    for (ClientMessageBatchProto.Entry entry : proto.getEntriesList()) {
+      final RaftClientRequest request = RaftClientRequest.newBuilder()
+          .setClientId(batch.getClientId())
+          .setServerId(batch.getServerId())
+          .setGroupId(batch.getRaftGroupId())
+          .setCallId(entry.getCallId())
+          .setMessage(Message.valueOf(entry.getContent()))
+          .setType(RaftClientRequest.writeRequestType())
+          .setRoutingTable(batch.getRoutingTable())
+          .setTimeoutMs(batch.getTimeoutMs())
+          .build();
+      futures.add(submitClientRequestAsync(request));
+    }
+
+    return JavaUtils.allOf(futures).thenApply(v -> {
+      final RaftClientReplyBatchProto.Builder b = RaftClientReplyBatchProto.newBuilder();
+      long logIndex = RaftLog.INVALID_LOG_INDEX;
+      for (CompletableFuture<RaftClientReply> f : futures) {
+        final RaftClientReply reply = f.join();
+        final RaftException e = reply.getException();
+        if (e != null && !(e instanceof StateMachineException)) {
+          return newExceptionReply(batch, e);
+        }
+        logIndex = Math.max(logIndex, reply.getLogIndex());
+        b.addReplies(ClientProtoUtils.toRaftClientReplyProto(reply));
+      }
+      return newReplyBuilder(batch)
+          .setSuccess()
+          .setLogIndex(logIndex)
+          .setMessage(Message.valueOf(b.build().toByteString()))
+          .build();
+    });
+  }
+
   private CompletableFuture<RaftClientReply> watchAsync(RaftClientRequest request) {
     return role.getLeaderState()
         .map(ls -> ls.addWatchReqeust(request))
@@ -826,6 +1013,91 @@ class RaftServerImpl implements RaftServer.Division,
             newExceptionReply(request, generateNotLeaderException())));
   }
 
+  private CompletableFuture<RaftClientReply> readAsync(RaftClientRequest request) {
+    if (readOption != RaftServerConfigKeys.Read.Option.LINEARIZABLE) {
+      // We might not be the leader anymore by the time this completes.
+      // See the RAFT paper section 8 (last part)
+      return processQueryFuture(stateMachine.query(request.getMessage()), request);
+    }
+
+    final LeaderStateImpl leader = role.getLeaderState().orElse(null);
+    if (leader == null) {
+      return CompletableFuture.completedFuture(newExceptionReply(request, generateNotLeaderException()));
+    }
+    return leader.getReadIndex()
+        .thenCompose(readRequests::waitToAdvance)
+        .thenCompose(readIndex -> processQueryFuture(stateMachine.query(request.getMessage()), request))
+        .exceptionally(e -> readException2Reply(request, e));
+  }
+
+  private RaftClientReply readException2Reply(RaftClientRequest request, Throwable e) {
+    e = JavaUtils.unwrapCompletionException(e);
+    if (e instanceof StateMachineException) {
+      return newExceptionReply(request, (StateMachineException) e);
+    } else if (e instanceof NotLeaderException || e instanceof LeaderNotReadyException) {
+      return newExceptionReply(request, (RaftException) e);
+    } else if (e instanceof ReadException || e instanceof IOException) {
+      return newExceptionReply(request, new StateMachineException(getMemberId(), e));
+    }
+    throw new CompletionException(e);
+  }
+
+  /**
+   * A linearizable read-only request sent to a follower is served by the follower itself:
+   * it obtains the read index from the leader and then waits for its state machine to apply up to the read index.
+   */
+  private boolean isFollowerRead(RaftClientRequest request) {
+    return request.is(TypeCase.READ) && !request.isToLeader()
+        && readOption == RaftServerConfigKeys.Read.Option.LINEARIZABLE
+        && getInfo().isFollower();
+  }
+
+  private CompletableFuture<RaftClientReply> followerReadAsync(RaftClientRequest request) {
+    try {
+      assertGroup(request.getRequestorId(), request.getRaftGroupId());
+    } catch (GroupMismatchException e) {
+      return RetryCacheImpl.failWithException(e, null);
+    }
+
+    final RaftPeerId leaderId = state.getLeaderId();
+    if (leaderId == null) {
+      return CompletableFuture.completedFuture(newExceptionReply(request, generateNotLeaderException()));
+    }
+    final ReadIndexRequestProto proto = ServerProtoUtils.toReadIndexRequestProto(getMemberId(), leaderId);
+    return getServerRpc().readIndexAsync(proto)
+        .thenCompose(reply -> {
+          if (!reply.getServerReply().getSuccess()) {
+            return JavaUtils.<Long>completeExceptionally(new ReadException(getMemberId()
+                + ": Failed to get read index from the leader " + leaderId));
+          }
+          return readRequests.waitToAdvance(reply.getReadIndex());
+        })
+        .thenCompose(readIndex -> processQueryFuture(stateMachine.query(request.getMessage()), request))
+        .exceptionally(e -> readException2Reply(request, e));
+  }
+
+  @Override
+  public CompletableFuture<ReadIndexReplyProto> readIndexAsync(ReadIndexRequestProto request)
+      throws IOException {
+    assertLifeCycleState(LifeCycle.States.RUNNING);
+    final RaftPeerId requestorId = RaftPeerId.valueOf(request.getServerRequest().getRequestorId());
+    final LeaderStateImpl leader = role.getLeaderState().orElse(null);
+    if (leader == null) {
+      return CompletableFuture.completedFuture(ServerProtoUtils.toReadIndexReplyProto(
+          requestorId, getMemberId(), false, RaftLog.INVALID_LOG_INDEX));
+    }
+    return leader.getReadIndex()
+        .thenApply(index -> ServerProtoUtils.toReadIndexReplyProto(requestorId, getMemberId(), true, index))
+        .exceptionally(e -> {
+          LOG.debug("{}: Failed to get read index for {}", getMemberId(), requestorId, e);
+          return ServerProtoUtils.toReadIndexReplyProto(requestorId, getMemberId(), false, RaftLog.INVALID_LOG_INDEX);
+        });
+  }
+
+  ReadRequests getReadRequests() {
+    return readRequests;
+  }
+
   private CompletableFuture<RaftClientReply> staleReadAsync(RaftClientRequest request) {
     final long minIndex = request.getType().getStaleRead().getMinIndex();
     final long commitIndex = state.getLog().getLastCommittedIndex();
@@ -1004,8 +1276,10 @@ class RaftServerImpl implements RaftServer.Division,
       }
 
       getRaftServer().addRaftPeers(peersInNewConf);
-      // add staging state into the leaderState
-      pending = leaderState.startSetConfiguration(request);
+      // add staging state into the leaderState; it may append the (old, new) conf to the log
+      synchronized (transactionLock) {
+        pending = leaderState.startSetConfiguration(request);
+      }
     }
     return pending.getFuture();
   }
@@ -1256,18 +1530,16 @@ class RaftServerImpl implements RaftServer.Division,
     return JavaUtils.allOf(futures).whenCompleteAsync(
         (r, t) -> followerState.ifPresent(fs -> fs.updateLastRpcTime(FollowerState.UpdateType.APPEND_COMPLETE))
     ).thenApply(v -> {
-      final AppendEntriesReplyProto reply;
-      synchronized(this) {
-        final long commitIndex = ServerImplUtils.effectiveCommitIndex(leaderCommit, previous, entries.length);
-        state.updateCommitIndex(commitIndex, currentTerm, false);
-        updateCommitInfoCache();
-        final long n = isHeartbeat? state.getLog().getNextIndex(): entries[entries.length - 1].getIndex() + 1;
-        final long matchIndex = entries.length != 0 ? entries[entries.length - 1].getIndex() :
-            RaftLog.INVALID_LOG_INDEX;
-        reply = ServerProtoUtils.toAppendEntriesReplyProto(leaderId, getMemberId(), currentTerm,
-            state.getLog().getLastCommittedIndex(), n, SUCCESS, callId, matchIndex,
-            isHeartbeat);
-      }
+      // No need to hold the division monitor: the commit index is updated increasingly under the log lock
+      // and the reply only uses the term captured above.
+      final long commitIndex = ServerImplUtils.effectiveCommitIndex(leaderCommit, previous, entries.length);
+      state.updateCommitIndex(commitIndex, currentTerm, false);
+      updateCommitInfoCache();
+      final long n = isHeartbeat? state.getLog().getNextIndex(): entries[entries.length - 1].getIndex() + 1;
+      final long matchIndex = entries.length != 0 ? entries[entries.length - 1].getIndex() :
+          RaftLog.INVALID_LOG_INDEX;
+      final AppendEntriesReplyProto reply = ServerProtoUtils.toAppendEntriesReplyProto(leaderId, getMemberId(),
+          currentTerm, state.getLog().getLastCommittedIndex(), n, SUCCESS, callId, matchIndex, isHeartbeat);
       logAppendEntries(isHeartbeat, () -> getMemberId() + ": succeeded to handle AppendEntries. Reply: "
           + ServerStringUtils.toAppendEntriesReplyString(reply));
       timer.stop();  // TODO: future never completes exceptionally?
@@ -1665,6 +1937,17 @@ class RaftServerImpl implements RaftServer.Division,
    */
   private CompletableFuture<Message> replyPendingRequest(
       LogEntryProto logEntry, CompletableFuture<Message> stateMachineFuture) {
+    final long logIndex = logEntry.getIndex();
+    return updateRetryCache(logEntry, stateMachineFuture,
+        r -> role.getLeaderState().ifPresent(leader -> leader.replyPendingRequest(logIndex, r)));
+  }
+
+  /**
+   * Use the future to update the retry cache.
+   * @param replyPendingRequest for updating the pending request once the reply is available
+   */
+  private CompletableFuture<Message> updateRetryCache(LogEntryProto logEntry,
+      CompletableFuture<Message> stateMachineFuture, Consumer<RaftClientReply> replyPendingRequest) {
     Preconditions.assertTrue(logEntry.hasStateMachineLogEntry());
     final ClientInvocationId invocationId = ClientInvocationId.valueOf(logEntry.getStateMachineLogEntry());
     // update the retry cache
@@ -1691,12 +1974,23 @@ class RaftServerImpl implements RaftServer.Division,
       }
 
       // update pending request
-      role.getLeaderState().ifPresent(leader -> leader.replyPendingRequest(logIndex, r));
+      replyPendingRequest.accept(r);
       cacheEntry.updateResult(r);
     });
   }
 
   CompletableFuture<Message> applyLogToStateMachine(LogEntryProto next) throws RaftLogIOException {
+    return applyLogToStateMachine(next, stateMachine::applyTransaction);
+  }
+
+  /**
+   * Similar to {@link #applyLogToStateMachine(LogEntryProto)}
+   * except that the transaction is applied by the given function.
+   * A batch log entry is still applied by {@link StateMachine#applyBatchedTransactions(List)};
+   * see {@link #applyBatchedLogToStateMachine(LogEntryProto, Function)}.
+   */
+  CompletableFuture<Message> applyLogToStateMachine(LogEntryProto next,
+      Function<TransactionContext, CompletableFuture<Message>> applyTransaction) throws RaftLogIOException {
     if (!next.hasStateMachineLogEntry()) {
       stateMachine.event().notifyTermIndexUpdated(next.getTerm(), next.getIndex());
     }
@@ -1706,21 +2000,12 @@ class RaftServerImpl implements RaftServer.Division,
       // the new conf in the metadata file and notify the StateMachine.
       state.writeRaftConfiguration(next);
       stateMachine.event().notifyConfigurationChanged(next.getTerm(), next.getIndex(), next.getConfigurationEntry());
+    } else if (LogProtoUtils.isBatch(next)) {
+      return applyBatchedLogToStateMachine(next, stateMachine::applyBatchedTransactions);
     } else if (next.hasStateMachineLogEntry()) {
-      // check whether there is a TransactionContext because we are the leader.
-      TransactionContext trx = role.getLeaderState()
-          .map(leader -> leader.getTransactionContext(next.getIndex())).orElseGet(
-              () -> TransactionContext.newBuilder()
-                  .setServerRole(role.getCurrentRole())
-                  .setStateMachine(stateMachine)
-                  .setLogEntry(next)
-                  .build());
-
       try {
-        // Let the StateMachine inject logic for committed transactions in sequential order.
-        trx = stateMachine.applyTransactionSerial(trx);
-
-        final CompletableFuture<Message> stateMachineFuture = stateMachine.applyTransaction(trx);
+        final TransactionContext trx = applyTransactionSerial(next);
+        final CompletableFuture<Message> stateMachineFuture = applyTransaction.apply(trx);
         return replyPendingRequest(next, stateMachineFuture);
       } catch (Exception e) {
         throw new RaftLogIOException(e);
@@ -1729,6 +2014,92 @@ class RaftServerImpl implements RaftServer.Division,
     return null;
   }
 
+  /**
+   * Apply the given contiguous state machine log entries in a batch
+   * using {@link StateMachine#applyTransactions(List)}.
+   *
+   * @return the futures, one for each entry in the same order.
+   */
+  List<CompletableFuture<Message>> applyLogsToStateMachine(List<LogEntryProto> entries) throws RaftLogIOException {
+    final List<TransactionContext> trxs = new ArrayList<>(entries.size());
+    try {
+      for (LogEntryProto next : entries) {
+        Preconditions.assertTrue(next.hasStateMachineLogEntry(), () -> "Unexpected entry " + next);
+        trxs.add(applyTransactionSerial(next));
+      }
+
+      final List<CompletableFuture<Message>> stateMachineFutures = stateMachine.applyTransactions(trxs);
+      Preconditions.assertSame(entries.size(), stateMachineFutures.size(), "stateMachineFutures.size()");
+      final List<CompletableFuture<Message>> futures = new ArrayList<>(entries.size());
+      for (int i = 0; i < entries.size(); i++) {
+        futures.add(replyPendingRequest(entries.get(i), stateMachineFutures.get(i)));
+      }
+      return futures;
+    } catch (Exception e) {
+      throw new RaftLogIOException(e);
+    }
+  }
+
+  /**
+   * Apply the requests coalesced in the given batch log entry as separate transactions
+   * using the given function, which is {@link StateMachine#applyBatchedTransactions(List)} by default.
+   *
+   * @return a future, which will be completed once all the transactions are completed.
+   */
+  CompletableFuture<Message> applyBatchedLogToStateMachine(LogEntryProto batch,
+      Function<List<TransactionContext>, List<CompletableFuture<Message>>> applyBatchedTransactions)
+      throws RaftLogIOException {
+    final List<LogEntryProto> entries = LogProtoUtils.splitBatch(batch);
+    // check whether there are TransactionContexts because we are the leader.
+    final List<TransactionContext> leaderTrxs = role.getLeaderState()
+        .map(leader -> leader.getTransactionContexts(batch.getIndex())).orElse(null);
+    if (leaderTrxs != null) {
+      Preconditions.assertSame(entries.size(), leaderTrxs.size(), "number of transactions");
+    }
+
+    final List<TransactionContext> trxs = new ArrayList<>(entries.size());
+    try {
+      for (int i = 0; i < entries.size(); i++) {
+        trxs.add(applyTransactionSerial(entries.get(i), leaderTrxs != null? leaderTrxs.get(i): null));
+      }
+    } catch (Exception e) {
+      throw new RaftLogIOException(e);
+    }
+
+    final List<CompletableFuture<Message>> stateMachineFutures = applyBatchedTransactions.apply(trxs);
+    Preconditions.assertSame(entries.size(), stateMachineFutures.size(), "stateMachineFutures.size()");
+    final RaftClientReply[] replies = new RaftClientReply[entries.size()];
+    final CompletableFuture<?>[] futures = new CompletableFuture<?>[entries.size()];
+    for (int i = 0; i < entries.size(); i++) {
+      final int j = i;
+      futures[i] = updateRetryCache(entries.get(i), stateMachineFutures.get(i), r -> replies[j] = r);
+    }
+
+    final long logIndex = batch.getIndex();
+    return CompletableFuture.allOf(futures)
+        .whenComplete((v, e) -> role.getLeaderState().ifPresent(
+            leader -> leader.replyPendingRequests(logIndex, Arrays.asList(replies))))
+        .thenApply(v -> null);
+  }
+
+  private TransactionContext applyTransactionSerial(LogEntryProto next) throws InvalidProtocolBufferException {
+    // check whether there is a TransactionContext because we are the leader.
+    final TransactionContext leaderTrx = role.getLeaderState()
+        .map(leader -> leader.getTransactionContext(next.getIndex())).orElse(null);
+    return applyTransactionSerial(next, leaderTrx);
+  }
+
+  private TransactionContext applyTransactionSerial(LogEntryProto next, TransactionContext leaderTrx)
+      throws InvalidProtocolBufferException {
+    final TransactionContext trx = leaderTrx != null? leaderTrx: TransactionContext.newBuilder()
+        .setServerRole(role.getCurrentRole())
+        .setStateMachine(stateMachine)
+        .setLogEntry(next)
+        .build();
+    // Let the StateMachine inject logic for committed transactions in sequential order.
+    return stateMachine.applyTransactionSerial(trx);
+  }
+
   /**
    * The given log entry is being truncated.
    * Fail the corresponding client request, if there is any.
@@ -1736,7 +2107,13 @@ class RaftServerImpl implements RaftServer.Division,
    * @param logEntry the log entry being truncated
    */
   void notifyTruncatedLogEntry(LogEntryProto logEntry) {
-    if (logEntry.hasStateMachineLogEntry()) {
+    if (LogProtoUtils.isBatch(logEntry)) {
+      try {
+        LogProtoUtils.splitBatch(logEntry).forEach(this::notifyTruncatedLogEntry);
+      } catch (RaftLogIOException e) {
+        LOG.warn("{}: Failed to split the truncated batch {}", getMemberId(), logEntry, e);
+      }
+    } else if (logEntry.hasStateMachineLogEntry()) {
       final ClientInvocationId invocationId = ClientInvocationId.valueOf(logEntry.getStateMachineLogEntry());
       final CacheEntry cacheEntry = getRetryCache().getIfPresent(invocationId);
       if (cacheEntry != null) {
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.proto.RaftProtos.AppendEntriesReplyProto;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.protocol.exceptions.ReadException;
+import org.apache.ratis.server.leader.LogAppender;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.TimeDuration;
+import org.apache.ratis.util.TimeoutScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * For the leader to confirm its leadership before serving a read-only request.
+ * See the Raft thesis section 6.4: the leader records its commit index as the read index,
+ * sends a round of heartbeats and then waits for the acknowledgements from a majority.
+ */
+class ReadIndexHeartbeats {
+  static final Logger LOG = LoggerFactory.getLogger(ReadIndexHeartbeats.class);
+
+  /** The acknowledgement from a follower for a particular round of heartbeats. */
+  static class HeartbeatAck {
+    private final LogAppender appender;
+    /** Only the replies of the requests having a call id >= minCallId are valid. */
+    private final long minCallId;
+    private volatile boolean acknowledged = false;
+
+    HeartbeatAck(LogAppender appender) {
+      this.appender = appender;
+      this.minCallId = appender.getCallId();
+    }
+
+    boolean isAcknowledged() {
+      return acknowledged;
+    }
+
+    /** @return true iff the acknowledged state is changed from false to true. */
+    synchronized boolean receive(AppendEntriesReplyProto reply) {
+      if (acknowledged || !reply.getServerReply().getSuccess()
+          || reply.getServerReply().getCallId() < minCallId) {
+        return false;
+      }
+      acknowledged = true;
+      return true;
+    }
+
+    @Override
+    public String toString() {
+      return appender.getFollowerId() + (acknowledged? ":ack": ":minCallId=" + minCallId);
+    }
+  }
+
+  /** A round of heartbeats for a particular read index. */
+  class AppendEntriesListener {
+    private final long readIndex;
+    private final CompletableFuture<Long> future = new CompletableFuture<>();
+    private final Map<RaftPeerId, HeartbeatAck> acks = new ConcurrentHashMap<>();
+
+    AppendEntriesListener(long readIndex, Iterable<LogAppender> appenders) {
+      this.readIndex = readIndex;
+      for (LogAppender a : appenders) {
+        acks.put(a.getFollowerId(), new HeartbeatAck(a));
+        a.triggerHeartbeat();
+      }
+    }
+
+    long getReadIndex() {
+      return readIndex;
+    }
+
+    CompletableFuture<Long> getFuture() {
+      return future;
+    }
+
+    /** @return true iff this listener is completed. */
+    boolean receive(LogAppender appender, AppendEntriesReplyProto reply,
+        Predicate<List<RaftPeerId>> hasMajority) {
+      if (future.isDone()) {
+        return true;
+      }
+      final HeartbeatAck ack = acks.computeIfAbsent(appender.getFollowerId(), key -> new HeartbeatAck(appender));
+      if (ack.receive(reply)) {
+        return checkMajority(hasMajority);
+      }
+      return future.isDone();
+    }
+
+    boolean checkMajority(Predicate<List<RaftPeerId>> hasMajority) {
+      final List<RaftPeerId> acknowledged = acks.entrySet().stream()
+          .filter(e -> e.getValue().isAcknowledged())
+          .map(Map.Entry::getKey)
+          .collect(Collectors.toList());
+      if (hasMajority.test(acknowledged)) {
+        future.complete(readIndex);
+      }
+      return future.isDone();
+    }
+
+    @Override
+    public String toString() {
+      return "readIndex=" + readIndex + ", acks=" + acks.values();
+    }
+  }
+
+  private final String name;
+  private final TimeDuration timeout;
+  private final TimeoutScheduler scheduler = TimeoutScheduler.getInstance();
+  /** Listeners sorted by the read index; the listeners with the same read index share the same round. */
+  private final NavigableMap<Long, AppendEntriesListener> listeners = new TreeMap<>();
+
+  ReadIndexHeartbeats(Object name, TimeDuration timeout) {
+    this.name = name + "-" + JavaUtils.getClassSimpleName(getClass());
+    this.timeout = timeout;
+  }
+
+  /**
+   * Add a listener for the given read index and then trigger a round of heartbeats if necessary.
+   *
+   * @return a future of the read index, which will be completed
+   *         once the heartbeats are acknowledged by a majority.
+   */
+  CompletableFuture<Long> addAppendEntriesListener(long readIndex, Iterable<LogAppender> appenders,
+      Predicate<List<RaftPeerId>> hasMajority) {
+    final AppendEntriesListener listener;
+    synchronized (this) {
+      final AppendEntriesListener existing = listeners.get(readIndex);
+      if (existing != null) {
+        return existing.getFuture();
+      }
+      listener = new AppendEntriesListener(readIndex, appenders);
+      listeners.put(readIndex, listener);
+    }
+
+    if (listener.checkMajority(hasMajority)) {
+      // e.g. there is no other voting member in the group
+      remove(listener);
+    } else {
+      scheduler.onTimeout(timeout, () -> handleTimeout(listener),
+          LOG, () -> name + ": Failed to timeout " + listener);
+    }
+    return listener.getFuture();
+  }
+
+  private void handleTimeout(AppendEntriesListener listener) {
+    if (remove(listener)) {
+      listener.getFuture().completeExceptionally(new ReadException(
+          name + ": Failed to obtain read index " + listener.getReadIndex() + " in " + timeout
+              + ": heartbeats are not acknowledged by a majority, " + listener));
+    }
+  }
+
+  private synchronized boolean remove(AppendEntriesListener listener) {
+    return listeners.remove(listener.getReadIndex(), listener);
+  }
+
+  void onAppendEntriesReply(LogAppender appender, AppendEntriesReplyProto reply,
+      Predicate<List<RaftPeerId>> hasMajority) {
+    final List<AppendEntriesListener> completed = new ArrayList<>();
+    synchronized (this) {
+      // Iterate in descending order: once a listener is completed,
+      // all the listeners with a smaller read index are also completed
+      // since their heartbeats were triggered earlier.
+      for (AppendEntriesListener listener : listeners.descendingMap().values()) {
+        if (listener.receive(appender, reply, hasMajority)) {
+          completed.add(listener);
+          listeners.headMap(listener.getReadIndex(), false).values().forEach(completed::add);
+          break;
+        }
+      }
+      completed.forEach(l -> listeners.remove(l.getReadIndex()));
+    }
+    completed.forEach(l -> l.getFuture().complete(l.getReadIndex()));
+  }
+
+  synchronized void failListeners(Exception e) {
+    listeners.values().forEach(l -> l.getFuture().completeExceptionally(e));
+    listeners.clear();
+  }
+}
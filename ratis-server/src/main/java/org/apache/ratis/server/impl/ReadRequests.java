@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.protocol.exceptions.ReadException;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.TimeDuration;
+import org.apache.ratis.util.TimeoutScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/** For supporting linearizable read-only requests: wait until the state machine has applied the read index. */
+class ReadRequests {
+  public static final Logger LOG = LoggerFactory.getLogger(ReadRequests.class);
+
+  private final String name;
+  private final TimeDuration readTimeout;
+  private final TimeoutScheduler scheduler = TimeoutScheduler.getInstance();
+
+  /** The pending read requests sorted by the read index. */
+  private final NavigableMap<Long, CompletableFuture<Long>> sorted = new TreeMap<>();
+  /** The last applied index; it is only updated increasingly. */
+  private volatile long appliedIndex;
+
+  ReadRequests(Object name, long appliedIndex, RaftProperties properties) {
+    this.name = name + "-" + JavaUtils.getClassSimpleName(getClass());
+    this.appliedIndex = appliedIndex;
+    this.readTimeout = RaftServerConfigKeys.Read.timeout(properties);
+  }
+
+  /**
+   * @return a future, which will be completed with the given read index
+   *         once the state machine has applied the log up to the read index.
+   */
+  CompletableFuture<Long> waitToAdvance(long readIndex) {
+    if (readIndex <= appliedIndex) { // compare without synchronization
+      return CompletableFuture.completedFuture(readIndex);
+    }
+
+    final CompletableFuture<Long> returned;
+    synchronized (this) {
+      if (readIndex <= appliedIndex) { // compare again synchronized
+        return CompletableFuture.completedFuture(readIndex);
+      }
+      final CompletableFuture<Long> previous = sorted.putIfAbsent(readIndex, new CompletableFuture<>());
+      if (previous != null) {
+        return previous;
+      }
+      returned = sorted.get(readIndex);
+    }
+
+    scheduler.onTimeout(readTimeout, () -> handleTimeout(readIndex),
+        LOG, () -> name + ": Failed to timeout read index " + readIndex);
+    return returned;
+  }
+
+  private void handleTimeout(long readIndex) {
+    final CompletableFuture<Long> removed;
+    synchronized (this) {
+      removed = sorted.remove(readIndex);
+    }
+    if (removed != null) {
+      removed.completeExceptionally(new ReadException(name + ": Failed to wait for the read index "
+          + readIndex + " to be applied in " + readTimeout + ", appliedIndex=" + appliedIndex));
+    }
+  }
+
+  /** Update the applied index and complete the pending requests having a read index <= the given index. */
+  void complete(long newAppliedIndex) {
+    final NavigableMap<Long, CompletableFuture<Long>> completed;
+    synchronized (this) {
+      if (newAppliedIndex <= appliedIndex) { // the index may be notified out of order
+        return;
+      }
+      appliedIndex = newAppliedIndex;
+      final NavigableMap<Long, CompletableFuture<Long>> head = sorted.headMap(newAppliedIndex, true);
+      if (head.isEmpty()) {
+        return;
+      }
+      completed = new TreeMap<>(head);
+      head.clear();
+    }
+    completed.forEach((readIndex, future) -> future.complete(readIndex));
+  }
+}
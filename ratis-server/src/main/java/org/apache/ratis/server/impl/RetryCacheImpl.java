@@ -31,10 +31,14 @@ import org.apache.ratis.util.Timestamp;
 
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 
 class RetryCacheImpl implements RetryCache {
+  /** The number of the cache segments, each of which is locked separately for updates. */
+  private static final int CONCURRENCY_LEVEL = Math.max(4, Runtime.getRuntime().availableProcessors());
+
   static class CacheEntry implements Entry {
     private final ClientInvocationId key;
     private final CompletableFuture<RaftClientReply> replyFuture = new CompletableFuture<>();
@@ -174,6 +178,7 @@ class RetryCacheImpl implements RetryCache {
    */
   RetryCacheImpl(TimeDuration cacheExpiryTime, TimeDuration statisticsExpiryTime) {
     this.cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(CONCURRENCY_LEVEL)
         .recordStats()
         .expireAfterWrite(cacheExpiryTime.getDuration(), cacheExpiryTime.getUnit())
         .build();
@@ -213,19 +218,19 @@ class RetryCacheImpl implements RetryCache {
     }
 
     // the previous attempt failed, replace it with a new one.
-    synchronized (this) {
-      // need to recheck, since there may be other retry attempts being
-      // processed at the same time. The recheck+replacement should be protected
-      // by lock.
-      final CacheEntry currentEntry = cache.getIfPresent(key);
-      if (currentEntry == cacheEntry || currentEntry == null) {
-        // if the failed entry has not got replaced by another retry, or the
-        // failed entry got invalidated, we add a new cache entry
-        return new CacheQueryResult(refreshEntry(newEntry), false);
-      } else {
-        return new CacheQueryResult(currentEntry, true);
-      }
+    // There may be other retry attempts being processed at the same time,
+    // so the replacement must be atomic.
+    final ConcurrentMap<ClientInvocationId, CacheEntry> map = cache.asMap();
+    if (map.replace(key, cacheEntry, newEntry)) {
+      // the failed entry has not got replaced by another retry
+      return new CacheQueryResult(newEntry, false);
+    }
+    final CacheEntry currentEntry = map.putIfAbsent(key, newEntry);
+    if (currentEntry == null) {
+      // the failed entry got invalidated
+      return new CacheQueryResult(newEntry, false);
     }
+    return new CacheQueryResult(currentEntry, true);
   }
 
   @Override
@@ -239,7 +244,7 @@ class RetryCacheImpl implements RetryCache {
   }
 
   @Override
-  public synchronized void close() {
+  public void close() {
     if (cache != null) {
       cache.invalidateAll();
       statistics.set(null);
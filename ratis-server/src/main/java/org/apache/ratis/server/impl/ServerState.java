@@ -34,6 +34,7 @@ import org.apache.ratis.proto.RaftProtos.LogEntryProto;
 import org.apache.ratis.statemachine.SnapshotInfo;
 import org.apache.ratis.statemachine.StateMachine;
 import org.apache.ratis.statemachine.TransactionContext;
+import org.apache.ratis.util.LifeCycle;
 import org.apache.ratis.util.TimeDuration;
 import org.apache.ratis.util.Timestamp;
 
@@ -429,9 +430,15 @@ class ServerState implements Closeable {
   void installSnapshot(InstallSnapshotRequestProto request) throws IOException {
     // TODO: verify that we need to install the snapshot
     StateMachine sm = server.getStateMachine();
-    sm.pause(); // pause the SM to prepare for install snapshot
+    // pause the SM to prepare for install snapshot; it is already paused for the subsequent chunks
+    if (sm.getLifeCycleState() != LifeCycle.State.PAUSED) {
+      sm.pause();
+    }
     snapshotManager.installSnapshot(sm, request);
-    updateInstalledSnapshotIndex(TermIndex.valueOf(request.getSnapshotChunk().getTermIndex()));
+    // update the log only after the last chunk; otherwise, the subsequent chunks would be rejected
+    if (request.getSnapshotChunk().getDone()) {
+      updateInstalledSnapshotIndex(TermIndex.valueOf(request.getSnapshotChunk().getTermIndex()));
+    }
   }
 
   void updateInstalledSnapshotIndex(TermIndex lastTermIndexInSnapshot) {
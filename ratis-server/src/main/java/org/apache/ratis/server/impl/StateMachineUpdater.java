@@ -31,6 +31,7 @@ import org.apache.ratis.server.raftlog.RaftLogIndex;
 import org.apache.ratis.statemachine.SnapshotInfo;
 import org.apache.ratis.statemachine.StateMachine;
 import org.apache.ratis.statemachine.SnapshotRetentionPolicy;
+import org.apache.ratis.statemachine.TransactionContext;
 import org.apache.ratis.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +42,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -55,7 +57,8 @@ import com.codahale.metrics.Timer;
  *
  * If the auto log compaction is enabled, the state machine updater thread will
  * trigger a snapshot of the state machine by calling
- * {@link StateMachine#takeSnapshot} when the log size exceeds a limit.
+ * {@link StateMachine#takeSnapshotAsync} when the log size exceeds a limit.
+ * The transactions continue to be applied while the snapshot is being persisted.
  */
 class StateMachineUpdater implements Runnable {
   static final Logger LOG = LoggerFactory.getLogger(StateMachineUpdater.class);
@@ -74,13 +77,32 @@ class StateMachineUpdater implements Runnable {
 
   private final Long autoSnapshotThreshold;
   private final boolean purgeUptoSnapshotIndex;
+  /** The max number of entries in an apply batch; null if batch apply is disabled. */
+  private final Integer applyBatchElementLimit;
+  private final long applyBatchByteLimit;
+  /** For applying the transactions in parallel lanes; null if the lanes are disabled. */
+  private final ApplyLanes applyLanes;
+  /** In the lanes mode, the applied index is advanced in the log order through this chain. */
+  private CompletableFuture<?> appliedNotification = CompletableFuture.completedFuture(null);
 
   private final Thread updater;
+  /**
+   * The index of the last entry submitted to the state machine.
+   * In the lanes mode, it can be ahead of {@link #appliedIndex}.
+   */
+  private final RaftLogIndex submittedIndex;
   private final RaftLogIndex appliedIndex;
   private final RaftLogIndex snapshotIndex;
   private final AtomicReference<Long> stopIndex = new AtomicReference<>();
   private volatile State state = State.RUNNING;
   private SnapshotRetentionPolicy snapshotRetentionPolicy;
+  /**
+   * The snapshot in progress, if there is any, or the snapshot completed but not yet processed.
+   * It is only accessed by the updater thread.
+   */
+  private CompletableFuture<Long> snapshotFuture;
+  /** The applied index when {@link #snapshotFuture} was started. */
+  private long snapshotAppliedIndex;
   private StateMachineMetrics stateMachineMetrics = null;
 
   StateMachineUpdater(StateMachine stateMachine, RaftServerImpl server,
@@ -93,6 +115,7 @@ class StateMachineUpdater implements Runnable {
     this.server = server;
     this.raftLog = serverState.getLog();
 
+    this.submittedIndex = new RaftLogIndex("submittedIndex", lastAppliedIndex);
     this.appliedIndex = new RaftLogIndex("appliedIndex", lastAppliedIndex);
     this.snapshotIndex = new RaftLogIndex("snapshotIndex", lastAppliedIndex);
 
@@ -106,8 +129,14 @@ class StateMachineUpdater implements Runnable {
       }
     };
     this.purgeUptoSnapshotIndex = RaftServerConfigKeys.Log.purgeUptoSnapshotIndex(properties);
-
-    updater = new Daemon(this);
+    final boolean useVirtualThread = RaftServerConfigKeys.Threads.virtualEnabled(properties);
+    final int numLanes = RaftServerConfigKeys.Apply.lanes(properties);
+    this.applyLanes = numLanes > 1? new ApplyLanes(name, numLanes, useVirtualThread): null;
+    final boolean applyBatch = applyLanes == null && RaftServerConfigKeys.Apply.batchEnabled(properties);
+    this.applyBatchElementLimit = applyBatch? RaftServerConfigKeys.Apply.batchElementLimit(properties): null;
+    this.applyBatchByteLimit = RaftServerConfigKeys.Apply.batchByteLimit(properties).getSize();
+
+    updater = Daemon.newThread(this, name, useVirtualThread);
   }
 
   void start() {
@@ -127,6 +156,9 @@ class StateMachineUpdater implements Runnable {
   private void stop() {
     state = State.STOP;
     try {
+      if (applyLanes != null) {
+        applyLanes.close();
+      }
       stateMachine.close();
       stateMachineMetrics.unregister();
     } catch(Throwable t) {
@@ -171,6 +203,7 @@ class StateMachineUpdater implements Runnable {
     for(; state != State.STOP; ) {
       try {
         waitForCommit();
+        checkSnapshotTaken();
 
         if (state == State.RELOAD) {
           reload();
@@ -180,7 +213,9 @@ class StateMachineUpdater implements Runnable {
         checkAndTakeSnapshot(futures);
 
         if (shouldStop()) {
+          appliedNotification.join();
           checkAndTakeSnapshot(futures);
+          waitForSnapshot();
           stop();
         }
       } catch (Throwable t) {
@@ -199,14 +234,16 @@ class StateMachineUpdater implements Runnable {
     // When a peer starts, the committed is initialized to 0.
     // It will be updated only after the leader contacts other peers.
     // Thus it is possible to have applied > committed initially.
-    final long applied = getLastAppliedIndex();
-    for(; applied >= raftLog.getLastCommittedIndex() && state == State.RUNNING && !shouldStop(); ) {
+    final long submitted = submittedIndex.get();
+    for(; submitted >= raftLog.getLastCommittedIndex() && state == State.RUNNING && !shouldStop()
+        && !isSnapshotDone(); ) {
       wait();
     }
   }
 
   private void reload() throws IOException {
     Preconditions.assertTrue(stateMachine.getLifeCycleState() == LifeCycle.State.PAUSED);
+    appliedNotification.join();
 
     stateMachine.reinitialize();
 
@@ -214,16 +251,18 @@ class StateMachineUpdater implements Runnable {
     Objects.requireNonNull(snapshot, "snapshot == null");
     final long i = snapshot.getIndex();
     snapshotIndex.setUnconditionally(i, infoIndexChange);
+    submittedIndex.setUnconditionally(i, infoIndexChange);
     appliedIndex.setUnconditionally(i, infoIndexChange);
+    notifyAppliedIndex(i);
     state = State.RUNNING;
   }
 
   private MemoizedSupplier<List<CompletableFuture<Message>>> applyLog() throws RaftLogIOException {
     final MemoizedSupplier<List<CompletableFuture<Message>>> futures = MemoizedSupplier.valueOf(ArrayList::new);
     final long committed = raftLog.getLastCommittedIndex();
-    for(long applied; (applied = getLastAppliedIndex()) < committed && state == State.RUNNING && !shouldStop(); ) {
-      final long nextIndex = applied + 1;
-      final LogEntryProto next = raftLog.get(nextIndex);
+    for(long submitted; (submitted = submittedIndex.get()) < committed && state == State.RUNNING && !shouldStop(); ) {
+      final long nextIndex = submitted + 1;
+      final LogEntryProto next = getLogEntry(nextIndex);
       if (next != null) {
         if (LOG.isTraceEnabled()) {
           LOG.trace("{}: applying nextIndex={}, nextLog={}", this, nextIndex, LogProtoUtils.toLogEntryString(next));
@@ -231,12 +270,13 @@ class StateMachineUpdater implements Runnable {
           LOG.debug("{}: applying nextIndex={}", this, nextIndex);
         }
 
-        final CompletableFuture<Message> f = server.applyLogToStateMachine(next);
-        if (f != null) {
-          futures.get().add(f);
+        if (applyLanes != null) {
+          applyInLane(next, futures);
+        } else if (applyBatchElementLimit != null && next.hasStateMachineLogEntry() && !LogProtoUtils.isBatch(next)) {
+          applyBatch(next, committed, futures);
+        } else {
+          onApplied(nextIndex, server.applyLogToStateMachine(next), futures);
         }
-        final long incremented = appliedIndex.incrementAndGet(debugIndexChange);
-        Preconditions.assertTrue(incremented == nextIndex);
       } else {
         LOG.debug("{}: logEntry {} is null. There may be snapshot to load. state:{}",
             this, nextIndex, state);
@@ -246,26 +286,183 @@ class StateMachineUpdater implements Runnable {
     return futures;
   }
 
+  /** Apply a contiguous run of state machine log entries starting from the given entry. */
+  private void applyBatch(LogEntryProto first, long committed,
+      MemoizedSupplier<List<CompletableFuture<Message>>> futures) throws RaftLogIOException {
+    final long last = Optional.ofNullable(stopIndex.get()).map(i -> Math.min(i, committed)).orElse(committed);
+    final List<LogEntryProto> entries = new ArrayList<>();
+    entries.add(first);
+    long bytes = first.getSerializedSize();
+    for(long i = first.getIndex() + 1;
+        i <= last && entries.size() < applyBatchElementLimit && bytes < applyBatchByteLimit; i++) {
+      final LogEntryProto next = getLogEntry(i);
+      if (next == null || !next.hasStateMachineLogEntry() || LogProtoUtils.isBatch(next)) {
+        break;
+      }
+      entries.add(next);
+      bytes += next.getSerializedSize();
+    }
+    LOG.debug("{}: applying a batch of {} entries ({} bytes) from index {}",
+        this, entries.size(), bytes, first.getIndex());
+
+    final List<CompletableFuture<Message>> applied = server.applyLogsToStateMachine(entries);
+    for(int i = 0; i < entries.size(); i++) {
+      onApplied(entries.get(i).getIndex(), applied.get(i), futures);
+    }
+  }
+
+  /** Apply the given entry in the lane selected by its partition key. */
+  private void applyInLane(LogEntryProto next, MemoizedSupplier<List<CompletableFuture<Message>>> futures)
+      throws RaftLogIOException {
+    final Object key = next.hasStateMachineLogEntry() && !LogProtoUtils.isBatch(next)?
+        stateMachine.getApplyPartitionKey(next.getStateMachineLogEntry()): null;
+    final CompletableFuture<Message> f;
+    if (LogProtoUtils.isBatch(next)) {
+      // a batch entry may contain requests with different keys; apply it as a barrier
+      f = server.applyBatchedLogToStateMachine(next, this::applyBatchedTransactionsInLanes);
+    } else if (key != null) {
+      f = server.applyLogToStateMachine(next,
+          trx -> applyLanes.submit(key, () -> stateMachine.applyTransaction(trx)));
+    } else {
+      // the entry is applied after all the previous entries and before all the subsequent entries
+      f = server.applyLogToStateMachine(next,
+          trx -> applyLanes.submitBarrier(() -> stateMachine.applyTransaction(trx)));
+    }
+    onApplied(next.getIndex(), f, futures);
+  }
+
+  /**
+   * Apply the given batched transactions as a barrier,
+   * i.e. after all the previous entries and before all the subsequent entries.
+   */
+  private List<CompletableFuture<Message>> applyBatchedTransactionsInLanes(List<TransactionContext> trxs) {
+    final List<CompletableFuture<Message>> replies = new ArrayList<>(trxs.size());
+    for (int i = 0; i < trxs.size(); i++) {
+      replies.add(new CompletableFuture<>());
+    }
+    applyLanes.submitBarrier(() -> {
+      final List<CompletableFuture<Message>> applied = stateMachine.applyBatchedTransactions(trxs);
+      Preconditions.assertSame(trxs.size(), applied.size(), "applied.size()");
+      for (int i = 0; i < applied.size(); i++) {
+        final CompletableFuture<Message> reply = replies.get(i);
+        applied.get(i).whenComplete((m, e) -> {
+          if (e != null) {
+            reply.completeExceptionally(JavaUtils.unwrapCompletionException(e));
+          } else {
+            reply.complete(m);
+          }
+        });
+      }
+      return CompletableFuture.allOf(applied.toArray(new CompletableFuture<?>[0])).thenApply(v -> null);
+    }).exceptionally(e -> {
+      // the batch failed before the state machine returned the futures
+      final Throwable cause = JavaUtils.unwrapCompletionException(e);
+      replies.forEach(r -> r.completeExceptionally(cause));
+      return null;
+    });
+    return replies;
+  }
+
+  private void onApplied(long index, CompletableFuture<Message> f,
+      MemoizedSupplier<List<CompletableFuture<Message>>> futures) {
+    final long incremented = submittedIndex.incrementAndGet(debugIndexChange);
+    Preconditions.assertTrue(incremented == index);
+    if (applyLanes != null) {
+      // the lanes may complete out of order; advance only after all the previous entries are applied
+      final CompletableFuture<?> applied;
+      if (f != null) {
+        futures.get().add(f);
+        applied = f.handle((m, e) -> null);
+      } else {
+        applied = CompletableFuture.completedFuture(null);
+      }
+      appliedNotification = appliedNotification.thenCombine(applied, (previous, current) -> {
+        appliedIndex.updateToMax(incremented, debugIndexChange);
+        notifyAppliedIndex(incremented);
+        return null;
+      });
+      return;
+    }
+
+    appliedIndex.setUnconditionally(incremented, debugIndexChange);
+    if (f != null) {
+      futures.get().add(f);
+      // notify even if the transaction has failed; otherwise, the reads waiting for the index will time out
+      f.whenComplete((m, e) -> notifyAppliedIndex(incremented));
+    } else {
+      notifyAppliedIndex(incremented);
+    }
+  }
+
   private void checkAndTakeSnapshot(MemoizedSupplier<List<CompletableFuture<Message>>> futures)
       throws ExecutionException, InterruptedException {
+    if (shouldStop()) {
+      // wait for the snapshot in progress so that a final snapshot can be taken
+      waitForSnapshot();
+    }
     // check if need to trigger a snapshot
     if (shouldTakeSnapshot()) {
       if (futures.isInitialized()) {
         JavaUtils.allOf(futures.get()).get();
       }
+      // the applied index has caught up with the submitted index
+      appliedNotification.join();
 
       takeSnapshot();
     }
   }
 
   private void takeSnapshot() {
-    final long i;
+    final Timer.Context takeSnapshotTimerContext = stateMachineMetrics.getTakeSnapshotTimer().time();
+    final long lastAppliedIndex = getLastAppliedIndex();
+    final CompletableFuture<Long> future;
     try {
-      Timer.Context takeSnapshotTimerContext = stateMachineMetrics.getTakeSnapshotTimer().time();
-      i = stateMachine.takeSnapshot();
+      future = stateMachine.takeSnapshotAsync();
+    } catch (IOException e) {
       takeSnapshotTimerContext.stop();
+      LOG.error(name + ": Failed to take snapshot", e);
+      return;
+    }
+    snapshotFuture = future;
+    snapshotAppliedIndex = lastAppliedIndex;
+    // the snapshot is processed by the updater thread but not the thread completing the future
+    future.whenComplete((i, e) -> {
+      takeSnapshotTimerContext.stop();
+      notifyUpdater();
+    });
+  }
 
-      final long lastAppliedIndex = getLastAppliedIndex();
+  private boolean isSnapshotDone() {
+    return snapshotFuture != null && snapshotFuture.isDone();
+  }
+
+  /** Wait for the snapshot in progress, if there is any, and then process it. */
+  private void waitForSnapshot() {
+    if (snapshotFuture != null) {
+      snapshotFuture.handle((i, e) -> null).join();
+      checkSnapshotTaken();
+    }
+  }
+
+  /** Process the snapshot if it has completed. */
+  private void checkSnapshotTaken() {
+    if (!isSnapshotDone()) {
+      return;
+    }
+    final CompletableFuture<Long> future = snapshotFuture;
+    snapshotFuture = null;
+    final long i;
+    try {
+      i = future.join();
+    } catch (CompletionException e) {
+      LOG.error(name + ": Failed to take snapshot", JavaUtils.unwrapCompletionException(e));
+      return;
+    }
+    onSnapshotTaken(i, snapshotAppliedIndex);
+  }
+
+  private void onSnapshotTaken(long i, long lastAppliedIndex) {
+    try {
       if (i > lastAppliedIndex) {
         throw new StateMachineException(
             "Bug in StateMachine: snapshot index = " + i + " > appliedIndex = " + lastAppliedIndex
@@ -279,7 +476,7 @@ class StateMachineUpdater implements Runnable {
 
     if (i >= 0) {
       LOG.info("{}: Took a snapshot at index {}", name, i);
-      snapshotIndex.updateIncreasingly(i, infoIndexChange);
+      snapshotIndex.updateToMax(i, infoIndexChange);
 
       final long purgeIndex;
       if (purgeUptoSnapshotIndex) {
@@ -295,17 +492,27 @@ class StateMachineUpdater implements Runnable {
     }
   }
 
+  /** @return the log entry at the given index with the log data decompressed, or null if it is not found. */
+  private LogEntryProto getLogEntry(long index) throws RaftLogIOException {
+    final LogEntryProto entry = raftLog.get(index);
+    return entry == null? null: LogProtoUtils.decompressLogData(entry);
+  }
+
+  private void notifyAppliedIndex(long index) {
+    server.getReadRequests().complete(index);
+  }
+
   private boolean shouldStop() {
-    return Optional.ofNullable(stopIndex.get()).filter(i -> i <= getLastAppliedIndex()).isPresent();
+    return Optional.ofNullable(stopIndex.get()).filter(i -> i <= submittedIndex.get()).isPresent();
   }
 
   private boolean shouldTakeSnapshot() {
-    if (autoSnapshotThreshold == null) {
+    if (autoSnapshotThreshold == null || snapshotFuture != null) {
       return false;
     } else if (shouldStop()) {
-      return getLastAppliedIndex() - snapshotIndex.get() > 0;
+      return submittedIndex.get() - snapshotIndex.get() > 0;
     }
-    return state == State.RUNNING && getLastAppliedIndex() - snapshotIndex.get() >= autoSnapshotThreshold;
+    return state == State.RUNNING && submittedIndex.get() - snapshotIndex.get() >= autoSnapshotThreshold;
   }
 
   private long getLastAppliedIndex() {
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.RaftClientRequestProto.TypeCase;
+import org.apache.ratis.proto.RaftProtos.StateMachineLogEntryProto;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftClientRequest;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.impl.RetryCacheImpl.CacheEntry;
+import org.apache.ratis.statemachine.TransactionContext;
+import org.apache.ratis.util.Daemon;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.TimeDuration;
+import org.apache.ratis.util.TimeoutScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Coalesce the small write requests into batches so that the leader appends
+ * each batch as a single log entry; see {@link RaftServerConfigKeys.Write#batchEnabled(RaftProperties)}.
+ *
+ * A batch is appended once it reaches the element limit or once its first request has waited for the wait time.
+ * The batches are appended in the order of the requests submitted.
+ * The current batch must be {@link #flush()}ed before appending a request which cannot be batched,
+ * so that the request is not appended ahead of the requests submitted earlier.
+ */
+class WriteBatcher {
+  public static final Logger LOG = LoggerFactory.getLogger(WriteBatcher.class);
+
+  /** A write request waiting in a batch. */
+  static class Element {
+    private final RaftClientRequest request;
+    private final TransactionContext context;
+    private final CacheEntry cacheEntry;
+    private final CompletableFuture<RaftClientReply> future = new CompletableFuture<>();
+
+    Element(RaftClientRequest request, TransactionContext context, CacheEntry cacheEntry) {
+      this.request = request;
+      this.context = context;
+      this.cacheEntry = cacheEntry;
+    }
+
+    RaftClientRequest getRequest() {
+      return request;
+    }
+
+    TransactionContext getContext() {
+      return context;
+    }
+
+    CacheEntry getCacheEntry() {
+      return cacheEntry;
+    }
+
+    /** Complete this element with the given reply future. */
+    void complete(CompletableFuture<RaftClientReply> reply) {
+      reply.whenComplete((r, e) -> {
+        if (e != null) {
+          future.completeExceptionally(JavaUtils.unwrapCompletionException(e));
+        } else {
+          future.complete(r);
+        }
+      });
+    }
+
+    void fail(Throwable e) {
+      cacheEntry.failWithException(e);
+      future.completeExceptionally(e);
+    }
+
+    @Override
+    public String toString() {
+      return String.valueOf(request);
+    }
+  }
+
+  private final String name;
+  private final RaftServerImpl server;
+  private final int elementLimit;
+  private final long messageSizeMax;
+  private final TimeDuration waitTime;
+  private final TimeoutScheduler scheduler = TimeoutScheduler.getInstance();
+  /** Append the timed out batches so that the scheduler thread is not blocked by the appends. */
+  private final ExecutorService appender;
+
+  /** The current batch, always synchronized. */
+  private List<Element> batch = new ArrayList<>();
+  /** The id of the current batch for identifying the expired timeouts, always synchronized. */
+  private long batchId;
+
+  WriteBatcher(RaftServerImpl server, RaftProperties properties) {
+    this.name = server.getMemberId() + "-" + JavaUtils.getClassSimpleName(getClass());
+    this.server = server;
+    this.elementLimit = RaftServerConfigKeys.Write.batchElementLimit(properties);
+    this.messageSizeMax = RaftServerConfigKeys.Write.batchMessageSizeMax(properties).getSize();
+    this.waitTime = RaftServerConfigKeys.Write.batchWaitTime(properties);
+    final boolean useVirtualThread = RaftServerConfigKeys.Threads.virtualEnabled(properties);
+    this.appender = Executors.newSingleThreadExecutor(r -> Daemon.newThread(r, name, useVirtualThread));
+  }
+
+  /** @return can the given request be coalesced with the other requests? */
+  boolean isBatchable(RaftClientRequest request, TransactionContext context) {
+    if (!request.is(TypeCase.WRITE)) {
+      return false;
+    }
+    final StateMachineLogEntryProto entry = context.getStateMachineLogEntry();
+    // the state machine data is written separately for each log entry; do not batch it.
+    return entry != null && !entry.hasStateMachineEntry()
+        && Message.getSize(request.getMessage()) <= messageSizeMax;
+  }
+
+  CompletableFuture<RaftClientReply> submit(RaftClientRequest request, TransactionContext context,
+      CacheEntry cacheEntry) {
+    final Element element = new Element(request, context, cacheEntry);
+    final long scheduleId;
+    synchronized (this) {
+      batch.add(element);
+      if (batch.size() >= elementLimit) {
+        append(poll());
+        return element.future;
+      }
+      scheduleId = batch.size() == 1? batchId: -1;
+    }
+
+    if (scheduleId >= 0) {
+      scheduler.onTimeout(waitTime, () -> appender.execute(() -> onTimeout(scheduleId)),
+          LOG, () -> name + ": Failed to append batch " + scheduleId);
+    }
+    return element.future;
+  }
+
+  private synchronized void onTimeout(long id) {
+    if (id == batchId && !batch.isEmpty()) {
+      append(poll());
+    }
+  }
+
+  private List<Element> poll() {
+    final List<Element> polled = batch;
+    batch = new ArrayList<>();
+    batchId++;
+    return polled;
+  }
+
+  /** Append the given batch, always synchronized for preserving the request order. */
+  private void append(List<Element> elements) {
+    LOG.debug("{}: append a batch of {} requests", name, elements.size());
+    try {
+      server.appendTransactions(elements);
+    } catch (IOException e) {
+      elements.forEach(element -> element.fail(e));
+    }
+  }
+
+  /** Append the requests remaining in the current batch. */
+  synchronized void flush() {
+    if (!batch.isEmpty()) {
+      append(poll());
+    }
+  }
+
+  /** Flush the current batch and then shutdown the appender. */
+  void close() {
+    flush();
+    appender.shutdown();
+  }
+}
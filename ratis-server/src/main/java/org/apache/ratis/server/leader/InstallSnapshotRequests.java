@@ -39,6 +39,10 @@ import java.util.NoSuchElementException;
  * a snapshot has one or more files, and
  * a file is sent by one or more chunks.
  * The number of requests is equal to the sum of the numbers of chunks of each file.
+ *
+ * When a file is unchanged from the snapshot previously installed to the follower,
+ * such as the base or an earlier delta of an incremental snapshot,
+ * only a single chunk without data is sent for the file.
  */
 class InstallSnapshotRequests implements Iterable<InstallSnapshotRequestProto> {
   private final RaftServer.Division server;
@@ -46,6 +50,8 @@ class InstallSnapshotRequests implements Iterable<InstallSnapshotRequestProto> {
 
   /** The snapshot to be sent. */
   private final SnapshotInfo snapshot;
+  /** The snapshot previously installed to the follower, if there is any. */
+  private final SnapshotInfo installed;
   /** A fixed id for all the requests. */
   private final String requestId;
 
@@ -61,11 +67,12 @@ class InstallSnapshotRequests implements Iterable<InstallSnapshotRequestProto> {
   private FileChunkReader current;
 
   InstallSnapshotRequests(RaftServer.Division server, RaftPeerId followerId,
-      String requestId, SnapshotInfo snapshot, int snapshotChunkMaxSize) {
+      String requestId, SnapshotInfo snapshot, SnapshotInfo installed, int snapshotChunkMaxSize) {
     this.server = server;
     this.followerId = followerId;
     this.requestId = requestId;
     this.snapshot = snapshot;
+    this.installed = installed;
     this.snapshotChunkMaxSize = snapshotChunkMaxSize;
   }
 
@@ -91,6 +98,11 @@ class InstallSnapshotRequests implements Iterable<InstallSnapshotRequestProto> {
       throw new NoSuchElementException();
     }
     final FileInfo info = snapshot.getFiles().get(fileIndex);
+    if (current == null && isUnchanged(info)) {
+      final FileChunkProto chunk = FileChunkReader.newUnchangedFileChunk(info, server.getRaftStorage().getStorageDir());
+      fileIndex++;
+      return newInstallSnapshotRequest(chunk, fileIndex == numFiles);
+    }
     try {
       if (current == null) {
         current = new FileChunkReader(info, server.getRaftStorage().getStorageDir());
@@ -116,6 +128,16 @@ class InstallSnapshotRequests implements Iterable<InstallSnapshotRequestProto> {
     }
   }
 
+  /** @return true iff the given file is also in the installed snapshot with the same size and digest. */
+  private boolean isUnchanged(FileInfo info) {
+    if (installed == null || info.getFileDigest() == null) {
+      return false;
+    }
+    return installed.getFiles().stream().anyMatch(f -> f.getPath().equals(info.getPath())
+        && f.getFileSize() == info.getFileSize()
+        && info.getFileDigest().equals(f.getFileDigest()));
+  }
+
   private InstallSnapshotRequestProto newInstallSnapshotRequest(FileChunkProto chunk, boolean done) {
     final long totalSize = snapshot.getFiles().stream().mapToLong(FileInfo::getFileSize).reduce(Long::sum).orElseThrow(
         () -> new IllegalStateException("Failed to compute total size for snapshot " + snapshot));
@@ -36,6 +36,7 @@ import org.apache.ratis.util.SizeInBytes;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * An abstract implementation of {@link LogAppender}.
@@ -50,6 +51,7 @@ public abstract class LogAppenderBase implements LogAppender {
   private final int snapshotChunkMaxSize;
 
   private final LogAppenderDaemon daemon;
+  private final AtomicBoolean heartbeatTrigger = new AtomicBoolean();
 
   protected LogAppenderBase(RaftServer.Division server, LeaderState leaderState, FollowerInfo f) {
     this.follower = f;
@@ -91,6 +93,18 @@ public abstract class LogAppenderBase implements LogAppender {
     daemon.tryToClose();
   }
 
+  @Override
+  public void triggerHeartbeat() {
+    if (heartbeatTrigger.compareAndSet(false, true)) {
+      notifyLogAppender();
+    }
+  }
+
+  @Override
+  public long getHeartbeatRemainingTimeMs() {
+    return heartbeatTrigger.get()? 0L: LogAppender.super.getHeartbeatRemainingTimeMs();
+  }
+
   @Override
   public final FollowerInfo getFollower() {
     return follower;
@@ -130,6 +144,7 @@ public abstract class LogAppenderBase implements LogAppender {
     final long heartbeatRemainingMs = getHeartbeatRemainingTimeMs();
     if (heartbeatRemainingMs <= 0L || heartbeat) {
       // heartbeat
+      heartbeatTrigger.set(false);
       return leaderState.newAppendEntriesRequestProto(follower, Collections.emptyList(), previous, callId);
     }
 
@@ -184,6 +199,22 @@ public abstract class LogAppenderBase implements LogAppender {
 
   @Override
   public Iterable<InstallSnapshotRequestProto> newInstallSnapshotRequests(String requestId, SnapshotInfo snapshot) {
-    return new InstallSnapshotRequests(server, getFollowerId(), requestId, snapshot, snapshotChunkMaxSize);
+    final SnapshotInfo installed = leaderState.getInstalledSnapshot(follower);
+    return new InstallSnapshotRequests(server, getFollowerId(), requestId, snapshot, installed, snapshotChunkMaxSize);
+  }
+
+  /** Record the snapshot successfully installed to the follower so that its unchanged files are not sent again. */
+  protected void onSnapshotInstalled(SnapshotInfo snapshot) {
+    leaderState.onSnapshotInstalled(follower, snapshot);
+  }
+
+  /**
+   * Reset the installed snapshot after the follower has failed an installation,
+   * since it may no longer have the files to be reused.
+   * The subclasses should not call this method when the follower is unreachable,
+   * so that the record survives the retries, e.g. while the follower is restarting.
+   */
+  protected void onSnapshotInstallFailed() {
+    leaderState.removeInstalledSnapshot(follower);
   }
 }
@@ -17,6 +17,7 @@
  */
 package org.apache.ratis.server.leader;
 
+import org.apache.ratis.server.RaftServerConfigKeys;
 import org.apache.ratis.util.Daemon;
 import org.apache.ratis.util.JavaUtils;
 import org.apache.ratis.util.LifeCycle;
@@ -40,7 +41,7 @@ class LogAppenderDaemon {
 
   private final String name;
   private final LifeCycle lifeCycle;
-  private final Daemon daemon;
+  private final Thread daemon;
 
   private final LogAppender logAppender;
 
@@ -48,7 +49,9 @@ class LogAppenderDaemon {
     this.logAppender = logAppender;
     this.name = logAppender + "-" + JavaUtils.getClassSimpleName(getClass());
     this.lifeCycle = new LifeCycle(name);
-    this.daemon = new Daemon(this::run, name);
+    final boolean virtual = RaftServerConfigKeys.Threads.virtualEnabled(
+        logAppender.getServer().getRaftServer().getProperties());
+    this.daemon = Daemon.newThread(this::run, name, virtual);
   }
 
   public boolean isWorking() {
@@ -19,6 +19,7 @@ package org.apache.ratis.server.leader;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.ratis.proto.RaftProtos.AppendEntriesReplyProto;
+import org.apache.ratis.proto.RaftProtos.AppendEntriesReplyProto.AppendResult;
 import org.apache.ratis.proto.RaftProtos.AppendEntriesRequestProto;
 import org.apache.ratis.proto.RaftProtos.InstallSnapshotReplyProto;
 import org.apache.ratis.proto.RaftProtos.InstallSnapshotRequestProto;
@@ -27,9 +28,11 @@ import org.apache.ratis.server.RaftServer;
 import org.apache.ratis.server.raftlog.RaftLogIOException;
 import org.apache.ratis.server.util.ServerStringUtils;
 import org.apache.ratis.statemachine.SnapshotInfo;
+import org.apache.ratis.util.Timestamp;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.net.ConnectException;
 import java.util.UUID;
 
 /**
@@ -61,10 +64,15 @@ class LogAppenderDefault extends LogAppenderBase {
           return null;
         }
 
+        final Timestamp sendTime = Timestamp.currentTime();
         getFollower().updateLastRpcSendTime();
         final AppendEntriesReplyProto r = getServerRpc().appendEntries(request);
         getFollower().updateLastRpcResponseTime();
+        if (r.getResult() != AppendResult.NOT_LEADER) {
+          getFollower().updateLastRespondedAppendEntriesSendTime(sendTime);
+        }
 
+        getLeaderState().onAppendEntriesReply(this, r);
         getLeaderState().onFollowerCommitIndex(getFollower(), r.getFollowerCommit());
         return r;
       } catch (InterruptedIOException | RaftLogIOException e) {
@@ -93,6 +101,7 @@ class LogAppenderDefault extends LogAppenderBase {
         getFollower().updateLastRpcResponseTime();
 
         if (!reply.getServerReply().getSuccess()) {
+          onSnapshotInstallFailed();
           return reply;
         }
       }
@@ -100,12 +109,16 @@ class LogAppenderDefault extends LogAppenderBase {
       throw iioe;
     } catch (Exception ioe) {
       LOG.warn("{}: Failed to installSnapshot {}: {}", this, snapshot, ioe);
+      if (!isConnectFailure(ioe)) {
+        onSnapshotInstallFailed();
+      }
       handleException(ioe);
       return null;
     }
 
     if (reply != null) {
       getFollower().setSnapshotIndex(snapshot.getTermIndex().getIndex());
+      onSnapshotInstalled(snapshot);
       LOG.info("{}: installSnapshot {} successfully", this, snapshot);
       getServer().getRaftServerMetrics().onSnapshotInstalled();
     }
@@ -189,6 +202,15 @@ class LogAppenderDefault extends LogAppenderBase {
     }
   }
 
+  private static boolean isConnectFailure(Throwable t) {
+    for (; t != null; t = t.getCause()) {
+      if (t instanceof ConnectException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private void handleException(Exception e) {
     LOG.trace("TRACE", e);
     getServerRpc().handleException(getFollowerId(), e, false);
@@ -23,17 +23,22 @@ import org.apache.ratis.protocol.ClientInvocationId;
 import org.apache.ratis.protocol.RaftClientRequest;
 import org.apache.ratis.protocol.RaftPeer;
 import org.apache.ratis.server.RaftConfiguration;
+import org.apache.ratis.server.RaftServerConfigKeys.Log.Compression;
 import org.apache.ratis.server.impl.ServerImplUtils;
 import org.apache.ratis.server.protocol.TermIndex;
 import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.thirdparty.com.google.protobuf.InvalidProtocolBufferException;
 import org.apache.ratis.util.Preconditions;
 import org.apache.ratis.util.ProtoUtils;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 /** Log proto utilities. */
 public final class LogProtoUtils {
@@ -158,6 +163,122 @@ public final class LogProtoUtils {
         .map(StateMachineLogEntryProto::getStateMachineEntry);
   }
 
+  public static boolean isBatch(LogEntryProto entry) {
+    return entry.hasStateMachineLogEntry()
+        && entry.getStateMachineLogEntry().getType() == StateMachineLogEntryProto.Type.BATCH;
+  }
+
+  /** @return a log entry containing the given state machine log entries coalesced as a batch. */
+  public static LogEntryProto toBatchLogEntryProto(List<StateMachineLogEntryProto> entries, long term, long index) {
+    final ByteString batch = StateMachineLogEntryBatchProto.newBuilder().addAllEntries(entries).build().toByteString();
+    return toLogEntryProto(StateMachineLogEntryProto.newBuilder()
+        .setType(StateMachineLogEntryProto.Type.BATCH)
+        .setLogData(batch)
+        .build(), term, index);
+  }
+
+  /**
+   * Split a batch log entry.
+   *
+   * @return the log entries, one for each state machine log entry in the batch,
+   *         where all of them have the same term and index as the given batch entry.
+   */
+  public static List<LogEntryProto> splitBatch(LogEntryProto batch) throws RaftLogIOException {
+    Preconditions.assertTrue(isBatch(batch), () -> "Not a batch: " + toLogEntryString(batch));
+    final StateMachineLogEntryBatchProto proto;
+    try {
+      final ByteString data = decompressLogData(batch).getStateMachineLogEntry().getLogData();
+      proto = StateMachineLogEntryBatchProto.parseFrom(data);
+    } catch (InvalidProtocolBufferException e) {
+      throw new RaftLogIOException("Failed to parse the batch " + toLogEntryString(batch), e);
+    }
+    return proto.getEntriesList().stream()
+        .map(e -> toLogEntryProto(e, batch.getTerm(), batch.getIndex()))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Compress the log data of the given entry
+   * unless the entry has state machine data or the log data is smaller than the given min size.
+   *
+   * @return a new entry with the compressed log data if the compressed data is smaller;
+   *         otherwise, return the given entry.
+   */
+  public static LogEntryProto compressLogData(LogEntryProto entry, Compression compression, int minSize)
+      throws IOException {
+    if (compression == Compression.NONE || !entry.hasStateMachineLogEntry()) {
+      return entry;
+    }
+    final StateMachineLogEntryProto smLog = entry.getStateMachineLogEntry();
+    final StateMachineLogEntryProto compressed = compressLogData(smLog, compression, minSize);
+    return compressed == smLog? entry: setStateMachineLogEntry(entry, compressed);
+  }
+
+  /**
+   * Compress the log data of the given state machine log entry
+   * unless it has state machine data or the log data is smaller than the given min size.
+   *
+   * @return a new state machine log entry with the compressed log data if the compressed data is smaller;
+   *         otherwise, return the given state machine log entry.
+   */
+  public static StateMachineLogEntryProto compressLogData(StateMachineLogEntryProto smLog,
+      Compression compression, int minSize) throws IOException {
+    if (compression == Compression.NONE || smLog.hasStateMachineEntry()
+        || smLog.getCompression() != StateMachineLogEntryProto.Compression.NONE
+        || smLog.getLogData().size() < minSize) {
+      return smLog;
+    }
+
+    Preconditions.assertTrue(compression == Compression.DEFLATE, () -> "Unexpected compression " + compression);
+    final ByteString.Output out = ByteString.newOutput(smLog.getLogData().size() / 2);
+    try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+      smLog.getLogData().writeTo(deflater);
+    }
+    final ByteString compressed = out.toByteString();
+    if (compressed.size() >= smLog.getLogData().size()) {
+      return smLog;
+    }
+    return StateMachineLogEntryProto.newBuilder(smLog)
+        .setLogData(compressed)
+        .setCompression(StateMachineLogEntryProto.Compression.DEFLATE)
+        .build();
+  }
+
+  /** @return a new entry with the given state machine log entry replacing the one in the given entry. */
+  public static LogEntryProto setStateMachineLogEntry(LogEntryProto entry, StateMachineLogEntryProto smLog) {
+    Preconditions.assertTrue(entry.hasStateMachineLogEntry(), () -> "Unexpected entry " + toLogEntryString(entry));
+    return LogEntryProto.newBuilder(entry).setStateMachineLogEntry(smLog).build();
+  }
+
+  /**
+   * @return a new entry with the decompressed log data if the log data of the given entry is compressed;
+   *         otherwise, return the given entry.
+   */
+  public static LogEntryProto decompressLogData(LogEntryProto entry) throws RaftLogIOException {
+    if (!entry.hasStateMachineLogEntry()) {
+      return entry;
+    }
+    final StateMachineLogEntryProto smLog = entry.getStateMachineLogEntry();
+    switch (smLog.getCompression()) {
+      case NONE:
+        return entry;
+      case DEFLATE:
+        final ByteString decompressed;
+        try (InflaterInputStream inflater = new InflaterInputStream(smLog.getLogData().newInput())) {
+          decompressed = ByteString.readFrom(inflater);
+        } catch (IOException e) {
+          throw new RaftLogIOException("Failed to decompress the log data of " + toLogEntryString(entry), e);
+        }
+        return LogEntryProto.newBuilder(entry).setStateMachineLogEntry(StateMachineLogEntryProto.newBuilder(smLog)
+            .setLogData(decompressed)
+            .clearCompression()
+        ).build();
+      default:
+        throw new RaftLogIOException("Unsupported compression " + smLog.getCompression()
+            + " for " + toLogEntryString(entry));
+    }
+  }
+
   public static int getSerializedSize(LogEntryProto entry) {
     return getStateMachineEntry(entry)
         .filter(stateMachineEntry -> stateMachineEntry.getStateMachineData().isEmpty())
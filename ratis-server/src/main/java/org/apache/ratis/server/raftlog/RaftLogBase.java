@@ -19,6 +19,7 @@ package org.apache.ratis.server.raftlog;
 
 import org.apache.ratis.conf.RaftProperties;
 import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.proto.RaftProtos.StateMachineLogEntryProto;
 import org.apache.ratis.protocol.RaftGroupMemberId;
 import org.apache.ratis.protocol.exceptions.StateMachineException;
 import org.apache.ratis.server.RaftConfiguration;
@@ -70,6 +71,8 @@ public abstract class RaftLogBase implements RaftLog {
 
   private final RaftGroupMemberId memberId;
   private final int maxBufferSize;
+  private final RaftServerConfigKeys.Log.Compression compression;
+  private final int compressionMinSize;
 
   private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
   private final Runner runner = new Runner(this::getName);
@@ -89,6 +92,8 @@ public abstract class RaftLogBase implements RaftLog {
     this.purgeIndex = new RaftLogIndex("purgeIndex", LEAST_VALID_LOG_INDEX - 1);
     this.purgeGap = RaftServerConfigKeys.Log.purgeGap(properties);
     this.maxBufferSize = RaftServerConfigKeys.Log.Appender.bufferByteLimit(properties).getSizeInt();
+    this.compression = RaftServerConfigKeys.Log.compression(properties);
+    this.compressionMinSize = RaftServerConfigKeys.Log.compressionMinSize(properties).getSizeInt();
     this.state = new OpenCloseState(getName());
     this.getSnapshotIndexFromStateMachine = getSnapshotIndexFromStateMachine;
   }
@@ -159,6 +164,9 @@ public abstract class RaftLogBase implements RaftLog {
 
   private long appendImpl(long term, TransactionContext operation) throws StateMachineException {
     checkLogState();
+    // compress outside the write lock since it may take a while for large log data
+    final StateMachineLogEntryProto original = operation.getStateMachineLogEntry();
+    final StateMachineLogEntryProto compressed = compressLogData(original);
     try(AutoCloseableLock writeLock = writeLock()) {
       final long nextIndex = getNextIndex();
 
@@ -173,7 +181,17 @@ public abstract class RaftLogBase implements RaftLog {
       }
 
       // build the log entry after calling the StateMachine
-      final LogEntryProto e = operation.initLogEntry(term, nextIndex);
+      // the compressed entry is written to the log and replicated; the transaction keeps the original entry
+      final LogEntryProto entry = operation.initLogEntry(term, nextIndex);
+      final StateMachineLogEntryProto smLog = entry.getStateMachineLogEntry();
+      final LogEntryProto e;
+      if (smLog == original) {
+        e = compressed == original? entry: LogProtoUtils.setStateMachineLogEntry(entry, compressed);
+      } else {
+        // preAppendTransaction has changed the entry, compress it again
+        final StateMachineLogEntryProto c = compressLogData(smLog);
+        e = c == smLog? entry: LogProtoUtils.setStateMachineLogEntry(entry, c);
+      }
 
       int entrySize = e.getSerializedSize();
       if (entrySize > maxBufferSize) {
@@ -185,6 +203,17 @@ public abstract class RaftLogBase implements RaftLog {
     }
   }
 
+  private StateMachineLogEntryProto compressLogData(StateMachineLogEntryProto smLog) throws StateMachineException {
+    if (smLog == null) {
+      return null;
+    }
+    try {
+      return LogProtoUtils.compressLogData(smLog, compression, compressionMinSize);
+    } catch (IOException ioe) {
+      throw new StateMachineException(memberId, ioe);
+    }
+  }
+
   @Override
   public final long appendMetadata(long term, long newCommitIndex) {
     return runner.runSequentially(() -> appendMetadataImpl(term, newCommitIndex));
@@ -369,11 +398,12 @@ public abstract class RaftLogBase implements RaftLog {
    */
   class EntryWithDataImpl implements EntryWithData {
     private final LogEntryProto logEntry;
-    private final CompletableFuture<ByteString> future;
+    /** The entry with the state machine data, which is built once and shared by all the callers of getEntry. */
+    private final CompletableFuture<LogEntryProto> future;
 
     EntryWithDataImpl(LogEntryProto logEntry, CompletableFuture<ByteString> future) {
       this.logEntry = logEntry;
-      this.future = future;
+      this.future = future == null? null: future.thenApply(data -> LogProtoUtils.addStateMachineData(data, logEntry));
     }
 
     @Override
@@ -389,8 +419,7 @@ public abstract class RaftLogBase implements RaftLog {
       }
 
       try {
-        entryProto = future.thenApply(data -> LogProtoUtils.addStateMachineData(data, logEntry))
-            .get(timeout.getDuration(), timeout.getUnit());
+        entryProto = future.get(timeout.getDuration(), timeout.getUnit());
       } catch (TimeoutException t) {
         final String err = getName() + ": Timeout readStateMachineData for " + toLogEntryString(logEntry);
         LOG.error(err, t);
@@ -19,6 +19,7 @@ package org.apache.ratis.server.raftlog.segmented;
 
 import org.apache.ratis.util.Preconditions;
 import org.apache.ratis.util.function.CheckedBiFunction;
+import org.apache.ratis.util.function.CheckedConsumer;
 
 import java.io.Closeable;
 import java.io.File;
@@ -26,6 +27,7 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Provides a buffering layer in front of a FileChannel for writing.
@@ -66,6 +68,25 @@ class BufferedWriteChannel implements Closeable {
     }
   }
 
+  /**
+   * Write the given number of bytes directly to the buffer using the given writer;
+   * flush the buffer first if it does not have enough space remaining.
+   *
+   * @return false if the size is larger than the buffer capacity; in such case, nothing is written.
+   */
+  boolean writeToBuffer(int size, CheckedConsumer<ByteBuffer, IOException> writer) throws IOException {
+    if (size > writeBuffer.capacity()) {
+      return false;
+    }
+    if (size > writeBuffer.remaining()) {
+      flushBuffer();
+    }
+    final int expected = writeBuffer.position() + size;
+    writer.accept(writeBuffer);
+    Preconditions.assertSame(expected, writeBuffer.position(), "writeBuffer.position");
+    return true;
+  }
+
   void preallocateIfNecessary(long size, CheckedBiFunction<FileChannel, Long, Long, IOException> preallocate)
       throws IOException {
     final long outstanding = writeBuffer.position() + size;
@@ -88,6 +109,22 @@ class BufferedWriteChannel implements Closeable {
     }
   }
 
+  /**
+   * Write any data in the buffer to the file and then submit a force request to the given scheduler,
+   * which may force this file together with the other files in a batch.
+   *
+   * @return a future, which will be completed once the data is persisted to the disk.
+   * @throws IOException if the write operation fails.
+   */
+  CompletableFuture<Void> asyncFlush(SegmentedRaftLogFlushScheduler scheduler) throws IOException {
+    flushBuffer();
+    if (forced) {
+      return CompletableFuture.completedFuture(null);
+    }
+    forced = true;
+    return scheduler.force(fileChannel);
+  }
+
   /**
    * Write any data in the buffer to the file.
    *
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.raftlog.segmented;
+
+import org.apache.ratis.server.raftlog.segmented.LogSegment.CachedEntry;
+import org.apache.ratis.server.raftlog.segmented.SegmentedRaftLogCache.EvictionInfo;
+import org.apache.ratis.util.JavaUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Evict the cached entries of the closed segments individually
+ * in order to keep the total cache size of the raft logs within a budget,
+ * which is shared by all the groups of a server.
+ * <p>
+ * The segments add and remove their cache sizes to a shared counter,
+ * and the entries of the closed segments are put in a queue in the order of the clock algorithm.
+ * A cache hit only sets the referenced bit of the entry without locking.
+ * When the total cache size exceeds the budget, the entries are polled from the queue and
+ * (1) the entries no longer needed by the followers and the state machine are evicted;
+ * (2) the other referenced entries have their bit cleared and are given a second chance;
+ * (3) the other unreferenced entries are evicted.
+ * Only the entries flushed to the local disk can be evicted.
+ * An evicted entry is reloaded individually when it is read again.
+ * <p>
+ * The entries of the open segments are counted in the total cache size but they cannot be evicted.
+ * Therefore, the budget is exceeded when the open segments alone are larger than it.
+ * In such case, the eviction is skipped until there are entries which can be evicted.
+ *
+ * This class is thread-safe.
+ */
+class EntryCacheLru {
+  static final Logger LOG = LoggerFactory.getLogger(EntryCacheLru.class);
+
+  /** Purge the removed entries from the queue when there are more than this many of them. */
+  private static final int PURGE_THRESHOLD = 1024;
+
+  /** The budgets shared by the raft logs, one for each server. */
+  private static final Map<String, EntryCacheLru> BUDGETS = new HashMap<>();
+
+  /**
+   * Register the given cache to the budget of the given key, or create one if it does not exist.
+   * When the key is null, the cache has a budget of its own.
+   * The caller must {@link #unregister(SegmentedRaftLogCache)} the cache after use.
+   */
+  static EntryCacheLru register(String key, long maxSize, SegmentedRaftLogCache cache) {
+    final EntryCacheLru lru;
+    synchronized (BUDGETS) {
+      lru = key == null? new EntryCacheLru(cache, maxSize)
+          : BUDGETS.computeIfAbsent(key, k -> new EntryCacheLru(k, maxSize));
+      lru.caches.add(cache);
+    }
+    if (lru.maxSize != maxSize) {
+      LOG.warn("{}: ignore the max size {} of {}, use the existing max size {}", lru, maxSize, cache, lru.maxSize);
+    }
+    return lru;
+  }
+
+  private final String name;
+  private final long maxSize;
+  private final Set<SegmentedRaftLogCache> caches = ConcurrentHashMap.newKeySet();
+
+  /** The total cache size of all the registered caches, including the open segments. */
+  private final AtomicLong totalCacheSize = new AtomicLong();
+  /** The cached entries of the closed segments, which can be evicted, in the clock order. */
+  private final Queue<CachedEntry> queue = new ConcurrentLinkedQueue<>();
+  /** The number of the entries in the {@link #queue}, including the removed entries not yet polled. */
+  private final AtomicInteger queueSize = new AtomicInteger();
+  /** The number of the entries in the {@link #queue} not yet removed. */
+  private final AtomicInteger numEvictable = new AtomicInteger();
+  /** The total size of the entries in the {@link #queue} not yet removed. */
+  private final AtomicLong evictableSize = new AtomicLong();
+  /** Only one thread polls the {@link #queue} at a time. */
+  private final AtomicBoolean polling = new AtomicBoolean();
+
+  private EntryCacheLru(Object name, long maxSize) {
+    this.name = name + "-" + JavaUtils.getClassSimpleName(getClass());
+    this.maxSize = maxSize;
+  }
+
+  long getMaxSize() {
+    return maxSize;
+  }
+
+  int getNumCaches() {
+    return caches.size();
+  }
+
+  /** Unregister the given cache; the budget is removed when there are no more registered caches. */
+  void unregister(SegmentedRaftLogCache cache) {
+    synchronized (BUDGETS) {
+      if (caches.remove(cache) && caches.isEmpty()) {
+        BUDGETS.values().remove(this);
+      }
+    }
+  }
+
+  /** @return the total cache size of all the registered caches. */
+  long getTotalCacheSize() {
+    return totalCacheSize.get();
+  }
+
+  /** @return the total size of the cached entries which can be evicted. */
+  long getEvictableSize() {
+    return evictableSize.get();
+  }
+
+  /** Add the given delta, which can be negative, to the total cache size. */
+  void addCacheSize(long delta) {
+    totalCacheSize.addAndGet(delta);
+  }
+
+  /** Add the given entry of a closed segment to the queue so that it can be evicted. */
+  void offer(CachedEntry entry) {
+    if (entry.setQueued()) {
+      evictableSize.addAndGet(entry.getSize());
+      numEvictable.incrementAndGet();
+      queueSize.incrementAndGet();
+      queue.offer(entry);
+    }
+  }
+
+  /** The given entry is removed from its segment; it is dropped from the queue lazily. */
+  void release(CachedEntry entry) {
+    if (entry.setRemoved()) {
+      evictableSize.addAndGet(-entry.getSize());
+      numEvictable.decrementAndGet();
+      if (queueSize.get() > 2 * numEvictable.get() + PURGE_THRESHOLD && polling.compareAndSet(false, true)) {
+        try {
+          purge();
+        } finally {
+          polling.set(false);
+        }
+      }
+    }
+  }
+
+  /** Remove the removed entries from the queue; the caller must set {@link #polling}. */
+  private void purge() {
+    final int before = queueSize.get();
+    for (int i = before; i > 0; i--) {
+      final CachedEntry e = queue.poll();
+      if (e == null) {
+        break;
+      }
+      if (e.isRemoved()) {
+        queueSize.decrementAndGet();
+      } else {
+        queue.offer(e);
+      }
+    }
+    LOG.debug("{}: purged {} removed entries", name, before - queueSize.get());
+  }
+
+  boolean shouldEvict() {
+    return totalCacheSize.get() > maxSize && evictableSize.get() > 0;
+  }
+
+  /**
+   * Evict the entries of all the registered caches until the total cache size is within the budget.
+   * Each entry in the queue is polled at most once in a call.
+   * When another thread is evicting, this method returns immediately.
+   *
+   * @return the size evicted.
+   */
+  long evict() {
+    if (!shouldEvict() || !polling.compareAndSet(false, true)) {
+      return 0;
+    }
+    try {
+      return evictImpl();
+    } finally {
+      polling.set(false);
+    }
+  }
+
+  private long evictImpl() {
+    final Map<Supplier<EvictionInfo>, EvictionInfo> infos = new IdentityHashMap<>();
+    long evicted = 0;
+    int count = 0;
+    int polled = 0;
+    for (int n = queueSize.get(); polled < n && shouldEvict(); polled++) {
+      final CachedEntry e = queue.poll();
+      if (e == null) {
+        break;
+      }
+      queueSize.decrementAndGet();
+      if (e.isRemoved()) {
+        continue;
+      }
+
+      final long index = e.getTermIndex().getIndex();
+      final EvictionInfo info = infos.computeIfAbsent(e.getSegment().getEvictionInfoSupplier(), Supplier::get);
+      if (!info.isFlushed(index) || (info.isNeeded(index) && e.clearReferenced())) {
+        // cannot be evicted yet, or give it a second chance
+        queueSize.incrementAndGet();
+        queue.offer(e);
+        continue;
+      }
+
+      final long removed = e.getSegment().evictEntryCache(e);
+      if (removed > 0) {
+        evicted += removed;
+        count++;
+      }
+    }
+    LOG.debug("{}: evicted {} entries ({} bytes) out of {} polled, totalCacheSize={}, maxSize={}",
+        name, count, evicted, polled, totalCacheSize, maxSize);
+    return evicted;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.raftlog.segmented;
+
+import org.apache.ratis.server.protocol.TermIndex;
+import org.apache.ratis.server.raftlog.RaftLog.EntryWithData;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A leader-side cache of the {@link EntryWithData} whose state machine data is read from the state machine.
+ * The appenders of all the followers share the cached entries
+ * so that the state machine data of an entry is read only once
+ * and the resulting {@link org.apache.ratis.proto.RaftProtos.LogEntryProto} is built only once.
+ *
+ * The total size of the state machine data cached is bounded by byteLimit;
+ * the entries with the smallest indices are evicted first.
+ * The size of an entry is counted once its state machine data has been read.
+ */
+class EntryWithDataCache {
+  private static final class Element {
+    private final TermIndex termIndex;
+    private final EntryWithData entry;
+    /** The size of the state machine data; 0 if it is not yet read. */
+    private long size;
+
+    private Element(TermIndex termIndex, EntryWithData entry) {
+      this.termIndex = termIndex;
+      this.entry = entry;
+    }
+  }
+
+  private final long byteLimit;
+  private final NavigableMap<Long, Element> map = new TreeMap<>();
+  /** The total size of the elements in the map. */
+  private long totalSize;
+
+  EntryWithDataCache(long byteLimit) {
+    this.byteLimit = byteLimit;
+  }
+
+  /** @return the cached entry for the given term-index; or null if it is not found. */
+  synchronized EntryWithData get(TermIndex ti) {
+    final Element e = map.get(ti.getIndex());
+    return e != null && e.termIndex.equals(ti) ? e.entry : null;
+  }
+
+  /**
+   * Put the given entry to this cache if there is no entry cached for the same term-index.
+   * The entry is removed from this cache once the given state machine data future has failed.
+   *
+   * @return the entry cached previously if there is any; otherwise, return the given entry.
+   */
+  EntryWithData putIfAbsent(TermIndex ti, EntryWithData entry, CompletableFuture<ByteString> stateMachineData) {
+    final Element element = new Element(ti, entry);
+    synchronized (this) {
+      final Element previous = map.get(ti.getIndex());
+      if (previous != null && previous.termIndex.equals(ti)) {
+        return previous.entry;
+      }
+      remove(map.put(ti.getIndex(), element));
+    }
+    stateMachineData.whenComplete((data, e) -> {
+      if (data == null || e != null) {
+        remove(ti.getIndex(), element);
+      } else {
+        updateSize(ti.getIndex(), element, data.size());
+      }
+    });
+    return entry;
+  }
+
+  private synchronized void updateSize(long index, Element element, long size) {
+    if (map.get(index) != element) {
+      return;
+    }
+    element.size = size;
+    totalSize += size;
+    while (totalSize > byteLimit && !map.isEmpty()) {
+      remove(map.pollFirstEntry().getValue());
+    }
+  }
+
+  private synchronized void remove(long index, Element element) {
+    if (map.get(index) == element) {
+      remove(map.remove(index));
+    }
+  }
+
+  /** Subtract the size of the given element, which has been removed from the map. */
+  private void remove(Element removed) {
+    if (removed != null) {
+      totalSize -= removed.size;
+    }
+  }
+
+  /** Remove the entries with indices >= the given index, e.g. when the log is truncated. */
+  synchronized void removeFrom(long index) {
+    clear(map.tailMap(index, true));
+  }
+
+  /** Remove the entries with indices <= the given index, e.g. when the log is purged. */
+  synchronized void removeUpTo(long index) {
+    clear(map.headMap(index, true));
+  }
+
+  private void clear(Map<Long, Element> subMap) {
+    subMap.values().forEach(this::remove);
+    subMap.clear();
+  }
+
+  synchronized int size() {
+    return map.size();
+  }
+
+  synchronized long getTotalSize() {
+    return totalSize;
+  }
+
+  synchronized void clear() {
+    map.clear();
+    totalSize = 0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return getClass().getSimpleName() + "(size=" + map.size() + ", totalSize=" + totalSize
+        + ", byteLimit=" + byteLimit + ")";
+  }
+}
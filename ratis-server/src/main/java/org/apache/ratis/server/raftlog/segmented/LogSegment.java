@@ -25,10 +25,12 @@ import org.apache.ratis.server.protocol.TermIndex;
 import org.apache.ratis.server.raftlog.LogEntryHeader;
 import org.apache.ratis.server.raftlog.LogProtoUtils;
 import org.apache.ratis.server.raftlog.RaftLogIOException;
+import org.apache.ratis.server.raftlog.segmented.SegmentedRaftLogCache.EvictionInfo;
 import org.apache.ratis.server.storage.RaftStorage;
 import org.apache.ratis.thirdparty.com.google.common.annotations.VisibleForTesting;
 import org.apache.ratis.thirdparty.com.google.common.cache.CacheLoader;
 import org.apache.ratis.thirdparty.com.google.protobuf.CodedOutputStream;
+import org.apache.ratis.util.Crc32cProvider;
 import org.apache.ratis.util.FileUtils;
 import org.apache.ratis.util.Preconditions;
 import org.slf4j.Logger;
@@ -36,15 +38,20 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 
 /**
@@ -79,6 +86,77 @@ public final class LogSegment implements Comparable<Long> {
     return serialized + CodedOutputStream.computeUInt32SizeNoTag(serialized) + 4L;
   }
 
+  /**
+   * A cached entry, which is also a node in the queue of {@link EntryCacheLru}.
+   * An access only sets the referenced bit without locking.
+   */
+  static final class CachedEntry {
+    private static final int NEW = 0;
+    private static final int QUEUED = 1;
+    private static final int REMOVED = 2;
+    private static final AtomicIntegerFieldUpdater<CachedEntry> STATE
+        = AtomicIntegerFieldUpdater.newUpdater(CachedEntry.class, "state");
+
+    private final LogSegment segment;
+    private final TermIndex termIndex;
+    private final LogEntryProto entry;
+    private final long size;
+    private volatile boolean referenced = false;
+    private volatile int state = NEW;
+
+    CachedEntry(LogSegment segment, TermIndex termIndex, LogEntryProto entry, long size) {
+      this.segment = segment;
+      this.termIndex = termIndex;
+      this.entry = entry;
+      this.size = size;
+    }
+
+    LogSegment getSegment() {
+      return segment;
+    }
+
+    TermIndex getTermIndex() {
+      return termIndex;
+    }
+
+    LogEntryProto getEntry() {
+      return entry;
+    }
+
+    long getSize() {
+      return size;
+    }
+
+    void access() {
+      if (!referenced) {
+        referenced = true;
+      }
+    }
+
+    /** @return true iff the referenced bit was set before it is cleared. */
+    boolean clearReferenced() {
+      if (!referenced) {
+        return false;
+      }
+      referenced = false;
+      return true;
+    }
+
+    /** @return true iff this entry was new. */
+    boolean setQueued() {
+      return STATE.compareAndSet(this, NEW, QUEUED);
+    }
+
+    /** @return true iff this entry was queued. */
+    boolean setRemoved() {
+      return STATE.getAndSet(this, REMOVED) == QUEUED;
+    }
+
+    boolean isRemoved() {
+      return state == REMOVED;
+    }
+  }
+
   static class LogRecord {
     /** starting offset in the file */
     private final long offset;
@@ -270,7 +348,21 @@ public final class LogSegment implements Comparable<Long> {
   /**
    * the entryCache caches the content of log entries.
    */
-  private final Map<TermIndex, LogEntryProto> entryCache = new ConcurrentHashMap<>();
+  private final Map<TermIndex, CachedEntry> entryCache = new ConcurrentHashMap<>();
+  /**
+   * For reading the entries of a closed segment in place.
+   * It is lazily created and it is protected by the monitor of this object.
+   */
+  private LogSegmentMappedReader mappedReader;
+  /** The {@link EntryCacheLru} counting the cache size of this segment, or null if there is none. */
+  private volatile EntryCacheLru entryCacheLru;
+  /** For {@link #entryCacheLru} to get the current {@link EvictionInfo}. */
+  private volatile Supplier<EvictionInfo> evictionInfoSupplier;
+  /**
+   * Are the cached entries evicted individually by {@link EntryCacheLru}?
+   * If it is true, the accesses are marked and a missing entry is reloaded individually.
+   */
+  private volatile boolean entryLruEnabled = false;
 
   private LogSegment(RaftStorage storage, boolean isOpen, long start, long end,
       SegmentedRaftLogMetrics raftLogMetrics) {
@@ -330,24 +422,137 @@ public final class LogSegment implements Comparable<Long> {
   }
 
   LogEntryProto getEntryFromCache(TermIndex ti) {
-    return entryCache.get(ti);
+    final CachedEntry cached = entryCache.get(ti);
+    if (cached == null) {
+      return null;
+    }
+    if (entryLruEnabled) {
+      cached.access();
+    }
+    return cached.getEntry();
+  }
+
+  /**
+   * Count the cache size of this segment in the given {@link EntryCacheLru}.
+   * When this segment is closed, its cached entries are evicted individually.
+   */
+  synchronized void setEntryCacheLru(EntryCacheLru lru, Supplier<EvictionInfo> supplier) {
+    Preconditions.assertNull(entryCacheLru, "entryCacheLru");
+    this.evictionInfoSupplier = Objects.requireNonNull(supplier, "supplier == null");
+    this.entryCacheLru = Objects.requireNonNull(lru, "lru == null");
+    lru.addCacheSize(totalCacheSize.get());
+    if (!isOpen) {
+      enableEntryLru();
+    }
+  }
+
+  /** Stop counting the cache size of this segment, which is no longer in the log. */
+  synchronized void unsetEntryCacheLru() {
+    final EntryCacheLru lru = entryCacheLru;
+    if (lru == null) {
+      return;
+    }
+    entryCache.values().forEach(lru::release);
+    lru.addCacheSize(-totalCacheSize.get());
+    this.entryCacheLru = null;
+  }
+
+  Supplier<EvictionInfo> getEvictionInfoSupplier() {
+    return evictionInfoSupplier;
+  }
+
+  /** Evict the cached entries of this closed segment individually by {@link EntryCacheLru}. */
+  synchronized void enableEntryLru() {
+    Preconditions.assertTrue(!isOpen(), () -> "Unexpected open segment " + this);
+    final EntryCacheLru lru = entryCacheLru;
+    if (lru == null || entryLruEnabled) {
+      return;
+    }
+    this.entryLruEnabled = true;
+    // queue the entries in the index order
+    for (LogRecord r : records) {
+      final CachedEntry cached = entryCache.get(r.getTermIndex());
+      if (cached != null) {
+        lru.offer(cached);
+      }
+    }
+  }
+
+  LogEntryProto loadCache(LogRecord record) throws RaftLogIOException {
+    return loadCache(record, false);
   }
 
   /**
    * Acquire LogSegment's monitor so that there is no concurrent loading.
+   *
+   * @param mmapReadEnabled Should the entry of a closed segment be read in place from the memory-mapped file?
    */
-  synchronized LogEntryProto loadCache(LogRecord record) throws RaftLogIOException {
-    LogEntryProto entry = entryCache.get(record.getTermIndex());
-    if (entry != null) {
-      return entry;
+  synchronized LogEntryProto loadCache(LogRecord record, boolean mmapReadEnabled) throws RaftLogIOException {
+    final CachedEntry cached = entryCache.get(record.getTermIndex());
+    if (cached != null) {
+      return cached.getEntry();
     }
     try {
+      LogEntryProto entry;
+      if (mmapReadEnabled && !isOpen) {
+        entry = readMapped(record);
+        if (entry != null) {
+          return entry;
+        }
+      }
+      if (entryLruEnabled && !isOpen) {
+        // reload only the evicted entry, not the whole segment
+        entry = readEntry(record);
+        if (entry != null) {
+          putEntryCache(record.getTermIndex(), entry, Op.LOAD_SEGMENT_FILE);
+          return entry;
+        }
+      }
       return cacheLoader.load(record);
     } catch (Exception e) {
       throw new RaftLogIOException(e);
     }
   }
 
+  /** @return the entry read from the memory-mapped file, or null if it cannot be read in place. */
+  private LogEntryProto readMapped(LogRecord record) throws IOException {
+    if (mappedReader == null) {
+      mappedReader = LogSegmentMappedReader.map(getFile());
+    }
+    final LogEntryProto entry = mappedReader.read(record.getOffset(), record.getTermIndex());
+    if (entry != null) {
+      putEntryCache(record.getTermIndex(), entry, Op.LOAD_SEGMENT_FILE);
+    } else {
+      LOG.debug("{}: Failed to read {} in place, fall back to read the file sequentially",
+          this, record.getTermIndex());
+    }
+    return entry;
+  }
+
+  /** @return the entry read from its offset in the file, or null if it cannot be read individually. */
+  private LogEntryProto readEntry(LogRecord record) throws IOException {
+    final int i = Math.toIntExact(record.getTermIndex().getIndex() - startIndex);
+    final long end = i + 1 < records.size()? records.get(i + 1).getOffset(): totalFileSize;
+    final ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(end - record.getOffset()));
+    try (FileChannel fc = FileChannel.open(getFile().toPath(), StandardOpenOption.READ)) {
+      for (long position = record.getOffset(); buffer.hasRemaining(); ) {
+        final int n = fc.read(buffer, position);
+        if (n < 0) {
+          return null;
+        }
+        position += n;
+      }
+    }
+    buffer.flip();
+    final LogEntryProto entry = LogSegmentMappedReader.decode(buffer, record.getTermIndex(),
+        Crc32cProvider.newDefaultChecksum(), this);
+    if (entry == null) {
+      LOG.debug("{}: Failed to read {} individually, fall back to read the file sequentially",
+          this, record.getTermIndex());
+    }
+    return entry;
+  }
+
   LogRecord getLogRecord(long index) {
     if (index >= startIndex && index <= endIndex) {
       return records.get(Math.toIntExact(index - startIndex));
@@ -379,10 +584,11 @@ public final class LogSegment implements Comparable<Long> {
     Preconditions.assertTrue(fromIndex >= startIndex && fromIndex <= endIndex);
     for (long index = endIndex; index >= fromIndex; index--) {
       LogRecord removed = records.remove(Math.toIntExact(index - startIndex));
-      removeEntryCache(removed.getTermIndex(), Op.REMOVE_CACHE);
+      removeEntryCache(removed.getTermIndex());
       totalFileSize = removed.offset;
     }
     isOpen = false;
+    mappedReader = null;
     this.endIndex = fromIndex - 1;
   }
 
@@ -405,6 +611,7 @@ public final class LogSegment implements Comparable<Long> {
   }
 
   synchronized void clear() {
+    mappedReader = null;
     records.clear();
     evictCache();
     endIndex = startIndex - 1;
@@ -414,26 +621,58 @@ public final class LogSegment implements Comparable<Long> {
     return loadingTimes.get();
   }
 
-  void evictCache() {
+  synchronized void evictCache() {
+    final EntryCacheLru lru = entryCacheLru;
+    if (lru != null) {
+      entryCache.values().forEach(lru::release);
+      lru.addCacheSize(-totalCacheSize.get());
+    }
     entryCache.clear();
     totalCacheSize.set(0);
   }
 
-  void putEntryCache(TermIndex key, LogEntryProto value, Op op) {
-    final LogEntryProto previous = entryCache.put(key, value);
-    long previousSize = 0;
+  synchronized void putEntryCache(TermIndex key, LogEntryProto value, Op op) {
+    final CachedEntry cached = new CachedEntry(this, key, value, getEntrySize(value, op));
+    final CachedEntry previous = entryCache.put(key, cached);
+    long delta = cached.getSize();
     if (previous != null) {
       // Different threads maybe load LogSegment file into cache at the same time, so duplicate maybe happen
-      previousSize = getEntrySize(value, Op.REMOVE_CACHE);
+      delta -= previous.getSize();
+    }
+    totalCacheSize.getAndAdd(delta);
+
+    final EntryCacheLru lru = entryCacheLru;
+    if (lru != null) {
+      lru.addCacheSize(delta);
+      if (previous != null) {
+        lru.release(previous);
+      }
+      if (entryLruEnabled) {
+        lru.offer(cached);
+      }
     }
-    totalCacheSize.getAndAdd(getEntrySize(value, op) - previousSize);
   }
 
-  void removeEntryCache(TermIndex key, Op op) {
-    LogEntryProto value = entryCache.remove(key);
-    if (value != null) {
-      totalCacheSize.getAndAdd(-getEntrySize(value, op));
+  /** @return the size of the removed entry, or 0 if the entry is not in the cache. */
+  synchronized long removeEntryCache(TermIndex key) {
+    final CachedEntry removed = entryCache.remove(key);
+    return removed == null? 0: removed(removed);
+  }
+
+  /** @return the size of the given entry if it is evicted, or 0 if it is no longer in the cache. */
+  synchronized long evictEntryCache(CachedEntry cached) {
+    return entryCache.remove(cached.getTermIndex(), cached)? removed(cached): 0;
+  }
+
+  private long removed(CachedEntry removed) {
+    final long size = removed.getSize();
+    totalCacheSize.getAndAdd(-size);
+    final EntryCacheLru lru = entryCacheLru;
+    if (lru != null) {
+      lru.addCacheSize(-size);
+      lru.release(removed);
     }
+    return size;
   }
 
   boolean hasCache() {
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.raftlog.segmented;
+
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.server.protocol.TermIndex;
+import org.apache.ratis.thirdparty.com.google.protobuf.CodedInputStream;
+import org.apache.ratis.util.Crc32cProvider;
+import org.apache.ratis.util.JavaUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Checksum;
+
+/**
+ * Read the entries of a closed segment file in place using a memory-mapped buffer.
+ * Unlike {@link SegmentedRaftLogInputStream}, which reads the file sequentially,
+ * an entry is decoded directly from its offset recorded in {@link LogSegment.LogRecord}.
+ */
+class LogSegmentMappedReader {
+  static final Logger LOG = LoggerFactory.getLogger(LogSegmentMappedReader.class);
+
+  static LogSegmentMappedReader map(File file) throws IOException {
+    try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      return new LogSegmentMappedReader(file, fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size()));
+    }
+  }
+
+  private final File file;
+  private final MappedByteBuffer mapped;
+  private final Checksum checksum = Crc32cProvider.newDefaultChecksum();
+
+  private LogSegmentMappedReader(File file, MappedByteBuffer mapped) {
+    this.file = file;
+    this.mapped = mapped;
+  }
+
+  /**
+   * Read the entry at the given offset.
+   *
+   * @return the entry if the offset points to a valid entry having the expected term and index;
+   *         otherwise, return null so that the caller may fall back to read the file sequentially.
+   */
+  synchronized LogEntryProto read(long offset, TermIndex expected) throws IOException {
+    if (offset < SegmentedRaftLogFormat.getHeaderLength() || offset >= mapped.limit()) {
+      return null;
+    }
+    final ByteBuffer buffer = mapped.duplicate();
+    buffer.position(Math.toIntExact(offset));
+    return decode(buffer, expected, checksum, this);
+  }
+
+  /**
+   * Decode the entry starting at the position of the given buffer.
+   *
+   * @return the entry if the buffer contains a valid entry having the expected term and index;
+   *         otherwise, return null.
+   */
+  static LogEntryProto decode(ByteBuffer buffer, TermIndex expected, Checksum checksum, Object name)
+      throws IOException {
+    final int start = buffer.position();
+    final byte[] bytes;
+    final int varintLength;
+    final int entryLength;
+    try {
+      entryLength = readRawVarint32(buffer);
+      varintLength = buffer.position() - start;
+      if (entryLength <= 0 || entryLength > buffer.remaining() - 4) {
+        return null; // the terminator or an invalid length
+      }
+      bytes = new byte[varintLength + entryLength];
+      buffer.position(start);
+      buffer.get(bytes);
+
+      checksum.reset();
+      checksum.update(bytes, 0, bytes.length);
+      if (buffer.getInt() != (int) checksum.getValue()) {
+        LOG.warn("{}: checksum mismatched for the entry at position {}, expected {}", name, start, expected);
+        return null;
+      }
+    } catch (BufferUnderflowException e) {
+      return null;
+    }
+
+    final LogEntryProto entry = LogEntryProto.parseFrom(
+        CodedInputStream.newInstance(bytes, varintLength, entryLength));
+    return expected.equals(TermIndex.valueOf(entry))? entry: null;
+  }
+
+  private static int readRawVarint32(ByteBuffer buffer) {
+    int result = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      final byte b = buffer.get();
+      result |= (b & 0x7f) << shift;
+      if (b >= 0) {
+        return result;
+      }
+    }
+    return -1; // malformed varint
+  }
+
+  @Override
+  public String toString() {
+    return JavaUtils.getClassSimpleName(getClass()) + "(" + file + ")";
+  }
+}
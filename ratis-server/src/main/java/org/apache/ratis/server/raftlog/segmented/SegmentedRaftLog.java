@@ -184,6 +184,9 @@ public class SegmentedRaftLog extends RaftLogBase {
   private final SegmentedRaftLogWorker fileLogWorker;
   private final long segmentMaxSize;
   private final boolean stateMachineCachingEnabled;
+  private final boolean mmapReadEnabled;
+  /** Share the entries read from the state machine among the log appenders; null if it is disabled. */
+  private final EntryWithDataCache entryWithDataCache;
   private final SegmentedRaftLogMetrics metrics;
 
   @SuppressWarnings("parameternumber")
@@ -200,7 +203,14 @@ public class SegmentedRaftLog extends RaftLogBase {
     this.cache = new SegmentedRaftLogCache(memberId, storage, properties, getRaftLogMetrics());
     this.fileLogWorker = new SegmentedRaftLogWorker(memberId, stateMachine,
         submitUpdateCommitEvent, server, storage, properties, getRaftLogMetrics());
+    this.cache.setEvictionInfoSupplier(() -> SegmentedRaftLogCache.EvictionInfo.valueOf(
+        this.server.getFollowerNextIndices(), fileLogWorker.getSafeCacheEvictIndex(),
+        this.server.getLastAppliedIndex()));
     stateMachineCachingEnabled = RaftServerConfigKeys.Log.StateMachineData.cachingEnabled(properties);
+    mmapReadEnabled = RaftServerConfigKeys.Log.mmapReadEnabled(properties);
+    this.entryWithDataCache = RaftServerConfigKeys.Log.Appender.sharedEntryCacheEnabled(properties)?
+        new EntryWithDataCache(RaftServerConfigKeys.Log.Appender.sharedEntryCacheByteLimit(properties).getSize())
+        : null;
   }
 
   @Override
@@ -277,7 +287,7 @@ public class SegmentedRaftLog extends RaftLogBase {
     // the entry is not in the segment's cache. Load the cache without holding the lock.
     getRaftLogMetrics().onRaftLogCacheMiss();
     checkAndEvictCache();
-    return segment.loadCache(record);
+    return segment.loadCache(record, mmapReadEnabled);
   }
 
   @Override
@@ -290,6 +300,14 @@ public class SegmentedRaftLog extends RaftLogBase {
       return newEntryWithData(entry, null);
     }
 
+    final TermIndex ti = TermIndex.valueOf(entry);
+    if (entryWithDataCache != null) {
+      final EntryWithData cached = entryWithDataCache.get(ti);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
     try {
       CompletableFuture<ByteString> future = null;
       if (stateMachine != null) {
@@ -298,7 +316,9 @@ public class SegmentedRaftLog extends RaftLogBase {
           return null;
         });
       }
-      return newEntryWithData(entry, future);
+      final EntryWithData entryWithData = newEntryWithData(entry, future);
+      return entryWithDataCache == null || future == null? entryWithData
+          : entryWithDataCache.putIfAbsent(ti, entryWithData, future);
     } catch (Exception e) {
       final String err = getName() + ": Failed readStateMachineData for " +
           LogProtoUtils.toLogEntryString(entry);
@@ -346,6 +366,7 @@ public class SegmentedRaftLog extends RaftLogBase {
   protected CompletableFuture<Long> truncateImpl(long index) {
     checkLogState();
     try(AutoCloseableLock writeLock = writeLock()) {
+      Optional.ofNullable(entryWithDataCache).ifPresent(c -> c.removeFrom(index));
       SegmentedRaftLogCache.TruncationSegments ts = cache.truncate(index);
       if (ts != null) {
         Task task = fileLogWorker.truncate(ts, index);
@@ -359,6 +380,7 @@ public class SegmentedRaftLog extends RaftLogBase {
   @Override
   protected CompletableFuture<Long> purgeImpl(long index) {
     try (AutoCloseableLock writeLock = writeLock()) {
+      Optional.ofNullable(entryWithDataCache).ifPresent(c -> c.removeUpTo(index));
       SegmentedRaftLogCache.TruncationSegments ts = cache.purge(index);
       updateSnapshotIndexFromStateMachine();
       LOG.debug("purging segments:{}", ts);
@@ -504,6 +526,7 @@ public class SegmentedRaftLog extends RaftLogBase {
     try(AutoCloseableLock writeLock = writeLock()) {
       super.close();
       cache.close();
+      Optional.ofNullable(entryWithDataCache).ifPresent(EntryWithDataCache::clear);
     }
     fileLogWorker.close();
     storage.close();
@@ -19,7 +19,9 @@ package org.apache.ratis.server.raftlog.segmented;
 
 import org.apache.ratis.conf.RaftProperties;
 import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.protocol.RaftGroupMemberId;
 import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.RaftServerConfigKeys.Log.SegmentCacheEvictionPolicy;
 import org.apache.ratis.server.metrics.SegmentedRaftLogMetrics;
 import org.apache.ratis.server.protocol.TermIndex;
 import org.apache.ratis.server.raftlog.LogEntryHeader;
@@ -39,6 +41,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * In-memory RaftLog Cache. Currently we provide a simple implementation that
@@ -281,6 +284,7 @@ public class SegmentedRaftLogCache {
                   oldEnd, true, openSegment.getTotalFileSize(), openSegment.getEndIndex());
               segments.add(openSegment);
               sizeInBytes += openSegment.getTotalFileSize();
+              openSegment.enableEntryLru();
               clearOpenSegment.run();
               return new TruncationSegments(info, Collections.emptyList());
             }
@@ -320,6 +324,7 @@ public class SegmentedRaftLogCache {
 
         if (segmentIndex == -segments.size() - 1) {
           for (LogSegment ls : segments) {
+            ls.unsetEntryCacheLru();
             list.add(SegmentFileInfo.newClosedSegmentFileInfo(ls));
           }
           segments.clear();
@@ -334,6 +339,7 @@ public class SegmentedRaftLogCache {
           for (int i = startIndex; i >= 0; i--) {
             LogSegment segment = segments.remove(i);
             sizeInBytes -= segment.getTotalFileSize();
+            segment.unsetEntryCacheLru();
             list.add(SegmentFileInfo.newClosedSegmentFileInfo(segment));
           }
         } else {
@@ -363,6 +369,14 @@ public class SegmentedRaftLogCache {
   private final int maxCachedSegments;
   private final CacheInvalidationPolicy evictionPolicy = new CacheInvalidationPolicyDefault();
   private final long maxSegmentCacheSize;
+  /** Non-null iff the policy is {@link SegmentCacheEvictionPolicy#ENTRY_LRU}. */
+  private final EntryCacheLru entryCacheLru;
+  /** For {@link #entryCacheLru} to get the current {@link EvictionInfo}; null if it is not set. */
+  private volatile Supplier<EvictionInfo> evictionInfoSupplier;
+  /** The same supplier is passed to all the segments so that {@link #entryCacheLru} can call it once per eviction. */
+  private final Supplier<EvictionInfo> evictionInfoGetter = this::getEvictionInfo;
+  /** The {@link EvictionInfo} passed to the last {@link #evictCache(long[], long, long)} call. */
+  private volatile EvictionInfo lastEvictionInfo = EvictionInfo.NONE;
 
   SegmentedRaftLogCache(Object name, RaftStorage storage, RaftProperties properties,
       SegmentedRaftLogMetrics raftLogMetrics) {
@@ -375,6 +389,59 @@ public class SegmentedRaftLogCache {
     this.raftLogMetrics.addOpenSegmentSizeInBytes(this);
     this.maxCachedSegments = RaftServerConfigKeys.Log.segmentCacheNumMax(properties);
     this.maxSegmentCacheSize = RaftServerConfigKeys.Log.segmentCacheSizeMax(properties).getSize();
+    this.entryCacheLru = RaftServerConfigKeys.Log.segmentCacheEvictionPolicy(properties)
+        == SegmentCacheEvictionPolicy.ENTRY_LRU? EntryCacheLru.register(getServerKey(name), maxSegmentCacheSize, this)
+        : null;
+  }
+
+  /** @return the key of the server of the given name so that the groups of a server share an entry cache budget. */
+  private static String getServerKey(Object name) {
+    return name instanceof RaftGroupMemberId? ((RaftGroupMemberId) name).getPeerId().toString(): null;
+  }
+
+  /** The info for choosing the cached entries to evict. */
+  static final class EvictionInfo {
+    static final EvictionInfo NONE = new EvictionInfo(RaftLog.INVALID_LOG_INDEX, RaftLog.INVALID_LOG_INDEX);
+
+    static EvictionInfo valueOf(long[] followerNextIndices, long safeEvictIndex, long lastAppliedIndex) {
+      long minToRead = lastAppliedIndex;
+      if (followerNextIndices != null) {
+        for (long i : followerNextIndices) {
+          minToRead = Math.min(minToRead, i);
+        }
+      }
+      return new EvictionInfo(safeEvictIndex, minToRead);
+    }
+
+    /** @return true iff the entry of the given index is flushed to the local disk. */
+    boolean isFlushed(long index) {
+      return index <= safeEvictIndex;
+    }
+
+    /** @return true iff the entry of the given index may still be read. */
+    boolean isNeeded(long index) {
+      return index >= minToRead;
+    }
+
+    /** Only the entries with index <= safeEvictIndex, i.e. flushed to the local disk, can be evicted. */
+    private final long safeEvictIndex;
+    /** The entries with index < minToRead are not going to be read by the followers or the state machine. */
+    private final long minToRead;
+
+    private EvictionInfo(long safeEvictIndex, long minToRead) {
+      this.safeEvictIndex = safeEvictIndex;
+      this.minToRead = minToRead;
+    }
+  }
+
+  /** Set the supplier for the shared entry cache budget to evict the entries of this cache. */
+  void setEvictionInfoSupplier(Supplier<EvictionInfo> supplier) {
+    this.evictionInfoSupplier = supplier;
+  }
+
+  private EvictionInfo getEvictionInfo() {
+    final Supplier<EvictionInfo> supplier = evictionInfoSupplier;
+    return supplier != null? supplier.get(): lastEvictionInfo;
   }
 
   int getMaxCachedSegments() {
@@ -403,14 +470,23 @@ public class SegmentedRaftLogCache {
   }
 
   public long getTotalCacheSize() {
-    return closedSegments.getTotalCacheSize() + openSegment.getTotalCacheSize();
+    return closedSegments.getTotalCacheSize()
+        + Optional.ofNullable(openSegment).map(LogSegment::getTotalCacheSize).orElse(0L);
   }
 
   boolean shouldEvict() {
+    if (entryCacheLru != null) {
+      return entryCacheLru.shouldEvict();
+    }
     return closedSegments.countCached() > maxCachedSegments || getTotalCacheSize() > maxSegmentCacheSize;
   }
 
   void evictCache(long[] followerIndices, long safeEvictIndex, long lastAppliedIndex) {
+    if (entryCacheLru != null) {
+      lastEvictionInfo = EvictionInfo.valueOf(followerIndices, safeEvictIndex, lastAppliedIndex);
+      entryCacheLru.evict();
+      return;
+    }
     List<LogSegment> toEvict = evictionPolicy.evict(followerIndices,
         safeEvictIndex, lastAppliedIndex, closedSegments, maxCachedSegments);
     for (LogSegment s : toEvict) {
@@ -433,6 +509,9 @@ public class SegmentedRaftLogCache {
       setOpenSegment(segment);
     } else {
       closedSegments.add(segment);
+      if (entryCacheLru != null) {
+        segment.setEntryCacheLru(entryCacheLru, evictionInfoGetter);
+      }
     }
   }
 
@@ -444,6 +523,9 @@ public class SegmentedRaftLogCache {
     LOG.trace("{}: setOpenSegment to {}", name, openSegment);
     Preconditions.assertTrue(this.openSegment == null);
     this.openSegment = Objects.requireNonNull(openSegment);
+    if (entryCacheLru != null) {
+      openSegment.setEntryCacheLru(entryCacheLru, evictionInfoGetter);
+    }
   }
 
   private void clearOpenSegment() {
@@ -465,6 +547,9 @@ public class SegmentedRaftLogCache {
     final long nextIndex = openSegment.getEndIndex() + 1;
     openSegment.close();
     closedSegments.add(openSegment);
+    if (entryCacheLru != null) {
+      openSegment.enableEntryLru();
+    }
     clearOpenSegment();
     if (createNewOpen) {
       addOpenSegment(nextIndex);
@@ -677,5 +762,8 @@ public class SegmentedRaftLogCache {
       clearOpenSegment();
     }
     closedSegments.clear();
+    if (entryCacheLru != null) {
+      entryCacheLru.unregister(this);
+    }
   }
 }
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.raftlog.segmented;
+
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.util.Daemon;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.Preconditions;
+import org.apache.ratis.util.TimeDuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Group commit for the raft logs of all the divisions sharing the same storage device.
+ * <p>
+ * Instead of forcing its own segment file, a {@link SegmentedRaftLogWorker} writes the buffered data
+ * to the file and then submits a flush request to the scheduler.
+ * The scheduler collects the requests until either the batch interval has elapsed
+ * or the number of requests has reached the batch size.
+ * Then, it forces the files in the batch in parallel using a small flusher pool of the device,
+ * so that the fsyncs of different groups do not wait for each other.
+ * The multiple requests for the same file in a batch are coalesced into a single force.
+ */
+class SegmentedRaftLogFlushScheduler {
+  static final Logger LOG = LoggerFactory.getLogger(SegmentedRaftLogFlushScheduler.class);
+
+  /** The schedulers, one for each device. */
+  private static final Map<String, SegmentedRaftLogFlushScheduler> SCHEDULERS = new HashMap<>();
+
+  /** @return the key of the device of the given storage directory. */
+  static String getDeviceKey(File storageDir) {
+    final File dir = storageDir.getAbsoluteFile();
+    try {
+      final FileStore store = Files.getFileStore(dir.toPath());
+      return store.name() + "@" + store;
+    } catch (IOException e) {
+      final File parent = dir.getParentFile();
+      LOG.warn("Failed to get the file store of {}, use the parent directory {} instead", dir, parent, e);
+      return (parent != null? parent: dir).getPath();
+    }
+  }
+
+  /**
+   * Get the scheduler for the device of the given storage directory, or create one if it does not exist.
+   * The caller must {@link #release()} the scheduler after use.
+   */
+  static SegmentedRaftLogFlushScheduler acquire(File storageDir, RaftProperties properties) {
+    final String key = getDeviceKey(storageDir);
+    synchronized (SCHEDULERS) {
+      final SegmentedRaftLogFlushScheduler scheduler = SCHEDULERS.computeIfAbsent(key,
+          k -> new SegmentedRaftLogFlushScheduler(k, properties));
+      scheduler.referenceCount++;
+      return scheduler;
+    }
+  }
+
+  private final String name;
+  private final TimeDuration interval;
+  private final int batchSize;
+  private final Daemon daemon;
+  /** The flushers forcing the files of a batch in parallel. */
+  private final ExecutorService flushers;
+
+  /** Guarded by {@link #SCHEDULERS}. */
+  private int referenceCount = 0;
+
+  /** The pending requests for the next batch, keyed by the file channels.  Guarded by this. */
+  private Map<FileChannel, List<CompletableFuture<Void>>> pending = new IdentityHashMap<>();
+  /** The number of the pending requests.  Guarded by this. */
+  private int numPending = 0;
+  private volatile boolean running = true;
+
+  private SegmentedRaftLogFlushScheduler(String device, RaftProperties properties) {
+    this.name = device + "-" + JavaUtils.getClassSimpleName(getClass());
+    this.interval = RaftServerConfigKeys.Log.GroupCommit.interval(properties);
+    this.batchSize = RaftServerConfigKeys.Log.GroupCommit.batchSize(properties);
+    final int flusherThreads = RaftServerConfigKeys.Log.GroupCommit.flusherThreads(properties);
+    final AtomicInteger count = new AtomicInteger();
+    this.flushers = Executors.newFixedThreadPool(flusherThreads,
+        r -> new Daemon(r, name + "-flusher-" + count.incrementAndGet()));
+    this.daemon = new Daemon(this::run, name);
+    LOG.info("{}: interval = {}, batchSize = {}, flusherThreads = {}", name, interval, batchSize, flusherThreads);
+    daemon.start();
+  }
+
+  /** Release this scheduler; the scheduler is stopped when it is no longer referenced. */
+  void release() {
+    synchronized (SCHEDULERS) {
+      Preconditions.assertTrue(referenceCount > 0, () -> name + ": referenceCount = " + referenceCount);
+      if (--referenceCount > 0) {
+        return;
+      }
+      SCHEDULERS.values().remove(this);
+    }
+    running = false;
+    daemon.interrupt();
+  }
+
+  /**
+   * Submit a request to force the given channel.
+   * The data written to the channel before this call will be persisted once the returned future is completed.
+   */
+  CompletableFuture<Void> force(FileChannel channel) {
+    final CompletableFuture<Void> future = new CompletableFuture<>();
+    synchronized (this) {
+      if (!running) {
+        future.completeExceptionally(new IOException(name + " is already stopped"));
+        return future;
+      }
+      pending.computeIfAbsent(channel, key -> new ArrayList<>()).add(future);
+      if (++numPending == 1 || numPending >= batchSize) {
+        notifyAll();
+      }
+    }
+    return future;
+  }
+
+  private synchronized Map<FileChannel, List<CompletableFuture<Void>>> pollBatch() throws InterruptedException {
+    while (numPending == 0) {
+      wait();
+    }
+    // wait for more requests until the batch is full or the interval has elapsed
+    final long deadline = System.nanoTime() + interval.toLong(TimeUnit.NANOSECONDS);
+    for (long remaining; numPending < batchSize && (remaining = deadline - System.nanoTime()) > 0; ) {
+      TimeUnit.NANOSECONDS.timedWait(this, remaining);
+    }
+    final Map<FileChannel, List<CompletableFuture<Void>>> batch = pending;
+    pending = new IdentityHashMap<>();
+    numPending = 0;
+    return batch;
+  }
+
+  private void run() {
+    try {
+      while (running) {
+        pollBatch().forEach(this::submit);
+      }
+    } catch (InterruptedException e) {
+      if (running) {
+        LOG.warn("{} is interrupted while still running", name);
+      }
+      Thread.currentThread().interrupt();
+    } finally {
+      failPending();
+      flushers.shutdown();
+      LOG.info("{} is stopped", name);
+    }
+  }
+
+  private void submit(FileChannel channel, List<CompletableFuture<Void>> futures) {
+    try {
+      flushers.execute(() -> force(channel, futures));
+    } catch (RejectedExecutionException e) {
+      futures.forEach(f -> f.completeExceptionally(new IOException(name + " is stopped", e)));
+    }
+  }
+
+  private static void force(FileChannel channel, List<CompletableFuture<Void>> futures) {
+    try {
+      channel.force(false);
+      futures.forEach(f -> f.complete(null));
+    } catch (Throwable t) {
+      futures.forEach(f -> f.completeExceptionally(t));
+    }
+  }
+
+  private synchronized void failPending() {
+    running = false;
+    final IOException e = new IOException(name + " is stopped");
+    pending.values().forEach(futures -> futures.forEach(f -> f.completeExceptionally(e)));
+    pending.clear();
+    numPending = 0;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
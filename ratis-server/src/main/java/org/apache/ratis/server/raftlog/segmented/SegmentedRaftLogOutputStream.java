@@ -19,10 +19,10 @@ package org.apache.ratis.server.raftlog.segmented;
 
 import org.apache.ratis.proto.RaftProtos.LogEntryProto;
 import org.apache.ratis.thirdparty.com.google.protobuf.CodedOutputStream;
+import org.apache.ratis.util.Crc32cProvider;
 import org.apache.ratis.util.IOUtils;
 import org.apache.ratis.util.JavaUtils;
 import org.apache.ratis.util.Preconditions;
-import org.apache.ratis.util.PureJavaCrc32C;
 import org.apache.ratis.util.function.CheckedConsumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +32,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.concurrent.CompletableFuture;
 import java.util.zip.Checksum;
 
 public class SegmentedRaftLogOutputStream implements Closeable {
@@ -39,6 +40,7 @@ public class SegmentedRaftLogOutputStream implements Closeable {
 
   private static final ByteBuffer FILL;
   private static final int BUFFER_SIZE = 1024 * 1024; // 1 MB
+  private static final int CHECKSUM_BUFFER_SIZE = 4 * 1024; // 4 KB
   static {
     FILL = ByteBuffer.allocateDirect(BUFFER_SIZE);
     for (int i = 0; i < FILL.capacity(); i++) {
@@ -50,6 +52,7 @@ public class SegmentedRaftLogOutputStream implements Closeable {
   private final File file;
   private final BufferedWriteChannel out; // buffered FileChannel for writing
   private final Checksum checksum;
+  private final byte[] checksumBuffer = new byte[CHECKSUM_BUFFER_SIZE];
 
   private final long segmentMaxSize;
   private final long preallocatedSize;
@@ -58,7 +61,7 @@ public class SegmentedRaftLogOutputStream implements Closeable {
       long preallocatedSize, ByteBuffer byteBuffer)
       throws IOException {
     this.file = file;
-    this.checksum = new PureJavaCrc32C();
+    this.checksum = Crc32cProvider.newDefaultChecksum();
     this.segmentMaxSize = segmentMaxSize;
     this.preallocatedSize = preallocatedSize;
     this.out = BufferedWriteChannel.open(file, append, byteBuffer);
@@ -86,10 +89,38 @@ public class SegmentedRaftLogOutputStream implements Closeable {
   public void write(LogEntryProto entry) throws IOException {
     final int serialized = entry.getSerializedSize();
     final int proto = CodedOutputStream.computeUInt32SizeNoTag(serialized) + serialized;
-    final byte[] buf = new byte[proto + 4]; // proto and 4-byte checksum
-    preallocateIfNecessary(buf.length);
+    final int size = proto + 4; // proto and 4-byte checksum
+    preallocateIfNecessary(size);
+
+    // serialize directly to the write buffer unless the entry is larger than the buffer
+    if (!out.writeToBuffer(size, buffer -> writeTo(buffer, entry, serialized, proto))) {
+      writeLarge(entry, serialized, proto);
+    }
+  }
 
-    CodedOutputStream cout = CodedOutputStream.newInstance(buf);
+  private void writeTo(ByteBuffer buffer, LogEntryProto entry, int serialized, int proto) throws IOException {
+    final int start = buffer.position();
+    final CodedOutputStream cout = CodedOutputStream.newInstance(buffer);
+    cout.writeUInt32NoTag(serialized);
+    entry.writeTo(cout);
+    cout.flush();
+    Preconditions.assertSame(start + proto, buffer.position(), "buffer.position");
+
+    // compute the checksum by copying the bytes to the reusable checksumBuffer
+    checksum.reset();
+    buffer.position(start);
+    for (int remaining = proto; remaining > 0; ) {
+      final int n = Math.min(remaining, checksumBuffer.length);
+      buffer.get(checksumBuffer, 0, n);
+      checksum.update(checksumBuffer, 0, n);
+      remaining -= n;
+    }
+    buffer.putInt((int) checksum.getValue());
+  }
+
+  private void writeLarge(LogEntryProto entry, int serialized, int proto) throws IOException {
+    final byte[] buf = new byte[proto + 4]; // proto and 4-byte checksum
+    final CodedOutputStream cout = CodedOutputStream.newInstance(buf);
     cout.writeUInt32NoTag(serialized);
     entry.writeTo(cout);
 
@@ -121,6 +152,19 @@ public class SegmentedRaftLogOutputStream implements Closeable {
     }
   }
 
+  /**
+   * Write the buffered data to the file and then submit a force request to the given scheduler.
+   *
+   * @return a future, which will be completed once the data is persisted.
+   */
+  CompletableFuture<Void> asyncFlush(SegmentedRaftLogFlushScheduler scheduler) throws IOException {
+    try {
+      return out.asyncFlush(scheduler);
+    } catch (IOException ioe) {
+      throw new IOException("Failed to flush " + this, ioe);
+    }
+  }
+
   private static long actualPreallocateSize(long outstandingData, long remainingSpace, long preallocate) {
     return outstandingData > remainingSpace? outstandingData
         : outstandingData > preallocate? outstandingData
@@ -175,6 +175,11 @@ class SegmentedRaftLogWorker {
 
   private final StateMachineDataPolicy stateMachineDataPolicy;
 
+  /** The shared scheduler for group commit; null if group commit is disabled. */
+  private final SegmentedRaftLogFlushScheduler flushScheduler;
+  /** The last flush submitted to the {@link #flushScheduler}. */
+  private volatile CompletableFuture<Void> pendingFlush = CompletableFuture.completedFuture(null);
+
   SegmentedRaftLogWorker(RaftGroupMemberId memberId, StateMachine stateMachine, Runnable submitUpdateCommitEvent,
                          RaftServer.Division server, RaftStorage storage, RaftProperties properties,
                          SegmentedRaftLogMetrics metricRegistry) {
@@ -197,8 +202,12 @@ class SegmentedRaftLogWorker {
     this.flushBatchSize = 0;
 
     this.stateMachineDataPolicy = new StateMachineDataPolicy(properties);
+    this.flushScheduler = RaftServerConfigKeys.Log.GroupCommit.enabled(properties)?
+        SegmentedRaftLogFlushScheduler.acquire(storage.getStorageDir().getRoot(), properties): null;
 
-    this.workerThread = new Thread(this::run, name);
+    // the worker is a non-daemon platform thread unless it can run in a virtual thread
+    this.workerThread = RaftServerConfigKeys.Threads.virtualEnabled(properties) && Daemon.isVirtualThreadSupported()?
+        Daemon.newThread(this::run, name, true): new Thread(this::run, name);
 
     // Server Id can be null in unit tests
     metricRegistry.addDataQueueSizeGauge(queue);
@@ -233,7 +242,13 @@ class SegmentedRaftLogWorker {
     } catch (InterruptedException ignored) {
       Thread.currentThread().interrupt();
     }
+    try {
+      waitForPendingFlush();
+    } catch (IOException e) {
+      LOG.warn("{}: Failed to wait for the pending flush", name, e);
+    }
     IOUtils.cleanup(LOG, out);
+    Optional.ofNullable(flushScheduler).ifPresent(SegmentedRaftLogFlushScheduler::release);
     LOG.info("{} close()", name);
   }
 
@@ -359,6 +374,10 @@ class SegmentedRaftLogWorker {
         }
         final Timer.Context logSyncTimerContext = raftLogSyncTimer.time();
         flushBatchSize = (int)(lastWrittenIndex - flushIndex.get());
+        if (flushScheduler != null) {
+          submitFlush(f, logSyncTimerContext);
+          return;
+        }
         out.flush();
         logSyncTimerContext.stop();
         if (!stateMachineDataPolicy.isSync()) {
@@ -371,6 +390,40 @@ class SegmentedRaftLogWorker {
     }
   }
 
+  /**
+   * Group commit: submit the flush to the shared scheduler and then continue writing without waiting for it.
+   * The flush index is updated once the scheduler has forced the file.
+   */
+  private void submitFlush(CompletableFuture<Void> stateMachineFlush, Timer.Context logSyncTimerContext)
+      throws IOException {
+    final long index = lastWrittenIndex;
+    final CompletableFuture<Void> forced = out.asyncFlush(flushScheduler);
+    pendingFlushNum = 0;
+    final CompletableFuture<Void> flushed = stateMachineDataPolicy.isSync()? forced
+        : forced.thenCombine(stateMachineFlush, (forcedResult, stateMachineResult) -> null);
+    // chain with the previous flush so that the flush index is updated in order
+    pendingFlush = pendingFlush.thenCombine(flushed, (previous, current) -> current).whenComplete((v, e) -> {
+      logSyncTimerContext.stop();
+      if (e != null) {
+        LOG.error("{}: Failed to flush up to index {}", name, index, e);
+        if (running) {
+          Optional.ofNullable(server).ifPresent(RaftServer.Division::close);
+        }
+        return;
+      }
+      flushIndex.updateToMax(index, traceIndexChange);
+      Optional.ofNullable(submitUpdateCommitEvent).ifPresent(Runnable::run);
+      writeTasks.updateIndex(index);
+    });
+  }
+
+  /** Wait for the flush submitted to the scheduler, if there is any. */
+  private void waitForPendingFlush() throws IOException {
+    if (!pendingFlush.isDone()) {
+      IOUtils.getFromFuture(pendingFlush, () -> this + "-pendingFlush");
+    }
+  }
+
   private void updateFlushedIndexIncreasingly() {
     final long i = lastWrittenIndex;
     flushIndex.updateIncreasingly(i, traceIndexChange);
@@ -690,7 +743,8 @@ class SegmentedRaftLogWorker {
     return safeCacheEvictIndex.get();
   }
 
-  private void freeSegmentedRaftLogOutputStream() {
+  private void freeSegmentedRaftLogOutputStream() throws IOException {
+    waitForPendingFlush();
     IOUtils.cleanup(LOG, out);
     out = null;
     Preconditions.assertTrue(writeBuffer.position() == 0);
@@ -22,21 +22,31 @@ import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
 import org.apache.ratis.util.JavaUtils;
 
 import java.io.Closeable;
-import java.io.File;
-import java.io.FileInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Optional;
 
-/** Read {@link FileChunkProto}s from a file. */
+/**
+ * Read {@link FileChunkProto}s from a file.
+ * <p>
+ * The chunks are read with positional reads into a buffer reused by this reader.
+ * The chunks of a snapshot are sent one by one over the installSnapshot stream;
+ * the DataStream transport is not used for snapshots.
+ */
 public class FileChunkReader implements Closeable {
   private final FileInfo info;
   private final Path relativePath;
-  private final FileInputStream in;
+  private final FileChannel in;
   /** The offset position of the current chunk. */
   private long offset = 0;
   /** The index of the current chunk. */
   private int chunkIndex = 0;
+  /** The buffer reused for reading the chunks; it is lazily allocated. */
+  private ByteBuffer buffer;
 
   /**
    * Construct a reader from a file specified by the given {@link FileInfo}.
@@ -47,12 +57,33 @@ public class FileChunkReader implements Closeable {
    */
   public FileChunkReader(FileInfo info, RaftStorageDirectory directory) throws IOException {
     this.info = info;
-    this.relativePath = Optional.of(info.getPath())
+    this.relativePath = getRelativePath(info, directory);
+    this.in = FileChannel.open(info.getPath(), StandardOpenOption.READ);
+  }
+
+  private static Path getRelativePath(FileInfo info, RaftStorageDirectory directory) {
+    return Optional.of(info.getPath())
         .filter(Path::isAbsolute)
         .map(p -> directory.getRoot().toPath().relativize(p))
         .orElse(info.getPath());
-    final File f = info.getPath().toFile();
-    this.in = new FileInputStream(f);
+  }
+
+  /**
+   * Create a single chunk without data for a file which is unchanged from a snapshot previously installed,
+   * so that the receiver reuses its local copy of the file.
+   *
+   * @param info the information of the file.
+   * @param directory the directory where the file is stored.
+   * @return the chunk of the unchanged file.
+   */
+  public static FileChunkProto newUnchangedFileChunk(FileInfo info, RaftStorageDirectory directory) {
+    return FileChunkProto.newBuilder()
+        .setFilename(getRelativePath(info, directory).toString())
+        .setTotalSize(info.getFileSize())
+        .setFileDigest(ByteString.copyFrom(info.getFileDigest().getDigest()))
+        .setDone(true)
+        .setUnchanged(true)
+        .build();
   }
 
   /**
@@ -65,7 +96,7 @@ public class FileChunkReader implements Closeable {
   public FileChunkProto readFileChunk(int chunkMaxSize) throws IOException {
     final long remaining = info.getFileSize() - offset;
     final int chunkLength = remaining < chunkMaxSize ? (int) remaining : chunkMaxSize;
-    final ByteString data = ByteString.readFrom(in, chunkLength);
+    final ByteString data = read(chunkLength);
 
     final FileChunkProto proto = FileChunkProto.newBuilder()
         .setFilename(relativePath.toString())
@@ -80,6 +111,28 @@ public class FileChunkReader implements Closeable {
     return proto;
   }
 
+  /**
+   * Read the given length from the current offset into the reused buffer.
+   * The data is copied out since the chunk outlives the next read.
+   */
+  private ByteString read(int length) throws IOException {
+    if (buffer == null || buffer.capacity() < length) {
+      buffer = ByteBuffer.allocate(length);
+    }
+    buffer.clear();
+    buffer.limit(length);
+    for (long position = offset; buffer.hasRemaining(); ) {
+      final int n = in.read(buffer, position);
+      if (n < 0) {
+        throw new EOFException("Unexpected end of file " + info.getPath() + " at position " + position
+            + ", expected file size " + info.getFileSize());
+      }
+      position += n;
+    }
+    buffer.flip();
+    return ByteString.copyFrom(buffer);
+  }
+
   @Override
   public void close() throws IOException {
     in.close();
@@ -18,9 +18,15 @@
 package org.apache.ratis.server.storage;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -40,6 +46,9 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Manage snapshots of a raft peer.
+ * <p>
+ * Snapshot chunks arrive in order over the installSnapshot stream.
+ * They are written with positional writes and their digests are computed incrementally.
  * TODO: snapshot should be treated as compaction log thus can be merged into
  *       RaftLog. In this way we can have a unified getLastTermIndex interface.
  */
@@ -55,18 +64,53 @@ public class SnapshotManager {
     this.selfId = selfId;
   }
 
+  /** The snapshot being installed, which is received in one or more requests. */
+  private String installingRequestId;
+  /** The temporary directory of the snapshot being installed. */
+  private File installingTmpDir;
+  /** The digests of the files being received, computed as the chunks arrive. */
+  private final Map<String, FileDigest> fileDigests = new HashMap<>();
+
+  /** The MD5 digest of a file which is computed incrementally from its chunks received in order. */
+  private static final class FileDigest {
+    private final MessageDigest digester = MD5Hash.newDigester();
+    private long nextOffset = 0;
+
+    /** @return true iff the chunk is the next chunk so that the digest is updated. */
+    boolean update(FileChunkProto chunk) {
+      if (chunk.getOffset() != nextOffset) {
+        return false;
+      }
+      for (ByteBuffer b : chunk.getData().asReadOnlyByteBufferList()) {
+        digester.update(b);
+      }
+      nextOffset += chunk.getData().size();
+      return true;
+    }
+
+    MD5Hash getDigest() {
+      return new MD5Hash(digester.digest());
+    }
+  }
+
   @SuppressFBWarnings("RV_RETURN_VALUE_IGNORED_BAD_PRACTICE")
-  public void installSnapshot(StateMachine stateMachine,
+  public synchronized void installSnapshot(StateMachine stateMachine,
       InstallSnapshotRequestProto request) throws IOException {
     final InstallSnapshotRequestProto.SnapshotChunkProto snapshotChunkRequest =
         request.getSnapshotChunk();
     final long lastIncludedIndex = snapshotChunkRequest.getTermIndex().getIndex();
     final RaftStorageDirectory dir = storage.getStorageDir();
 
-    // create a unique temporary directory
-    final File tmpDir =  new File(dir.getTmpDir(), UUID.randomUUID().toString());
-    FileUtils.createDirectories(tmpDir);
-    tmpDir.deleteOnExit();
+    // the requests of the same snapshot share a unique temporary directory
+    final String requestId = snapshotChunkRequest.getRequestId();
+    if (installingTmpDir == null || !requestId.equals(installingRequestId)) {
+      installingRequestId = requestId;
+      installingTmpDir = new File(dir.getTmpDir(), UUID.randomUUID().toString());
+      fileDigests.clear();
+      FileUtils.createDirectories(installingTmpDir);
+      installingTmpDir.deleteOnExit();
+    }
+    final File tmpDir = installingTmpDir;
 
     LOG.info("Installing snapshot:{}, to tmp dir:{}", request, tmpDir);
 
@@ -86,27 +130,36 @@ public class SnapshotManager {
       File tmpSnapshotFile = new File(tmpDir,
           new File(dir.getRoot(), fileName).getName());
 
-      FileOutputStream out = null;
-      try {
-        // if offset is 0, delete any existing temp snapshot file if it has the
-        // same last index.
-        if (chunk.getOffset() == 0) {
-          if (tmpSnapshotFile.exists()) {
-            FileUtils.deleteFully(tmpSnapshotFile);
-          }
-          // create the temp snapshot file and put padding inside
-          out = new FileOutputStream(tmpSnapshotFile);
-        } else {
-          Preconditions.assertTrue(tmpSnapshotFile.exists());
-          out = new FileOutputStream(tmpSnapshotFile, true);
-          FileChannel fc = out.getChannel();
-          fc.position(chunk.getOffset());
+      if (chunk.getUnchanged()) {
+        reuseUnchangedFile(new File(dir.getRoot(), fileName), tmpSnapshotFile, chunk);
+        continue;
+      }
+
+      // if offset is 0, delete any existing temp snapshot file if it has the
+      // same last index.
+      if (chunk.getOffset() == 0) {
+        if (tmpSnapshotFile.exists()) {
+          FileUtils.deleteFully(tmpSnapshotFile);
         }
+        fileDigests.put(fileName, new FileDigest());
+      } else {
+        Preconditions.assertTrue(tmpSnapshotFile.exists());
+      }
 
-        // write data to the file
-        out.write(chunk.getData().toByteArray());
-      } finally {
-        IOUtils.cleanup(null, out);
+      // write data to the file directly from the chunk buffers
+      try (FileChannel out = FileChannel.open(tmpSnapshotFile.toPath(),
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+        long position = chunk.getOffset();
+        for (ByteBuffer b : chunk.getData().asReadOnlyByteBufferList()) {
+          final int remaining = b.remaining();
+          IOUtils.writeFully(out, b, position);
+          position += remaining;
+        }
+      }
+      final FileDigest fileDigest = fileDigests.get(fileName);
+      if (fileDigest != null && !fileDigest.update(chunk)) {
+        // the chunk is out of order; compute the digest from the file later
+        fileDigests.remove(fileName);
       }
 
       // rename the temp snapshot file if this is the last chunk. also verify
@@ -114,9 +167,10 @@ public class SnapshotManager {
       if (chunk.getDone()) {
         final MD5Hash expectedDigest =
             new MD5Hash(chunk.getFileDigest().toByteArray());
-        // calculate the checksum of the snapshot file and compare it with the
-        // file digest in the request
-        MD5Hash digest = MD5FileUtil.computeMd5ForFile(tmpSnapshotFile);
+        // use the digest computed from the chunks if available;
+        // otherwise, calculate the checksum of the snapshot file.
+        final FileDigest computed = fileDigests.remove(fileName);
+        MD5Hash digest = computed != null? computed.getDigest(): MD5FileUtil.computeMd5ForFile(tmpSnapshotFile);
         if (!digest.equals(expectedDigest)) {
           LOG.warn("The snapshot md5 digest {} does not match expected {}",
               digest, expectedDigest);
@@ -134,8 +188,62 @@ public class SnapshotManager {
     if (snapshotChunkRequest.getDone()) {
       LOG.info("Install snapshot is done, renaming tnp dir:{} to:{}",
           tmpDir, dir.getStateMachineDir());
-      dir.getStateMachineDir().delete();
-      tmpDir.renameTo(dir.getStateMachineDir());
+      replaceStateMachineDir(tmpDir, dir.getStateMachineDir());
+      installingRequestId = null;
+      installingTmpDir = null;
+      fileDigests.clear();
+    }
+  }
+
+  /**
+   * Replace the state machine directory with the given directory.
+   * The old directory is moved aside and is deleted only after the new directory is in place,
+   * so that the old snapshot is restored if the rename fails.
+   */
+  private static void replaceStateMachineDir(File newDir, File stateMachineDir) throws IOException {
+    final File oldDir = stateMachineDir.exists()?
+        new File(newDir.getParentFile(), stateMachineDir.getName() + ".old." + UUID.randomUUID()): null;
+    if (oldDir != null && !stateMachineDir.renameTo(oldDir)) {
+      throw new IOException("Failed to rename " + stateMachineDir + " to " + oldDir);
+    }
+    if (!newDir.renameTo(stateMachineDir)) {
+      if (oldDir != null && !oldDir.renameTo(stateMachineDir)) {
+        LOG.error("Failed to restore {} from {}", stateMachineDir, oldDir);
+      }
+      throw new IOException("Failed to rename " + newDir + " to " + stateMachineDir);
+    }
+    if (oldDir != null) {
+      FileUtils.deleteFully(oldDir);
+    }
+  }
+
+  /**
+   * The file is unchanged from a snapshot previously installed,
+   * so link (or copy) the local file to the temporary directory instead of receiving the data.
+   */
+  private static void reuseUnchangedFile(File localFile, File tmpSnapshotFile, FileChunkProto chunk)
+      throws IOException {
+    final MD5Hash expectedDigest = new MD5Hash(chunk.getFileDigest().toByteArray());
+    if (!localFile.exists() || localFile.length() != chunk.getTotalSize()) {
+      throw new FileNotFoundException("Failed to reuse the unchanged file " + localFile
+          + ": the file is missing or its size does not match the expected size " + chunk.getTotalSize());
+    }
+    final MD5Hash stored = MD5FileUtil.readStoredMd5ForFile(localFile);
+    final MD5Hash digest = stored != null? stored: MD5FileUtil.computeMd5ForFile(localFile);
+    if (!digest.equals(expectedDigest)) {
+      throw new IOException("Failed to reuse the unchanged file " + localFile
+          + ": the digest " + digest + " does not match the expected digest " + expectedDigest);
+    }
+
+    if (tmpSnapshotFile.exists()) {
+      FileUtils.deleteFully(tmpSnapshotFile);
+    }
+    try {
+      Files.createLink(tmpSnapshotFile.toPath(), localFile.toPath());
+    } catch (IOException | UnsupportedOperationException e) {
+      LOG.debug("Failed to link {}, copy it instead", localFile, e);
+      Files.copy(localFile.toPath(), tmpSnapshotFile.toPath());
     }
+    MD5FileUtil.saveMD5File(tmpSnapshotFile, digest);
   }
 }
@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.statemachine.impl;
+
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.Preconditions;
+import org.apache.ratis.util.SizeInBytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link StateMachine.DataStream} writing the stream data to a local file.
+ *
+ * The data is written with {@link FileChannel} positional writes in batches of a fixed size,
+ * which start at the file offsets aligned to the batch size.
+ * Small writes are accumulated in a direct buffer,
+ * which is taken from a bounded pool and returned to the pool when the channel is closed;
+ * large writes bypass the buffer once it is empty.
+ * The buffered data is written out when the batch is full, or when the channel is forced or closed.
+ */
+public class FileDataStream implements StateMachine.DataStream {
+  public static final Logger LOG = LoggerFactory.getLogger(FileDataStream.class);
+
+  private final FileDataChannel channel;
+  private final Executor executor;
+
+  public FileDataStream(Path path, RaftProperties properties) throws IOException {
+    this(path, RaftServerConfigKeys.DataStream.fileWriteBatchSize(properties), null);
+  }
+
+  /**
+   * @param executor for executing the streaming tasks of this stream;
+   *                 when it is null, the default {@link Executor} will be used.
+   */
+  public FileDataStream(Path path, SizeInBytes batchSize, Executor executor) throws IOException {
+    this.channel = new FileDataChannel(path, batchSize.getSizeInt());
+    this.executor = executor;
+  }
+
+  public Path getPath() {
+    return channel.getPath();
+  }
+
+  @Override
+  public FileDataChannel getDataChannel() {
+    return channel;
+  }
+
+  @Override
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /** Close the channel but keep the file, which may already be linked to a log entry. */
+  @Override
+  public CompletableFuture<?> cleanUp() {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        channel.close();
+        return null;
+      } catch (IOException e) {
+        throw new CompletionException("Failed to close " + channel, e);
+      }
+    });
+  }
+
+  @Override
+  public String toString() {
+    return JavaUtils.getClassSimpleName(getClass()) + ":" + channel;
+  }
+
+  /** Bounded pools of the direct buffers for the batches, one pool for each batch size. */
+  static final class BatchBuffers {
+    /** The maximum number of the free buffers in a pool; the other free buffers are left to the GC. */
+    static final int POOL_CAPACITY = 16;
+
+    private static final Map<Integer, Queue<ByteBuffer>> POOLS = new ConcurrentHashMap<>();
+
+    private BatchBuffers() {}
+
+    private static Queue<ByteBuffer> getPool(int size) {
+      return POOLS.computeIfAbsent(size, k -> new ArrayBlockingQueue<>(POOL_CAPACITY));
+    }
+
+    static ByteBuffer allocate(int size) {
+      final ByteBuffer buffer = getPool(size).poll();
+      return buffer != null? buffer: ByteBuffer.allocateDirect(size);
+    }
+
+    static void release(ByteBuffer buffer) {
+      buffer.clear();
+      getPool(buffer.capacity()).offer(buffer);
+    }
+
+    static int getNumFree(int size) {
+      return getPool(size).size();
+    }
+  }
+
+  /** A {@link StateMachine.DataChannel} writing to a file in aligned batches. */
+  public static class FileDataChannel implements StateMachine.DataChannel {
+    private final Path path;
+    private final FileChannel fileChannel;
+    private final int batchSize;
+    /** The buffer for the current batch, allocated on the first buffered write. */
+    private ByteBuffer batch;
+    /** The file offset of the current batch, which is a multiple of the batch size. */
+    private long batchOffset = 0;
+    /** The number of bytes of the current batch already written to the file. */
+    private int batchWritten = 0;
+
+    FileDataChannel(Path path, int batchSize) throws IOException {
+      Preconditions.assertTrue(batchSize > 0, () -> "batchSize = " + batchSize + " <= 0");
+      this.path = path;
+      // truncate the file left by a previous stream, e.g. a retried stream of the same file
+      this.fileChannel = FileChannel.open(path,
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      this.batchSize = batchSize;
+    }
+
+    public Path getPath() {
+      return path;
+    }
+
+    /** @return the number of bytes written to this channel, including the buffered bytes. */
+    public synchronized long getWrittenBytes() {
+      return batchOffset + (batch == null? 0 : batch.position());
+    }
+
+    @Override
+    public synchronized int write(ByteBuffer src) throws IOException {
+      if (!fileChannel.isOpen()) {
+        throw new ClosedChannelException();
+      }
+      final int length = src.remaining();
+      if (isBatchEmpty() && length >= batchSize) {
+        // write the aligned part directly
+        final int direct = length - length % batchSize;
+        final ByteBuffer slice = src.slice();
+        slice.limit(direct);
+        writeFully(slice, batchOffset);
+        batchOffset += direct;
+        src.position(src.position() + direct);
+      }
+
+      while (src.hasRemaining()) {
+        final ByteBuffer b = getBatch();
+        final int n = Math.min(b.remaining(), src.remaining());
+        final ByteBuffer slice = src.slice();
+        slice.limit(n);
+        b.put(slice);
+        src.position(src.position() + n);
+        if (!b.hasRemaining()) {
+          flushBatch();
+          batchOffset += batchSize;
+          batchWritten = 0;
+          b.clear();
+        }
+      }
+      return length;
+    }
+
+    private boolean isBatchEmpty() {
+      return batch == null || batch.position() == 0;
+    }
+
+    private ByteBuffer getBatch() {
+      if (batch == null) {
+        batch = BatchBuffers.allocate(batchSize);
+      }
+      return batch;
+    }
+
+    /** Write the unwritten bytes of the current batch without clearing it. */
+    private void flushBatch() throws IOException {
+      if (batch == null || batch.position() == batchWritten) {
+        return;
+      }
+      final ByteBuffer unwritten = batch.duplicate();
+      unwritten.flip();
+      unwritten.position(batchWritten);
+      writeFully(unwritten, batchOffset + batchWritten);
+      batchWritten = batch.position();
+    }
+
+    private void writeFully(ByteBuffer src, long offset) throws IOException {
+      for (long position = offset; src.hasRemaining(); ) {
+        position += fileChannel.write(src, position);
+      }
+    }
+
+    @Override
+    public synchronized void force(boolean metadata) throws IOException {
+      LOG.debug("force({}) at {}", metadata, path);
+      flushBatch();
+      fileChannel.force(metadata);
+    }
+
+    @Override
+    public boolean isOpen() {
+      return fileChannel.isOpen();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      if (!fileChannel.isOpen()) {
+        return;
+      }
+      try {
+        flushBatch();
+      } finally {
+        fileChannel.close();
+        if (batch != null) {
+          batchOffset += batch.position();
+          BatchBuffers.release(batch);
+          batch = null;
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      return path.toString();
+    }
+  }
+}
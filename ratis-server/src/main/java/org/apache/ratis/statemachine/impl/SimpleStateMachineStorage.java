@@ -28,6 +28,7 @@ import org.apache.ratis.thirdparty.com.google.common.annotations.VisibleForTesti
 import org.apache.ratis.util.AtomicFileOutputStream;
 import org.apache.ratis.util.FileUtils;
 import org.apache.ratis.util.MD5FileUtil;
+import org.apache.ratis.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +46,10 @@ import java.util.stream.Collectors;
 
 /**
  * A StateMachineStorage that stores the snapshot in a single file.
+ *
+ * Optionally, a snapshot can also be stored incrementally as a full snapshot file, the base,
+ * followed by a chain of delta files, where each delta only contains the changes since the previous file.
+ * Such a snapshot is represented by a {@link FileListSnapshotInfo}; see {@link #getLatestSnapshotChain()}.
  */
 public class SimpleStateMachineStorage implements StateMachineStorage {
 
@@ -52,14 +57,19 @@ public class SimpleStateMachineStorage implements StateMachineStorage {
 
   static final String SNAPSHOT_FILE_PREFIX = "snapshot";
   static final String CORRUPT_SNAPSHOT_FILE_SUFFIX = ".corrupt";
+  static final String DELTA_SNAPSHOT_FILE_SUFFIX = ".delta";
   /** snapshot.term_index */
   public static final Pattern SNAPSHOT_REGEX =
       Pattern.compile(SNAPSHOT_FILE_PREFIX + "\\.(\\d+)_(\\d+)");
+  /** snapshot.term_index.delta */
+  public static final Pattern DELTA_SNAPSHOT_REGEX =
+      Pattern.compile(SNAPSHOT_FILE_PREFIX + "\\.(\\d+)_(\\d+)\\" + DELTA_SNAPSHOT_FILE_SUFFIX);
 
   private RaftStorage raftStorage;
   private File smDir = null;
 
   private volatile SingleFileSnapshotInfo currentSnapshot = null;
+  private volatile FileListSnapshotInfo currentSnapshotChain = null;
 
   @Override
   public void init(RaftStorage rStorage) throws IOException {
@@ -92,10 +102,11 @@ public class SimpleStateMachineStorage implements StateMachineStorage {
         }
       }
 
-      if (allSnapshotFiles.size() > snapshotRetentionPolicy.getNumSnapshotsRetained()) {
-        allSnapshotFiles.sort(new SnapshotFileComparator());
+      final int numRetained = snapshotRetentionPolicy.getNumSnapshotsRetained();
+      allSnapshotFiles.sort(new SnapshotFileComparator());
+      if (allSnapshotFiles.size() > numRetained) {
         List<File> snapshotFilesToBeCleaned = allSnapshotFiles.subList(
-            snapshotRetentionPolicy.getNumSnapshotsRetained(), allSnapshotFiles.size()).stream()
+            numRetained, allSnapshotFiles.size()).stream()
             .map(singleFileSnapshotInfo -> singleFileSnapshotInfo.getFile().getPath().toFile())
             .collect(Collectors.toList());
         for (File snapshotFile : snapshotFilesToBeCleaned) {
@@ -103,6 +114,16 @@ public class SimpleStateMachineStorage implements StateMachineStorage {
           FileUtils.deleteFileQuietly(snapshotFile);
         }
       }
+
+      if (!allSnapshotFiles.isEmpty()) {
+        // the deltas up to the oldest retained snapshot do not belong to any retained snapshot chain
+        final long oldestRetainedIndex = allSnapshotFiles.get(Math.min(numRetained, allSnapshotFiles.size()) - 1)
+            .getIndex();
+        for (FileInfo delta : findDeltaSnapshotFiles(oldestRetainedIndex, false)) {
+          LOG.info("Deleting old delta snapshot at {}", delta.getPath());
+          FileUtils.deleteFileQuietly(delta.getPath().toFile());
+        }
+      }
     }
   }
 
@@ -131,6 +152,11 @@ public class SimpleStateMachineStorage implements StateMachineStorage {
     return new File(smDir, getSnapshotFileName(term, endIndex));
   }
 
+  /** @return the file of a delta snapshot containing the changes up to the given index. */
+  public File getDeltaSnapshotFile(long term, long endIndex) {
+    return new File(smDir, getSnapshotFileName(term, endIndex) + DELTA_SNAPSHOT_FILE_SUFFIX);
+  }
+
   protected File getTmpSnapshotFile(long term, long endIndex) {
     return new File(smDir, getTmpSnapshotFileName(term, endIndex));
   }
@@ -160,8 +186,56 @@ public class SimpleStateMachineStorage implements StateMachineStorage {
     return latest;
   }
 
+  /**
+   * Find the latest snapshot chain, i.e. the latest full snapshot followed by the deltas after it.
+   *
+   * @return the snapshot chain with the files sorted by the index,
+   *         or null if there is no full snapshot.
+   */
+  public FileListSnapshotInfo findLatestSnapshotChain() throws IOException {
+    final SingleFileSnapshotInfo base = findLatestSnapshot();
+    if (base == null) {
+      return null;
+    }
+    final List<FileInfo> deltas = findDeltaSnapshotFiles(base.getIndex(), true);
+    if (deltas.isEmpty()) {
+      return base;
+    }
+    final List<FileInfo> files = new ArrayList<>(deltas.size() + 1);
+    files.add(base.getFile());
+    files.addAll(deltas);
+    final TermIndex last = getTermIndexFromDeltaSnapshotFile(deltas.get(deltas.size() - 1).getPath().toFile());
+    return new FileListSnapshotInfo(files, last.getTerm(), last.getIndex());
+  }
+
+  /**
+   * @param after find the deltas after (if true) or up to (if false) the given index.
+   * @return the delta files sorted by the index.
+   */
+  private List<FileInfo> findDeltaSnapshotFiles(long index, boolean after) throws IOException {
+    final List<FileInfo> deltas = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(smDir.toPath())) {
+      for (Path path : stream) {
+        final Matcher matcher = DELTA_SNAPSHOT_REGEX.matcher(path.getFileName().toString());
+        if (matcher.matches() && (Long.parseLong(matcher.group(2)) > index) == after) {
+          final MD5Hash fileDigest = after? MD5FileUtil.readStoredMd5ForFile(path.toFile()): null;
+          deltas.add(new FileInfo(path, fileDigest));
+        }
+      }
+    }
+    deltas.sort(Comparator.comparingLong(f -> getTermIndexFromDeltaSnapshotFile(f.getPath().toFile()).getIndex()));
+    return deltas;
+  }
+
+  private static TermIndex getTermIndexFromDeltaSnapshotFile(File file) {
+    final Matcher m = DELTA_SNAPSHOT_REGEX.matcher(file.getName());
+    Preconditions.assertTrue(m.matches(), () -> "Unexpected delta snapshot file " + file);
+    return TermIndex.valueOf(Long.parseLong(m.group(1)), Long.parseLong(m.group(2)));
+  }
+
   public void loadLatestSnapshot() throws IOException {
     this.currentSnapshot = findLatestSnapshot();
+    this.currentSnapshotChain = findLatestSnapshotChain();
   }
 
   public static String getSnapshotFileName(long term, long endIndex) {
@@ -173,6 +247,17 @@ public class SimpleStateMachineStorage implements StateMachineStorage {
     return currentSnapshot;
   }
 
+  /**
+   * A state machine storing incremental snapshots may return this chain
+   * from {@link org.apache.ratis.statemachine.StateMachine#getLatestSnapshot()}
+   * so that only the files a follower lacks are sent when installing the snapshot to the follower.
+   *
+   * @return the latest snapshot chain loaded by {@link #loadLatestSnapshot()}.
+   */
+  public FileListSnapshotInfo getLatestSnapshotChain() {
+    return currentSnapshotChain;
+  }
+
   @VisibleForTesting
   public File getSmDir() {
     return smDir;
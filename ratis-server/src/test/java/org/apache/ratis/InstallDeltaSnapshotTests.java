@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis;
+
+import org.apache.ratis.RaftTestUtil.SimpleMessage;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftGroupId;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.server.RaftServer;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.impl.MiniRaftCluster;
+import org.apache.ratis.server.protocol.TermIndex;
+import org.apache.ratis.server.raftlog.RaftLog;
+import org.apache.ratis.server.storage.FileInfo;
+import org.apache.ratis.server.storage.RaftStorage;
+import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.statemachine.TransactionContext;
+import org.apache.ratis.statemachine.impl.BaseStateMachine;
+import org.apache.ratis.statemachine.impl.FileListSnapshotInfo;
+import org.apache.ratis.statemachine.impl.SimpleStateMachineStorage;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.LifeCycle;
+import org.apache.ratis.util.MD5FileUtil;
+import org.apache.ratis.util.SizeInBytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Test installing an incremental snapshot, i.e. a full snapshot followed by deltas,
+ * where the files unchanged from the snapshot previously installed to the follower are not sent again.
+ */
+public abstract class InstallDeltaSnapshotTests<CLUSTER extends MiniRaftCluster>
+    extends BaseTest
+    implements MiniRaftCluster.Factory.Get<CLUSTER> {
+  static final int SNAPSHOT_TRIGGER_THRESHOLD = 10;
+  static final int NUM_MESSAGES_PER_ROUND = SNAPSHOT_TRIGGER_THRESHOLD * 4;
+
+  {
+    final RaftProperties p = getProperties();
+    p.setClass(MiniRaftCluster.STATEMACHINE_CLASS_KEY, DeltaSnapshotStateMachine.class, StateMachine.class);
+    RaftServerConfigKeys.Snapshot.setAutoTriggerEnabled(p, true);
+    RaftServerConfigKeys.Snapshot.setAutoTriggerThreshold(p, SNAPSHOT_TRIGGER_THRESHOLD);
+    RaftServerConfigKeys.Log.setPurgeUptoSnapshotIndex(p, true);
+    RaftServerConfigKeys.Log.setPurgeGap(p, 1);
+    RaftServerConfigKeys.Log.setSegmentSizeMax(p, SizeInBytes.valueOf(1024)); // 1k segment
+  }
+
+  /**
+   * A state machine recording the messages applied.
+   * Its first snapshot is a full snapshot and each subsequent snapshot is a delta
+   * containing the messages applied since the previous snapshot.
+   */
+  public static class DeltaSnapshotStateMachine extends BaseStateMachine {
+    private final SimpleStateMachineStorage storage = new SimpleStateMachineStorage();
+    /** The messages applied in the log order. */
+    private final List<String> messages = new ArrayList<>();
+    /** The number of messages in the snapshot files. */
+    private int numSnapshotMessages;
+
+    @Override
+    public synchronized void initialize(RaftServer server, RaftGroupId groupId, RaftStorage raftStorage)
+        throws IOException {
+      getLifeCycle().startAndTransition(() -> {
+        super.initialize(server, groupId, raftStorage);
+        storage.init(raftStorage);
+        loadSnapshot();
+      });
+    }
+
+    @Override
+    public synchronized void pause() {
+      getLifeCycle().transition(LifeCycle.State.PAUSING);
+      getLifeCycle().transition(LifeCycle.State.PAUSED);
+    }
+
+    @Override
+    public synchronized void reinitialize() throws IOException {
+      loadSnapshot();
+      if (getLifeCycleState() == LifeCycle.State.PAUSED) {
+        getLifeCycle().transition(LifeCycle.State.STARTING);
+        getLifeCycle().transition(LifeCycle.State.RUNNING);
+      }
+    }
+
+    private void loadSnapshot() throws IOException {
+      storage.loadLatestSnapshot();
+      final FileListSnapshotInfo chain = storage.getLatestSnapshotChain();
+      messages.clear();
+      if (chain != null) {
+        for (FileInfo f : chain.getFiles()) {
+          messages.addAll(Files.readAllLines(f.getPath(), StandardCharsets.UTF_8));
+        }
+        setLastAppliedTermIndex(chain.getTermIndex());
+      }
+      numSnapshotMessages = messages.size();
+    }
+
+    @Override
+    public SimpleStateMachineStorage getStateMachineStorage() {
+      return storage;
+    }
+
+    @Override
+    public FileListSnapshotInfo getLatestSnapshot() {
+      return storage.getLatestSnapshotChain();
+    }
+
+    @Override
+    public synchronized CompletableFuture<Message> applyTransaction(TransactionContext trx) {
+      final String m = trx.getStateMachineLogEntry().getLogData().toStringUtf8();
+      messages.add(m);
+      updateLastAppliedTermIndex(trx.getLogEntry().getTerm(), trx.getLogEntry().getIndex());
+      return CompletableFuture.completedFuture(Message.valueOf(m));
+    }
+
+    @Override
+    public synchronized long takeSnapshot() throws IOException {
+      final TermIndex last = getLastAppliedTermIndex();
+      if (last.getTerm() <= 0 || last.getIndex() <= 0) {
+        return RaftLog.INVALID_LOG_INDEX;
+      }
+      final File file = storage.getLatestSnapshotChain() == null?
+          storage.getSnapshotFile(last.getTerm(), last.getIndex())
+          : storage.getDeltaSnapshotFile(last.getTerm(), last.getIndex());
+      Files.write(file.toPath(), messages.subList(numSnapshotMessages, messages.size()), StandardCharsets.UTF_8);
+      MD5FileUtil.saveMD5File(file, MD5FileUtil.computeMd5ForFile(file));
+      numSnapshotMessages = messages.size();
+      storage.loadLatestSnapshot();
+      return last.getIndex();
+    }
+
+    synchronized List<String> getMessages() {
+      return new ArrayList<>(messages);
+    }
+  }
+
+  @Test
+  public void testInstallDeltaSnapshot() throws Exception {
+    runWithNewCluster(3, this::runTestInstallDeltaSnapshot);
+  }
+
+  void runTestInstallDeltaSnapshot(CLUSTER cluster) throws Exception {
+    final RaftServer.Division leader = RaftTestUtil.waitForLeader(cluster);
+    final RaftPeerId followerId = cluster.getFollowers().get(0).getId();
+
+    // the first installation sends all the files
+    final int numFiles = sendAndInstall(cluster, leader, followerId, 0);
+    final Path base = getSnapshotChain(cluster.getDivision(followerId)).getFiles().get(0).getPath();
+    final Object baseKey = Files.readAttributes(base, BasicFileAttributes.class).fileKey();
+
+    // the second installation reuses the files installed previously
+    final int numMoreFiles = sendAndInstall(cluster, leader, followerId, 1);
+    Assert.assertTrue(numMoreFiles > numFiles);
+    final RaftServer.Division follower = cluster.getDivision(followerId);
+    Assert.assertEquals(base, getSnapshotChain(follower).getFiles().get(0).getPath());
+    // the base is hard linked from the previous installation but not received again
+    Assert.assertEquals(baseKey, Files.readAttributes(base, BasicFileAttributes.class).fileKey());
+  }
+
+  /**
+   * Kill the follower, send messages until the leader has taken new snapshots and purged its log,
+   * and then restart the follower so that the latest snapshot is installed to it.
+   *
+   * @return the number of files in the snapshot installed.
+   */
+  private int sendAndInstall(CLUSTER cluster, RaftServer.Division leader, RaftPeerId followerId, int round)
+      throws Exception {
+    final long followerNextIndex = cluster.getDivision(followerId).getRaftLog().getNextIndex();
+    cluster.killServer(followerId);
+
+    final int numFiles = getNumSnapshotFiles(leader);
+    try (RaftClient client = cluster.createClient(leader.getId())) {
+      for (int i = 0; i < NUM_MESSAGES_PER_ROUND; i++) {
+        Assert.assertTrue(client.io().send(new SimpleMessage("r" + round + "m" + i)).isSuccess());
+      }
+    }
+    JavaUtils.attempt(() -> {
+      Assert.assertTrue(getNumSnapshotFiles(leader) > numFiles);
+      Assert.assertTrue(leader.getRaftLog().getStartIndex() > followerNextIndex);
+    }, 10, ONE_SECOND, "leader snapshot and purge", LOG);
+
+    cluster.restartServer(followerId, false);
+    final RaftServer.Division follower = cluster.getDivision(followerId);
+    final long leaderApplied = leader.getInfo().getLastAppliedIndex();
+    JavaUtils.attempt(() -> Assert.assertTrue(follower.getInfo().getLastAppliedIndex() >= leaderApplied),
+        10, ONE_SECOND, followerId + " catch up", LOG);
+
+    final DeltaSnapshotStateMachine leaderStateMachine = (DeltaSnapshotStateMachine) leader.getStateMachine();
+    final DeltaSnapshotStateMachine followerStateMachine = (DeltaSnapshotStateMachine) follower.getStateMachine();
+    Assert.assertEquals(leaderStateMachine.getMessages(), followerStateMachine.getMessages());
+    return getSnapshotChain(follower).getFiles().size();
+  }
+
+  static FileListSnapshotInfo getSnapshotChain(RaftServer.Division division) {
+    final FileListSnapshotInfo chain = ((DeltaSnapshotStateMachine) division.getStateMachine()).getLatestSnapshot();
+    Assert.assertNotNull(division.getId() + " has no snapshot", chain);
+    return chain;
+  }
+
+  static int getNumSnapshotFiles(RaftServer.Division division) {
+    final FileListSnapshotInfo chain = ((DeltaSnapshotStateMachine) division.getStateMachine()).getLatestSnapshot();
+    return chain == null? 0: chain.getFiles().size();
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis;
+
+import org.apache.ratis.RaftTestUtil.SimpleMessage;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.proto.RaftProtos.StateMachineLogEntryProto;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.server.RaftServer;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.impl.MiniRaftCluster;
+import org.apache.ratis.server.raftlog.RaftLog;
+import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.statemachine.TransactionContext;
+import org.apache.ratis.statemachine.impl.BaseStateMachine;
+import org.apache.ratis.util.SizeInBytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/** Test a cluster with {@link RaftServerConfigKeys.Log#COMPRESSION_KEY} enabled. */
+public abstract class LogCompressionTests<CLUSTER extends MiniRaftCluster>
+    extends BaseTest
+    implements MiniRaftCluster.Factory.Get<CLUSTER> {
+  static final int NUM_MESSAGES = 20;
+
+  {
+    final RaftProperties p = getProperties();
+    p.setClass(MiniRaftCluster.STATEMACHINE_CLASS_KEY, RecordingStateMachine.class, StateMachine.class);
+    RaftServerConfigKeys.Log.setCompression(p, RaftServerConfigKeys.Log.Compression.DEFLATE);
+    RaftServerConfigKeys.Log.setCompressionMinSize(p, SizeInBytes.valueOf("64B"));
+  }
+
+  /** A state machine recording the log data applied and checking that it is decompressed. */
+  public static class RecordingStateMachine extends BaseStateMachine {
+    private final List<String> applied = new ArrayList<>();
+
+    @Override
+    public synchronized CompletableFuture<Message> applyTransaction(TransactionContext trx) {
+      final StateMachineLogEntryProto smLog = trx.getLogEntry().getStateMachineLogEntry();
+      Assert.assertEquals(StateMachineLogEntryProto.Compression.NONE, smLog.getCompression());
+      applied.add(smLog.getLogData().toStringUtf8());
+      return super.applyTransaction(trx);
+    }
+
+    synchronized List<String> getApplied() {
+      return new ArrayList<>(applied);
+    }
+  }
+
+  @Test
+  public void testLogCompression() throws Exception {
+    runWithNewCluster(3, this::runTestLogCompression);
+  }
+
+  void runTestLogCompression(CLUSTER cluster) throws Exception {
+    final List<String> expected = new ArrayList<>();
+    sendMessages(cluster, "a", expected);
+
+    // a restarted follower decompresses the entries read from its log segments
+    final RaftPeerId followerId = cluster.getFollowers().get(0).getId();
+    cluster.killServer(followerId);
+    cluster.restartServer(followerId, false);
+
+    // a new leader compresses the entries it appends
+    final RaftPeerId oldLeader = RaftTestUtil.waitAndKillLeader(cluster);
+    RaftTestUtil.waitForLeader(cluster);
+    cluster.restartServer(oldLeader, false);
+    sendMessages(cluster, "b", expected);
+
+    for (RaftServer.Division d : cluster.iterateDivisions()) {
+      Assert.assertEquals(d.getId() + " applied", expected, ((RecordingStateMachine) d.getStateMachine()).getApplied());
+      assertCompressed(d, expected.size());
+    }
+  }
+
+  private void sendMessages(CLUSTER cluster, String prefix, List<String> expected) throws Exception {
+    final List<SimpleMessage> messages = new ArrayList<>(NUM_MESSAGES);
+    for (int i = 0; i < NUM_MESSAGES; i++) {
+      // compressible messages larger than the min size
+      final StringBuilder b = new StringBuilder();
+      for (int j = 0; j < 20; j++) {
+        b.append(prefix).append(i).append("-0123456789;");
+      }
+      messages.add(new SimpleMessage(b.toString()));
+    }
+    try (RaftClient client = cluster.createClient(RaftTestUtil.waitForLeader(cluster).getId())) {
+      RaftTestUtil.sendAsyncAndWaitForApplied(cluster, client, messages);
+    }
+    messages.forEach(m -> expected.add(m.getContent().toStringUtf8()));
+  }
+
+  /** The log entries, both on disk and replicated, have their log data compressed. */
+  static void assertCompressed(RaftServer.Division division, int numExpected) throws Exception {
+    final RaftLog log = division.getRaftLog();
+    int count = 0;
+    for (long i = log.getStartIndex(); i <= log.getLastCommittedIndex(); i++) {
+      final LogEntryProto entry = log.get(i);
+      if (entry != null && entry.hasStateMachineLogEntry()) {
+        Assert.assertEquals(division.getId() + ": " + i, StateMachineLogEntryProto.Compression.DEFLATE,
+            entry.getStateMachineLogEntry().getCompression());
+        count++;
+      }
+    }
+    Assert.assertEquals(numExpected, count);
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.ratis;
 import org.apache.ratis.client.RaftClient;
 import org.apache.ratis.proto.RaftProtos.LogEntryProto;
 import org.apache.ratis.proto.RaftProtos.LogEntryProto.LogEntryBodyCase;
+import org.apache.ratis.proto.RaftProtos.ReplicationLevel;
 import org.apache.ratis.proto.RaftProtos.StateMachineLogEntryProto;
 import org.apache.ratis.protocol.ClientId;
 import org.apache.ratis.protocol.Message;
@@ -51,6 +52,7 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Objects;
@@ -128,6 +130,39 @@ public interface RaftTestUtil {
     }
   }
 
+  /**
+   * Send the given messages asynchronously using the given client
+   * and then wait for all the servers in the cluster to apply them.
+   *
+   * @return the replies, one for each message in the same order.
+   */
+  static List<RaftClientReply> sendAsyncAndWaitForApplied(MiniRaftCluster cluster, RaftClient client,
+      List<? extends Message> messages) throws Exception {
+    final List<CompletableFuture<RaftClientReply>> futures = new ArrayList<>(messages.size());
+    for (Message m : messages) {
+      futures.add(client.async().send(m));
+    }
+    final List<RaftClientReply> replies = new ArrayList<>(messages.size());
+    long lastIndex = 0;
+    for (CompletableFuture<RaftClientReply> f : futures) {
+      final RaftClientReply reply = f.get();
+      Assert.assertTrue(reply.isSuccess());
+      replies.add(reply);
+      lastIndex = Math.max(lastIndex, reply.getLogIndex());
+    }
+    Assert.assertTrue(client.io().watch(lastIndex, ReplicationLevel.ALL_COMMITTED).isSuccess());
+    waitForApplied(cluster, lastIndex);
+    return replies;
+  }
+
+  /** Wait for all the servers in the cluster to apply the log entries up to the given index. */
+  static void waitForApplied(MiniRaftCluster cluster, long index) throws InterruptedException {
+    for (RaftServer.Division d : cluster.iterateDivisions()) {
+      JavaUtils.attempt(() -> Assert.assertTrue(d.getInfo().getLastAppliedIndex() >= index),
+          10, TimeDuration.ONE_SECOND, d.getId() + " apply " + index, LOG);
+    }
+  }
+
   static RaftPeerId waitAndKillLeader(MiniRaftCluster cluster) throws InterruptedException {
     final RaftServer.Division leader = waitForLeader(cluster);
     Assert.assertNotNull(leader);
@@ -167,16 +202,12 @@ public interface RaftTestUtil {
   static boolean logEntriesContains(RaftLog log, long startIndex, long endIndex, SimpleMessage... expectedMessages) {
     int idxEntries = 0;
     int idxExpected = 0;
-    final LogEntryHeader[] termIndices = log.getEntries(startIndex, endIndex);
-    while (idxEntries < termIndices.length
+    final List<LogEntryProto> entries = getLogEntries(log, startIndex, endIndex);
+    while (idxEntries < entries.size()
         && idxExpected < expectedMessages.length) {
-      try {
-        if (Arrays.equals(expectedMessages[idxExpected].getContent().toByteArray(),
-            log.get(termIndices[idxEntries].getIndex()).getStateMachineLogEntry().getLogData().toByteArray())) {
-          ++idxExpected;
-        }
-      } catch (IOException e) {
-        throw new RuntimeException(e);
+      if (Arrays.equals(expectedMessages[idxExpected].getContent().toByteArray(),
+          entries.get(idxEntries).getStateMachineLogEntry().getLogData().toByteArray())) {
+        ++idxExpected;
       }
       ++idxEntries;
     }
@@ -188,18 +219,14 @@ public interface RaftTestUtil {
   static boolean logEntriesNotContains(RaftLog log, long startIndex, long endIndex, SimpleMessage... expectedMessages) {
     int idxEntries = 0;
     int idxExpected = 0;
-    final LogEntryHeader[] termIndices = log.getEntries(startIndex, endIndex);
-    while (idxEntries < termIndices.length
+    final List<LogEntryProto> entries = getLogEntries(log, startIndex, endIndex);
+    while (idxEntries < entries.size()
         && idxExpected < expectedMessages.length) {
-      try {
-        if (Arrays.equals(expectedMessages[idxExpected].getContent().toByteArray(),
-            log.get(termIndices[idxEntries].getIndex()).getStateMachineLogEntry().getLogData().toByteArray())) {
-          return false;
-        } else {
-          ++idxExpected;
-        }
-      } catch (IOException e) {
-        throw new RuntimeException(e);
+      if (Arrays.equals(expectedMessages[idxExpected].getContent().toByteArray(),
+          entries.get(idxEntries).getStateMachineLogEntry().getLogData().toByteArray())) {
+        return false;
+      } else {
+        ++idxExpected;
       }
       ++idxEntries;
     }
@@ -208,23 +235,42 @@ public interface RaftTestUtil {
 
   static void checkLogEntries(RaftLog log, SimpleMessage[] expectedMessages,
       Predicate<LogEntryProto> predicate) {
-    final LogEntryHeader[] termIndices = log.getEntries(0, Long.MAX_VALUE);
-    for (int i = 0; i < termIndices.length; i++) {
+    for (LogEntryProto e : getLogEntries(log, 0, Long.MAX_VALUE)) {
       for (int j = 0; j < expectedMessages.length; j++) {
-        final LogEntryProto e;
-        try {
-          e = log.get(termIndices[i].getIndex());
-          if (Arrays.equals(expectedMessages[j].getContent().toByteArray(),
-              e.getStateMachineLogEntry().getLogData().toByteArray())) {
-            Assert.assertTrue(predicate.test(e));
-          }
-        } catch (IOException exception) {
-          exception.printStackTrace();
+        if (Arrays.equals(expectedMessages[j].getContent().toByteArray(),
+            e.getStateMachineLogEntry().getLogData().toByteArray())) {
+          Assert.assertTrue(predicate.test(e));
         }
       }
     }
   }
 
+  /**
+   * @return the log entries in the given range,
+   *         where the entries coalesced in a batch entry are returned separately
+   *         and the log data is decompressed.
+   */
+  static List<LogEntryProto> getLogEntries(RaftLog log, long startIndex, long endIndex) {
+    final List<LogEntryProto> entries = new ArrayList<>();
+    for (LogEntryHeader h : log.getEntries(startIndex, endIndex)) {
+      try {
+        entries.addAll(splitBatch(log.get(h.getIndex())));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * @return the entries coalesced in the given entry if it is a batch;
+   *         otherwise, return the given entry.  The log data is decompressed.
+   */
+  static List<LogEntryProto> splitBatch(LogEntryProto entry) throws IOException {
+    return LogProtoUtils.isBatch(entry)? LogProtoUtils.splitBatch(entry)
+        : Collections.singletonList(LogProtoUtils.decompressLogData(entry));
+  }
+
   static void assertLogEntries(MiniRaftCluster cluster, SimpleMessage[] expectedMessages) {
     for(SimpleMessage m : expectedMessages) {
       assertLogEntries(cluster, m);
@@ -266,11 +312,18 @@ public interface RaftTestUtil {
 
   static List<LogEntryProto> getStateMachineLogEntries(RaftLog log) {
     final List<LogEntryProto> entries = new ArrayList<>();
+    long previousIndex = -1;
     for (LogEntryProto e : getLogEntryProtos(log)) {
+      Assert.assertTrue(e.getIndex() > previousIndex);
+      previousIndex = e.getIndex();
       final String s = LogProtoUtils.toLogEntryString(e);
       if (e.hasStateMachineLogEntry()) {
         LOG.info(s + ", " + e.getStateMachineLogEntry().toString().trim().replace("\n", ", "));
-        entries.add(e);
+        try {
+          entries.addAll(splitBatch(e));
+        } catch (IOException exception) {
+          throw new AssertionError("Failed to split " + s, exception);
+        }
       } else if (e.hasConfigurationEntry()) {
         LOG.info("Found {}, ignoring it.", s);
       } else if (e.hasMetadataEntry()) {
@@ -300,7 +353,8 @@ public interface RaftTestUtil {
       if (e.getTerm() > expectedTerm) {
         expectedTerm = e.getTerm();
       }
-      Assert.assertTrue(e.getIndex() > logIndex);
+      // the entries coalesced in a batch share the index of the batch entry
+      Assert.assertTrue(e.getIndex() >= logIndex);
       logIndex = e.getIndex();
       Assert.assertArrayEquals(expectedMessages[i].getContent().toByteArray(),
           e.getStateMachineLogEntry().getLogData().toByteArray());
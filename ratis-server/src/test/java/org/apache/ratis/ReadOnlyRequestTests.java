@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis;
+
+import org.apache.ratis.RaftTestUtil.SimpleMessage;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.protocol.exceptions.StateMachineException;
+import org.apache.ratis.server.RaftServer;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.impl.MiniRaftCluster;
+import org.apache.ratis.statemachine.SimpleStateMachine4Testing;
+import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.statemachine.TransactionContext;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.Timestamp;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public abstract class ReadOnlyRequestTests<CLUSTER extends MiniRaftCluster>
+    extends BaseTest
+    implements MiniRaftCluster.Factory.Get<CLUSTER> {
+
+  static final int NUM_SERVERS = 3;
+  static final int NUM_MESSAGES = 10;
+
+  @Before
+  public void setup() {
+    final RaftProperties p = getProperties();
+    p.setClass(MiniRaftCluster.STATEMACHINE_CLASS_KEY,
+        SimpleStateMachine4Testing.class, StateMachine.class);
+    RaftServerConfigKeys.Read.setOption(p, RaftServerConfigKeys.Read.Option.LINEARIZABLE);
+  }
+
+  @Test
+  public void testLinearizableRead() throws Exception {
+    runWithNewCluster(NUM_SERVERS, this::runTestLinearizableRead);
+  }
+
+  void runTestLinearizableRead(CLUSTER cluster) throws Exception {
+    final RaftPeerId leaderId = RaftTestUtil.waitForLeader(cluster).getId();
+    try (RaftClient client = cluster.createClient(leaderId)) {
+      for (int i = 0; i < NUM_MESSAGES; i++) {
+        final SimpleMessage m = new SimpleMessage("m" + i);
+        final RaftClientReply writeReply = client.io().send(m);
+        Assert.assertTrue(writeReply.isSuccess());
+
+        // the write must be visible to a linearizable read right after the write is replied
+        final RaftClientReply readReply = client.io().sendReadOnly(m);
+        assertReadReply(m, writeReply.getLogIndex(), readReply);
+      }
+    }
+  }
+
+  @Test
+  public void testLinearizableReadWithLeaderLease() throws Exception {
+    RaftServerConfigKeys.Read.setLeaderLeaseEnabled(getProperties(), true);
+    try {
+      runWithNewCluster(NUM_SERVERS, this::runTestLinearizableRead);
+    } finally {
+      RaftServerConfigKeys.Read.setLeaderLeaseEnabled(getProperties(), false);
+    }
+  }
+
+  @Test
+  public void testFollowerLinearizableRead() throws Exception {
+    runWithNewCluster(NUM_SERVERS, this::runTestFollowerLinearizableRead);
+  }
+
+  void runTestFollowerLinearizableRead(CLUSTER cluster) throws Exception {
+    final RaftPeerId leaderId = RaftTestUtil.waitForLeader(cluster).getId();
+    final List<RaftServer.Division> followers = cluster.getFollowers();
+    Assert.assertEquals(NUM_SERVERS - 1, followers.size());
+
+    try (RaftClient client = cluster.createClient(leaderId)) {
+      for (int i = 0; i < NUM_MESSAGES; i++) {
+        final SimpleMessage m = new SimpleMessage("m" + i);
+        final RaftClientReply writeReply = client.io().send(m);
+        Assert.assertTrue(writeReply.isSuccess());
+
+        // the write must be visible to a linearizable read served by any follower
+        for (RaftServer.Division f : followers) {
+          final RaftClientReply readReply = client.io().sendReadOnly(m, f.getId());
+          Assert.assertEquals(f.getId(), readReply.getServerId());
+          assertReadReply(m, writeReply.getLogIndex(), readReply);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testLinearizableReadAsync() throws Exception {
+    runWithNewCluster(NUM_SERVERS, this::runTestLinearizableReadAsync);
+  }
+
+  void runTestLinearizableReadAsync(CLUSTER cluster) throws Exception {
+    final RaftPeerId leaderId = RaftTestUtil.waitForLeader(cluster).getId();
+    try (RaftClient client = cluster.createClient(leaderId)) {
+      final List<CompletableFuture<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < NUM_MESSAGES; i++) {
+        final SimpleMessage m = new SimpleMessage("m" + i);
+        futures.add(client.async().send(m)
+            .thenCompose(w -> client.async().sendReadOnly(m)
+                .thenAccept(r -> assertReadReply(m, w.getLogIndex(), r))));
+      }
+      for (CompletableFuture<Void> f : futures) {
+        f.get();
+      }
+    }
+  }
+
+  /** A state machine failing the transactions of {@link #FAIL}. */
+  public static class FailingStateMachine extends SimpleStateMachine4Testing {
+    static final SimpleMessage FAIL = new SimpleMessage("fail");
+
+    @Override
+    public CompletableFuture<Message> applyTransaction(TransactionContext trx) {
+      final CompletableFuture<Message> applied = super.applyTransaction(trx);
+      final ByteString data = trx.getLogEntry().getStateMachineLogEntry().getLogData();
+      if (data.equals(FAIL.getContent())) {
+        return JavaUtils.completeExceptionally(new StateMachineException("Failed to apply " + FAIL));
+      }
+      return applied;
+    }
+  }
+
+  @Test
+  public void testLinearizableReadAfterFailedTransaction() throws Exception {
+    getProperties().setClass(MiniRaftCluster.STATEMACHINE_CLASS_KEY, FailingStateMachine.class, StateMachine.class);
+    runWithNewCluster(NUM_SERVERS, this::runTestLinearizableReadAfterFailedTransaction);
+  }
+
+  void runTestLinearizableReadAfterFailedTransaction(CLUSTER cluster) throws Exception {
+    final RaftPeerId leaderId = RaftTestUtil.waitForLeader(cluster).getId();
+    try (RaftClient client = cluster.createClient(leaderId)) {
+      final SimpleMessage m = new SimpleMessage("m");
+      Assert.assertTrue(client.io().send(m).isSuccess());
+
+      // the transaction fails but its index is still applied
+      final RaftClientReply failed = client.async().send(FailingStateMachine.FAIL)
+          .exceptionally(e -> null).get();
+      Assert.assertTrue(failed == null || !failed.isSuccess());
+
+      // the read must not wait for the failed index until timeout
+      final Timestamp start = Timestamp.currentTime();
+      final RaftClientReply readReply = client.io().sendReadOnly(FailingStateMachine.FAIL);
+      Assert.assertTrue(readReply.isSuccess());
+      Assert.assertTrue("elapsed " + start.elapsedTimeMs() + "ms",
+          start.elapsedTimeMs() < RaftServerConfigKeys.Read.timeout(getProperties()).toLong(TimeUnit.MILLISECONDS));
+    }
+  }
+
+  static void assertReadReply(SimpleMessage expected, long logIndex, RaftClientReply reply) {
+    Assert.assertTrue(reply.isSuccess());
+    try {
+      final LogEntryProto entry = LogEntryProto.parseFrom(reply.getMessage().getContent());
+      Assert.assertEquals(logIndex, entry.getIndex());
+      Assert.assertEquals(expected.getContent(), entry.getStateMachineLogEntry().getLogData());
+    } catch (Exception e) {
+      throw new IllegalStateException("Failed to parse " + reply, e);
+    }
+  }
+}
@@ -44,6 +44,7 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
@@ -229,6 +230,46 @@ public abstract class GroupManagementBaseTest extends BaseTest {
     runMultiGroupTest(idIndex, 2);
   }
 
+  /** Run many divisions on the same servers, in virtual threads if they are supported. */
+  @Test
+  public void testManyGroupsWithVirtualThreads() throws Exception {
+    final RaftProperties p = new RaftProperties(prop);
+    RaftServerConfigKeys.Threads.setVirtualEnabled(p, true);
+    runTestManyGroups(getClusterFactory().newCluster(3, p), 20);
+  }
+
+  static void runTestManyGroups(MiniRaftCluster cluster, int numGroups) throws Exception {
+    cluster.start();
+    try {
+      RaftTestUtil.waitForLeader(cluster);
+      final List<RaftPeer> peers = cluster.getPeers();
+      final List<RaftGroup> groups = new ArrayList<>();
+      for (int i = 0; i < numGroups; i++) {
+        final RaftGroup g = RaftGroup.valueOf(RaftGroupId.randomId(), peers);
+        for (RaftPeer peer : peers) {
+          try (RaftClient client = cluster.createClient(peer.getId(), g)) {
+            Assert.assertTrue(client.getGroupManagementApi(peer.getId()).add(g).isSuccess());
+          }
+        }
+        groups.add(g);
+      }
+      printThreadCount(numGroups + " groups", "start groups");
+
+      // all the divisions must make progress
+      for (RaftGroup g : groups) {
+        Assert.assertNotNull(RaftTestUtil.waitForLeader(cluster, g.getGroupId()));
+        try (RaftClient client = cluster.createClient(g)) {
+          for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(client.io().send(new RaftTestUtil.SimpleMessage(g.getGroupId() + "-" + i))
+                .isSuccess());
+          }
+        }
+      }
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
   private void runMultiGroupTest(int[] idIndex, int chosen) throws Exception {
     printThreadCount(null, "init");
     runMultiGroupTest(getCluster(0), idIndex, chosen, NOOP);
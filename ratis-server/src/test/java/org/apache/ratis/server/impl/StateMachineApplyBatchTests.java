@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.RaftTestUtil;
+import org.apache.ratis.RaftTestUtil.SimpleMessage;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.server.RaftServer;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.statemachine.SimpleStateMachine4Testing;
+import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.statemachine.TransactionContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+public abstract class StateMachineApplyBatchTests<CLUSTER extends MiniRaftCluster>
+    extends BaseTest
+    implements MiniRaftCluster.Factory.Get<CLUSTER> {
+  static final int NUM_MESSAGES = 100;
+  static final int BATCH_ELEMENT_LIMIT = 8;
+
+  /** Record the log indices of each batch applied. */
+  public static class BatchStateMachine extends SimpleStateMachine4Testing {
+    private final List<List<Long>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public List<CompletableFuture<Message>> applyTransactions(List<TransactionContext> trxs) {
+      batches.add(trxs.stream().map(trx -> trx.getLogEntry().getIndex()).collect(Collectors.toList()));
+      return super.applyTransactions(trxs);
+    }
+  }
+
+  @Test
+  public void testApplyBatch() throws Exception {
+    final RaftProperties p = getProperties();
+    p.setClass(MiniRaftCluster.STATEMACHINE_CLASS_KEY, BatchStateMachine.class, StateMachine.class);
+    RaftServerConfigKeys.Apply.setBatchEnabled(p, true);
+    RaftServerConfigKeys.Apply.setBatchElementLimit(p, BATCH_ELEMENT_LIMIT);
+    try {
+      runWithNewCluster(3, this::runTestApplyBatch);
+    } finally {
+      RaftServerConfigKeys.Apply.setBatchEnabled(p, false);
+    }
+  }
+
+  void runTestApplyBatch(CLUSTER cluster) throws Exception {
+    final RaftServer.Division leader = RaftTestUtil.waitForLeader(cluster);
+    final List<SimpleMessage> messages = new ArrayList<>();
+    for (int i = 0; i < NUM_MESSAGES; i++) {
+      messages.add(new SimpleMessage("m" + i));
+    }
+    try (RaftClient client = cluster.createClient(leader.getId())) {
+      RaftTestUtil.sendAsyncAndWaitForApplied(cluster, client, messages);
+    }
+
+    int maxBatchSize = 0;
+    for (RaftServer.Division d : cluster.iterateDivisions()) {
+      final BatchStateMachine sm = (BatchStateMachine) d.getStateMachine();
+      final List<List<Long>> batches;
+      synchronized (sm.batches) {
+        batches = new ArrayList<>(sm.batches);
+      }
+
+      // a batch is a contiguous run of the log within the limit; the batches follow the log order
+      long previous = 0;
+      int numApplied = 0;
+      for (List<Long> batch : batches) {
+        Assert.assertTrue("batch=" + batch, batch.size() <= BATCH_ELEMENT_LIMIT);
+        Assert.assertTrue("previous=" + previous + ", batch=" + batch, batch.get(0) > previous);
+        for (int i = 1; i < batch.size(); i++) {
+          Assert.assertEquals("batch=" + batch, batch.get(i - 1) + 1, batch.get(i).longValue());
+        }
+        previous = batch.get(batch.size() - 1);
+        numApplied += batch.size();
+        maxBatchSize = Math.max(maxBatchSize, batch.size());
+      }
+      Assert.assertEquals(NUM_MESSAGES, numApplied);
+
+      // all the messages are applied in order
+      int message = 0;
+      for (LogEntryProto e : sm.getContent()) {
+        if (e.hasStateMachineLogEntry()) {
+          Assert.assertEquals(messages.get(message++).getContent(), e.getStateMachineLogEntry().getLogData());
+        }
+      }
+      Assert.assertEquals(NUM_MESSAGES, message);
+    }
+    // the entries committed together are applied together
+    Assert.assertTrue("maxBatchSize=" + maxBatchSize, maxBatchSize > 1);
+  }
+}
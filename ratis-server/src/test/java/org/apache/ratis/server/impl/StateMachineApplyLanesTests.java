@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.RaftTestUtil;
+import org.apache.ratis.RaftTestUtil.SimpleMessage;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.StateMachineLogEntryProto;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.server.RaftServer;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.statemachine.TransactionContext;
+import org.apache.ratis.statemachine.impl.BaseStateMachine;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+public abstract class StateMachineApplyLanesTests<CLUSTER extends MiniRaftCluster>
+    extends BaseTest
+    implements MiniRaftCluster.Factory.Get<CLUSTER> {
+  static final int NUM_KEYS = 4;
+  static final int NUM_MESSAGES_PER_KEY = 50;
+  static final int BARRIER_PERIOD = 10;
+  static final String BARRIER = "barrier";
+
+  /**
+   * The messages are "key:sequence" and the partition key is the key,
+   * except that the messages with the {@link #BARRIER} key do not have a partition key.
+   */
+  public static class KeyPartitionedStateMachine extends BaseStateMachine {
+    /** key -> the log indices applied. */
+    private final Map<String, List<Long>> applied = new ConcurrentHashMap<>();
+    /** key -> the threads applying the key. */
+    private final Map<String, Set<String>> threads = new ConcurrentHashMap<>();
+    /** The log indices in the apply order. */
+    private final List<Long> order = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public Object getApplyPartitionKey(StateMachineLogEntryProto entry) {
+      final String key = parse(entry)[0];
+      return key.equals(BARRIER)? null: key;
+    }
+
+    @Override
+    public CompletableFuture<Message> applyTransaction(TransactionContext trx) {
+      final String key = parse(trx.getStateMachineLogEntry())[0];
+      final long index = trx.getLogEntry().getIndex();
+      order.add(index);
+      threads.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread().getName());
+      applied.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>())).add(index);
+      return CompletableFuture.completedFuture(Message.valueOf(trx.getStateMachineLogEntry().getLogData()));
+    }
+
+    static String[] parse(StateMachineLogEntryProto entry) {
+      return entry.getLogData().toStringUtf8().split(":");
+    }
+  }
+
+  @Test
+  public void testApplyLanes() throws Exception {
+    final RaftProperties p = getProperties();
+    p.setClass(MiniRaftCluster.STATEMACHINE_CLASS_KEY, KeyPartitionedStateMachine.class, StateMachine.class);
+    RaftServerConfigKeys.Apply.setLanes(p, NUM_KEYS);
+    try {
+      runWithNewCluster(3, this::runTestApplyLanes);
+    } finally {
+      RaftServerConfigKeys.Apply.setLanes(p, RaftServerConfigKeys.Apply.LANES_DEFAULT);
+    }
+  }
+
+  void runTestApplyLanes(CLUSTER cluster) throws Exception {
+    final RaftServer.Division leader = RaftTestUtil.waitForLeader(cluster);
+    final List<SimpleMessage> messages = new ArrayList<>();
+    for (int i = 0; i < NUM_MESSAGES_PER_KEY; i++) {
+      for (int k = 0; k < NUM_KEYS; k++) {
+        messages.add(new SimpleMessage("k" + k + ":" + i));
+      }
+      if (i % BARRIER_PERIOD == BARRIER_PERIOD - 1) {
+        messages.add(new SimpleMessage(BARRIER + ":" + i));
+      }
+    }
+    try (RaftClient client = cluster.createClient(leader.getId())) {
+      RaftTestUtil.sendAsyncAndWaitForApplied(cluster, client, messages);
+    }
+
+    for (RaftServer.Division d : cluster.iterateDivisions()) {
+      final KeyPartitionedStateMachine sm = (KeyPartitionedStateMachine) d.getStateMachine();
+      Assert.assertEquals(NUM_KEYS + 1, sm.applied.size());
+
+      // the transactions of the same key are applied in the log order in the same lane
+      final Set<String> laneThreads = ConcurrentHashMap.newKeySet();
+      for (int k = 0; k < NUM_KEYS; k++) {
+        final String key = "k" + k;
+        final List<Long> indices = sm.applied.get(key);
+        Assert.assertEquals(NUM_MESSAGES_PER_KEY, indices.size());
+        for (int i = 1; i < indices.size(); i++) {
+          Assert.assertTrue(key + ": " + indices, indices.get(i - 1) < indices.get(i));
+        }
+        final Set<String> keyThreads = sm.threads.get(key);
+        Assert.assertEquals(key + ": " + keyThreads, 1, keyThreads.size());
+        laneThreads.addAll(keyThreads);
+      }
+      Assert.assertTrue("laneThreads=" + laneThreads, laneThreads.size() > 1);
+
+      // a barrier is applied after all the previous entries and before all the subsequent entries
+      final List<Long> order = new ArrayList<>(sm.order);
+      final List<Long> barriers = sm.applied.get(BARRIER);
+      Assert.assertEquals(NUM_MESSAGES_PER_KEY / BARRIER_PERIOD, barriers.size());
+      for (long barrier : barriers) {
+        final int position = order.indexOf(barrier);
+        for (int i = 0; i < order.size(); i++) {
+          Assert.assertEquals("barrier " + barrier + " at " + i + ": " + order,
+              i < position, order.get(i) < barrier);
+        }
+      }
+    }
+  }
+}
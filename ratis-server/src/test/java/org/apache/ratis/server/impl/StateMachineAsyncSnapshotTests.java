@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.RaftTestUtil;
+import org.apache.ratis.RaftTestUtil.SimpleMessage;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftGroupId;
+import org.apache.ratis.server.RaftServer;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.protocol.TermIndex;
+import org.apache.ratis.server.raftlog.RaftLog;
+import org.apache.ratis.server.storage.RaftStorage;
+import org.apache.ratis.statemachine.SnapshotRetentionPolicy;
+import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.statemachine.TransactionContext;
+import org.apache.ratis.statemachine.impl.BaseStateMachine;
+import org.apache.ratis.statemachine.impl.SimpleStateMachineStorage;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.MD5FileUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public abstract class StateMachineAsyncSnapshotTests<CLUSTER extends MiniRaftCluster>
+    extends BaseTest
+    implements MiniRaftCluster.Factory.Get<CLUSTER> {
+  static final int SNAPSHOT_TRIGGER_THRESHOLD = 10;
+
+  /** A counter state machine persisting its snapshots in the background once {@link #persist} is counted down. */
+  public static class AsyncSnapshotStateMachine extends BaseStateMachine {
+    /** The threads cleaning up the old snapshots. */
+    private final Set<String> cleanupThreads = ConcurrentHashMap.newKeySet();
+    private final SimpleStateMachineStorage storage = new SimpleStateMachineStorage() {
+      @Override
+      public void cleanupOldSnapshots(SnapshotRetentionPolicy policy) throws IOException {
+        cleanupThreads.add(Thread.currentThread().getName());
+        super.cleanupOldSnapshots(policy);
+      }
+    };
+    private final AtomicInteger counter = new AtomicInteger();
+    private final CountDownLatch persist = new CountDownLatch(1);
+    private final AtomicInteger snapshotsInProgress = new AtomicInteger();
+    private final AtomicInteger snapshotsStarted = new AtomicInteger();
+    /** Fail the next snapshot? */
+    private final AtomicBoolean failNext = new AtomicBoolean();
+    private final AtomicInteger snapshotsFailed = new AtomicInteger();
+
+    @Override
+    public void initialize(RaftServer server, RaftGroupId groupId, RaftStorage raftStorage) throws IOException {
+      super.initialize(server, groupId, raftStorage);
+      storage.init(raftStorage);
+    }
+
+    @Override
+    public SimpleStateMachineStorage getStateMachineStorage() {
+      return storage;
+    }
+
+    @Override
+    public CompletableFuture<Message> applyTransaction(TransactionContext trx) {
+      final int value = counter.incrementAndGet();
+      updateLastAppliedTermIndex(trx.getLogEntry().getTerm(), trx.getLogEntry().getIndex());
+      return CompletableFuture.completedFuture(Message.valueOf(String.valueOf(value)));
+    }
+
+    @Override
+    public CompletableFuture<Long> takeSnapshotAsync() {
+      // capture a consistent point before returning
+      final TermIndex last = getLastAppliedTermIndex();
+      if (last.getTerm() <= 0 || last.getIndex() <= 0) {
+        return CompletableFuture.completedFuture(RaftLog.INVALID_LOG_INDEX);
+      }
+      if (failNext.compareAndSet(true, false)) {
+        snapshotsFailed.incrementAndGet();
+        return JavaUtils.completeExceptionally(new IOException("Injected failure at " + last));
+      }
+      final int value = counter.get();
+      Assert.assertEquals(1, snapshotsInProgress.incrementAndGet());
+      snapshotsStarted.incrementAndGet();
+      return CompletableFuture.supplyAsync(() -> {
+        try {
+          Assert.assertTrue(persist.await(10, TimeUnit.SECONDS));
+          final File snapshotFile = storage.getSnapshotFile(last.getTerm(), last.getIndex());
+          Files.write(snapshotFile.toPath(), String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+          MD5FileUtil.saveMD5File(snapshotFile, MD5FileUtil.computeMd5ForFile(snapshotFile));
+          storage.loadLatestSnapshot();
+          return last.getIndex();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException(e);
+        } finally {
+          snapshotsInProgress.decrementAndGet();
+        }
+      });
+    }
+  }
+
+  @Test
+  public void testApplyDuringSnapshot() throws Exception {
+    final RaftProperties p = getProperties();
+    p.setClass(MiniRaftCluster.STATEMACHINE_CLASS_KEY, AsyncSnapshotStateMachine.class, StateMachine.class);
+    RaftServerConfigKeys.Snapshot.setAutoTriggerEnabled(p, true);
+    RaftServerConfigKeys.Snapshot.setAutoTriggerThreshold(p, SNAPSHOT_TRIGGER_THRESHOLD);
+    try {
+      runWithNewCluster(1, this::runTestApplyDuringSnapshot);
+    } finally {
+      RaftServerConfigKeys.Snapshot.setAutoTriggerEnabled(p,
+          RaftServerConfigKeys.Snapshot.AUTO_TRIGGER_ENABLED_DEFAULT);
+    }
+  }
+
+  void runTestApplyDuringSnapshot(CLUSTER cluster) throws Exception {
+    final RaftServer.Division leader = RaftTestUtil.waitForLeader(cluster);
+    final AsyncSnapshotStateMachine sm = (AsyncSnapshotStateMachine) leader.getStateMachine();
+    final List<SimpleMessage> messages = new ArrayList<>();
+    for (int i = 0; i < SNAPSHOT_TRIGGER_THRESHOLD * 3; i++) {
+      messages.add(new SimpleMessage("m" + i));
+    }
+    try (RaftClient client = cluster.createClient(leader.getId())) {
+      // the first snapshot is triggered and then blocked,
+      // while the subsequent transactions are still applied.
+      RaftTestUtil.sendAsyncAndWaitForApplied(cluster, client, messages);
+    }
+    Assert.assertEquals(messages.size(), sm.counter.get());
+    Assert.assertEquals(1, sm.snapshotsStarted.get());
+    Assert.assertNull(sm.getLatestSnapshot());
+
+    // once the first snapshot completes, the next one is triggered, fails and then is retried
+    sm.failNext.set(true);
+    sm.persist.countDown();
+    final long appliedIndex = leader.getInfo().getLastAppliedIndex();
+    JavaUtils.attempt(() -> Assert.assertEquals(appliedIndex, sm.getLatestSnapshot().getIndex()),
+        10, ONE_SECOND, "snapshot " + appliedIndex, LOG);
+    Assert.assertEquals(1, sm.snapshotsFailed.get());
+    Assert.assertEquals(2, sm.snapshotsStarted.get());
+
+    // the completed snapshots are processed by the updater but not the thread persisting the snapshot
+    JavaUtils.attempt(() -> Assert.assertFalse(sm.cleanupThreads.isEmpty()), 10, ONE_SECOND, "cleanup", LOG);
+    for (String thread : sm.cleanupThreads) {
+      Assert.assertTrue(thread, thread.contains(JavaUtils.getClassSimpleName(StateMachineUpdater.class)));
+    }
+  }
+}
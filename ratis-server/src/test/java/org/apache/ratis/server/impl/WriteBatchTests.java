@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.RaftTestUtil;
+import org.apache.ratis.RaftTestUtil.SimpleMessage;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.client.RaftClientConfigKeys;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.proto.RaftProtos.ReplicationLevel;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.exceptions.AlreadyClosedException;
+import org.apache.ratis.server.RaftServer;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.raftlog.LogProtoUtils;
+import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.statemachine.TransactionContext;
+import org.apache.ratis.statemachine.impl.BaseStateMachine;
+import org.apache.ratis.util.SizeInBytes;
+import org.apache.ratis.util.TimeDuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public abstract class WriteBatchTests<CLUSTER extends MiniRaftCluster>
+    extends BaseTest
+    implements MiniRaftCluster.Factory.Get<CLUSTER> {
+  static final int NUM_MESSAGES = 100;
+  static final int SMALL_MESSAGE_SIZE_MAX = 32;
+
+  /** Record the messages applied and the batches of the coalesced transactions. */
+  public static class RecordingStateMachine extends BaseStateMachine {
+    private final List<String> applied = Collections.synchronizedList(new ArrayList<>());
+    /** The log indices of the transactions in each batch. */
+    private final List<List<Long>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public CompletableFuture<Message> applyTransaction(TransactionContext trx) {
+      applied.add(trx.getStateMachineLogEntry().getLogData().toStringUtf8());
+      return super.applyTransaction(trx);
+    }
+
+    @Override
+    public List<CompletableFuture<Message>> applyBatchedTransactions(List<TransactionContext> trxs) {
+      batches.add(trxs.stream().map(trx -> trx.getLogEntry().getIndex()).collect(Collectors.toList()));
+      return super.applyBatchedTransactions(trxs);
+    }
+  }
+
+  @Test
+  public void testWriteBatch() throws Exception {
+    final RaftProperties p = getProperties();
+    p.setClass(MiniRaftCluster.STATEMACHINE_CLASS_KEY, RecordingStateMachine.class, StateMachine.class);
+    RaftServerConfigKeys.Write.setBatchEnabled(p, true);
+    RaftServerConfigKeys.Write.setBatchWaitTime(p, TimeDuration.valueOf(10, TimeUnit.MILLISECONDS));
+    try {
+      runWithNewCluster(3, cluster -> runTestWriteBatch(cluster, true));
+    } finally {
+      RaftServerConfigKeys.Write.setBatchEnabled(p, RaftServerConfigKeys.Write.BATCH_ENABLED_DEFAULT);
+      RaftServerConfigKeys.Write.setBatchWaitTime(p, RaftServerConfigKeys.Write.BATCH_WAIT_TIME_DEFAULT);
+    }
+  }
+
+  @Test
+  public void testClientWriteBatch() throws Exception {
+    final RaftProperties p = getProperties();
+    p.setClass(MiniRaftCluster.STATEMACHINE_CLASS_KEY, RecordingStateMachine.class, StateMachine.class);
+    RaftClientConfigKeys.Async.setBatchEnabled(p, true);
+    RaftClientConfigKeys.Async.setBatchLingerTime(p, TimeDuration.valueOf(10, TimeUnit.MILLISECONDS));
+    // a small sliding window so that sending the batches blocks
+    RaftClientConfigKeys.Async.setBatchElementLimit(p, 4);
+    RaftClientConfigKeys.Async.setOutstandingRequestsMax(p, 2);
+    try {
+      runWithNewCluster(3, cluster -> runTestWriteBatch(cluster, false));
+    } finally {
+      RaftClientConfigKeys.Async.setBatchEnabled(p, RaftClientConfigKeys.Async.BATCH_ENABLED_DEFAULT);
+      RaftClientConfigKeys.Async.setBatchLingerTime(p, RaftClientConfigKeys.Async.BATCH_LINGER_TIME_DEFAULT);
+      RaftClientConfigKeys.Async.setBatchElementLimit(p, RaftClientConfigKeys.Async.BATCH_ELEMENT_LIMIT_DEFAULT);
+      RaftClientConfigKeys.Async.setOutstandingRequestsMax(p,
+          RaftClientConfigKeys.Async.OUTSTANDING_REQUESTS_MAX_DEFAULT);
+    }
+  }
+
+  @Test
+  public void testWriteBatchOrder() throws Exception {
+    final RaftProperties p = getProperties();
+    p.setClass(MiniRaftCluster.STATEMACHINE_CLASS_KEY, RecordingStateMachine.class, StateMachine.class);
+    RaftServerConfigKeys.Write.setBatchEnabled(p, true);
+    // a long wait time so that the small writes would be overtaken by the large writes
+    RaftServerConfigKeys.Write.setBatchWaitTime(p, TimeDuration.ONE_SECOND);
+    RaftServerConfigKeys.Write.setBatchMessageSizeMax(p, SizeInBytes.valueOf(SMALL_MESSAGE_SIZE_MAX));
+    try {
+      runWithNewCluster(3, this::runTestWriteBatchOrder);
+
+      // the client batches are split on the server
+      RaftClientConfigKeys.Async.setBatchEnabled(p, true);
+      runWithNewCluster(3, this::runTestWriteBatchOrder);
+    } finally {
+      RaftServerConfigKeys.Write.setBatchEnabled(p, RaftServerConfigKeys.Write.BATCH_ENABLED_DEFAULT);
+      RaftServerConfigKeys.Write.setBatchWaitTime(p, RaftServerConfigKeys.Write.BATCH_WAIT_TIME_DEFAULT);
+      RaftServerConfigKeys.Write.setBatchMessageSizeMax(p, RaftServerConfigKeys.Write.BATCH_MESSAGE_SIZE_MAX_DEFAULT);
+      RaftClientConfigKeys.Async.setBatchEnabled(p, RaftClientConfigKeys.Async.BATCH_ENABLED_DEFAULT);
+    }
+  }
+
+  void runTestWriteBatchOrder(CLUSTER cluster) throws Exception {
+    final RaftServer.Division leader = RaftTestUtil.waitForLeader(cluster);
+    // alternate the small writes, which are batched, and the large writes, which are not
+    final List<SimpleMessage> messages = new ArrayList<>();
+    final StringBuilder large = new StringBuilder();
+    for (int i = 0; i < 2 * SMALL_MESSAGE_SIZE_MAX; i++) {
+      large.append('x');
+    }
+    for (int i = 0; i < NUM_MESSAGES; i++) {
+      messages.add(new SimpleMessage(i % 2 == 0? "s" + i: "l" + i + large));
+    }
+    final List<RaftClientReply> replies;
+    try (RaftClient client = cluster.createClient(leader.getId())) {
+      replies = RaftTestUtil.sendAsyncAndWaitForApplied(cluster, client, messages);
+    }
+
+    // the requests are appended to the log in the order sent
+    for (int i = 1; i < NUM_MESSAGES; i++) {
+      Assert.assertTrue("reply " + i + " is out of order: " + replies,
+          replies.get(i - 1).getLogIndex() <= replies.get(i).getLogIndex());
+    }
+    for (RaftServer.Division d : cluster.iterateDivisions()) {
+      final RecordingStateMachine sm = (RecordingStateMachine) d.getStateMachine();
+      Assert.assertEquals(NUM_MESSAGES, sm.applied.size());
+      for (int i = 0; i < NUM_MESSAGES; i++) {
+        Assert.assertEquals(messages.get(i).toString(), sm.applied.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testClientWriteBatchClose() throws Exception {
+    final RaftProperties p = getProperties();
+    RaftClientConfigKeys.Async.setBatchEnabled(p, true);
+    // the batch is never sent by the timeout
+    RaftClientConfigKeys.Async.setBatchLingerTime(p, TimeDuration.valueOf(1, TimeUnit.HOURS));
+    try {
+      runWithNewCluster(3, this::runTestClientWriteBatchClose);
+    } finally {
+      RaftClientConfigKeys.Async.setBatchEnabled(p, RaftClientConfigKeys.Async.BATCH_ENABLED_DEFAULT);
+      RaftClientConfigKeys.Async.setBatchLingerTime(p, RaftClientConfigKeys.Async.BATCH_LINGER_TIME_DEFAULT);
+    }
+  }
+
+  @Test
+  public void testClientWriteBatchFlush() throws Exception {
+    final RaftProperties p = getProperties();
+    p.setClass(MiniRaftCluster.STATEMACHINE_CLASS_KEY, RecordingStateMachine.class, StateMachine.class);
+    RaftClientConfigKeys.Async.setBatchEnabled(p, true);
+    // the batch is never sent by the timeout
+    RaftClientConfigKeys.Async.setBatchLingerTime(p, TimeDuration.valueOf(1, TimeUnit.HOURS));
+    try {
+      runWithNewCluster(3, this::runTestClientWriteBatchFlush);
+    } finally {
+      RaftClientConfigKeys.Async.setBatchEnabled(p, RaftClientConfigKeys.Async.BATCH_ENABLED_DEFAULT);
+      RaftClientConfigKeys.Async.setBatchLingerTime(p, RaftClientConfigKeys.Async.BATCH_LINGER_TIME_DEFAULT);
+    }
+  }
+
+  void runTestClientWriteBatchFlush(CLUSTER cluster) throws Exception {
+    final RaftServer.Division leader = RaftTestUtil.waitForLeader(cluster);
+    try (RaftClient client = cluster.createClient(leader.getId())) {
+      final List<CompletableFuture<RaftClientReply>> writes = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        writes.add(client.async().send(new SimpleMessage("m" + i)));
+      }
+      // the read-only request flushes the batch and it is sent after the batch
+      final RaftClientReply read = client.async().sendReadOnly(new SimpleMessage("read")).get(5, TimeUnit.SECONDS);
+      Assert.assertTrue(read.isSuccess());
+      long lastIndex = 0;
+      for (CompletableFuture<RaftClientReply> f : writes) {
+        final RaftClientReply reply = f.get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(reply.isSuccess());
+        lastIndex = Math.max(lastIndex, reply.getLogIndex());
+      }
+
+      // a watch request flushes the batch as well
+      final CompletableFuture<RaftClientReply> write = client.async().send(new SimpleMessage("m3"));
+      Assert.assertTrue(client.async().watch(lastIndex, ReplicationLevel.MAJORITY).get(5, TimeUnit.SECONDS)
+          .isSuccess());
+      Assert.assertTrue(write.get(5, TimeUnit.SECONDS).isSuccess());
+    }
+  }
+
+  void runTestClientWriteBatchClose(CLUSTER cluster) throws Exception {
+    final RaftServer.Division leader = RaftTestUtil.waitForLeader(cluster);
+    final List<CompletableFuture<RaftClientReply>> futures = new ArrayList<>();
+    final RaftClient client = cluster.createClient(leader.getId());
+    try {
+      for (int i = 0; i < 3; i++) {
+        futures.add(client.async().send(new SimpleMessage("m" + i)));
+      }
+    } finally {
+      client.close();
+    }
+
+    // the messages waiting in the batch fail once the client is closed
+    for (CompletableFuture<RaftClientReply> f : futures) {
+      testFailureCase("pending message", () -> f.get(5, TimeUnit.SECONDS),
+          ExecutionException.class, AlreadyClosedException.class);
+    }
+    // the messages sent after closing the client fail as well
+    testFailureCase("closed client", () -> client.async().send(new SimpleMessage("closed")).get(),
+        ExecutionException.class, AlreadyClosedException.class);
+  }
+
+  void runTestWriteBatch(CLUSTER cluster, boolean serverBatch) throws Exception {
+    final RaftServer.Division leader = RaftTestUtil.waitForLeader(cluster);
+    final List<SimpleMessage> messages = new ArrayList<>();
+    for (int i = 0; i < NUM_MESSAGES; i++) {
+      messages.add(new SimpleMessage("m" + i));
+    }
+    final List<RaftClientReply> replies;
+    try (RaftClient client = cluster.createClient(leader.getId())) {
+      replies = RaftTestUtil.sendAsyncAndWaitForApplied(cluster, client, messages);
+    }
+
+    final Set<Long> indices = new HashSet<>();
+    final Set<Long> callIds = new HashSet<>();
+    for (int i = 0; i < NUM_MESSAGES; i++) {
+      final RaftClientReply reply = replies.get(i);
+      // each request gets the reply of its own transaction
+      Assert.assertEquals(messages.get(i).getContent(), reply.getMessage().getContent());
+      indices.add(reply.getLogIndex());
+      callIds.add(reply.getCallId());
+    }
+    Assert.assertEquals(NUM_MESSAGES, callIds.size());
+    if (serverBatch) {
+      Assert.assertTrue("indices.size() = " + indices.size(), indices.size() < NUM_MESSAGES);
+    } else {
+      Assert.assertEquals(NUM_MESSAGES, indices.size());
+    }
+
+    for (RaftServer.Division d : cluster.iterateDivisions()) {
+      // all the servers apply the requests separately in the same order
+      final RecordingStateMachine sm = (RecordingStateMachine) d.getStateMachine();
+      Assert.assertEquals(NUM_MESSAGES, sm.applied.size());
+      for (int i = 0; i < NUM_MESSAGES; i++) {
+        Assert.assertEquals(messages.get(i).toString(), sm.applied.get(i));
+      }
+
+      // each batch entry in the log is applied by a single applyBatchedTransactions call
+      final List<Long> batchIndices = new ArrayList<>();
+      for (LogEntryProto e : RaftTestUtil.getLogEntryProtos(d.getRaftLog())) {
+        if (LogProtoUtils.isBatch(e)) {
+          batchIndices.add(e.getIndex());
+        }
+      }
+      Assert.assertEquals(serverBatch, !batchIndices.isEmpty());
+      Assert.assertEquals(batchIndices.size(), sm.batches.size());
+      for (int i = 0; i < batchIndices.size(); i++) {
+        final List<Long> batch = sm.batches.get(i);
+        Assert.assertTrue("batch.size() = " + batch.size(), batch.size() > 1);
+        // the transactions in a batch share the index of the batch entry
+        for (long index : batch) {
+          Assert.assertEquals(batchIndices.get(i).longValue(), index);
+        }
+      }
+    }
+  }
+}
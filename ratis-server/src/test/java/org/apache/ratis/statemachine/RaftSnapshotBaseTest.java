@@ -47,6 +47,7 @@ import org.apache.ratis.util.FileUtils;
 import org.apache.ratis.util.JavaUtils;
 import org.apache.ratis.util.LifeCycle;
 import org.apache.ratis.util.Log4jUtils;
+import org.apache.ratis.util.SizeInBytes;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -258,6 +259,16 @@ public abstract class RaftSnapshotBaseTest extends BaseTest {
     }
   }
 
+  /**
+   * Similar to {@link #testBasicInstallSnapshot()}
+   * but the snapshot files are sent in multiple chunks.
+   */
+  @Test
+  public void testInstallSnapshotWithMultipleChunks() throws Exception {
+    RaftServerConfigKeys.Log.Appender.setSnapshotChunkSizeMax(cluster.getProperties(), SizeInBytes.valueOf("1KB"));
+    testBasicInstallSnapshot();
+  }
+
   /**
    * Test for install snapshot during a peer bootstrap: start a one node cluster
    * and let it generate a snapshot. Add another node and verify that the new
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.datastream;
+
+import org.apache.ratis.thirdparty.io.netty.buffer.ByteBuf;
+import org.apache.ratis.thirdparty.io.netty.buffer.PooledByteBufAllocator;
+import org.apache.ratis.thirdparty.io.netty.util.ResourceLeakDetector;
+import org.apache.ratis.thirdparty.io.netty.util.ResourceLeakDetectorFactory;
+import org.junit.After;
+import org.junit.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Run the {@link TestNettyDataStreamWithMock} tests,
+ * which cover the success, the error and the forward paths of the data stream server,
+ * with {@link ResourceLeakDetector.Level#PARANOID} and fail if any {@link ByteBuf} is leaked.
+ * <p>
+ * Note that the leak detector must be installed before the netty buffer classes are loaded.
+ * It works since surefire does not reuse the forks, i.e. each test class runs in a new JVM.
+ */
+public class TestNettyDataStreamLeakDetection extends TestNettyDataStreamWithMock {
+  /** A {@link ResourceLeakDetector} recording the leaks reported. */
+  static class RecordingLeakDetector<T> extends ResourceLeakDetector<T> {
+    private static final List<String> LEAKS = new ArrayList<>();
+
+    static synchronized List<String> getLeaks() {
+      return new ArrayList<>(LEAKS);
+    }
+
+    private static synchronized void addLeak(String leak) {
+      LEAKS.add(leak);
+    }
+
+    RecordingLeakDetector(Class<?> resourceType, int samplingInterval) {
+      super(resourceType, samplingInterval);
+    }
+
+    @Override
+    protected void reportTracedLeak(String resourceType, String records) {
+      super.reportTracedLeak(resourceType, records);
+      addLeak(resourceType + records);
+    }
+
+    @Override
+    protected void reportUntracedLeak(String resourceType) {
+      super.reportUntracedLeak(resourceType);
+      addLeak(resourceType);
+    }
+  }
+
+  static {
+    ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+    ResourceLeakDetectorFactory.setResourceLeakDetectorFactory(new ResourceLeakDetectorFactory() {
+      @Override
+      public <T> ResourceLeakDetector<T> newResourceLeakDetector(
+          Class<T> resource, int samplingInterval, long maxActive) {
+        return new RecordingLeakDetector<>(resource, samplingInterval);
+      }
+    });
+  }
+
+  @After
+  public void assertNoLeaks() throws Exception {
+    // the leaks are reported when the leaked buffers are garbage collected and the next buffers are allocated
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      HUNDRED_MILLIS.sleep();
+      for (int j = 0; j < 100; j++) {
+        PooledByteBufAllocator.DEFAULT.buffer(1).release();
+      }
+    }
+    Assert.assertEquals("Leaks detected", new ArrayList<>(), RecordingLeakDetector.getLeaks());
+  }
+}
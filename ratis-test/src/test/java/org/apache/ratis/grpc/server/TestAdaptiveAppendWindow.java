@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.grpc.server;
+
+import org.apache.ratis.BaseTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAdaptiveAppendWindow extends BaseTest {
+  static final long FAST = 100;
+  static final long SLOW = FAST * AdaptiveAppendWindow.LATENCY_FACTOR + 1;
+
+  @Test(timeout = 1000)
+  public void testAdaptiveWindow() {
+    final AdaptiveAppendWindow window = new AdaptiveAppendWindow(4, 16);
+    Assert.assertEquals(4, window.getSize());
+
+    // grow by one for each window of fast replies
+    for (int i = 0; i < 3; i++) {
+      window.onSuccess(FAST);
+    }
+    Assert.assertEquals(4, window.getSize());
+    window.onSuccess(FAST);
+    Assert.assertEquals(5, window.getSize());
+    for (int i = 0; i < 5; i++) {
+      window.onSuccess(FAST);
+    }
+    Assert.assertEquals(6, window.getSize());
+
+    // shrink by one for a slow reply
+    window.onSuccess(SLOW);
+    Assert.assertEquals(5, window.getSize());
+
+    // grow up to max
+    for (int i = 0; i < 1000; i++) {
+      window.onSuccess(FAST);
+    }
+    Assert.assertEquals(16, window.getSize());
+
+    // shrink by half for a failure, down to min
+    window.onFailure();
+    Assert.assertEquals(8, window.getSize());
+    window.onFailure();
+    Assert.assertEquals(4, window.getSize());
+    window.onFailure();
+    Assert.assertEquals(4, window.getSize());
+  }
+
+  @Test(timeout = 1000)
+  public void testStaleInconsistency() {
+    final AdaptiveAppendWindow window = new AdaptiveAppendWindow(1, 16);
+    for (int i = 0; i < 1000; i++) {
+      window.onSuccess(FAST);
+    }
+    Assert.assertEquals(16, window.getSize());
+
+    // the requests 0..15 are outstanding; the first inconsistency resets them
+    Assert.assertTrue(window.onInconsistency(0));
+    window.reset(16);
+    Assert.assertEquals(8, window.getSize());
+
+    // the replies of the other outstanding requests are stale and the window shrinks only once
+    for (long callId = 1; callId < 16; callId++) {
+      Assert.assertFalse(window.onInconsistency(callId));
+    }
+    Assert.assertEquals(8, window.getSize());
+
+    // a request sent after the reset shrinks the window again
+    Assert.assertTrue(window.onInconsistency(16));
+    Assert.assertEquals(4, window.getSize());
+  }
+
+  @Test(timeout = 1000)
+  public void testFixedWindow() {
+    final AdaptiveAppendWindow window = new AdaptiveAppendWindow(16, 16);
+    for (int i = 0; i < 100; i++) {
+      window.onSuccess(FAST);
+    }
+    window.onSuccess(SLOW);
+    window.onFailure();
+    Assert.assertEquals(16, window.getSize());
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.netty;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.RaftTestUtil;
+import org.apache.ratis.RaftTestUtil.SimpleMessage;
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.netty.server.NettyLogAppender;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.server.RaftServer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Test the recovery of {@link NettyLogAppender} from the failed and the inconsistent appendEntries requests. */
+public class TestNettyLogAppender extends BaseTest implements MiniRaftClusterWithNetty.FactoryGet {
+  static final int NUM_MESSAGES = 30;
+
+  {
+    NettyConfigKeys.Server.setAsyncLogAppenderEnabled(getProperties(), true);
+    // a small max so that the appender is often blocked by the outstanding requests
+    NettyConfigKeys.Server.setLeaderOutstandingAppendsMax(getProperties(), 2);
+  }
+
+  @Test
+  public void testFollowerRestart() throws Exception {
+    runWithNewCluster(3, this::runTestFollowerRestart);
+  }
+
+  void runTestFollowerRestart(MiniRaftClusterWithNetty cluster) throws Exception {
+    final List<SimpleMessage> messages = new ArrayList<>();
+    final RaftServer.Division leader = RaftTestUtil.waitForLeader(cluster);
+    final RaftPeerId followerId = cluster.getFollowers().get(0).getId();
+    try (RaftClient client = cluster.createClient(leader.getId())) {
+      send(client, "a", messages);
+
+      // the requests to the killed follower fail
+      cluster.killServer(followerId);
+      send(client, "b", messages);
+
+      // the restarted follower replies INCONSISTENCY since it has missed the entries
+      cluster.restartServer(followerId, false);
+      send(client, "c", messages);
+
+      // a formatted follower replies INCONSISTENCY until the leader resends the entire log
+      final RaftPeerId another = cluster.getFollowers().stream()
+          .map(RaftServer.Division::getId)
+          .filter(id -> !id.equals(followerId))
+          .findAny().orElseThrow(IllegalStateException::new);
+      cluster.killServer(another);
+      cluster.restartServer(another, true);
+      final long lastIndex = send(client, "d", messages);
+
+      RaftTestUtil.waitForApplied(cluster, lastIndex);
+    }
+
+    final SimpleMessage[] expected = messages.toArray(new SimpleMessage[0]);
+    for (RaftServer.Division d : cluster.iterateDivisions()) {
+      Assert.assertTrue(d.getId() + " log", RaftTestUtil.logEntriesContains(d.getRaftLog(), expected));
+    }
+  }
+
+  /** Send the messages and check the replies; return the last log index. */
+  private static long send(RaftClient client, String prefix, List<SimpleMessage> messages) throws Exception {
+    // the netty client does not support async; the leader still pipelines the appendEntries requests
+    final SimpleMessage[] toSend = SimpleMessage.create(NUM_MESSAGES, prefix);
+    long lastIndex = 0;
+    for (SimpleMessage m : toSend) {
+      final RaftClientReply reply = client.io().send(m);
+      Assert.assertTrue(reply.isSuccess());
+      lastIndex = Math.max(lastIndex, reply.getLogIndex());
+    }
+    messages.addAll(Arrays.asList(toSend));
+    return lastIndex;
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.netty;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.client.RaftClientConfigKeys;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.RaftRpcReplyProto;
+import org.apache.ratis.proto.RaftProtos.RaftRpcRequestProto;
+import org.apache.ratis.proto.RaftProtos.RequestVoteReplyProto;
+import org.apache.ratis.proto.RaftProtos.RequestVoteRequestProto;
+import org.apache.ratis.proto.netty.NettyProtos.RaftNettyServerReplyProto;
+import org.apache.ratis.proto.netty.NettyProtos.RaftNettyServerRequestProto;
+import org.apache.ratis.protocol.RaftPeer;
+import org.apache.ratis.protocol.exceptions.TimeoutIOException;
+import org.apache.ratis.thirdparty.io.netty.bootstrap.ServerBootstrap;
+import org.apache.ratis.thirdparty.io.netty.channel.Channel;
+import org.apache.ratis.thirdparty.io.netty.channel.ChannelHandlerContext;
+import org.apache.ratis.thirdparty.io.netty.channel.ChannelInitializer;
+import org.apache.ratis.thirdparty.io.netty.channel.ChannelPipeline;
+import org.apache.ratis.thirdparty.io.netty.channel.EventLoopGroup;
+import org.apache.ratis.thirdparty.io.netty.channel.SimpleChannelInboundHandler;
+import org.apache.ratis.thirdparty.io.netty.channel.nio.NioEventLoopGroup;
+import org.apache.ratis.thirdparty.io.netty.channel.socket.SocketChannel;
+import org.apache.ratis.thirdparty.io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufDecoder;
+import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufEncoder;
+import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder;
+import org.apache.ratis.thirdparty.io.netty.handler.codec.protobuf.ProtobufVarint32LengthFieldPrepender;
+import org.apache.ratis.util.TimeDuration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/** Test the multiplexed connection of {@link NettyRpcProxy}. */
+public class TestNettyRpcProxy extends BaseTest {
+  /** A request received by the test server. */
+  static class Received {
+    private final ChannelHandlerContext ctx;
+    private final RaftNettyServerRequestProto request;
+
+    Received(ChannelHandlerContext ctx, RaftNettyServerRequestProto request) {
+      this.ctx = ctx;
+      this.request = request;
+    }
+
+    /** Reply with the term of the request so that the reply can be identified. */
+    void reply(long callId) {
+      final long term = request.getRequestVoteRequest().getCandidateTerm();
+      ctx.writeAndFlush(RaftNettyServerReplyProto.newBuilder()
+          .setRequestVoteReply(RequestVoteReplyProto.newBuilder()
+              .setServerReply(RaftRpcReplyProto.newBuilder().setCallId(term))
+              .setTerm(term))
+          .setCallId(callId)
+          .build());
+    }
+  }
+
+  private final BlockingQueue<Received> received = new LinkedBlockingQueue<>();
+  private EventLoopGroup group;
+  private Channel serverChannel;
+  private NettyRpcProxy proxy;
+
+  @Before
+  public void setup() throws Exception {
+    group = new NioEventLoopGroup(2);
+    serverChannel = new ServerBootstrap()
+        .group(group)
+        .channel(NioServerSocketChannel.class)
+        .childHandler(new ChannelInitializer<SocketChannel>() {
+          @Override
+          protected void initChannel(SocketChannel ch) {
+            final ChannelPipeline p = ch.pipeline();
+            p.addLast(new ProtobufVarint32FrameDecoder());
+            p.addLast(new ProtobufDecoder(RaftNettyServerRequestProto.getDefaultInstance()));
+            p.addLast(new ProtobufVarint32LengthFieldPrepender());
+            p.addLast(new ProtobufEncoder());
+            p.addLast(new SimpleChannelInboundHandler<RaftNettyServerRequestProto>() {
+              @Override
+              protected void channelRead0(ChannelHandlerContext ctx, RaftNettyServerRequestProto request) {
+                received.add(new Received(ctx, request));
+              }
+            });
+          }
+        })
+        .bind(0).sync().channel();
+
+    final int port = ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    final RaftPeer peer = RaftPeer.newBuilder().setId("s0").setAddress("localhost:" + port).build();
+    final RaftProperties properties = new RaftProperties();
+    RaftClientConfigKeys.Rpc.setRequestTimeout(properties, TimeDuration.valueOf(1, TimeUnit.SECONDS));
+    proxy = new NettyRpcProxy(peer, properties, group);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (proxy != null) {
+      proxy.close();
+    }
+    if (serverChannel != null) {
+      serverChannel.close().sync();
+    }
+    if (group != null) {
+      group.shutdownGracefully();
+    }
+  }
+
+  private List<CompletableFuture<RaftNettyServerReplyProto>> sendAsync(int n) {
+    final List<CompletableFuture<RaftNettyServerReplyProto>> futures = new ArrayList<>();
+    for (long term = 1; term <= n; term++) {
+      final RaftRpcRequestProto rpc = RaftRpcRequestProto.newBuilder().setCallId(term).build();
+      futures.add(proxy.sendAsync(rpc, RaftNettyServerRequestProto.newBuilder()
+          .setRequestVoteRequest(RequestVoteRequestProto.newBuilder()
+              .setServerRequest(rpc)
+              .setCandidateTerm(term))
+          .build()));
+    }
+    return futures;
+  }
+
+  private List<Received> receive(int n) throws InterruptedException {
+    final List<Received> list = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      final Received r = received.poll(5, TimeUnit.SECONDS);
+      Assert.assertNotNull("Request " + i + " not received", r);
+      list.add(r);
+    }
+    return list;
+  }
+
+  static void assertReply(long expectedTerm, CompletableFuture<RaftNettyServerReplyProto> future) throws Exception {
+    Assert.assertEquals(expectedTerm, future.get(5, TimeUnit.SECONDS).getRequestVoteReply().getTerm());
+  }
+
+  @Test
+  public void testOutOfOrderReplies() throws Exception {
+    final int n = 5;
+    final List<CompletableFuture<RaftNettyServerReplyProto>> futures = sendAsync(n);
+    final List<Received> requests = receive(n);
+    Assert.assertEquals(n, proxy.getOutstandingCount());
+
+    // reply in the reverse order; each reply is matched by its callId
+    for (int i = n - 1; i >= 0; i--) {
+      final Received r = requests.get(i);
+      Assert.assertNotEquals(0, r.request.getCallId());
+      r.reply(r.request.getCallId());
+      assertReply(i + 1, futures.get(i));
+    }
+    Assert.assertEquals(0, proxy.getOutstandingCount());
+  }
+
+  @Test
+  public void testInOrderRepliesWithoutCallId() throws Exception {
+    final int n = 5;
+    final List<CompletableFuture<RaftNettyServerReplyProto>> futures = sendAsync(n);
+    // a peer not supporting callId replies in the sending order with callId 0
+    for (Received r : receive(n)) {
+      r.reply(0);
+    }
+    for (int i = 0; i < n; i++) {
+      assertReply(i + 1, futures.get(i));
+    }
+    Assert.assertEquals(0, proxy.getOutstandingCount());
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    final List<CompletableFuture<RaftNettyServerReplyProto>> futures = sendAsync(2);
+    final List<Received> requests = receive(2);
+
+    // the requests time out and are removed from the connection
+    for (CompletableFuture<RaftNettyServerReplyProto> f : futures) {
+      testFailureCase("timeout", () -> f.get(5, TimeUnit.SECONDS),
+          ExecutionException.class, TimeoutIOException.class);
+    }
+    Assert.assertEquals(0, proxy.getOutstandingCount());
+
+    // the late replies are ignored
+    requests.get(0).reply(requests.get(0).request.getCallId());
+
+    final List<CompletableFuture<RaftNettyServerReplyProto>> more = sendAsync(1);
+    final Received r = receive(1).get(0);
+    r.reply(r.request.getCallId());
+    assertReply(1, more.get(0));
+    Assert.assertEquals(0, proxy.getOutstandingCount());
+  }
+}
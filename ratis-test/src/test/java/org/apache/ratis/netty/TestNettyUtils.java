@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.netty;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.netty.NettyConfigKeys.Transport;
+import org.apache.ratis.thirdparty.io.netty.channel.EventLoopGroup;
+import org.apache.ratis.thirdparty.io.netty.channel.epoll.Epoll;
+import org.apache.ratis.thirdparty.io.netty.channel.epoll.EpollEventLoopGroup;
+import org.apache.ratis.thirdparty.io.netty.channel.epoll.EpollServerSocketChannel;
+import org.apache.ratis.thirdparty.io.netty.channel.epoll.EpollSocketChannel;
+import org.apache.ratis.thirdparty.io.netty.channel.nio.NioEventLoopGroup;
+import org.apache.ratis.thirdparty.io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.apache.ratis.thirdparty.io.netty.channel.socket.nio.NioSocketChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestNettyUtils extends BaseTest {
+  @Test
+  public void testNioTransport() {
+    final EventLoopGroup group = NettyUtils.newEventLoopGroup("testNio", 1, true, Transport.NIO);
+    try {
+      Assert.assertTrue(group instanceof NioEventLoopGroup);
+      Assert.assertEquals(NioSocketChannel.class, NettyUtils.getSocketChannelClass(group));
+      Assert.assertEquals(NioServerSocketChannel.class, NettyUtils.getServerChannelClass(group));
+    } finally {
+      group.shutdownGracefully();
+    }
+  }
+
+  @Test
+  public void testEpollTransport() {
+    final EventLoopGroup group = NettyUtils.newEventLoopGroup("testEpoll", 1, true, Transport.EPOLL);
+    try {
+      if (Epoll.isAvailable()) {
+        Assert.assertTrue(group instanceof EpollEventLoopGroup);
+        Assert.assertEquals(EpollSocketChannel.class, NettyUtils.getSocketChannelClass(group));
+        Assert.assertEquals(EpollServerSocketChannel.class, NettyUtils.getServerChannelClass(group));
+      } else {
+        // fallback to nio
+        Assert.assertTrue(group instanceof NioEventLoopGroup);
+        Assert.assertEquals(NioSocketChannel.class, NettyUtils.getSocketChannelClass(group));
+      }
+    } finally {
+      group.shutdownGracefully();
+    }
+  }
+}
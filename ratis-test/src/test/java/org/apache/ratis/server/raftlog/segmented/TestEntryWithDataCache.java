@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.raftlog.segmented;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.server.protocol.TermIndex;
+import org.apache.ratis.server.raftlog.RaftLog.EntryWithData;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.TimeDuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class TestEntryWithDataCache extends BaseTest {
+  static EntryWithData newEntryWithData(long term, long index) {
+    final LogEntryProto proto = LogEntryProto.newBuilder().setTerm(term).setIndex(index).build();
+    return new EntryWithData() {
+      @Override
+      public int getSerializedSize() {
+        return proto.getSerializedSize();
+      }
+
+      @Override
+      public LogEntryProto getEntry(TimeDuration timeout) {
+        return proto;
+      }
+    };
+  }
+
+  @Test
+  public void testPutIfAbsent() {
+    final EntryWithDataCache cache = new EntryWithDataCache(1000);
+    final TermIndex ti = TermIndex.valueOf(1, 5);
+    final EntryWithData first = newEntryWithData(1, 5);
+    Assert.assertSame(first, cache.putIfAbsent(ti, first, new CompletableFuture<>()));
+    // the entry is shared with the other appenders
+    Assert.assertSame(first, cache.putIfAbsent(ti, newEntryWithData(1, 5), new CompletableFuture<>()));
+    Assert.assertSame(first, cache.get(ti));
+
+    // the same index but a different term, e.g. after the log is truncated
+    Assert.assertNull(cache.get(TermIndex.valueOf(2, 5)));
+    final EntryWithData second = newEntryWithData(2, 5);
+    Assert.assertSame(second, cache.putIfAbsent(TermIndex.valueOf(2, 5), second, new CompletableFuture<>()));
+    Assert.assertNull(cache.get(ti));
+    Assert.assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testEviction() {
+    final int numRetained = 4;
+    final ByteString data = ByteString.copyFromUtf8("0123456789");
+    final EntryWithDataCache cache = new EntryWithDataCache(numRetained * data.size());
+    final List<CompletableFuture<ByteString>> futures = new ArrayList<>();
+    for (long i = 0; i < 2 * numRetained; i++) {
+      final CompletableFuture<ByteString> f = new CompletableFuture<>();
+      futures.add(f);
+      cache.putIfAbsent(TermIndex.valueOf(1, i), newEntryWithData(1, i), f);
+    }
+    // the size of an entry is counted once its data is read
+    Assert.assertEquals(2 * numRetained, cache.size());
+    Assert.assertEquals(0, cache.getTotalSize());
+
+    for (CompletableFuture<ByteString> f : futures) {
+      f.complete(data);
+      Assert.assertTrue(cache.getTotalSize() <= numRetained * data.size());
+    }
+    // the entries with the smallest indices are evicted
+    Assert.assertEquals(numRetained, cache.size());
+    for (long i = 0; i < numRetained; i++) {
+      Assert.assertNull(cache.get(TermIndex.valueOf(1, i)));
+    }
+    for (long i = numRetained; i < 2 * numRetained; i++) {
+      Assert.assertNotNull(cache.get(TermIndex.valueOf(1, i)));
+    }
+
+    cache.removeFrom(numRetained + 2);
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals(2 * data.size(), cache.getTotalSize());
+    cache.removeUpTo(numRetained);
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(data.size(), cache.getTotalSize());
+    Assert.assertNotNull(cache.get(TermIndex.valueOf(1, numRetained + 1)));
+  }
+
+  @Test
+  public void testRemoveFailedEntry() {
+    final EntryWithDataCache cache = new EntryWithDataCache(1000);
+    final TermIndex ti = TermIndex.valueOf(1, 1);
+    final CompletableFuture<ByteString> failed = new CompletableFuture<>();
+    cache.putIfAbsent(ti, newEntryWithData(1, 1), failed);
+    Assert.assertNotNull(cache.get(ti));
+
+    // a failed state machine read must not be cached
+    failed.complete(null);
+    Assert.assertNull(cache.get(ti));
+
+    final CompletableFuture<ByteString> succeeded = new CompletableFuture<>();
+    final EntryWithData entry = newEntryWithData(1, 1);
+    cache.putIfAbsent(ti, entry, succeeded);
+    succeeded.complete(ByteString.copyFromUtf8("data"));
+    Assert.assertSame(entry, cache.get(ti));
+    Assert.assertEquals(4, cache.getTotalSize());
+  }
+}
@@ -185,6 +185,26 @@ public class TestLogSegment extends BaseTest {
     Assert.assertEquals(loadInitial ? 0 : 1, closedSegment.getLoadingTimes());
   }
 
+  @Test
+  public void testLoadCacheWithMmapRead() throws Exception {
+    final File closedSegmentFile = prepareLog(false, 1000, 100, 1, false);
+    final RaftStorage storage = RaftStorageTestUtils.newRaftStorage(storageDir);
+    final LogSegment closedSegment = LogSegment.loadSegment(storage, closedSegmentFile,
+        LogSegmentStartEnd.valueOf(1000, 1099L), false, null, null);
+    Assert.assertEquals(0, closedSegment.getLoadingTimes());
+
+    for (long i = 1000; i <= 1099; i++) {
+      final LogSegment.LogRecord record = closedSegment.getLogRecord(i);
+      final LogEntryProto entry = closedSegment.loadCache(record, true);
+      Assert.assertEquals(record.getTermIndex(), TermIndex.valueOf(entry));
+      Assert.assertEquals(entry, closedSegment.getEntryFromCache(record.getTermIndex()));
+    }
+    // all the entries are read in place without loading the segment file sequentially
+    Assert.assertEquals(0, closedSegment.getLoadingTimes());
+    Assert.assertTrue(closedSegment.hasCache());
+    storage.close();
+  }
+
   @Test
   public void testAppendEntries() throws Exception {
     final long start = 1000;
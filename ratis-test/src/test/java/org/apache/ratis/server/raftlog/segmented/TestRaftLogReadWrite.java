@@ -28,6 +28,7 @@ import org.apache.ratis.server.storage.RaftStorage;
 import org.apache.ratis.server.storage.RaftStorageTestUtils;
 import org.apache.ratis.thirdparty.com.google.protobuf.CodedOutputStream;
 import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.proto.RaftProtos.StateMachineLogEntryProto;
 import org.apache.ratis.util.FileUtils;
 import org.junit.After;
 import org.junit.Assert;
@@ -40,8 +41,11 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Test basic functionality of LogReader, SegmentedRaftLogInputStream, and SegmentedRaftLogOutputStream.
@@ -120,6 +124,88 @@ public class TestRaftLogReadWrite extends BaseTest {
     Assert.assertArrayEquals(entries, readEntries);
   }
 
+  /**
+   * Write entries with different sizes, some of them are larger than the write buffer,
+   * in order to test both serializing to the buffer directly and writing large entries.
+   */
+  @Test
+  public void testReadWriteLogWithDifferentEntrySizes() throws IOException {
+    final RaftStorage storage = RaftStorageTestUtils.newRaftStorage(storageDir);
+    final File openSegment = LogSegmentStartEnd.valueOf(0).getFile(storage);
+    long size = SegmentedRaftLogFormat.getHeaderLength();
+
+    final int writeBufferSize = 8 << 10;
+    final LogEntryProto[] entries = new LogEntryProto[100];
+    try (SegmentedRaftLogOutputStream out = new SegmentedRaftLogOutputStream(openSegment, false,
+        segmentMaxSize, preallocatedSize, ByteBuffer.allocateDirect(writeBufferSize))) {
+      for (int i = 0; i < entries.length; i++) {
+        final char[] chars = new char[(i * 997) % (3 * writeBufferSize)];
+        Arrays.fill(chars, (char)('a' + i % 26));
+        final SimpleOperation m = new SimpleOperation(new String(chars));
+        entries[i] = LogProtoUtils.toLogEntryProto(m.getLogEntryContent(), 0, i);
+        final int s = entries[i].getSerializedSize();
+        size += CodedOutputStream.computeUInt32SizeNoTag(s) + s + 4;
+        out.write(entries[i]);
+      }
+    } finally {
+      storage.close();
+    }
+
+    Assert.assertEquals(size, openSegment.length());
+
+    final LogEntryProto[] readEntries = readLog(openSegment, 0, RaftLog.INVALID_LOG_INDEX, true);
+    Assert.assertArrayEquals(entries, readEntries);
+  }
+
+  /**
+   * Write compressed entries and then read and decompress them.
+   * The small entries and the incompressible entries are not compressed.
+   */
+  @Test
+  public void testReadWriteCompressedLog() throws IOException {
+    final RaftStorage storage = RaftStorageTestUtils.newRaftStorage(storageDir);
+    final File openSegment = LogSegmentStartEnd.valueOf(0).getFile(storage);
+    final int minSize = 512;
+
+    final LogEntryProto[] entries = new LogEntryProto[100];
+    final LogEntryProto[] compressed = new LogEntryProto[entries.length];
+    try (SegmentedRaftLogOutputStream out = new SegmentedRaftLogOutputStream(openSegment, false,
+        segmentMaxSize, preallocatedSize, ByteBuffer.allocateDirect(bufferSize))) {
+      for (int i = 0; i < entries.length; i++) {
+        final String s;
+        if (i % 3 == 0) {
+          s = "m" + i; // small
+        } else if (i % 3 == 1) {
+          final char[] chars = new char[10 * minSize];
+          Arrays.fill(chars, (char) ('a' + i % 26)); // compressible
+          s = new String(chars);
+        } else {
+          final byte[] bytes = new byte[2 * minSize];
+          ThreadLocalRandom.current().nextBytes(bytes); // incompressible
+          s = Base64.getEncoder().encodeToString(bytes);
+        }
+        entries[i] = LogProtoUtils.toLogEntryProto(new SimpleOperation(s).getLogEntryContent(), 0, i);
+        compressed[i] = LogProtoUtils.compressLogData(entries[i], RaftServerConfigKeys.Log.Compression.DEFLATE, minSize);
+        if (i % 3 == 1) {
+          Assert.assertEquals(StateMachineLogEntryProto.Compression.DEFLATE,
+              compressed[i].getStateMachineLogEntry().getCompression());
+          Assert.assertTrue(compressed[i].getSerializedSize() < entries[i].getSerializedSize());
+        } else if (i % 3 == 0) {
+          Assert.assertSame(entries[i], compressed[i]);
+        }
+        out.write(compressed[i]);
+      }
+    } finally {
+      storage.close();
+    }
+
+    final LogEntryProto[] readEntries = readLog(openSegment, 0, RaftLog.INVALID_LOG_INDEX, true);
+    Assert.assertArrayEquals(compressed, readEntries);
+    for (int i = 0; i < entries.length; i++) {
+      Assert.assertEquals(entries[i], LogProtoUtils.decompressLogData(readEntries[i]));
+    }
+  }
+
   @Test
   public void testAppendLog() throws IOException {
     final RaftStorage storage = RaftStorageTestUtils.newRaftStorage(storageDir);
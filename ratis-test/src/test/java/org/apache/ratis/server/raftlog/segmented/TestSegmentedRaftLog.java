@@ -29,6 +29,7 @@ import org.apache.ratis.protocol.RaftGroupMemberId;
 import org.apache.ratis.protocol.RaftPeerId;
 import org.apache.ratis.protocol.exceptions.TimeoutIOException;
 import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.RaftServerConfigKeys.Log.SegmentCacheEvictionPolicy;
 import org.apache.ratis.server.impl.RetryCacheTestUtil;
 import org.apache.ratis.server.RetryCache;
 import org.apache.ratis.server.metrics.RaftLogMetricsBase;
@@ -249,6 +250,37 @@ public class TestSegmentedRaftLog extends BaseTest {
   /**
    * Append entry one by one and check if log state is correct.
    */
+  /** With the ENTRY_LRU policy, an evicted entry of a closed segment is reloaded individually. */
+  @Test
+  public void testReloadEvictedEntry() throws Exception {
+    RaftServerConfigKeys.Log.setSegmentCacheEvictionPolicy(properties, SegmentCacheEvictionPolicy.ENTRY_LRU);
+    final List<SegmentRange> ranges = prepareRanges(0, 3, 100, 0);
+    final LogEntryProto[] entries = prepareLog(ranges);
+
+    try (SegmentedRaftLog raftLog = newSegmentedRaftLog()) {
+      raftLog.open(RaftLog.INVALID_LOG_INDEX, null);
+      final LogSegment segment = raftLog.getRaftLogCache().getSegment(0);
+      Assert.assertFalse(segment.isOpen());
+      // evict all the entries of the closed segment
+      for (long i = segment.getStartIndex(); i <= segment.getEndIndex(); i++) {
+        segment.removeEntryCache(segment.getLogRecord(i).getTermIndex());
+      }
+      Assert.assertEquals(0, segment.getTotalCacheSize());
+
+      Assert.assertEquals(entries[50], raftLog.get(50));
+      // only the entry read is reloaded
+      Assert.assertNotNull(segment.getEntryFromCache(segment.getLogRecord(50).getTermIndex()));
+      Assert.assertNull(segment.getEntryFromCache(segment.getLogRecord(51).getTermIndex()));
+      Assert.assertEquals(0, segment.getLoadingTimes());
+
+      // the entries are the same as the ones in the file
+      for (long i = segment.getStartIndex(); i <= segment.getEndIndex(); i++) {
+        Assert.assertEquals(entries[(int) i], raftLog.get(i));
+      }
+      Assert.assertEquals(0, segment.getLoadingTimes());
+    }
+  }
+
   @Test
   public void testAppendEntry() throws Exception {
     List<SegmentRange> ranges = prepareRanges(0, 5, 200, 0);
@@ -359,6 +391,50 @@ public class TestSegmentedRaftLog extends BaseTest {
     }
   }
 
+  /**
+   * Append entries to multiple raft logs sharing a group commit flush scheduler.
+   */
+  @Test
+  public void testAppendAndRollWithGroupCommit() throws Exception {
+    RaftServerConfigKeys.Log.GroupCommit.setEnabled(properties, true);
+    RaftServerConfigKeys.Log.GroupCommit.setBatchSize(properties, 4);
+    RaftServerConfigKeys.Log.GroupCommit.setFlusherThreads(properties, 2);
+    RaftServerConfigKeys.Log.setPreallocatedSize(properties, SizeInBytes.valueOf("16KB"));
+    RaftServerConfigKeys.Log.setSegmentSizeMax(properties, SizeInBytes.valueOf("128KB"));
+
+    final List<SegmentRange> ranges = prepareRanges(0, 1, 1024, 0);
+    final byte[] content = new byte[1024];
+    final List<LogEntryProto> entries = prepareLogEntries(ranges, () -> new String(content));
+
+    final RaftStorage another = RaftStorageTestUtils.newRaftStorage(
+        new File(storageDir.getParentFile(), "another"));
+    final RaftGroupMemberId anotherId = RaftGroupMemberId.valueOf(RaftPeerId.valueOf("s1"), groupId);
+    try (SegmentedRaftLog raftLog = newSegmentedRaftLog();
+         SegmentedRaftLog anotherLog = new SegmentedRaftLog(anotherId, null, null, null, null, another,
+             () -> -1, properties)) {
+      raftLog.open(RaftLog.INVALID_LOG_INDEX, null);
+      anotherLog.open(RaftLog.INVALID_LOG_INDEX, null);
+      // append entries to both raft logs
+      final List<CompletableFuture<Long>> futures = new ArrayList<>();
+      for (LogEntryProto e : entries) {
+        futures.add(raftLog.appendEntry(e));
+        futures.add(anotherLog.appendEntry(e));
+      }
+      futures.forEach(CompletableFuture::join);
+      Assert.assertEquals(entries.size() - 1, raftLog.getFlushIndex());
+      Assert.assertEquals(entries.size() - 1, anotherLog.getFlushIndex());
+    }
+
+    for (RaftStorage s : Arrays.asList(storage, another)) {
+      try (SegmentedRaftLog raftLog = newSegmentedRaftLog(s, properties)) {
+        raftLog.open(RaftLog.INVALID_LOG_INDEX, null);
+        // check if the raft log is correct
+        checkEntries(raftLog, entries, 0, entries.size());
+        Assert.assertEquals(9, raftLog.getRaftLogCache().getNumOfSegments());
+      }
+    }
+  }
+
   @Test
   public void testTruncate() throws Exception {
     // prepare the log for truncation
@@ -26,6 +26,11 @@ import java.util.stream.IntStream;
 import org.apache.ratis.RaftTestUtil.SimpleOperation;
 import org.apache.ratis.conf.RaftProperties;
 import org.apache.ratis.metrics.RatisMetricRegistry;
+import org.apache.ratis.protocol.RaftGroupId;
+import org.apache.ratis.protocol.RaftGroupMemberId;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.RaftServerConfigKeys.Log.SegmentCacheEvictionPolicy;
 import org.apache.ratis.server.impl.RaftServerTestUtil;
 import org.apache.ratis.server.metrics.SegmentedRaftLogMetrics;
 import org.apache.ratis.server.protocol.TermIndex;
@@ -34,6 +39,7 @@ import org.apache.ratis.server.raftlog.LogProtoUtils;
 import org.apache.ratis.server.raftlog.segmented.SegmentedRaftLogCache.TruncationSegments;
 import org.apache.ratis.server.raftlog.segmented.LogSegment.LogRecord;
 import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.util.SizeInBytes;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -102,6 +108,143 @@ public class TestSegmentedRaftLogCache {
     }
   }
 
+  @Test
+  public void testEntryLruEviction() throws Exception {
+    final LogSegment s1 = prepareLogSegment(1, 100, false);
+    final LogSegment s2 = prepareLogSegment(101, 200, false);
+    final long totalSize = s1.getTotalCacheSize() + s2.getTotalCacheSize();
+    final long maxSize = totalSize / 2;
+
+    final RaftProperties properties = new RaftProperties();
+    RaftServerConfigKeys.Log.setSegmentCacheEvictionPolicy(properties, SegmentCacheEvictionPolicy.ENTRY_LRU);
+    RaftServerConfigKeys.Log.setSegmentCacheSizeMax(properties, SizeInBytes.valueOf(maxSize));
+    cache = new SegmentedRaftLogCache(null, null, properties, raftLogMetrics);
+    cache.addSegment(s1);
+    cache.addSegment(s2);
+    Assert.assertEquals(totalSize, cache.getTotalCacheSize());
+    Assert.assertTrue(cache.shouldEvict());
+
+    // the entries not yet flushed cannot be evicted
+    cache.evictCache(null, 0, 0);
+    Assert.assertEquals(totalSize, cache.getTotalCacheSize());
+
+    // access the entries in the middle so that they are given a second chance
+    for (long index = 51; index <= 100; index++) {
+      final LogSegment segment = cache.getSegment(index);
+      Assert.assertNotNull(segment.getEntryFromCache(segment.getLogRecord(index).getTermIndex()));
+    }
+
+    // all the entries are still needed by the state machine
+    cache.evictCache(null, 200, 1);
+    Assert.assertFalse(cache.shouldEvict());
+    Assert.assertTrue(cache.getTotalCacheSize() <= maxSize);
+    Assert.assertNull(s1.getEntryFromCache(s1.getLogRecord(1).getTermIndex()));
+    for (long index = 51; index <= 100; index++) {
+      Assert.assertNotNull(s1.getEntryFromCache(s1.getLogRecord(index).getTermIndex()));
+    }
+    Assert.assertNotNull(s2.getEntryFromCache(s2.getLogRecord(200).getTermIndex()));
+  }
+
+  @Test
+  public void testEntryLruOpenSegment() throws Exception {
+    final LogSegment open = prepareLogSegment(1, 100, true);
+    final long maxSize = open.getTotalCacheSize() / 2;
+
+    cache = newEntryLruCache(null, maxSize, raftLogMetrics);
+    cache.addSegment(open);
+    Assert.assertEquals(open.getTotalCacheSize(), cache.getTotalCacheSize());
+    // the entries of the open segment cannot be evicted
+    Assert.assertFalse(cache.shouldEvict());
+
+    cache.rollOpenSegment(true);
+    Assert.assertTrue(cache.shouldEvict());
+    cache.evictCache(null, 100, 1);
+    Assert.assertFalse(cache.shouldEvict());
+    Assert.assertTrue(cache.getTotalCacheSize() <= maxSize);
+    Assert.assertNull(open.getEntryFromCache(open.getLogRecord(1).getTermIndex()));
+
+    // the purged entries are no longer counted
+    final long remaining = open.getTotalCacheSize();
+    Assert.assertTrue(remaining > 0);
+    Assert.assertNotNull(cache.purge(100));
+    Assert.assertEquals(0, cache.getTotalCacheSize());
+  }
+
+  static SegmentedRaftLogCache newEntryLruCache(Object name, long maxSize, SegmentedRaftLogMetrics metrics) {
+    final RaftProperties properties = new RaftProperties();
+    RaftServerConfigKeys.Log.setSegmentCacheEvictionPolicy(properties, SegmentCacheEvictionPolicy.ENTRY_LRU);
+    RaftServerConfigKeys.Log.setSegmentCacheSizeMax(properties, SizeInBytes.valueOf(maxSize));
+    return new SegmentedRaftLogCache(name, null, properties, metrics);
+  }
+
+  @Test
+  public void testEntryLruFollowerAware() throws Exception {
+    final LogSegment s1 = prepareLogSegment(1, 100, false);
+    final LogSegment s2 = prepareLogSegment(101, 200, false);
+    final long totalSize = s1.getTotalCacheSize() + s2.getTotalCacheSize();
+    final long maxSize = totalSize - s1.getTotalCacheSize() / 4;
+
+    cache = newEntryLruCache(null, maxSize, raftLogMetrics);
+    cache.addSegment(s1);
+    cache.addSegment(s2);
+    // access the first entries so that they become the most recently used
+    for (long index = 1; index <= 50; index++) {
+      Assert.assertNotNull(s1.getEntryFromCache(s1.getLogRecord(index).getTermIndex()));
+    }
+
+    // a follower still needs the entries from index 51; the earlier entries are evicted first
+    cache.evictCache(new long[]{51, 150}, 200, 200);
+    Assert.assertFalse(cache.shouldEvict());
+    Assert.assertNull(s1.getEntryFromCache(s1.getLogRecord(1).getTermIndex()));
+    for (long index = 51; index <= 200; index++) {
+      final LogSegment segment = cache.getSegment(index);
+      Assert.assertNotNull(segment.getEntryFromCache(segment.getLogRecord(index).getTermIndex()));
+    }
+  }
+
+  @Test
+  public void testEntryLruSharedBudget() throws Exception {
+    final RaftPeerId peerId = RaftPeerId.valueOf("s0");
+    final RaftGroupMemberId id1 = RaftGroupMemberId.valueOf(peerId, RaftGroupId.randomId());
+    final RaftGroupMemberId id2 = RaftGroupMemberId.valueOf(peerId, RaftGroupId.randomId());
+    final LogSegment s1 = prepareLogSegment(1, 100, false);
+    final LogSegment s2 = prepareLogSegment(1, 100, false);
+    final long maxSize = s1.getTotalCacheSize() + s2.getTotalCacheSize() / 2;
+
+    final SegmentedRaftLogMetrics metrics1 = new SegmentedRaftLogMetrics(id1);
+    final SegmentedRaftLogMetrics metrics2 = new SegmentedRaftLogMetrics(id2);
+    final SegmentedRaftLogCache cache1 = newEntryLruCache(id1, maxSize, metrics1);
+    final SegmentedRaftLogCache cache2 = newEntryLruCache(id2, maxSize, metrics2);
+    try {
+      final SegmentedRaftLogCache.EvictionInfo info = SegmentedRaftLogCache.EvictionInfo.valueOf(null, 100, 100);
+      cache1.setEvictionInfoSupplier(() -> info);
+      cache2.setEvictionInfoSupplier(() -> info);
+      cache1.addSegment(s1);
+      Assert.assertFalse(cache1.shouldEvict());
+      cache2.addSegment(s2);
+      // the budget is shared by the two groups of the same server
+      Assert.assertTrue(cache1.shouldEvict());
+      Assert.assertTrue(cache2.shouldEvict());
+
+      // access the entries of the second group so that the first group becomes the least recently used
+      for (long index = 1; index <= 100; index++) {
+        Assert.assertNotNull(s2.getEntryFromCache(s2.getLogRecord(index).getTermIndex()));
+      }
+      final long s1CacheSize = s1.getTotalCacheSize();
+      cache2.evictCache(null, 100, 100);
+      Assert.assertFalse(cache1.shouldEvict());
+      // the entries of the first group are evicted
+      Assert.assertTrue(s1.getTotalCacheSize() < s1CacheSize);
+      Assert.assertNull(s1.getEntryFromCache(s1.getLogRecord(1).getTermIndex()));
+      Assert.assertNotNull(s2.getEntryFromCache(s2.getLogRecord(1).getTermIndex()));
+    } finally {
+      cache1.close();
+      cache2.close();
+      metrics1.unregister();
+      metrics2.unregister();
+    }
+  }
+
   @Test
   public void testAddSegments() throws Exception {
     LogSegment s1 = prepareLogSegment(1, 100, false);
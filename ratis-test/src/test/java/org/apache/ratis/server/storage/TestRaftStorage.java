@@ -24,6 +24,7 @@ import org.apache.ratis.RaftTestUtil;
 import org.apache.ratis.protocol.RaftPeerId;
 import org.apache.ratis.server.protocol.TermIndex;
 import org.apache.ratis.server.storage.RaftStorageDirectoryImpl.StorageState;
+import org.apache.ratis.statemachine.impl.FileListSnapshotInfo;
 import org.apache.ratis.statemachine.impl.SimpleStateMachineStorage;
 import org.apache.ratis.statemachine.SnapshotRetentionPolicy;
 import org.apache.ratis.util.FileUtils;
@@ -267,6 +268,66 @@ public class TestRaftStorage extends BaseTest {
 
   }
 
+  @Test
+  public void testSnapshotChain() throws IOException {
+    final SimpleStateMachineStorage simpleStateMachineStorage = new SimpleStateMachineStorage();
+    final RaftStorage storage = newRaftStorage(storageDir);
+    simpleStateMachineStorage.init(storage);
+    Assert.assertNull(simpleStateMachineStorage.findLatestSnapshotChain());
+
+    // a delta without a base is not a snapshot
+    Assert.assertTrue(simpleStateMachineStorage.getDeltaSnapshotFile(1, 5).createNewFile());
+    Assert.assertNull(simpleStateMachineStorage.findLatestSnapshotChain());
+
+    // base at 10 followed by deltas at 30 and 20
+    Assert.assertTrue(simpleStateMachineStorage.getSnapshotFile(1, 10).createNewFile());
+    Assert.assertTrue(simpleStateMachineStorage.getDeltaSnapshotFile(2, 30).createNewFile());
+    Assert.assertTrue(simpleStateMachineStorage.getDeltaSnapshotFile(1, 20).createNewFile());
+    simpleStateMachineStorage.loadLatestSnapshot();
+    FileListSnapshotInfo chain = simpleStateMachineStorage.getLatestSnapshotChain();
+    Assert.assertEquals(TermIndex.valueOf(2, 30), chain.getTermIndex());
+    Assert.assertEquals(3, chain.getFiles().size());
+    Assert.assertEquals(simpleStateMachineStorage.getSnapshotFile(1, 10).toPath(),
+        chain.getFiles().get(0).getPath());
+    Assert.assertEquals(simpleStateMachineStorage.getDeltaSnapshotFile(1, 20).toPath(),
+        chain.getFiles().get(1).getPath());
+    Assert.assertEquals(simpleStateMachineStorage.getDeltaSnapshotFile(2, 30).toPath(),
+        chain.getFiles().get(2).getPath());
+    // the full snapshot is unchanged
+    Assert.assertEquals(10, simpleStateMachineStorage.getLatestSnapshot().getIndex());
+
+    // a new base at 40 starts a new chain; the older deltas are removed by the cleanup
+    Assert.assertTrue(simpleStateMachineStorage.getSnapshotFile(2, 40).createNewFile());
+    Assert.assertTrue(simpleStateMachineStorage.getDeltaSnapshotFile(2, 50).createNewFile());
+    simpleStateMachineStorage.cleanupOldSnapshots(new SnapshotRetentionPolicy() {
+      @Override
+      public int getNumSnapshotsRetained() {
+        return 1;
+      }
+    });
+    Assert.assertFalse(simpleStateMachineStorage.getSnapshotFile(1, 10).exists());
+    Assert.assertFalse(simpleStateMachineStorage.getDeltaSnapshotFile(1, 5).exists());
+    Assert.assertFalse(simpleStateMachineStorage.getDeltaSnapshotFile(1, 20).exists());
+    Assert.assertFalse(simpleStateMachineStorage.getDeltaSnapshotFile(2, 30).exists());
+
+    simpleStateMachineStorage.loadLatestSnapshot();
+    chain = simpleStateMachineStorage.getLatestSnapshotChain();
+    Assert.assertEquals(TermIndex.valueOf(2, 50), chain.getTermIndex());
+    Assert.assertEquals(2, chain.getFiles().size());
+
+    // a stale delta is removed even if there are fewer snapshots than the number retained
+    Assert.assertTrue(simpleStateMachineStorage.getDeltaSnapshotFile(2, 35).createNewFile());
+    simpleStateMachineStorage.cleanupOldSnapshots(new SnapshotRetentionPolicy() {
+      @Override
+      public int getNumSnapshotsRetained() {
+        return 3;
+      }
+    });
+    Assert.assertFalse(simpleStateMachineStorage.getDeltaSnapshotFile(2, 35).exists());
+    Assert.assertTrue(simpleStateMachineStorage.getSnapshotFile(2, 40).exists());
+    Assert.assertTrue(simpleStateMachineStorage.getDeltaSnapshotFile(2, 50).exists());
+  }
+
   @Test
   public void testNotEnoughSpace() throws IOException {
     File mockStorageDir = Mockito.spy(storageDir);
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.statemachine;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.statemachine.impl.FileDataStream;
+import org.apache.ratis.thirdparty.io.netty.buffer.ByteBuf;
+import org.apache.ratis.thirdparty.io.netty.buffer.CompositeByteBuf;
+import org.apache.ratis.thirdparty.io.netty.buffer.Unpooled;
+import org.apache.ratis.util.FileUtils;
+import org.apache.ratis.util.SizeInBytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class TestFileDataStream extends BaseTest {
+  static final int BATCH_SIZE = 1024;
+
+  static byte[] randomBytes(int length) {
+    final byte[] bytes = new byte[length];
+    ThreadLocalRandom.current().nextBytes(bytes);
+    return bytes;
+  }
+
+  @Test
+  public void testWrite() throws Exception {
+    final File dir = getTestDir();
+    FileUtils.createDirectories(dir);
+    final Path path = new File(dir, "data").toPath();
+    final FileDataStream stream = new FileDataStream(path, SizeInBytes.valueOf(BATCH_SIZE), null);
+    final FileDataStream.FileDataChannel channel = stream.getDataChannel();
+
+    // small, large and unaligned writes
+    final int[] lengths = {10, 100, BATCH_SIZE, 3 * BATCH_SIZE + 7, 1, 2 * BATCH_SIZE};
+    final byte[] expected = new byte[total(lengths)];
+    int offset = 0;
+    for (int length : lengths) {
+      final byte[] bytes = randomBytes(length);
+      System.arraycopy(bytes, 0, expected, offset, length);
+      Assert.assertEquals(length, channel.write(ByteBuffer.wrap(bytes)));
+      offset += length;
+      Assert.assertEquals(offset, channel.getWrittenBytes());
+    }
+
+    // the nio buffers of a composite buffer with sync
+    final byte[] first = randomBytes(300);
+    final byte[] second = randomBytes(BATCH_SIZE + 500);
+    final CompositeByteBuf composite = Unpooled.compositeBuffer();
+    composite.addComponents(true, Unpooled.wrappedBuffer(first), Unpooled.wrappedBuffer(second));
+    try {
+      Assert.assertEquals(first.length + second.length, channel.write(composite.nioBuffers()));
+      channel.force(false);
+    } finally {
+      composite.release();
+    }
+    final byte[] all = concat(expected, first, second);
+    // the buffered data must be written after sync
+    Assert.assertArrayEquals(all, Files.readAllBytes(path));
+
+    // write more after sync and then close
+    final byte[] last = randomBytes(BATCH_SIZE / 2);
+    final ByteBuf buf = Unpooled.wrappedBuffer(last);
+    try {
+      Assert.assertEquals(last.length, channel.write(buf.nioBuffers()));
+      channel.close();
+    } finally {
+      buf.release();
+    }
+    Assert.assertFalse(channel.isOpen());
+    Assert.assertEquals(all.length + last.length, channel.getWrittenBytes());
+    Assert.assertArrayEquals(concat(all, last), Files.readAllBytes(path));
+
+    testFailureCase("write after close", () -> channel.write(ByteBuffer.wrap(last)),
+        ClosedChannelException.class);
+  }
+
+  @Test
+  public void testTruncateExisting() throws Exception {
+    final File dir = getTestDir();
+    FileUtils.createDirectories(dir);
+    final Path path = new File(dir, "existing").toPath();
+    Files.write(path, randomBytes(3 * BATCH_SIZE));
+
+    // a new stream of the same file must not leave the old bytes behind
+    final byte[] bytes = randomBytes(BATCH_SIZE + 1);
+    final FileDataStream stream = new FileDataStream(path, SizeInBytes.valueOf(BATCH_SIZE), null);
+    Assert.assertEquals(bytes.length, stream.getDataChannel().write(ByteBuffer.wrap(bytes)));
+    stream.cleanUp().get();
+    Assert.assertArrayEquals(bytes, Files.readAllBytes(path));
+  }
+
+  static int total(int[] lengths) {
+    int sum = 0;
+    for (int length : lengths) {
+      sum += length;
+    }
+    return sum;
+  }
+
+  static byte[] concat(byte[]... arrays) {
+    int length = 0;
+    for (byte[] a : arrays) {
+      length += a.length;
+    }
+    final byte[] result = new byte[length];
+    int offset = 0;
+    for (byte[] a : arrays) {
+      System.arraycopy(a, 0, result, offset, a.length);
+      offset += a.length;
+    }
+    return result;
+  }
+}
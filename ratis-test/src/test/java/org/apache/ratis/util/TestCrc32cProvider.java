@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.util;
+
+import org.apache.ratis.BaseTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.Checksum;
+
+public class TestCrc32cProvider extends BaseTest {
+  @Test
+  public void testKnownValue() {
+    // the standard check value of CRC32C
+    final byte[] b = "123456789".getBytes(StandardCharsets.US_ASCII);
+    for (Crc32cProvider provider : Crc32cProvider.values()) {
+      if (provider.isAvailable()) {
+        Assert.assertEquals(provider.name(), 0xE3069283L, compute(provider.newChecksum(), b, 0, b.length));
+      }
+    }
+  }
+
+  /** The test vectors from RFC 3720, Appendix B.4. */
+  @Test
+  public void testKnownVectors() {
+    final byte[] zeros = new byte[32];
+    final byte[] ones = new byte[32];
+    Arrays.fill(ones, (byte) 0xFF);
+    final byte[] ascending = new byte[32];
+    final byte[] descending = new byte[32];
+    for (int i = 0; i < 32; i++) {
+      ascending[i] = (byte) i;
+      descending[i] = (byte) (31 - i);
+    }
+
+    for (Crc32cProvider provider : Crc32cProvider.values()) {
+      if (provider.isAvailable()) {
+        final Checksum checksum = provider.newChecksum();
+        Assert.assertEquals(provider.name(), 0x8A9136AAL, compute(checksum, zeros, 0, zeros.length));
+        Assert.assertEquals(provider.name(), 0x62A8AB43L, compute(checksum, ones, 0, ones.length));
+        Assert.assertEquals(provider.name(), 0x46DD794EL, compute(checksum, ascending, 0, ascending.length));
+        Assert.assertEquals(provider.name(), 0x113FDB5CL, compute(checksum, descending, 0, descending.length));
+      }
+    }
+  }
+
+  @Test
+  public void testSameValues() {
+    final Checksum expected = Crc32cProvider.PURE_JAVA.newChecksum();
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (Crc32cProvider provider : Crc32cProvider.values()) {
+      if (provider == Crc32cProvider.PURE_JAVA || !provider.isAvailable()) {
+        continue;
+      }
+      final Checksum computed = provider.newChecksum();
+      for (int i = 0; i < 100; i++) {
+        final byte[] b = new byte[random.nextInt(10_000)];
+        random.nextBytes(b);
+        final int offset = b.length == 0? 0: random.nextInt(b.length);
+        final int length = b.length - offset;
+        Assert.assertEquals(provider.name(),
+            compute(expected, b, offset, length), compute(computed, b, offset, length));
+
+        // update in two parts
+        final int first = length == 0? 0: random.nextInt(length);
+        computed.reset();
+        computed.update(b, offset, first);
+        computed.update(b, offset + first, length - first);
+        Assert.assertEquals(provider.name(), expected.getValue(), computed.getValue());
+      }
+    }
+  }
+
+  static long compute(Checksum checksum, byte[] b, int offset, int length) {
+    checksum.reset();
+    checksum.update(b, offset, length);
+    return checksum.getValue();
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.util;
+
+import org.apache.ratis.BaseTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+public class TestDaemon extends BaseTest {
+  @Test(timeout = 10000)
+  public void testNewThread() throws Exception {
+    runTestNewThread(false);
+    runTestNewThread(true);
+  }
+
+  @Test
+  public void testVirtualThreadMinJavaVersion() {
+    final int version = Daemon.getJavaFeatureVersion();
+    Assert.assertTrue("version = " + version, version >= 8);
+    if (version < Daemon.VIRTUAL_THREAD_MIN_JAVA_VERSION) {
+      Assert.assertFalse(Daemon.isVirtualThreadSupported());
+    }
+  }
+
+  static void runTestNewThread(boolean useVirtualThread) throws Exception {
+    final String name = "test-" + useVirtualThread;
+    final CompletableFuture<String> future = new CompletableFuture<>();
+    final Thread t = Daemon.newThread(() -> future.complete(Thread.currentThread().getName()),
+        name, useVirtualThread);
+    Assert.assertEquals(name, t.getName());
+    Assert.assertTrue(t.isDaemon());
+    Assert.assertEquals(!useVirtualThread || !Daemon.isVirtualThreadSupported(), t instanceof Daemon);
+
+    t.start();
+    Assert.assertEquals(name, future.get());
+    t.join();
+  }
+}